@@ -25,7 +25,7 @@ package org.alfresco.repo.index.shard;
  */
 public enum ShardMethodEnum
 {
-    MOD_ACL_ID, UNKOWN;
+    MOD_ACL_ID, DB_ID, UNKOWN;
     
     public static ShardMethodEnum getShardMethod(String shardMethod)
     {
@@ -41,6 +41,10 @@ public enum ShardMethodEnum
             {
                 shardMethodEnum = ShardMethodEnum.MOD_ACL_ID;
             }
+            else if (shardMethod.equalsIgnoreCase("DB_ID"))
+            {
+                shardMethodEnum = ShardMethodEnum.DB_ID;
+            }
             else
             {
                 shardMethodEnum = ShardMethodEnum.UNKOWN;
@@ -0,0 +1,5 @@
+{
+   <#if lastCommittedTxnId??>
+   "lastCommittedTxnId": ${lastCommittedTxnId?c}
+   </#if>
+}
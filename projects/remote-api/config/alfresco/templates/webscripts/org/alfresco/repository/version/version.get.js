@@ -66,7 +66,36 @@ function main()
 
       if (node != null)
       {
-         var versionHistory = node.versionHistory;
+         // optional paging, most recent version first
+         var maxItems = args["maxItems"] != null ? parseInt(args["maxItems"], 10) : -1,
+            skipCount = args["skipCount"] != null ? parseInt(args["skipCount"], 10) : 0,
+            paged = maxItems > 0,
+            totalItems = 1;
+         if (!paged || isNaN(skipCount) || skipCount < 0)
+         {
+            skipCount = 0;
+         }
+         if (paged)
+         {
+            var pagedHistory = node.getVersionHistoryPage(skipCount, maxItems);
+            if (pagedHistory != null)
+            {
+               versionHistory = pagedHistory.page;
+               totalItems = pagedHistory.totalResultCountUpper;
+            }
+            model.paging =
+            {
+               skipCount: skipCount,
+               maxItems: maxItems,
+               totalItems: totalItems,
+               hasMoreItems: skipCount + maxItems < totalItems
+            };
+         }
+         else
+         {
+            versionHistory = node.versionHistory;
+         }
+
          if (versionHistory != null)
          {
             for (i = 0; i < versionHistory.length; i++)
@@ -89,7 +118,7 @@ function main()
                };
             }
          }
-         else
+         else if (skipCount == 0)
          {
             p = getPerson(node.properties.creator);
             versions[0] =
@@ -1,4 +1,15 @@
 <#escape x as jsonUtils.encodeJSONString(x)>
+<#if paging??>
+{
+   "paging":
+   {
+      "skipCount": ${paging.skipCount?c},
+      "maxItems": ${paging.maxItems?c},
+      "totalItems": ${paging.totalItems?c},
+      "hasMoreItems": ${paging.hasMoreItems?c}
+   },
+   "versions":
+</#if>
 [
 <#list versions as v>
    {
@@ -17,4 +28,7 @@
    }<#if (v_has_next)>,</#if>
 </#list>
 ]
+<#if paging??>
+}
+</#if>
 </#escape>
\ No newline at end of file
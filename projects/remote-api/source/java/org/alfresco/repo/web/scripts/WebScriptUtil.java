@@ -131,6 +131,44 @@ public class WebScriptUtil
         return model;
     }
     
+    /**
+     * Checks an <code>If-None-Match</code> header against the entity tag of the current representation,
+     * using the weak comparison of RFC 7232: the header may list several tags, quoted or weak, or be <code>*</code>.
+     * 
+     * @param ifNoneMatch       the <code>If-None-Match</code> header, may be <tt>null</tt>
+     * @param eTag              the unquoted entity tag of the current representation
+     * @return                  <tt>true</tt> if the header matches the tag, so the representation is not modified
+     * @since 5.1
+     */
+    public static boolean isETagMatched(String ifNoneMatch, String eTag)
+    {
+        if (ifNoneMatch == null || eTag == null)
+        {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            if (tag.equals("*"))
+            {
+                return true;
+            }
+            if (tag.startsWith("W/"))
+            {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\""))
+            {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.equals(eTag))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     public static NodeRef getNodeRef(Map<String, String> params)
     {
         String protocol = params.get(STORE_PROTOCOL);
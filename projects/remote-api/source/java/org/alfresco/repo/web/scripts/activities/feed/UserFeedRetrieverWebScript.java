@@ -18,18 +18,23 @@
  */
 package org.alfresco.repo.web.scripts.activities.feed;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.query.PagingRequest;
 import org.alfresco.repo.activities.feed.FeedTaskProcessor;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.domain.activities.ActivityFeedEntity;
 import org.alfresco.repo.security.permissions.AccessDeniedException;
+import org.alfresco.repo.web.scripts.WebScriptUtil;
 import org.alfresco.service.cmr.activities.ActivityService;
 import org.alfresco.service.cmr.subscriptions.PagingFollowingResults;
 import org.alfresco.service.cmr.subscriptions.SubscriptionService;
@@ -37,6 +42,7 @@ import org.alfresco.util.JSONtoFmModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
+import org.springframework.extensions.webscripts.Cache;
 import org.springframework.extensions.webscripts.DeclarativeWebScript;
 import org.springframework.extensions.webscripts.Status;
 import org.springframework.extensions.webscripts.WebScriptRequest;
@@ -54,6 +60,7 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
     public static final String PARAM_EXCLUDE_OTHER_USERS = "exclOthers";
     public static final String PARAM_ONLY_FOLLOWING = "following";
     public static final String PARAM_ACTIVITY_FILTER = "activityFilter";
+    public static final String PARAM_MIN_FEED_ID = "minFeedId";
     
     private ActivityService activityService;
     private SubscriptionService subscriptionService;
@@ -76,10 +83,10 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
 	}
 
     /* (non-Javadoc)
-     * @see org.alfresco.web.scripts.DeclarativeWebScript#executeImpl(org.alfresco.web.scripts.WebScriptRequest, org.alfresco.web.scripts.WebScriptResponse)
+     * @see org.alfresco.web.scripts.DeclarativeWebScript#executeImpl(org.alfresco.web.scripts.WebScriptRequest, org.alfresco.web.scripts.Status, org.alfresco.web.scripts.Cache)
      */
     @Override
-    protected Map<String, Object> executeImpl(WebScriptRequest req, Status status)
+    protected Map<String, Object> executeImpl(WebScriptRequest req, Status status, Cache cache)
     {
         // retrieve requested format
         String format = req.getFormat();
@@ -108,6 +115,7 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
         String exclOtherUsersStr = req.getParameter(PARAM_EXCLUDE_OTHER_USERS); // optional
         String onlyFollowingStr = req.getParameter(PARAM_ONLY_FOLLOWING); // optional
         String activityFilterStr = req.getParameter(PARAM_ACTIVITY_FILTER); // optional
+        String minFeedIdStr = req.getParameter(PARAM_MIN_FEED_ID); // optional
         
         boolean exclThisUser = false;
         if ((exclThisUserStr != null) && (exclThisUserStr.equalsIgnoreCase("true") || exclThisUserStr.equalsIgnoreCase("t")))
@@ -121,6 +129,19 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
             exclOtherUsers = true;
         }
         
+        long minFeedId = -1;
+        if (minFeedIdStr != null)
+        {
+            try
+            {
+                minFeedId = Long.parseLong(minFeedIdStr);
+            }
+            catch (NumberFormatException nfe)
+            {
+                throw new AlfrescoRuntimeException("Invalid " + PARAM_MIN_FEED_ID + ": " + minFeedIdStr);
+            }
+        }
+        
         Set<String> userFilter = null;
         if ((onlyFollowingStr != null) && (onlyFollowingStr.equalsIgnoreCase("true") || onlyFollowingStr.equalsIgnoreCase("t")))
         {
@@ -172,7 +193,39 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
         
         try
         {
-            List<String> feedEntries = activityService.getUserFeedEntries(feedUserId, siteId, exclThisUser, exclOtherUsers, userFilter, activityFilter);
+            List<ActivityFeedEntity> activityFeeds = activityService.getUserFeedEntries(feedUserId, siteId, exclThisUser, exclOtherUsers, userFilter, activityFilter, minFeedId);
+            
+            // the tag identifies the request and the entries read for it, so a client polling an unchanged feed
+            // is answered without rendering or sending the entries again
+            String requestKey = AuthenticationUtil.getFullyAuthenticatedUser() + "|" + feedUserId + "|" + siteId + "|" +
+                        exclThisUser + "|" + exclOtherUsers + "|" + sorted(userFilter) + "|" + sorted(activityFilter) + "|" +
+                        minFeedId + "|" + format;
+            String eTag = getETag(requestKey, activityFeeds);
+            cache.setNeverCache(false);
+            cache.setMustRevalidate(true);
+            cache.setMaxAge(0L);
+            cache.setETag(eTag);
+            
+            if (WebScriptUtil.isETagMatched(req.getHeader("If-None-Match"), eTag))
+            {
+                // the templates render no entries and the response has no body
+                status.setCode(Status.STATUS_NOT_MODIFIED);
+                model.put("feedUserId", feedUserId);
+                return model;
+            }
+            
+            List<String> feedEntries = new ArrayList<String>();
+            try
+            {
+                for (ActivityFeedEntity activityFeed : activityFeeds)
+                {
+                    feedEntries.add(activityFeed.getJSONString());
+                }
+            }
+            catch (JSONException je)
+            {
+                throw new AlfrescoRuntimeException("Unable to get user feed entries: " + je.getMessage());
+            }
             
             if (format.equals(FeedTaskProcessor.FEED_FORMAT_JSON))
             {
@@ -207,4 +260,29 @@ public class UserFeedRetrieverWebScript extends DeclarativeWebScript
         
         return model;
     }
+    
+    /**
+     * @return the unquoted entity tag of the feed entries read for a request
+     */
+    private static String getETag(String requestKey, List<ActivityFeedEntity> activityFeeds)
+    {
+        long maxFeedId = -1L;
+        StringBuilder sb = new StringBuilder(requestKey.length() + activityFeeds.size() * 16);
+        sb.append(requestKey);
+        for (ActivityFeedEntity activityFeed : activityFeeds)
+        {
+            // the avatar is looked up as the feed is read, so it can change while the entry does not
+            sb.append('|').append(activityFeed.getId()).append(':').append(activityFeed.getPostUserAvatarNodeRef());
+            maxFeedId = Math.max(maxFeedId, activityFeed.getId());
+        }
+        return maxFeedId + "-" + activityFeeds.size() + "-" + UUID.nameUUIDFromBytes(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @return the set in a stable order, or <tt>null</tt>
+     */
+    private static Set<String> sorted(Set<String> set)
+    {
+        return (set == null ? null : new TreeSet<String>(set));
+    }
 }
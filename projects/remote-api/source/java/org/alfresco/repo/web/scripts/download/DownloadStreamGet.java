@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.download;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.service.cmr.download.DownloadService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.springframework.extensions.webscripts.AbstractWebScript;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.WebScriptException;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+
+/**
+ * Web script which streams a zip archive of the requested nodes straight to the
+ * response, rather than creating a download node and waiting for it to complete.
+ *
+ * @since 5.1
+ */
+public class DownloadStreamGet extends AbstractWebScript
+{
+    private static final String PARAM_NODEREF = "nodeRef";
+    private static final String PARAM_FILENAME = "filename";
+    private static final String DEFAULT_FILENAME = "archive.zip";
+    
+    /** Characters which can't appear in a header value: controls, including CR and LF, and line separators */
+    private static final Pattern UNSAFE_CHARS = Pattern.compile("[\\p{Cc}\\u2028\\u2029]");
+    /** Characters which are replaced in the plain filename parameter, which only holds printable ASCII */
+    private static final Pattern NON_ASCII_CHARS = Pattern.compile("[^\\x20-\\x7e]");
+    /** The attr-char set of RFC 5987, which is written unencoded in the filename* parameter */
+    private static final String ATTR_CHARS = "!#$&+-.^_`|~";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private DownloadService downloadService;
+
+    public void setDownloadService(DownloadService downloadService)
+    {
+        this.downloadService = downloadService;
+    }
+
+    @Override
+    public void execute(WebScriptRequest req, WebScriptResponse res) throws IOException
+    {
+        String[] nodeRefStrings = req.getParameterValues(PARAM_NODEREF);
+        if (nodeRefStrings == null || nodeRefStrings.length == 0)
+        {
+            throw new WebScriptException(Status.STATUS_BAD_REQUEST, "No nodeRefs provided");
+        }
+        List<NodeRef> nodes = new ArrayList<NodeRef>(nodeRefStrings.length);
+        for (String nodeRefString : nodeRefStrings)
+        {
+            if (!NodeRef.isNodeRef(nodeRefString))
+            {
+                throw new WebScriptException(Status.STATUS_BAD_REQUEST, "Invalid nodeRef: " + nodeRefString);
+            }
+            nodes.add(new NodeRef(nodeRefString));
+        }
+        
+        res.setContentType(MimetypeMap.MIMETYPE_ZIP);
+        res.setHeader("Content-Disposition", getContentDisposition(req.getParameter(PARAM_FILENAME)));
+        
+        downloadService.streamDownload(nodes.toArray(new NodeRef[nodes.size()]), res.getOutputStream());
+    }
+
+    /**
+     * Build the Content-Disposition header for the archive.  Characters which could end the header
+     * are removed from the filename.  The filename parameter holds an ASCII version of the name for
+     * older clients, and the filename* parameter the full name, encoded as described in RFC 5987.
+     * 
+     * @param filename the requested filename, may be null
+     * @return the header value
+     */
+    static String getContentDisposition(String filename)
+    {
+        String name = filename == null ? "" : UNSAFE_CHARS.matcher(filename).replaceAll("").trim();
+        if (name.length() == 0)
+        {
+            name = DEFAULT_FILENAME;
+        }
+        String asciiName = NON_ASCII_CHARS.matcher(name).replaceAll("_").replace("\"", "").replace("\\", "");
+        return "attachment; filename=\"" + asciiName + "\"; filename*=UTF-8''" + encodeExtValue(name);
+    }
+
+    private static String encodeExtValue(String value)
+    {
+        StringBuilder encoded = new StringBuilder(value.length() * 3);
+        for (byte b : value.getBytes(Charset.forName("UTF-8")))
+        {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ATTR_CHARS.indexOf(c) >= 0)
+            {
+                encoded.append(c);
+            }
+            else
+            {
+                encoded.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        return encoded.toString();
+    }
+}
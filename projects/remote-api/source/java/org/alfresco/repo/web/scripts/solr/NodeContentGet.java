@@ -19,18 +19,25 @@
 package org.alfresco.repo.web.scripts.solr;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.UUID;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.caching.CacheMissException;
+import org.alfresco.repo.content.caching.ContentCache;
+import org.alfresco.repo.content.caching.quota.QuotaManagerStrategy;
+import org.alfresco.repo.content.caching.quota.UnlimitedQuotaStrategy;
 import org.alfresco.repo.content.transform.ContentTransformer;
 import org.alfresco.repo.content.transform.TransformerDebug;
 import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.web.scripts.WebScriptUtil;
 import org.alfresco.repo.web.scripts.content.StreamContent;
 import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
@@ -51,6 +58,13 @@ import org.springframework.extensions.webscripts.WebScriptResponse;
 /**
  * A web service to return the text content (transformed if required) of a node's
  * content property.
+ * <p>
+ * If the text content cache is enabled, the extracted text is kept in it, so that
+ * re-indexing the same content (index rebuilds, several cores or shards tracking the
+ * same repository) streams the text rather than transforming it again. Cached text and
+ * the response ETag are keyed by the content URL, source mimetype, transformation use
+ * and the transformer used, allowing callers that already hold the text to skip it
+ * using <code>If-None-Match</code>.
  * 
  * @since 4.0
  */
@@ -71,6 +85,9 @@ public class NodeContentGet extends StreamContent
     private NodeService nodeService;
     private ContentService contentService;
     private TransformerDebug transformerDebug;
+    private ContentCache textContentCache;
+    private QuotaManagerStrategy textContentCacheQuota = new UnlimitedQuotaStrategy();
+    private boolean textContentCacheEnabled = false;
 
     public void setNodeDAO(NodeDAO nodeDAO)
     {
@@ -96,6 +113,32 @@ public class NodeContentGet extends StreamContent
         this.transformerDebug = transformerDebug;
     }
 
+    /**
+     * Setter of the cache holding text previously extracted for a content URL.
+     * @param textContentCache ContentCache
+     */
+    public void setTextContentCache(ContentCache textContentCache)
+    {
+        this.textContentCache = textContentCache;
+    }
+
+    /**
+     * Setter of the quota limiting the disk usage of the text content cache.
+     * @param textContentCacheQuota QuotaManagerStrategy
+     */
+    public void setTextContentCacheQuota(QuotaManagerStrategy textContentCacheQuota)
+    {
+        this.textContentCacheQuota = textContentCacheQuota;
+    }
+
+    /**
+     * @param textContentCacheEnabled true to keep extracted text in the text content cache
+     */
+    public void setTextContentCacheEnabled(boolean textContentCacheEnabled)
+    {
+        this.textContentCacheEnabled = textContentCacheEnabled;
+    }
+
     /**
      *
      * @param req WebScriptRequest
@@ -175,7 +218,7 @@ public class NodeContentGet extends StreamContent
             res.setStatus(HttpStatus.SC_NO_CONTENT);
             return;            
         }
-        
+
         try
         {
             // get the transformer
@@ -195,6 +238,27 @@ public class NodeContentGet extends StreamContent
             }
             ContentTransformer transformer = transformers.get(0);
             
+            // The content URL changes whenever the content does, so together with what it is
+            // transformed from and by, it identifies the extracted text
+            String textKey = getTextKey(reader, options, transformer);
+            String eTag = (textKey == null) ? String.valueOf(modified.getTime()) : getETag(textKey);
+            // The ETag header is sent quoted, and clients may send back a list of tags
+            if (WebScriptUtil.isETagMatched(req.getHeader("If-None-Match"), eTag))
+            {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            textReader = getCachedText(textKey);
+            if (textReader != null)
+            {
+                // No transformation took place
+                res.setHeader(TRANSFORM_DURATION_HEADER, "0");
+                res.setStatus(HttpStatus.SC_OK);
+                streamContentImpl(req, res, textReader, null, null, false, modified, eTag, null, null);
+                return;
+            }
+            
             // Perform transformation catering for mimetype AND encoding
             ContentWriter writer = contentService.getTempWriter();
             writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
@@ -233,8 +297,13 @@ public class NodeContentGet extends StreamContent
             }
             else
             {
+                if (cacheText(textKey, textReader))
+                {
+                    // The cache has consumed the reader, so get a fresh one onto the temp content
+                    textReader = writer.getReader();
+                }
                 res.setStatus(HttpStatus.SC_OK);
-                streamContentImpl(req, res, textReader, null, null, false, modified, String.valueOf(modified.getTime()), null, null);            
+                streamContentImpl(req, res, textReader, null, null, false, modified, eTag, null, null);            
             }
         }
         finally
@@ -242,4 +311,85 @@ public class NodeContentGet extends StreamContent
             transformerDebug.popAvailable();
         }
     }
+
+    /**
+     * @return the key of the text extracted from the content, or <tt>null</tt> if the content has no URL
+     */
+    private String getTextKey(ContentReader reader, TransformationOptions options, ContentTransformer transformer)
+    {
+        String contentUrl = reader.getContentUrl();
+        if (contentUrl == null)
+        {
+            return null;
+        }
+        return contentUrl + "|" + reader.getMimetype() + "|" + options.getUse() + "|" + transformer.getName();
+    }
+
+    private boolean isTextContentCacheEnabled(String textKey)
+    {
+        return textContentCacheEnabled && textContentCache != null && textKey != null;
+    }
+
+    /**
+     * @return a reader onto the text previously extracted with the given key, or <tt>null</tt> if it is not cached
+     */
+    private ContentReader getCachedText(String textKey)
+    {
+        if (!isTextContentCacheEnabled(textKey) || !textContentCache.contains(textKey))
+        {
+            return null;
+        }
+        try
+        {
+            ContentReader cachedReader = textContentCache.getReader(textKey);
+            cachedReader.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+            cachedReader.setEncoding("UTF-8");
+            return cachedReader;
+        }
+        catch (CacheMissException e)
+        {
+            // The cache file has been cleaned up, so the text will have to be extracted again
+            textContentCache.remove(textKey);
+            return null;
+        }
+    }
+
+    /**
+     * Keep the extracted text, subject to the cache quota.
+     * 
+     * @return true if the text reader has been consumed
+     */
+    private boolean cacheText(String textKey, ContentReader textReader)
+    {
+        if (!isTextContentCacheEnabled(textKey))
+        {
+            return false;
+        }
+        long size = textReader.getSize();
+        if (!textContentCacheQuota.beforeWritingCacheFile(size))
+        {
+            return false;
+        }
+        try
+        {
+            if (textContentCache.put(textKey, textReader) && !textContentCacheQuota.afterWritingCacheFile(size))
+            {
+                textContentCache.deleteFile(textKey);
+                textContentCache.remove(textKey);
+            }
+        }
+        catch (ContentIOException e)
+        {
+            if (logger.isWarnEnabled())
+            {
+                logger.warn("Failed to cache text content for " + textKey, e);
+            }
+        }
+        return true;
+    }
+
+    private String getETag(String textKey)
+    {
+        return UUID.nameUUIDFromBytes(textKey.getBytes(StandardCharsets.UTF_8)).toString();
+    }
 }
@@ -28,6 +28,7 @@ import java.util.Set;
 
 import org.alfresco.repo.domain.node.Node;
 import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.repo.index.shard.ShardMethodEnum;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.solr.NodeParameters;
 import org.alfresco.repo.solr.SOLRTrackingComponent;
@@ -148,6 +149,10 @@ public class NodesGet extends DeclarativeWebScript
             
             String storeProtocol = o.has("storeProtocol") ? o.getString("storeProtocol") : null;
             String storeIdentifier = o.has("storeIdentifier") ? o.getString("storeIdentifier") : null;
+
+            ShardMethodEnum shardMethod = ShardMethodEnum.getShardMethod(o.has("shardMethod") ? o.getString("shardMethod") : null);
+            int shardCount = o.has("shardCount") ? o.getInt("shardCount") : 0;
+            int shardInstance = o.has("shardInstance") ? o.getInt("shardInstance") : 0;
             
             List<Long> txnIds = null;
             if(aTxnIds != null)
@@ -170,6 +175,14 @@ public class NodesGet extends DeclarativeWebScript
             nodeParameters.setExcludeNodeTypes(excludeNodeTypes);
             nodeParameters.setIncludeNodeTypes(includeNodeTypes);
             
+            // A node never moves between DB_ID shards, so nodes belonging to other shards need not be sent at all.
+            // Other shard methods are filtered by Solr, as a node may move into or out of the shard.
+            if (shardMethod == ShardMethodEnum.DB_ID && shardCount > 1)
+            {
+                nodeParameters.setShardCount(shardCount);
+                nodeParameters.setShardInstance(shardInstance);
+            }
+            
             StoreRef storeRef = null;
             
             if (AuthenticationUtil.isMtEnabled())
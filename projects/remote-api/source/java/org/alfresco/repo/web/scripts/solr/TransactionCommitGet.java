@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.solr;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.alfresco.repo.solr.SOLRTrackingComponent;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.extensions.webscripts.DeclarativeWebScript;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+
+/**
+ * Support for SOLR: Wait for a transaction newer than the given ID to be committed.
+ * <p/>
+ * This allows the trackers to pick up new transactions as soon as they are committed
+ * instead of waiting for the next scheduled poll.  The call runs outside of a transaction
+ * so that no database connection is held while waiting.
+ *
+ * @since 5.1
+ */
+public class TransactionCommitGet extends DeclarativeWebScript
+{
+    protected static final Log logger = LogFactory.getLog(TransactionCommitGet.class);
+
+    private SOLRTrackingComponent solrTrackingComponent;
+    private long maxWaitMillis = 60000L;
+    
+    public void setSolrTrackingComponent(SOLRTrackingComponent solrTrackingComponent)
+    {
+        this.solrTrackingComponent = solrTrackingComponent;
+    }
+
+    /**
+     * @param maxWaitMillis         the upper limit on the time a client may wait for a commit
+     */
+    public void setMaxWaitMillis(long maxWaitMillis)
+    {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    protected Map<String, Object> executeImpl(WebScriptRequest req, Status status)
+    {
+        String afterTxnIdParam = req.getParameter("afterTxnId");
+        String waitMillisParam = req.getParameter("waitMillis");
+        
+        Long afterTxnId = (afterTxnIdParam == null ? null : Long.valueOf(afterTxnIdParam));
+        long waitMillis = (waitMillisParam == null ? 0L : Long.valueOf(waitMillisParam));
+        waitMillis = Math.max(0L, Math.min(waitMillis, maxWaitMillis));
+        
+        Long lastCommittedTxnId = solrTrackingComponent.waitForTransactionCommit(afterTxnId, waitMillis);
+        
+        Map<String, Object> model = new HashMap<String, Object>(1, 1.0f);
+        if(lastCommittedTxnId != null)
+        {
+            model.put("lastCommittedTxnId", lastCommittedTxnId);
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Result: \n\tRequest: " + req + "\n\tModel: " + model);
+        }
+        
+        return model;
+    }
+}
@@ -63,6 +63,9 @@ public class PropFindMethod extends WebDAVMethod
 	protected static final int GET_NAMED_PROPS = 1;
 	protected static final int FIND_PROPS = 2;
 
+    // Number of child nodes listed, and sent to the client, at a time
+    private static final int CHILDREN_PAGE_SIZE = 500;
+
     // Find request type
     protected int m_mode = GET_ALL_PROPS;
 
@@ -230,9 +233,16 @@ public class PropFindMethod extends WebDAVMethod
         // Output the response for the root node, depth zero
         generateResponseForNode(xml, pathNodeInfo, basePath);
 
+        // A depth of infinity is bounded by the configured limit
+        int depth = getDepth();
+        if (depth == WebDAV.DEPTH_INFINITY)
+        {
+            depth = getDAVHelper().getInfiniteDepthLimit();
+        }
+
         // If additional levels are required and the root node is a folder then recurse to the required
         // level and output node details a level at a time
-        if (getDepth() != WebDAV.DEPTH_0 && pathNodeInfo.isFolder())
+        if (depth != WebDAV.DEPTH_0 && pathNodeInfo.isFolder())
         {
             // Create the initial list of nodes to report
             List<FileInfo> nodeInfos = new ArrayList<FileInfo>(10);
@@ -245,13 +255,13 @@ public class PropFindMethod extends WebDAVMethod
 
             // List of next level of nodes to report
             List<FileInfo> nextNodeInfos = null;
-            if (getDepth() > WebDAV.DEPTH_1)
+            if (depth > WebDAV.DEPTH_1)
             {
                 nextNodeInfos = new ArrayList<FileInfo>(10);
             }
 
             // Loop reporting each level of nodes to the requested depth
-            while (curDepth <= getDepth() && nodeInfos != null)
+            while (curDepth <= depth && nodeInfos != null)
             {
                 // Clear out the next level of nodes, if required
                 if (nextNodeInfos != null)
@@ -264,11 +274,12 @@ public class PropFindMethod extends WebDAVMethod
 
                 for (FileInfo curNodeInfo : nodeInfos)
                 {
-                    // Get the list of child nodes for the current node
-                    List<FileInfo> childNodeInfos = getDAVHelper().getChildren(curNodeInfo);
+                    // Get the first page of child nodes for the current node, paged by child node ID so that
+                    // none are missed or repeated as the folder changes
+                    WebDAVHelper.ChildrenPage childNodePage = getDAVHelper().getChildren(curNodeInfo, null, CHILDREN_PAGE_SIZE);
                     
                     // can skip the current node if it doesn't have children
-                    if (childNodeInfos.size() == 0)
+                    if (childNodePage.getChildren().isEmpty() && childNodePage.getNextChildNodeId() == null)
                     {
                         continue;
                     }
@@ -300,22 +311,34 @@ public class PropFindMethod extends WebDAVMethod
 
                     int curBaseLen = baseBuild.length();
 
-                    // Output the child node details
-                    for (FileInfo curChildInfo : childNodeInfos)
+                    while (true)
                     {
-	                // Build the path for the current child node
-	                baseBuild.setLength(curBaseLen);
-	
-	                baseBuild.append(curChildInfo.getName());
-	
-	                // Output the current child node details
-	                generateResponseForNode(xml, curChildInfo, baseBuild.toString());
-	
-	                // If the child is a folder add it to the list of next level nodes
-	                if (nextNodeInfos != null && curChildInfo.isFolder())
-	                {
-	                    nextNodeInfos.add(curChildInfo);
-	                }
+                        // Output the child node details
+                        for (FileInfo curChildInfo : childNodePage.getChildren())
+                        {
+                            // Build the path for the current child node
+                            baseBuild.setLength(curBaseLen);
+
+                            baseBuild.append(curChildInfo.getName());
+
+                            // Output the current child node details
+                            generateResponseForNode(xml, curChildInfo, baseBuild.toString());
+
+                            // If the child is a folder add it to the list of next level nodes
+                            if (nextNodeInfos != null && curChildInfo.isFolder())
+                            {
+                                nextNodeInfos.add(curChildInfo);
+                            }
+                        }
+
+                        // Send each page to the client as it is listed rather than buffering the whole listing
+                        flushXML(xml);
+
+                        if (childNodePage.getNextChildNodeId() == null)
+                        {
+                            break;
+                        }
+                        childNodePage = getDAVHelper().getChildren(curNodeInfo, childNodePage.getNextChildNodeId(), CHILDREN_PAGE_SIZE);
                     }
                 }
 
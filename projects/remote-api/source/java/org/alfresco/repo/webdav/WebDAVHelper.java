@@ -39,6 +39,7 @@ import org.alfresco.jlan.util.IPAddress;
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.Client;
 import org.alfresco.repo.Client.ClientType;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.events.EventPreparator;
 import org.alfresco.repo.events.EventPublisher;
 import org.alfresco.repo.lock.LockUtils;
@@ -51,6 +52,7 @@ import org.alfresco.service.cmr.activities.ActivityPoster;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.lock.LockService;
 import org.alfresco.service.cmr.model.FileFolderService;
+import org.alfresco.service.cmr.model.FileFolderServiceType;
 import org.alfresco.service.cmr.model.FileInfo;
 import org.alfresco.service.cmr.model.FileNotFoundException;
 import org.alfresco.service.cmr.repository.CopyService;
@@ -59,11 +61,13 @@ import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
 import org.alfresco.service.cmr.search.SearchService;
+import org.alfresco.service.cmr.security.AccessStatus;
 import org.alfresco.service.cmr.security.AuthenticationService;
 import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.cmr.site.SiteService;
 import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.extensions.surf.util.URLDecoder;
@@ -111,6 +115,7 @@ public class WebDAVHelper
     private PermissionService m_permissionService;
     private TenantService m_tenantService;
     private HiddenAspect m_hiddenAspect;
+    private NodeDAO m_nodeDAO;
     private EventPublisher eventPublisher;
     private ActivityPoster poster;
     
@@ -127,6 +132,8 @@ public class WebDAVHelper
         
     private long sizeLimit = -1L;
     
+    private int infiniteDepthLimit = 0;
+    
     /**
      * This method sets a value for the limit. If the string does not {@link Long#parseLong(String) parse} to a
      * java long.
@@ -401,6 +408,14 @@ public class WebDAVHelper
         this.m_hiddenAspect = hiddenAspect;
     }
 
+    /**
+     * @param nodeDAO the node DAO, used to page through and bulk load the children of large folders
+     */
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.m_nodeDAO = nodeDAO;
+    }
+
     
     public BehaviourFilter getPolicyBehaviourFilter()
     {
@@ -635,6 +650,85 @@ public class WebDAVHelper
         return m_fileFolderService.list(fileInfo.getNodeRef());
     }
 
+    /**
+     * Get a page of the child files and folders of a folder, in child node ID order.  Each page starts just above
+     * the last child node ID of the previous page, so no children are missed or repeated as the folder changes, and
+     * the nodes of each page, properties and aspects included, are bulk loaded before they are read.
+     * <p/>
+     * As with {@link #getChildren(FileInfo)}, system folders, other node types and children the current user cannot
+     * read are left out, so a page may hold fewer than <tt>maxItems</tt> children even when more follow.
+     * 
+     * @param fileInfo the folder
+     * @param minChildNodeId the lowest child node ID to list, <tt>null</tt> for the first page
+     * @param maxItems the number of child nodes to read for the page
+     */
+    public ChildrenPage getChildren(FileInfo fileInfo, Long minChildNodeId, int maxItems)
+    {
+        Long parentNodeId = (Long) m_nodeService.getProperty(fileInfo.getNodeRef(), ContentModel.PROP_NODE_DBID);
+        List<Long> childNodeIds = m_nodeDAO.getChildNodeIds(parentNodeId, minChildNodeId == null ? Long.MIN_VALUE : minChildNodeId, maxItems);
+        m_nodeDAO.cacheNodesById(childNodeIds);
+
+        List<FileInfo> children = new ArrayList<FileInfo>(childNodeIds.size());
+        Long lastChildNodeId = null;
+        for (Long childNodeId : childNodeIds)
+        {
+            // A child with several associations to the folder is listed once
+            if (childNodeId.equals(lastChildNodeId))
+            {
+                continue;
+            }
+            lastChildNodeId = childNodeId;
+            Pair<Long, NodeRef> childNodePair = m_nodeDAO.getNodePair(childNodeId);
+            if (childNodePair == null)
+            {
+                // Deleted since the page was read
+                continue;
+            }
+            NodeRef childNodeRef = m_tenantService.getBaseName(childNodePair.getSecond());
+            FileFolderServiceType type = m_fileFolderService.getType(m_nodeService.getType(childNodeRef));
+            if ((type != FileFolderServiceType.FILE && type != FileFolderServiceType.FOLDER)
+                    || m_permissionService.hasReadPermission(childNodeRef) != AccessStatus.ALLOWED)
+            {
+                continue;
+            }
+            children.add(m_fileFolderService.getFileInfo(childNodeRef));
+        }
+
+        Long nextChildNodeId = (childNodeIds.size() < maxItems) ? null : childNodeIds.get(childNodeIds.size() - 1) + 1L;
+        return new ChildrenPage(children, nextChildNodeId);
+    }
+
+    /**
+     * A page of the children of a folder, see {@link WebDAVHelper#getChildren(FileInfo, Long, int)}
+     */
+    public static class ChildrenPage
+    {
+        private final List<FileInfo> children;
+        private final Long nextChildNodeId;
+
+        ChildrenPage(List<FileInfo> children, Long nextChildNodeId)
+        {
+            this.children = children;
+            this.nextChildNodeId = nextChildNodeId;
+        }
+
+        /**
+         * @return the readable files and folders of the page
+         */
+        public List<FileInfo> getChildren()
+        {
+            return children;
+        }
+
+        /**
+         * @return the child node ID to list the next page from, or <tt>null</tt> if this is the last page
+         */
+        public Long getNextChildNodeId()
+        {
+            return nextChildNodeId;
+        }
+    }
+
     /**
      * Make an ETag value for a node using the GUID and modify date/time
      */
@@ -1057,6 +1151,25 @@ public class WebDAVHelper
         m_urlPathPrefix = urlPathPrefix;
     }
     
+    /**
+     * Sets the number of levels reported by a PROPFIND with a depth of infinity.
+     * Zero (the default) reports the requested resource only.
+     * 
+     * @param infiniteDepthLimit the maximum tree depth to report
+     */
+    public void setInfiniteDepthLimit(int infiniteDepthLimit)
+    {
+        this.infiniteDepthLimit = infiniteDepthLimit;
+    }
+    
+    /**
+     * @return the number of levels reported by a PROPFIND with a depth of infinity
+     */
+    public int getInfiniteDepthLimit()
+    {
+        return infiniteDepthLimit;
+    }
+    
     public String getUrlPathPrefix(HttpServletRequest request)
     {
         StringBuilder urlStr = null;
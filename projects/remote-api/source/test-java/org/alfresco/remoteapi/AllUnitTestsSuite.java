@@ -4,6 +4,8 @@ import junit.framework.JUnit4TestAdapter;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.alfresco.repo.web.scripts.download.DownloadStreamGetTest;
+import org.alfresco.repo.web.scripts.solr.NodeContentGetTest;
 import org.alfresco.repo.web.scripts.solr.StatsGetTest;
 import org.alfresco.repo.web.util.PagingCursorTest;
 import org.alfresco.repo.web.util.paging.PagingTest;
@@ -35,6 +37,8 @@ public class AllUnitTestsSuite extends TestSuite
         pagingTests(suite);
 
         suite.addTest(new JUnit4TestAdapter(StatsGetTest.class));
+        suite.addTest(new JUnit4TestAdapter(NodeContentGetTest.class));
+        suite.addTest(new JUnit4TestAdapter(DownloadStreamGetTest.class));
         return suite;
     }
     
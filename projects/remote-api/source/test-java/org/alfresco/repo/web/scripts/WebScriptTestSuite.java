@@ -23,6 +23,7 @@ import junit.framework.TestSuite;
 
 import org.alfresco.repo.model.filefolder.RemoteFileFolderLoaderTest;
 import org.alfresco.repo.web.scripts.action.RunningActionRestApiTest;
+import org.alfresco.repo.web.scripts.activities.feed.UserFeedRetrieverWebScriptTest;
 import org.alfresco.repo.web.scripts.activities.feed.control.FeedControlTest;
 import org.alfresco.repo.web.scripts.admin.AdminWebScriptTest;
 import org.alfresco.repo.web.scripts.audit.AuditWebScriptTest;
@@ -52,6 +53,7 @@ import org.alfresco.repo.web.scripts.subscriptions.SubscriptionServiceRestApiTes
 import org.alfresco.repo.web.scripts.tagging.TaggingServiceTest;
 import org.alfresco.repo.web.scripts.thumbnail.ThumbnailServiceTest;
 import org.alfresco.repo.web.scripts.transfer.TransferWebScriptTest;
+import org.alfresco.repo.web.scripts.version.VersionGetTest;
 import org.alfresco.repo.web.scripts.workflow.ActivitiWorkflowRestApiTest;
 import org.alfresco.repo.web.scripts.workflow.WorkflowModelBuilderTest;
 
@@ -75,6 +77,7 @@ public class WebScriptTestSuite extends TestSuite
         suite.addTestSuite( DictionaryRestApiTest.class );
         suite.addTestSuite( DiscussionRestApiTest.class );
         suite.addTestSuite( FeedControlTest.class );
+        suite.addTestSuite( UserFeedRetrieverWebScriptTest.class );
         suite.addTestSuite( FormRestApiGet_Test.class );
         suite.addTestSuite( FormRestApiJsonPost_Test.class );
         suite.addTestSuite( GroupsTest.class );
@@ -106,6 +109,7 @@ public class WebScriptTestSuite extends TestSuite
         suite.addTestSuite( RemoteFileFolderLoaderTest.class );
         suite.addTestSuite( ReadOnlyTransactionInGetRestApiTest.class );
         suite.addTestSuite( CustomModelImportTest.class );
+        suite.addTestSuite( VersionGetTest.class );
         // This uses a slightly different context
         // As such, we can't run it in the same suite as the others,
         //  due to finalisers closing caches when we're not looking
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.activities.feed;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.activities.ActivityFeedDAO;
+import org.alfresco.repo.domain.activities.ActivityFeedEntity;
+import org.alfresco.repo.security.authentication.AuthenticationComponent;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.web.scripts.BaseWebScriptTest;
+import org.alfresco.service.cmr.security.MutableAuthenticationService;
+import org.alfresco.service.cmr.security.PersonService;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.GUID;
+import org.alfresco.util.PropertyMap;
+import org.json.JSONArray;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.TestWebScriptServer.GetRequest;
+import org.springframework.extensions.webscripts.TestWebScriptServer.Response;
+
+/**
+ * Tests the revalidation of the user feed by {@link UserFeedRetrieverWebScript}
+ * 
+ * @since 5.1
+ */
+public class UserFeedRetrieverWebScriptTest extends BaseWebScriptTest
+{
+    private static final String URL_USER_FEED = "/api/activities/feed/user?format=json";
+    
+    private MutableAuthenticationService authenticationService;
+    private AuthenticationComponent authenticationComponent;
+    private PersonService personService;
+    private RetryingTransactionHelper txnHelper;
+    private ActivityFeedDAO feedDAO;
+    
+    private String userName;
+    
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        
+        this.authenticationService = (MutableAuthenticationService)getServer().getApplicationContext().getBean("AuthenticationService");
+        this.authenticationComponent = (AuthenticationComponent)getServer().getApplicationContext().getBean("authenticationComponent");
+        this.personService = (PersonService)getServer().getApplicationContext().getBean("PersonService");
+        this.txnHelper = ((TransactionService)getServer().getApplicationContext().getBean("TransactionService")).getRetryingTransactionHelper();
+        this.feedDAO = (ActivityFeedDAO)getServer().getApplicationContext().getBean("feedDAO");
+        
+        this.authenticationComponent.setCurrentUser(AuthenticationUtil.getAdminUserName());
+        
+        // User names are lower case in the feed
+        userName = "userfeedretrieverwebscripttest-" + GUID.generate().toLowerCase();
+        this.authenticationService.createAuthentication(userName, "PWD".toCharArray());
+        PropertyMap ppOne = new PropertyMap(4);
+        ppOne.put(ContentModel.PROP_USERNAME, userName);
+        ppOne.put(ContentModel.PROP_FIRSTNAME, "firstName");
+        ppOne.put(ContentModel.PROP_LASTNAME, "lastName");
+        ppOne.put(ContentModel.PROP_EMAIL, "email@email.com");
+        this.personService.createPerson(ppOne);
+        
+        insertFeedEntry();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        
+        txnHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                feedDAO.deleteUserFeedEntries(userName);
+                return null;
+            }
+        });
+        this.personService.deletePerson(userName);
+        if (this.authenticationService.authenticationExists(userName))
+        {
+            this.authenticationService.deleteAuthentication(userName);
+        }
+        this.authenticationComponent.clearCurrentSecurityContext();
+    }
+    
+    private void insertFeedEntry()
+    {
+        final ActivityFeedEntity feed = new ActivityFeedEntity();
+        feed.setFeedUserId(userName);
+        feed.setPostUserId(userName);
+        feed.setActivityType("org.alfresco.profile.status-changed");
+        feed.setActivitySummary("{\"status\":\"" + GUID.generate() + "\"}");
+        feed.setAppTool("profile");
+        feed.setPostDate(new Date());
+        feed.setFeedDate(new Date());
+        txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            public Long execute() throws Throwable
+            {
+                return feedDAO.insertFeedEntry(feed);
+            }
+        });
+    }
+    
+    private Response getFeed(String url, String ifNoneMatch, int expectedStatus) throws Exception
+    {
+        GetRequest req = new GetRequest(url);
+        if (ifNoneMatch != null)
+        {
+            req.setHeaders(Collections.singletonMap("If-None-Match", ifNoneMatch));
+        }
+        return sendRequest(req, expectedStatus, userName);
+    }
+    
+    public void testUnchangedFeedNotModified() throws Exception
+    {
+        Response response = getFeed(URL_USER_FEED, null, Status.STATUS_OK);
+        String eTag = response.getHeader("ETag");
+        assertNotNull("The feed has no ETag", eTag);
+        
+        // The header is sent back as it was received
+        response = getFeed(URL_USER_FEED, eTag, Status.STATUS_NOT_MODIFIED);
+        String content = response.getContentAsString().trim();
+        assertTrue("A not modified response has no entries", content.isEmpty() || new JSONArray(content).length() == 0);
+        
+        // A different request is not matched by the tag
+        getFeed(URL_USER_FEED + "&exclUser=true", eTag, Status.STATUS_OK);
+    }
+    
+    public void testChangedFeedReturned() throws Exception
+    {
+        String eTag = getFeed(URL_USER_FEED, null, Status.STATUS_OK).getHeader("ETag");
+        
+        insertFeedEntry();
+        
+        String newETag = getFeed(URL_USER_FEED, eTag, Status.STATUS_OK).getHeader("ETag");
+        assertFalse("The ETag did not change with the feed", eTag.equals(newETag));
+        getFeed(URL_USER_FEED, newETag, Status.STATUS_NOT_MODIFIED);
+    }
+}
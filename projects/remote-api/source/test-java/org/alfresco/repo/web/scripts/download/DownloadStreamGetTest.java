@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.service.cmr.download.DownloadService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+
+/**
+ * Unit tests for the {@link DownloadStreamGet} web script.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DownloadStreamGetTest
+{
+    private static final String NODE_REF = "workspace://SpacesStore/node-id";
+
+    private DownloadStreamGet webScript;
+    private OutputStream output = new ByteArrayOutputStream();
+    private @Mock DownloadService downloadService;
+    private @Mock WebScriptRequest req;
+    private @Mock WebScriptResponse res;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        webScript = new DownloadStreamGet();
+        webScript.setDownloadService(downloadService);
+
+        when(req.getParameterValues("nodeRef")).thenReturn(new String[] {NODE_REF});
+        when(res.getOutputStream()).thenReturn(output);
+    }
+
+    @Test
+    public void archiveIsStreamedToTheResponse() throws Exception
+    {
+        when(req.getParameter("filename")).thenReturn("docs.zip");
+
+        webScript.execute(req, res);
+
+        verify(res).setContentType(MimetypeMap.MIMETYPE_ZIP);
+        verify(res).setHeader("Content-Disposition", "attachment; filename=\"docs.zip\"; filename*=UTF-8''docs.zip");
+        verify(downloadService).streamDownload(eq(new NodeRef[] {new NodeRef(NODE_REF)}), same(output));
+    }
+
+    @Test
+    public void defaultFilenameIsUsedWhenNoneIsGiven() throws Exception
+    {
+        webScript.execute(req, res);
+
+        verify(res).setHeader("Content-Disposition", "attachment; filename=\"archive.zip\"; filename*=UTF-8''archive.zip");
+    }
+
+    @Test
+    public void lineBreaksAreRemovedFromTheFilename() throws Exception
+    {
+        when(req.getParameter("filename")).thenReturn("docs\r\nSet-Cookie: a=b\u0000.zip");
+
+        webScript.execute(req, res);
+
+        ArgumentCaptor<String> header = ArgumentCaptor.forClass(String.class);
+        verify(res).setHeader(eq("Content-Disposition"), header.capture());
+        assertFalse(header.getValue().matches("(?s).*[\\p{Cntrl}].*"));
+        assertEquals("attachment; filename=\"docsSet-Cookie: a=b.zip\"; filename*=UTF-8''docsSet-Cookie%3A%20a%3Db.zip",
+                    header.getValue());
+    }
+
+    @Test
+    public void filenameOfOnlyControlCharactersIsReplacedByTheDefault()
+    {
+        assertEquals("attachment; filename=\"archive.zip\"; filename*=UTF-8''archive.zip",
+                    DownloadStreamGet.getContentDisposition("\r\n\t"));
+    }
+
+    @Test
+    public void nonAsciiFilenameIsEncodedInTheExtendedParameter()
+    {
+        String header = DownloadStreamGet.getContentDisposition("Bericht \u00fcber \"2015\".zip");
+
+        assertEquals("attachment; filename=\"Bericht _ber 2015.zip\"; filename*=UTF-8''Bericht%20%C3%BCber%20%222015%22.zip", header);
+    }
+
+    @Test
+    public void charactersOutsideTheRfc5987AttrCharSetArePercentEncoded()
+    {
+        assertEquals("attachment; filename=\"a(1)*'%.zip\"; filename*=UTF-8''a%281%29%2A%27%25.zip",
+                    DownloadStreamGet.getContentDisposition("a(1)*'%.zip"));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.caching.ContentCache;
+import org.alfresco.repo.content.transform.ContentTransformer;
+import org.alfresco.repo.content.transform.TransformerDebug;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.web.scripts.content.ContentStreamer;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentService;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.TransformationOptions;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+
+/**
+ * Unit tests for the text content cache of the {@link NodeContentGet} web script.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class NodeContentGetTest
+{
+    private static final long NODE_ID = 123L;
+    private static final String CONTENT_URL = "store://2015/1/1/0/0/abc.bin";
+    private static final String TRANSFORM_DURATION_HEADER = "X-Alfresco-transformDuration";
+
+    private NodeContentGet webScript;
+    private NodeRef nodeRef;
+    private @Mock NodeDAO nodeDAO;
+    private @Mock NodeService nodeService;
+    private @Mock ContentService contentService;
+    private @Mock TransformerDebug transformerDebug;
+    private @Mock ContentCache textContentCache;
+    private @Mock ContentStreamer delegate;
+    private @Mock ContentTransformer transformer;
+    private @Mock ContentReader reader;
+    private @Mock ContentWriter writer;
+    private @Mock ContentReader textReader;
+    private @Mock ContentReader cachedTextReader;
+    private @Mock WebScriptRequest req;
+    private @Mock WebScriptResponse res;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        webScript = new NodeContentGet();
+        webScript.setNodeDAO(nodeDAO);
+        webScript.setNodeService(nodeService);
+        webScript.setContentService(contentService);
+        webScript.setTransformerDebug(transformerDebug);
+        webScript.setTextContentCache(textContentCache);
+        webScript.setTextContentCacheEnabled(true);
+        webScript.setDelegate(delegate);
+
+        nodeRef = new NodeRef("workspace://SpacesStore/node-id");
+        when(req.getParameter("nodeId")).thenReturn(String.valueOf(NODE_ID));
+        when(nodeDAO.getNodePair(NODE_ID)).thenReturn(new Pair<Long, NodeRef>(NODE_ID, nodeRef));
+        when(nodeService.getProperty(nodeRef, ContentModel.PROP_MODIFIED)).thenReturn(new Date());
+
+        when(contentService.getReader(nodeRef, ContentModel.PROP_CONTENT)).thenReturn(reader);
+        when(reader.getContentUrl()).thenReturn(CONTENT_URL);
+        when(reader.getMimetype()).thenReturn(MimetypeMap.MIMETYPE_PDF);
+        when(reader.getSize()).thenReturn(1024L);
+        when(contentService.getActiveTransformers(anyString(), anyLong(), eq(MimetypeMap.MIMETYPE_TEXT_PLAIN), any(TransformationOptions.class)))
+            .thenReturn(Collections.singletonList(transformer));
+        when(transformer.getName()).thenReturn("transformer.PdfBox");
+
+        when(contentService.getTempWriter()).thenReturn(writer);
+        when(writer.getReader()).thenReturn(textReader);
+        when(textReader.exists()).thenReturn(true);
+        when(textReader.getSize()).thenReturn(16L);
+    }
+
+    @Test
+    public void transformedTextIsCachedUnderMimetypeAndTransformer() throws Exception
+    {
+        webScript.execute(req, res);
+
+        verify(transformer).transform(reader, writer);
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(textContentCache).put(key.capture(), same(textReader));
+        assertEquals(CONTENT_URL + "|" + MimetypeMap.MIMETYPE_PDF + "|index|transformer.PdfBox", key.getValue());
+    }
+
+    @Test
+    public void cacheHitStreamsCachedTextWithoutTransforming() throws Exception
+    {
+        String key = CONTENT_URL + "|" + MimetypeMap.MIMETYPE_PDF + "|index|transformer.PdfBox";
+        when(textContentCache.contains(key)).thenReturn(true);
+        when(textContentCache.getReader(key)).thenReturn(cachedTextReader);
+
+        webScript.execute(req, res);
+
+        verify(transformer, never()).transform(any(ContentReader.class), any(ContentWriter.class));
+        verify(res).setHeader(TRANSFORM_DURATION_HEADER, "0");
+        verify(delegate).streamContentImpl(same(req), same(res), same(cachedTextReader), any(NodeRef.class), any(QName.class),
+                    anyBoolean(), any(Date.class), anyString(), anyString(), any(Map.class));
+    }
+
+    @Test
+    public void mimetypeChangeIsNotServedFromCache() throws Exception
+    {
+        String pdfKey = CONTENT_URL + "|" + MimetypeMap.MIMETYPE_PDF + "|index|transformer.PdfBox";
+        when(textContentCache.contains(pdfKey)).thenReturn(true);
+        when(textContentCache.getReader(pdfKey)).thenReturn(cachedTextReader);
+        String pdfETag = executeAndGetETag();
+
+        // Same content, now treated as plain text
+        when(reader.getMimetype()).thenReturn(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        when(req.getHeader("If-None-Match")).thenReturn(quote(pdfETag));
+        String textETag = executeAndGetETag();
+
+        assertFalse(pdfETag.equals(textETag));
+        verify(res, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(transformer).transform(reader, writer);
+    }
+
+    @Test
+    public void transformerChangeIsNotServedFromCache() throws Exception
+    {
+        String pdfETag = executeAndGetETag();
+
+        when(transformer.getName()).thenReturn("transformer.Tika");
+        when(req.getHeader("If-None-Match")).thenReturn(quote(pdfETag));
+        String tikaETag = executeAndGetETag();
+
+        assertFalse(pdfETag.equals(tikaETag));
+        verify(res, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void matchingETagIsNotModified() throws Exception
+    {
+        String eTag = executeAndGetETag();
+
+        // The ETag response header is quoted, and sent back as it is
+        when(req.getHeader("If-None-Match")).thenReturn(quote(eTag));
+        webScript.execute(req, res);
+
+        verify(res).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(transformer).transform(reader, writer);
+    }
+
+    @Test
+    public void weakETagInListIsNotModified() throws Exception
+    {
+        String eTag = executeAndGetETag();
+
+        when(req.getHeader("If-None-Match")).thenReturn(quote("other") + ", W/" + quote(eTag));
+        webScript.execute(req, res);
+
+        verify(res).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(transformer).transform(reader, writer);
+    }
+
+    @Test
+    public void wildcardETagIsNotModified() throws Exception
+    {
+        when(req.getHeader("If-None-Match")).thenReturn("*");
+        webScript.execute(req, res);
+
+        verify(res).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(transformer, never()).transform(any(ContentReader.class), any(ContentWriter.class));
+    }
+
+    @Test
+    public void otherETagsAreTransformed() throws Exception
+    {
+        when(req.getHeader("If-None-Match")).thenReturn(quote("other") + ", W/" + quote("another"));
+        webScript.execute(req, res);
+
+        verify(res, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(transformer).transform(reader, writer);
+    }
+
+    @Test
+    public void disabledCacheIsNotUsed() throws Exception
+    {
+        webScript.setTextContentCacheEnabled(false);
+
+        webScript.execute(req, res);
+
+        verify(transformer).transform(reader, writer);
+        verifyZeroInteractions(textContentCache);
+    }
+
+    private static String quote(String eTag)
+    {
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * Executes the web script, returning the ETag of the streamed text
+     */
+    private String executeAndGetETag() throws Exception
+    {
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        webScript.execute(req, res);
+        verify(delegate, atLeastOnce()).streamContentImpl(same(req), same(res), any(ContentReader.class), any(NodeRef.class),
+                    any(QName.class), anyBoolean(), any(Date.class), eTag.capture(), anyString(), any(Map.class));
+        return eTag.getValue();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.web.scripts.version;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.model.Repository;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.web.scripts.BaseWebScriptTest;
+import org.alfresco.service.cmr.model.FileFolderService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.version.Version;
+import org.alfresco.service.cmr.version.VersionService;
+import org.alfresco.util.GUID;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.context.ApplicationContext;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.TestWebScriptServer.GetRequest;
+
+/**
+ * Tests paging of the version history by the /api/version web script.
+ */
+public class VersionGetTest extends BaseWebScriptTest
+{
+    private static final String URL_VERSION = "/api/version?nodeRef=";
+    private static final int VERSION_COUNT = 5;
+
+    private RetryingTransactionHelper transactionHelper;
+    private FileFolderService fileFolderService;
+    private NodeService nodeService;
+    private VersionService versionService;
+    private Repository repositoryHelper;
+
+    private NodeRef testNode;
+    private List<String> labels;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        ApplicationContext ctx = getServer().getApplicationContext();
+        transactionHelper = (RetryingTransactionHelper) ctx.getBean("retryingTransactionHelper");
+        fileFolderService = (FileFolderService) ctx.getBean("FileFolderService");
+        nodeService = (NodeService) ctx.getBean("NodeService");
+        versionService = (VersionService) ctx.getBean("VersionService");
+        repositoryHelper = (Repository) ctx.getBean("repositoryHelper");
+
+        AuthenticationUtil.setAdminUserAsFullyAuthenticatedUser();
+
+        testNode = transactionHelper.doInTransaction(new RetryingTransactionCallback<NodeRef>()
+        {
+            @Override
+            public NodeRef execute() throws Throwable
+            {
+                NodeRef node = fileFolderService.create(repositoryHelper.getCompanyHome(),
+                            "VersionGetTest-" + GUID.generate() + ".txt", ContentModel.TYPE_CONTENT).getNodeRef();
+                for (int i = 0; i < VERSION_COUNT; i++)
+                {
+                    versionService.createVersion(node, null);
+                }
+                return node;
+            }
+        });
+
+        // Most recent version first, as returned by the web script
+        labels = new ArrayList<String>();
+        for (Version version : versionService.getVersionHistory(testNode).getAllVersions())
+        {
+            labels.add(version.getVersionLabel());
+        }
+        assertEquals(VERSION_COUNT, labels.size());
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        transactionHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                if (nodeService.exists(testNode))
+                {
+                    nodeService.addAspect(testNode, ContentModel.ASPECT_TEMPORARY, null);
+                    nodeService.deleteNode(testNode);
+                }
+                return null;
+            }
+        });
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    public void testFullHistoryIsAnArray() throws Exception
+    {
+        String response = sendRequest(new GetRequest(URL_VERSION + testNode), Status.STATUS_OK).getContentAsString();
+        assertLabels(new JSONArray(response), 0, VERSION_COUNT);
+    }
+
+    public void testPageBoundaries() throws Exception
+    {
+        // First page
+        assertPage(0, 2, 2, true);
+        // Page ending on the last version
+        assertPage(3, 2, 2, false);
+        // Page which runs past the last version
+        assertPage(4, 2, 1, false);
+        // Page which is exactly the whole history
+        assertPage(0, VERSION_COUNT, VERSION_COUNT, false);
+        // Page which starts after the last version
+        assertPage(VERSION_COUNT, 2, 0, false);
+    }
+
+    private void assertPage(int skipCount, int maxItems, int expectedCount, boolean expectedHasMoreItems) throws Exception
+    {
+        String url = URL_VERSION + testNode + "&skipCount=" + skipCount + "&maxItems=" + maxItems;
+        JSONObject result = new JSONObject(sendRequest(new GetRequest(url), Status.STATUS_OK).getContentAsString());
+
+        JSONObject paging = result.getJSONObject("paging");
+        assertEquals(skipCount, paging.getInt("skipCount"));
+        assertEquals(maxItems, paging.getInt("maxItems"));
+        assertEquals(VERSION_COUNT, paging.getInt("totalItems"));
+        assertEquals(expectedHasMoreItems, paging.getBoolean("hasMoreItems"));
+        assertLabels(result.getJSONArray("versions"), skipCount, expectedCount);
+    }
+
+    private void assertLabels(JSONArray versions, int skipCount, int expectedCount) throws Exception
+    {
+        assertEquals(expectedCount, versions.length());
+        for (int i = 0; i < expectedCount; i++)
+        {
+            assertEquals(labels.get(skipCount + i), versions.getJSONObject(i).getString("label"));
+        }
+    }
+}
@@ -40,6 +40,7 @@ CREATE TABLE alf_audit_entry
    audit_values_id BIGINT NULL,
    CONSTRAINT fk_alf_aud_ent_app FOREIGN KEY (audit_app_id) REFERENCES alf_audit_app (id) ON DELETE CASCADE,
    INDEX idx_alf_aud_ent_tm (audit_time),
+   INDEX idx_alf_aud_ent_apptm (audit_app_id, audit_time),
    CONSTRAINT fk_alf_aud_ent_use FOREIGN KEY (audit_user_id) REFERENCES alf_prop_value (id),
    CONSTRAINT fk_alf_aud_ent_pro FOREIGN KEY (audit_values_id) REFERENCES alf_prop_root (id),
    PRIMARY KEY (id)
@@ -49,6 +49,7 @@ CREATE TABLE alf_audit_entry
    PRIMARY KEY (id)
 );
 CREATE INDEX idx_alf_aud_ent_tm ON alf_audit_entry(audit_time);
+CREATE INDEX idx_alf_aud_ent_apptm ON alf_audit_entry(audit_app_id, audit_time);
 CREATE INDEX fk_alf_aud_ent_app ON alf_audit_entry(audit_app_id);
 CREATE INDEX fk_alf_aud_ent_use ON alf_audit_entry(audit_user_id);
 CREATE INDEX fk_alf_aud_ent_pro ON alf_audit_entry(audit_values_id);
@@ -0,0 +1,22 @@
+--
+-- Title:      Add an index on alf_audit_entry to support audit queries and purges by application and time
+-- Database:   Generic
+-- Since:      V5.1 Schema 9010
+-- Author:     Alfresco
+--
+-- Please contact support@alfresco.com if you need assistance with the upgrade.
+--
+
+CREATE INDEX idx_alf_aud_ent_apptm ON alf_audit_entry (audit_app_id, audit_time);
+
+--
+-- Record script finish
+--
+DELETE FROM alf_applied_patch WHERE id = 'patch.db-V5.1-audit-entry-app-time-index';
+INSERT INTO alf_applied_patch
+  (id, description, fixes_from_schema, fixes_to_schema, applied_to_schema, target_schema, applied_on_date, applied_to_server, was_executed, succeeded, report)
+  VALUES
+  (
+    'patch.db-V5.1-audit-entry-app-time-index', 'Manually executed script upgrade V5.1: Add audit entry application and time index',
+    0, 9009, -1, 9010, null, 'UNKNOWN', ${TRUE}, ${TRUE}, 'Script completed'
+  );
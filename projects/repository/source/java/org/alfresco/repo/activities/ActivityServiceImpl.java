@@ -412,7 +412,7 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
                 siteId = tenantService.getName(siteId);
             }
             
-            List<ActivityFeedEntity> activityFeeds = feedDAO.selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, minFeedId, maxFeedItems);
+            List<ActivityFeedEntity> activityFeeds = feedDAO.selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, userFilter, actvityFilter, minFeedId, maxFeedItems);
 
             // Create a local cache just for this method to map IDs of users to their avatar NodeRef. This
             // is local to the method because we only want to cache per request - there is not point in keeping
@@ -513,6 +513,67 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
         return result;
     }
     
+    /* (non-Javadoc)
+     * @see org.alfresco.service.cmr.activities.ActivityService#getMaxUserFeedId(java.lang.String)
+     */
+    public long getMaxUserFeedId(String feedUserId)
+    {
+        feedUserId = checkUserFeedAccess(feedUserId);
+        try
+        {
+            return feedDAO.selectMaxUserFeedId(feedUserId);
+        }
+        catch (SQLException se)
+        {
+            AlfrescoRuntimeException are = new AlfrescoRuntimeException("Unable to get user feed entries: " + se.getMessage());
+            logger.error(are);
+            throw are;
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see org.alfresco.service.cmr.activities.ActivityService#getUserFeedEntryCount(java.lang.String)
+     */
+    public long getUserFeedEntryCount(String feedUserId)
+    {
+        feedUserId = checkUserFeedAccess(feedUserId);
+        try
+        {
+            return feedDAO.selectUserFeedEntryCount(feedUserId);
+        }
+        catch (SQLException se)
+        {
+            AlfrescoRuntimeException are = new AlfrescoRuntimeException("Unable to get user feed entries: " + se.getMessage());
+            logger.error(are);
+            throw are;
+        }
+    }
+    
+    /**
+     * Check that the current user may read the given user feed
+     * 
+     * @return the feed user ID as stored in the feed
+     */
+    private String checkUserFeedAccess(String feedUserId)
+    {
+        ParameterCheck.mandatoryString("feedUserId", feedUserId);
+        
+        if (! userNamesAreCaseSensitive)
+        {
+            feedUserId = feedUserId.toLowerCase();
+        }
+        
+        String currentUser = getCurrentUser();
+        if (! ((currentUser == null) || 
+               (authorityService.isAdminAuthority(currentUser)) ||
+               (currentUser.equals(feedUserId)) ||
+               (AuthenticationUtil.getSystemUserName().equals(this.tenantService.getBaseNameUser(currentUser)))))
+        {
+            throw new AccessDeniedException("Unable to get user feed entries for '" + feedUserId + "' - currently logged in as '" + currentUser +"'");
+        }
+        return feedUserId;
+    }
+    
     /* (non-Javadoc)
      * @see org.alfresco.service.cmr.activities.ActivityService#getSiteFeedEntries(java.lang.String, java.lang.String)
      */
@@ -220,6 +220,16 @@ public abstract class FeedTaskProcessor
                     
                     int excludedConnections = 0;
                     
+                    // feed entries for this post are collected and inserted as a set, rather than one statement per recipient
+                    List<ActivityFeedEntity> feedEntries = new ArrayList<ActivityFeedEntity>(recipients.size());
+                    Date feedDate = new Date();
+                    
+                    //MNT-9104 If username contains uppercase letters the action of joining a site will not be displayed in "My activities" 
+                    if (! userNamesAreCaseSensitive)
+                    {
+                        postingUserId = postingUserId.toLowerCase();
+                    }
+                    
                     for (String recipient : recipients)
                     {
                         List<FeedControlEntity> feedControls = null;
@@ -259,7 +269,6 @@ public abstract class FeedTaskProcessor
                                 if (! userNamesAreCaseSensitive)
                                 {
                                     recipient = recipient.toLowerCase();
-                                    postingUserId = postingUserId.toLowerCase();
                                 }
                                 feed.setFeedUserId(recipient);
                                 feed.setPostUserId(postingUserId);
@@ -282,12 +291,9 @@ public abstract class FeedTaskProcessor
                                         feed.setAppTool(activityPost.getAppTool());
                                         feed.setPostDate(activityPost.getPostDate());
                                         feed.setPostId(activityPost.getId());
-                                        feed.setFeedDate(new Date());
-                                        
-                                        // Insert activity feed
-                                        insertFeedEntry(feed); // ignore returned feedId
+                                        feed.setFeedDate(feedDate);
                                         
-                                        totalGenerated++;
+                                        feedEntries.add(feed);
                                     }
                                 }
                                 else
@@ -301,6 +307,9 @@ public abstract class FeedTaskProcessor
                         }
                     }
                     
+                    // Insert activity feeds
+                    totalGenerated += insertFeedEntries(feedEntries);
+                    
                     updatePostStatus(activityPost.getId(), ActivityPostEntity.STATUS.PROCESSED);
                     
                     commitTransaction();
@@ -438,6 +447,22 @@ public abstract class FeedTaskProcessor
 
     public abstract long insertFeedEntry(ActivityFeedEntity feed) throws SQLException;
 
+    /**
+     * Insert a set of feed entries generated for a single activity post.  By default each entry is
+     * inserted individually; implementations with direct DAO access should insert them in batches.
+     * 
+     * @param feeds             the feed entries to insert
+     * @return                  the number of feed entries inserted
+     */
+    public int insertFeedEntries(List<ActivityFeedEntity> feeds) throws SQLException
+    {
+        for (ActivityFeedEntity feed : feeds)
+        {
+            insertFeedEntry(feed); // ignore returned feedId
+        }
+        return feeds.size();
+    }
+
     public abstract int updatePostStatus(long id, ActivityPostEntity.STATUS status) throws SQLException;
 
     protected String callWebScript(String urlString, String ticket) throws MalformedURLException, URISyntaxException, IOException
@@ -0,0 +1,747 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.domain.audit.AuditDAO;
+import org.alfresco.repo.domain.audit.AuditDAO.AuditEntryInfo;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.extensions.surf.util.AbstractLifecycleBean;
+
+/**
+ * Writes audit entries in the background rather than in the audited transaction.
+ * <p/>
+ * Entries are collected during the transaction and handed over when it commits; entries from
+ * transactions that roll back are discarded, as they would have been by the database.  Each entry
+ * is appended to a local journal file, and synced to disk, before being queued.  A background
+ * thread writes the queued entries in batches, each in one transaction and JDBC batch, and records
+ * in the journal which entries have been written.  A batch that cannot be written is kept and
+ * retried before anything else is written.  Journal files are deleted once all their entries are written;
+ * entries left in a journal when the server stops are written when it next starts.  An entry is
+ * only written twice if the server stops between a batch committing and the batch being recorded
+ * as written.
+ * <p/>
+ * Audit queries and deletes first write the queued entries of the audit applications they cover,
+ * so they see every committed entry.
+ *
+ * @since 5.1
+ */
+public class AsynchronousAuditEntryWriter extends AbstractLifecycleBean
+{
+    private static final String KEY_PENDING_ENTRIES = AsynchronousAuditEntryWriter.class.getName() + ".pendingEntries";
+    private static final String JOURNAL_FILE_PREFIX = "audit-entries.";
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    private static final int MAX_JOURNAL_FILE_ENTRIES = 10000;
+
+    private static Log logger = LogFactory.getLog(AsynchronousAuditEntryWriter.class);
+
+    private AuditDAO auditDAO;
+    private TransactionService transactionService;
+    private boolean enabled = false;
+    private String journalDirectory;
+    private int batchSize = 500;
+    private long flushIntervalMs = 1000L;
+    private int maxQueueSize = 50000;
+
+    private BlockingQueue<PendingAuditEntry> queue;
+    /** Entries that could not be written, in the order they were committed; guarded by the write lock */
+    private final List<PendingAuditEntry> failedEntries = new ArrayList<PendingAuditEntry>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object journalLock = new Object();
+    private File journalDir;
+    private Journal journal;
+    private final Set<Journal> openJournals = new LinkedHashSet<Journal>();
+    private int journalCount = 0;
+    private volatile boolean running = false;
+    private Thread writerThread;
+    private final PendingEntriesTransactionListener pendingEntriesTransactionListener = new PendingEntriesTransactionListener();
+
+    public void setAuditDAO(AuditDAO auditDAO)
+    {
+        this.auditDAO = auditDAO;
+    }
+
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @param enabled           <tt>true</tt> to write audit entries in the background
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param journalDirectory  the directory holding the journal of unwritten entries; if empty no journal is kept
+     */
+    public void setJournalDirectory(String journalDirectory)
+    {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * @param batchSize         the maximum number of entries written per transaction
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param flushIntervalMs   how often the background thread writes the queued entries
+     */
+    public void setFlushIntervalMs(long flushIntervalMs)
+    {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * @param maxQueueSize      the number of entries that may be queued before entries are written by the committing thread
+     */
+    public void setMaxQueueSize(int maxQueueSize)
+    {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * @return                  <tt>true</tt> if entries should be given to this writer rather than written directly
+     */
+    public boolean isEnabled()
+    {
+        return enabled && running;
+    }
+
+    /**
+     * Queue an audit entry to be written once the current transaction commits
+     */
+    public void queueAuditEntry(Long applicationId, long time, String username, Map<String, Serializable> values)
+    {
+        List<PendingAuditEntry> pendingEntries = TransactionalResourceHelper.getList(KEY_PENDING_ENTRIES);
+        pendingEntries.add(new PendingAuditEntry(applicationId, time, username, values));
+        AlfrescoTransactionSupport.bindListener(pendingEntriesTransactionListener);
+    }
+
+    /**
+     * Write all queued entries to the database.  This does nothing if the writer is not enabled.
+     *
+     * @return                  <tt>true</tt> if all queued entries were written
+     */
+    public boolean flush()
+    {
+        if (!isEnabled())
+        {
+            return true;
+        }
+        return drainAndWrite();
+    }
+
+    /**
+     * Write the queued entries of one audit application to the database, leaving the rest queued.
+     * This does nothing if the writer is not enabled.
+     *
+     * @param applicationId     the ID of the audit application
+     * @throws AlfrescoRuntimeException if the entries could not be written
+     */
+    public void flush(Long applicationId)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+        writeLock.lock();
+        try
+        {
+            List<PendingAuditEntry> entries = new ArrayList<PendingAuditEntry>();
+            removeEntries(failedEntries.iterator(), applicationId, entries);
+            removeEntries(queue.iterator(), applicationId, entries);
+            while (!entries.isEmpty())
+            {
+                List<PendingAuditEntry> batch = entries.subList(0, Math.min(batchSize, entries.size()));
+                if (!writeEntries(batch))
+                {
+                    failedEntries.addAll(entries);
+                    throw new AlfrescoRuntimeException("Failed to write queued audit entries for application " + applicationId);
+                }
+                batch.clear();
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    private void removeEntries(Iterator<PendingAuditEntry> iterator, Long applicationId, List<PendingAuditEntry> removed)
+    {
+        while (iterator.hasNext())
+        {
+            PendingAuditEntry entry = iterator.next();
+            if (EqualsHelper.nullSafeEquals(applicationId, entry.applicationId))
+            {
+                iterator.remove();
+                removed.add(entry);
+            }
+        }
+    }
+
+    @Override
+    protected void onBootstrap(ApplicationEvent event)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        PropertyCheck.mandatory(this, "auditDAO", auditDAO);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+
+        queue = new LinkedBlockingQueue<PendingAuditEntry>(maxQueueSize);
+        if (journalDirectory != null && journalDirectory.trim().length() > 0)
+        {
+            journalDir = new File(journalDirectory.trim());
+            if (!journalDir.exists() && !journalDir.mkdirs())
+            {
+                throw new AlfrescoRuntimeException("Unable to create audit journal directory: " + journalDir);
+            }
+            replayJournals();
+        }
+
+        running = true;
+        writerThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (running)
+                {
+                    try
+                    {
+                        Thread.sleep(flushIntervalMs);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Shutting down
+                    }
+                    try
+                    {
+                        drainAndWrite();
+                    }
+                    catch (Throwable e)
+                    {
+                        logger.error("Failed to write queued audit entries", e);
+                    }
+                }
+            }
+        }, "AuditEntryWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    protected void onShutdown(ApplicationEvent event)
+    {
+        if (!running)
+        {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        try
+        {
+            writerThread.join(10000L);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        // Anything left over stays in the journal if this fails
+        try
+        {
+            drainAndWrite();
+        }
+        catch (Throwable e)
+        {
+            logger.error("Failed to write queued audit entries on shutdown", e);
+        }
+        synchronized (journalLock)
+        {
+            for (Journal openJournal : openJournals)
+            {
+                openJournal.close();
+            }
+            openJournals.clear();
+            journal = null;
+        }
+    }
+
+    /**
+     * Journal and queue the entries of a committed transaction
+     */
+    void entriesCommitted(List<PendingAuditEntry> entries)
+    {
+        if (!running)
+        {
+            // Shut down while the transaction was running
+            writeEntries(entries);
+            return;
+        }
+        List<PendingAuditEntry> overflow = null;
+        synchronized (journalLock)
+        {
+            appendToJournal(entries);
+            for (PendingAuditEntry entry : entries)
+            {
+                if (!queue.offer(entry))
+                {
+                    if (overflow == null)
+                    {
+                        overflow = new ArrayList<PendingAuditEntry>();
+                    }
+                    overflow.add(entry);
+                }
+            }
+        }
+        if (overflow != null)
+        {
+            // The writer is not keeping up, so make the committing thread do the work
+            writeLock.lock();
+            try
+            {
+                if (!writeEntries(overflow))
+                {
+                    failedEntries.addAll(overflow);
+                }
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return          <tt>true</tt> if all queued entries were written
+     */
+    private boolean drainAndWrite()
+    {
+        writeLock.lock();
+        try
+        {
+            // Keep to the commit order: nothing new is written until the failed entries are
+            while (!failedEntries.isEmpty())
+            {
+                List<PendingAuditEntry> batch = failedEntries.subList(0, Math.min(batchSize, failedEntries.size()));
+                if (!writeEntries(batch))
+                {
+                    return false;
+                }
+                batch.clear();
+            }
+            List<PendingAuditEntry> batch = new ArrayList<PendingAuditEntry>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0)
+            {
+                if (!writeEntries(batch))
+                {
+                    failedEntries.addAll(batch);
+                    return false;
+                }
+                batch.clear();
+            }
+            return true;
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return          <tt>true</tt> if the entries were written
+     */
+    private boolean writeEntries(final List<PendingAuditEntry> entries)
+    {
+        RetryingTransactionCallback<Void> callback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                List<AuditEntryInfo> auditEntries = new ArrayList<AuditEntryInfo>(entries.size());
+                for (PendingAuditEntry entry : entries)
+                {
+                    auditEntries.add(new AuditEntryInfo(entry.applicationId, entry.time, entry.username, entry.values));
+                }
+                auditDAO.createAuditEntries(auditEntries);
+                return null;
+            }
+        };
+        try
+        {
+            RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+            txnHelper.setForceWritable(true);
+            txnHelper.doInTransaction(callback, false, true);
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Failed to write " + entries.size() + " audit entries; they will be retried", e);
+            return false;
+        }
+        entriesWritten(entries);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Wrote " + entries.size() + " queued audit entries");
+        }
+        return true;
+    }
+
+    private void appendToJournal(List<PendingAuditEntry> entries)
+    {
+        if (journalDir == null)
+        {
+            return;
+        }
+        if (journal == null || journal.entryCount >= MAX_JOURNAL_FILE_ENTRIES)
+        {
+            // Older journals are deleted once their remaining entries are written
+            File journalFile = new File(journalDir, JOURNAL_FILE_PREFIX + System.currentTimeMillis() + "-" + (journalCount++) + JOURNAL_FILE_SUFFIX);
+            journal = new Journal(journalFile);
+            openJournals.add(journal);
+        }
+        try
+        {
+            for (PendingAuditEntry entry : entries)
+            {
+                entry.journalIndex = journal.entryCount++;
+                entry.journal = journal;
+                journal.out.writeObject(entry);
+            }
+            journal.unwrittenCount += entries.size();
+            journal.sync();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to write audit entries to journal: " + journal.file, e);
+        }
+    }
+
+    /**
+     * Record written entries in their journals, deleting journals that have nothing left to write
+     */
+    private void entriesWritten(List<PendingAuditEntry> entries)
+    {
+        synchronized (journalLock)
+        {
+            Map<Journal, List<Integer>> writtenByJournal = new LinkedHashMap<Journal, List<Integer>>();
+            for (PendingAuditEntry entry : entries)
+            {
+                if (entry.journal == null)
+                {
+                    continue;
+                }
+                List<Integer> written = writtenByJournal.get(entry.journal);
+                if (written == null)
+                {
+                    written = new ArrayList<Integer>();
+                    writtenByJournal.put(entry.journal, written);
+                }
+                written.add(entry.journalIndex);
+                entry.journal = null;
+            }
+            for (Map.Entry<Journal, List<Integer>> entry : writtenByJournal.entrySet())
+            {
+                Journal writtenJournal = entry.getKey();
+                List<Integer> written = entry.getValue();
+                writtenJournal.unwrittenCount -= written.size();
+                if (writtenJournal.unwrittenCount == 0)
+                {
+                    writtenJournal.close();
+                    if (!writtenJournal.file.delete())
+                    {
+                        logger.warn("Failed to delete audit journal: " + writtenJournal.file);
+                    }
+                    openJournals.remove(writtenJournal);
+                    if (writtenJournal == journal)
+                    {
+                        journal = null;
+                    }
+                    continue;
+                }
+                int[] indexes = new int[written.size()];
+                for (int i = 0; i < indexes.length; i++)
+                {
+                    indexes[i] = written.get(i);
+                }
+                try
+                {
+                    writtenJournal.out.writeObject(new WrittenEntries(indexes));
+                    writtenJournal.sync();
+                }
+                catch (IOException e)
+                {
+                    logger.warn("Failed to record written audit entries in journal " + writtenJournal.file +
+                            "; they will be written again on restart", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write any entries left in the journals by the last run
+     */
+    private void replayJournals()
+    {
+        File[] journalFiles = journalDir.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(JOURNAL_FILE_PREFIX) && name.endsWith(JOURNAL_FILE_SUFFIX);
+            }
+        });
+        if (journalFiles == null)
+        {
+            return;
+        }
+        Arrays.sort(journalFiles);
+        for (File journalFile : journalFiles)
+        {
+            replayJournal(journalFile);
+        }
+    }
+
+    /**
+     * Write the entries of a journal that are not recorded as written and delete the journal
+     */
+    private void replayJournal(File journalFile)
+    {
+        List<PendingAuditEntry> entries = new ArrayList<PendingAuditEntry>();
+        Set<Integer> written = new HashSet<Integer>();
+        ObjectInputStream in = null;
+        try
+        {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+            while (true)
+            {
+                Object record;
+                try
+                {
+                    record = in.readObject();
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+                if (record instanceof WrittenEntries)
+                {
+                    for (int index : ((WrittenEntries) record).indexes)
+                    {
+                        written.add(index);
+                    }
+                }
+                else
+                {
+                    entries.add((PendingAuditEntry) record);
+                }
+            }
+        }
+        catch (IOException | ClassNotFoundException e)
+        {
+            // An incomplete last write
+            logger.warn("Audit journal " + journalFile + " ends with an incomplete record: " + e.getMessage());
+        }
+        finally
+        {
+            if (in != null)
+            {
+                try { in.close(); } catch (IOException e) {}
+            }
+        }
+        Iterator<PendingAuditEntry> iterator = entries.iterator();
+        while (iterator.hasNext())
+        {
+            if (written.contains(iterator.next().journalIndex))
+            {
+                iterator.remove();
+            }
+        }
+        int count = entries.size();
+        boolean failed = false;
+        while (!entries.isEmpty() && !failed)
+        {
+            List<PendingAuditEntry> batch = entries.subList(0, Math.min(batchSize, entries.size()));
+            failed = !writeEntries(batch);
+            batch.clear();
+        }
+        if (failed)
+        {
+            // Keep the journal aside rather than write its entries again on the next start
+            File failedJournalFile = new File(journalDir, journalFile.getName() + "." + System.currentTimeMillis() + ".failed");
+            if (journalFile.renameTo(failedJournalFile))
+            {
+                logger.error("Not all audit entries left in the journal could be written; the journal was kept as " + failedJournalFile);
+            }
+            else
+            {
+                throw new AlfrescoRuntimeException("Not all audit entries left in the journal could be written: " + journalFile);
+            }
+        }
+        else
+        {
+            if (!journalFile.delete())
+            {
+                throw new AlfrescoRuntimeException("Failed to delete replayed audit journal: " + journalFile);
+            }
+            logger.info("Wrote " + count + " audit entries left in the journal " + journalFile);
+        }
+    }
+
+    /**
+     * Hands the entries of a transaction to the writer when it commits
+     */
+    private class PendingEntriesTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            List<PendingAuditEntry> entries = TransactionalResourceHelper.getList(KEY_PENDING_ENTRIES);
+            entriesCommitted(new ArrayList<PendingAuditEntry>(entries));
+            entries.clear();
+        }
+    }
+
+    /**
+     * A journal file holding committed entries and records of which of them have been written
+     */
+    private static class Journal
+    {
+        private final File file;
+        private final FileOutputStream fileOut;
+        private final ObjectOutputStream out;
+        private int entryCount = 0;
+        private int unwrittenCount = 0;
+
+        private Journal(File file)
+        {
+            this.file = file;
+            try
+            {
+                fileOut = new FileOutputStream(file, false);
+                out = new ObjectOutputStream(new BufferedOutputStream(fileOut));
+                sync();
+            }
+            catch (IOException e)
+            {
+                throw new AlfrescoRuntimeException("Failed to open audit journal: " + file, e);
+            }
+        }
+
+        /**
+         * Make everything written so far durable
+         */
+        private void sync() throws IOException
+        {
+            // Do not hold on to the written objects
+            out.reset();
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        private void close()
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Failed to close audit journal: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Journal record of the entries that have been written to the database
+     */
+    private static class WrittenEntries implements Serializable
+    {
+        private static final long serialVersionUID = 6529462818151350329L;
+
+        private final int[] indexes;
+
+        private WrittenEntries(int[] indexes)
+        {
+            this.indexes = indexes;
+        }
+    }
+
+    static class PendingAuditEntry implements Serializable
+    {
+        private static final long serialVersionUID = -3127439453357826510L;
+
+        private final Long applicationId;
+        private final long time;
+        private final String username;
+        private final HashMap<String, Serializable> values;
+        private int journalIndex;
+        private transient Journal journal;
+
+        PendingAuditEntry(Long applicationId, long time, String username, Map<String, Serializable> values)
+        {
+            this.applicationId = applicationId;
+            this.time = time;
+            this.username = username;
+            this.values = new HashMap<String, Serializable>(values);
+        }
+    }
+}
@@ -79,6 +79,7 @@ public class AuditComponentImpl implements AuditComponent
     private TransactionService transactionService;
     private AuditFilter auditFilter;
     private UserAuditFilter userAuditFilter;
+    private AsynchronousAuditEntryWriter auditEntryWriter;
     
     /**
      * Default constructor
@@ -135,6 +136,15 @@ public class AuditComponentImpl implements AuditComponent
         this.userAuditFilter = userAuditFilter;
     }
 
+    /**
+     * Set the optional writer used to record audit entries after the transaction commits
+     * @since 5.1
+     */
+    public void setAuditEntryWriter(AsynchronousAuditEntryWriter auditEntryWriter)
+    {
+        this.auditEntryWriter = auditEntryWriter;
+    }
+
     /**
      * {@inheritDoc}
      * @since 3.2
@@ -156,6 +166,11 @@ public class AuditComponentImpl implements AuditComponent
         
         Long applicationId = application.getApplicationId();
         
+        if (auditEntryWriter != null)
+        {
+            // Entries of the application that are still queued are deleted too
+            auditEntryWriter.flush(applicationId);
+        }
         int deleted = auditDAO.deleteAuditEntries(applicationId, fromTime, toTime);
         // Done
         if (logger.isDebugEnabled())
@@ -836,13 +851,23 @@ public class AuditComponentImpl implements AuditComponent
         String username = AuthenticationUtil.getFullyAuthenticatedUser();
         
         Long entryId = null;
+        boolean entryQueued = false;
         if (!auditData.isEmpty())
         {
             // Persist the values (if not just gathering data in a pre call for use in a post call)
             boolean justGatherPreCallData = application.isApplicationJustGeneratingPreCallData();
             if (!justGatherPreCallData)
             {
-                entryId = auditDAO.createAuditEntry(applicationId, time, username, auditData);
+                if (auditEntryWriter != null && auditEntryWriter.isEnabled())
+                {
+                    // Written after the transaction commits, so there is no ID yet
+                    auditEntryWriter.queueAuditEntry(applicationId, time, username, auditData);
+                    entryQueued = true;
+                }
+                else
+                {
+                    entryId = auditDAO.createAuditEntry(applicationId, time, username, auditData);
+                }
             }
             // Done
             if (logger.isDebugEnabled())
@@ -851,7 +876,7 @@ public class AuditComponentImpl implements AuditComponent
                 sb.append(
                         ((justGatherPreCallData) ? "\nPreCallData: \n" : "\nNew audit entry: \n") +
                         "\tApplication ID: " + applicationId + "\n" +
-                        ((justGatherPreCallData) ? "" : "\tEntry ID:       " + entryId + "\n") +
+                        ((justGatherPreCallData) ? "" : "\tEntry ID:       " + (entryQueued ? "<written after commit>" : entryId) + "\n") +
                         "\tValues:         " + "\n");
                 for (Map.Entry<String, Serializable> entry : values.entrySet())
                 {
@@ -874,7 +899,6 @@ public class AuditComponentImpl implements AuditComponent
                 sb.append(
                         "\nNothing audited: \n" +
                         "\tApplication ID: " + applicationId + "\n" +
-                        "\tEntry ID:       " + entryId + "\n" +
                         "\tValues:         " + "\n");
                 for (Map.Entry<String, Serializable> entry : values.entrySet())
                 {
@@ -1016,6 +1040,33 @@ public class AuditComponentImpl implements AuditComponent
             return;
         }
         
+        flushAuditEntries(parameters.getApplicationName());
         auditDAO.findAuditEntries(callback, parameters, maxResults);
     }
+    
+    /**
+     * Write the entries still queued by the audit entry writer so that queries see them
+     * 
+     * @param applicationName   the application whose entries to write or <tt>null</tt> for all
+     */
+    private void flushAuditEntries(String applicationName)
+    {
+        if (auditEntryWriter == null)
+        {
+            return;
+        }
+        if (applicationName == null)
+        {
+            if (!auditEntryWriter.flush())
+            {
+                throw new AlfrescoRuntimeException("Failed to write queued audit entries");
+            }
+            return;
+        }
+        AuditApplication application = auditModelRegistry.getAuditApplicationByName(applicationName);
+        if (application != null)
+        {
+            auditEntryWriter.flush(application.getApplicationId());
+        }
+    }
 }
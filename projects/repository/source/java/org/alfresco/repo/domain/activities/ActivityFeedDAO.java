@@ -21,6 +21,7 @@ package org.alfresco.repo.domain.activities;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
@@ -38,6 +39,13 @@ public interface ActivityFeedDAO extends ActivitiesDAO
     
     public long insertFeedEntry(ActivityFeedEntity activityFeed) throws SQLException;
     
+    /**
+     * Insert feed entries using multi-row inserts.  Generated IDs are <b>not</b> set on the entities.
+     * 
+     * @return the number of feed entries inserted
+     */
+    public int insertFeedEntries(List<ActivityFeedEntity> activityFeeds) throws SQLException;
+    
     public int deleteFeedEntries(Integer maxIdRange) throws SQLException;
     public int deleteFeedEntries(Date keepDate) throws SQLException;
     
@@ -54,6 +62,22 @@ public interface ActivityFeedDAO extends ActivitiesDAO
 
     public List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, int maxFeedItems) throws SQLException;
 
+    /**
+     * Select user feed entries, optionally restricted to the given posting users and activity types.  The
+     * filters are applied by the query so that the <tt>maxFeedItems</tt> limit applies to the filtered feed.
+     */
+    public List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, Set<String> postUserIds, Set<String> activityTypes, long minFeedId, int maxFeedItems) throws SQLException;
+
+    /**
+     * @return the highest feed entry ID for the given feed user or -1 if there are no entries
+     */
+    public long selectMaxUserFeedId(String feedUserId) throws SQLException;
+
+    /**
+     * @return the number of feed entries for the given feed user
+     */
+    public long selectUserFeedEntryCount(String feedUserId) throws SQLException;
+
     public List<ActivityFeedEntity> selectSiteFeedEntries(String siteUserId, int maxFeedItems) throws SQLException;
     
     public PagingResults<ActivityFeedEntity> selectPagedUserFeedEntries(String feedUserId, String networkId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, PagingRequest pagingRequest) throws SQLException;
@@ -18,6 +18,7 @@
  */
 package org.alfresco.repo.domain.activities;
 
+import java.util.List;
 
 /**
  * Entity bean to carry query parameters for <tt>alf_activity_feed</tt>
@@ -31,6 +32,8 @@ public class ActivityFeedQueryEntity
     private int maxFeedSize;
     private String feedUserId;
     private String siteNetwork;
+    private List<String> postUserIds;
+    private List<String> activityTypes;
     
     public String getNullValue()
     {
@@ -86,4 +89,24 @@ public class ActivityFeedQueryEntity
     {
         this.siteNetwork = siteNetwork;
     }
+    
+    public List<String> getPostUserIds()
+    {
+        return postUserIds;
+    }
+    
+    public void setPostUserIds(List<String> postUserIds)
+    {
+        this.postUserIds = postUserIds;
+    }
+    
+    public List<String> getActivityTypes()
+    {
+        return activityTypes;
+    }
+    
+    public void setActivityTypes(List<String> activityTypes)
+    {
+        this.activityTypes = activityTypes;
+    }
 }
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.query.CannedQueryPageDetails;
@@ -40,9 +41,13 @@ import org.apache.ibatis.session.RowBounds;
 public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFeedDAO
 {
     private static final int DEFAULT_FETCH_BATCH_SIZE = 150;
+    private static final int DEFAULT_INSERT_BATCH_SIZE = 100;
+    /** Larger filters are not pushed down to the query since some databases limit the size of an IN list */
+    private static final int MAX_FILTER_IN_LIST_SIZE = 1000;
 
     private TenantService tenantService;
     private int fetchBatchSize = DEFAULT_FETCH_BATCH_SIZE;
+    private int insertBatchSize = DEFAULT_INSERT_BATCH_SIZE;
     
     public void setTenantService(TenantService tenantService)
     {
@@ -54,6 +59,14 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         this.fetchBatchSize = fetchBatchSize;
     }
 
+    /**
+     * @param insertBatchSize       the maximum number of rows per multi-row feed insert
+     */
+    public void setInsertBatchSize(int insertBatchSize)
+    {
+        this.insertBatchSize = insertBatchSize;
+    }
+
     public long insertFeedEntry(ActivityFeedEntity activityFeed) throws SQLException
     {
         template.insert("alfresco.activities.insert.insert_activity_feed", activityFeed);
@@ -61,6 +74,23 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         return (id != null ? id : -1);
     }
     
+    @Override
+    public int insertFeedEntries(List<ActivityFeedEntity> activityFeeds) throws SQLException
+    {
+        int count = activityFeeds.size();
+        if (count == 1)
+        {
+            insertFeedEntry(activityFeeds.get(0));
+            return 1;
+        }
+        for (int i = 0; i < count; i += insertBatchSize)
+        {
+            List<ActivityFeedEntity> batch = activityFeeds.subList(i, Math.min(i + insertBatchSize, count));
+            template.insert("alfresco.activities.insert.insert_activity_feed_batch", batch);
+        }
+        return count;
+    }
+    
     @Override
     public int deleteFeedEntries(Integer maxIdRange) throws SQLException
     {
@@ -206,9 +236,15 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         return template.selectList("alfresco.activities.select_activity_site_feeds_greater_than_max", params);
     }
     
-    @SuppressWarnings("unchecked")
     @Override
     public List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, int maxFeedSize) throws SQLException
+    {
+        return selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, null, null, minFeedId, maxFeedSize);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, Set<String> postUserIds, Set<String> activityTypes, long minFeedId, int maxFeedSize) throws SQLException
     {
         ActivityFeedQueryEntity params = new ActivityFeedQueryEntity();
         params.setFeedUserId(feedUserId);
@@ -218,6 +254,24 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
             params.setMinId(minFeedId);
         }
         
+        // apply the filters in the query so that the row limit applies to the filtered feed
+        if ((postUserIds != null) && (postUserIds.size() <= MAX_FILTER_IN_LIST_SIZE))
+        {
+            if (postUserIds.isEmpty())
+            {
+                return new ArrayList<ActivityFeedEntity>(0);
+            }
+            params.setPostUserIds(new ArrayList<String>(postUserIds));
+        }
+        if ((activityTypes != null) && (activityTypes.size() <= MAX_FILTER_IN_LIST_SIZE))
+        {
+            if (activityTypes.isEmpty())
+            {
+                return new ArrayList<ActivityFeedEntity>(0);
+            }
+            params.setActivityTypes(new ArrayList<String>(activityTypes));
+        }
+        
         int rowLimit = maxFeedSize < 0 ? RowBounds.NO_ROW_LIMIT : maxFeedSize;
         RowBounds rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, rowLimit);
         
@@ -277,6 +331,26 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         throw new AlfrescoRuntimeException("Unexpected: invalid arguments");
     }
 
+    @Override
+    public long selectMaxUserFeedId(String feedUserId) throws SQLException
+    {
+        ActivityFeedQueryEntity params = new ActivityFeedQueryEntity();
+        params.setFeedUserId(feedUserId);
+        
+        Long maxId = template.selectOne("alfresco.activities.select_activity_feed_max_id_for_feeduser", params);
+        return (maxId != null ? maxId : -1);
+    }
+
+    @Override
+    public long selectUserFeedEntryCount(String feedUserId) throws SQLException
+    {
+        ActivityFeedQueryEntity params = new ActivityFeedQueryEntity();
+        params.setFeedUserId(feedUserId);
+        
+        Long count = template.selectOne("alfresco.activities.select_activity_feed_count_for_feeduser", params);
+        return (count != null ? count : 0);
+    }
+
     private PagingResults<ActivityFeedEntity> getPagingResults(PagingRequest pagingRequest, final List<ActivityFeedEntity> feedEntries)
     {
         int maxItems = pagingRequest.getMaxItems();
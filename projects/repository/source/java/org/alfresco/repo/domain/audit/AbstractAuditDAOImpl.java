@@ -309,6 +309,37 @@ public abstract class AbstractAuditDAOImpl implements AuditDAO
         return entity.getId();
     }
     
+    public void createAuditEntries(List<AuditEntryInfo> entries)
+    {
+        List<AuditEntryEntity> entities = new ArrayList<AuditEntryEntity>(entries.size());
+        for (AuditEntryInfo entry : entries)
+        {
+            AuditEntryEntity entity = new AuditEntryEntity();
+            entity.setAuditApplicationId(entry.getApplicationId());
+            entity.setAuditTime(entry.getTime());
+            if (entry.getUsername() != null)
+            {
+                entity.setAuditUserId(propertyValueDAO.getOrCreatePropertyValue(entry.getUsername()).getFirst());
+            }
+            // The values are persisted as a property tree each, which can't be batched
+            Map<String, Serializable> values = entry.getValues();
+            if (values != null && values.size() > 0)
+            {
+                entity.setAuditValuesId(propertyValueDAO.createProperty((Serializable)values));
+            }
+            entities.add(entity);
+        }
+        
+        // Create the audit entries
+        insertAuditEntries(entities);
+        
+        // Done
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Created " + entities.size() + " new audit entries");
+        }
+    }
+    
     public int deleteAuditEntries(List<Long> auditEntryIds)
     {
         // Ensure that we don't have duplicates
@@ -341,6 +372,7 @@ public abstract class AbstractAuditDAOImpl implements AuditDAO
     }
 
     protected abstract AuditEntryEntity createAuditEntry(Long applicationId, long time, Long usernameId, Long valuesId);
+    protected abstract void insertAuditEntries(List<AuditEntryEntity> entities);
     protected abstract int deleteAuditEntriesImpl(List<Long> auditEntryIds);
     
     /*
@@ -103,6 +103,56 @@ public interface AuditDAO
         }
     }
     
+    /**
+     * The details of a new audit entry to be passed into the interface.
+     * 
+     * @since 5.1
+     */
+    public static class AuditEntryInfo
+    {
+        private final Long applicationId;
+        private final long time;
+        private final String username;
+        private final Map<String, Serializable> values;
+        
+        public AuditEntryInfo(Long applicationId, long time, String username, Map<String, Serializable> values)
+        {
+            this.applicationId = applicationId;
+            this.time = time;
+            this.username = username;
+            this.values = values;
+        }
+        
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("AuditEntryInfo ")
+              .append("[ applicationId=").append(applicationId)
+              .append(", time=").append(time)
+              .append(", username=").append(username)
+              .append("]");
+            return sb.toString();
+        }
+        
+        public Long getApplicationId()
+        {
+            return applicationId;
+        }
+        public long getTime()
+        {
+            return time;
+        }
+        public String getUsername()
+        {
+            return username;
+        }
+        public Map<String, Serializable> getValues()
+        {
+            return values;
+        }
+    }
+    
     /**
      * Creates a new audit model entry or finds an existing one
      * 
@@ -191,6 +241,17 @@ public interface AuditDAO
      */
     Long createAuditEntry(Long applicationId, long time, String username, Map<String, Serializable> values);
     
+    /**
+     * Create new audit entries, inserting them in a JDBC batch.  This is cheaper than
+     * {@link #createAuditEntry(Long, long, String, Map) creating them} one at a time when
+     * the IDs of the new entries are not needed.
+     * 
+     * @param entries           the entries to create, each for an existing audit application
+     * 
+     * @since 5.1
+     */
+    void createAuditEntries(List<AuditEntryInfo> entries);
+    
     /**
      * Find audit entries using the given parameters, any of which may be null
      * 
@@ -35,9 +35,11 @@ import org.alfresco.repo.domain.audit.AuditQueryResult;
 import org.alfresco.repo.domain.propval.PropertyValueDAO.PropertyFinderCallback;
 import org.alfresco.util.Pair;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.dao.ConcurrencyFailureException;
 
@@ -198,6 +200,30 @@ public class AuditDAOImpl extends AbstractAuditDAOImpl
         return entity;
     }
 
+    @Override
+    protected void insertAuditEntries(List<AuditEntryEntity> entities)
+    {
+        /*
+         * The template's session may not change its executor type within a transaction, so a separate
+         * batch session is used.  It shares the connection, and so the transaction, of the template.
+         */
+        SqlSession batchSession = template.getSqlSessionFactory().openSession(ExecutorType.BATCH);
+        try
+        {
+            for (AuditEntryEntity entity : entities)
+            {
+                batchSession.insert(INSERT_ENTRY, entity);
+            }
+            batchSession.flushStatements();
+        }
+        finally
+        {
+            batchSession.close();
+        }
+        // The template's session has not seen the inserts
+        template.clearCache();
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     protected void findAuditEntries(
@@ -139,6 +139,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     private UsageDAO usageDAO;
 
     private NodeIndexer nodeIndexer; 
+    private TransactionCommitNotifier transactionCommitNotifier;
     
     private int cachingThreshold = 10;
 
@@ -234,6 +235,14 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 		this.cachingThreshold = cachingThreshold;
 	}
 
+    /**
+     * @param transactionCommitNotifier optional component to be told when write transactions commit
+     */
+    public void setTransactionCommitNotifier(TransactionCommitNotifier transactionCommitNotifier)
+    {
+        this.transactionCommitNotifier = transactionCommitNotifier;
+    }
+
     /**
      * @param policyBehaviourFilter     the service to determine the behaviour for <b>cm:auditable</b> and
      *                                  other inherent capabilities.
@@ -675,6 +684,19 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         AlfrescoTransactionSupport.bindResource(KEY_TRANSACTION, txn);
         // Listen for the end of the transaction
         AlfrescoTransactionSupport.bindDaoService(updateTransactionListener);
+        // Let any waiting trackers know once the transaction is visible
+        if (transactionCommitNotifier != null)
+        {
+            final Long committedTxnId = txnId;
+            AlfrescoTransactionSupport.bindListener(new TransactionListenerAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    transactionCommitNotifier.transactionCommitted(committedTxnId);
+                }
+            });
+        }
         // Done
         return txn;
     }
@@ -3571,6 +3593,18 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
                     new ChildAssocRefBatchingQueryCallback(resultsCallback));
     }
 
+    @Override
+    public List<Long> getChildNodeIds(Long parentNodeId, Long minChildNodeIdInclusive, int maxResults)
+    {
+        List<ChildAssocEntity> childAssocs = selectChildNodeIds(parentNodeId, null, minChildNodeIdInclusive, maxResults);
+        List<Long> childNodeIds = new ArrayList<Long>(childAssocs.size());
+        for (ChildAssocEntity childAssoc : childAssocs)
+        {
+            childNodeIds.add(childAssoc.getChildNode().getId());
+        }
+        return childNodeIds;
+    }
+
     @Override
     public Pair<Long, ChildAssociationRef> getPrimaryParentAssoc(Long childNodeId)
     {
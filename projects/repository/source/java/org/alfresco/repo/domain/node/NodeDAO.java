@@ -683,6 +683,20 @@ public interface NodeDAO extends NodeBulkLoader
             final QName assocTypeQName,
             ChildAssocRefQueryCallback resultsCallback);
 
+    /**
+     * Gets a page of the IDs of the child nodes, primary or secondary, of a given parent node in child node ID order.
+     * Pages are requested from just above the last ID of the previous page, so unlike offset paging no children are
+     * missed or repeated when the parent's children change between pages.
+     * <p/>
+     * A child with more than one association to the parent is listed once for each association.
+     * 
+     * @param parentNodeId              the parent node ID
+     * @param minChildNodeIdInclusive   the lowest child node ID to return
+     * @param maxResults                the maximum number of IDs to return
+     * @return                          Returns the child node IDs in ascending order
+     */
+    public List<Long> getChildNodeIds(Long parentNodeId, Long minChildNodeIdInclusive, int maxResults);
+
     /**
      * Finds the association between the node's primary parent and the node itself
      * 
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.domain.node;
+
+/**
+ * Records the ID of the last <b>alf_transaction</b> committed by this server and allows
+ * clients (typically the SOLR tracking API) to block until a newer transaction has been
+ * committed, rather than polling the database on a fixed schedule.
+ * <p/>
+ * Only commits made through this JVM are observed; commits made by other cluster members
+ * will still be picked up by the normal polling of the trackers.
+ *
+ * @since 5.1
+ */
+public class TransactionCommitNotifier
+{
+    private long lastCommittedTxnId = -1L;
+
+    /**
+     * Called once a write transaction has successfully committed
+     *
+     * @param txnId                 the ID of the committed <b>alf_transaction</b>
+     */
+    public synchronized void transactionCommitted(Long txnId)
+    {
+        if (txnId == null)
+        {
+            return;
+        }
+        if (txnId > lastCommittedTxnId)
+        {
+            lastCommittedTxnId = txnId;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return                      the ID of the last transaction committed by this server
+     *                              or <tt>-1</tt> if none has been seen since startup
+     */
+    public synchronized long getLastCommittedTxnId()
+    {
+        return lastCommittedTxnId;
+    }
+
+    /**
+     * Wait until a transaction with an ID greater than the one given has been committed.
+     *
+     * @param afterTxnId            the last transaction ID known to the caller
+     * @param maxWaitMillis         the maximum time to wait
+     * @return                      <tt>true</tt> if a newer transaction has been committed
+     *                              or <tt>false</tt> if the wait timed out
+     */
+    public synchronized boolean waitForCommit(long afterTxnId, long maxWaitMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while (lastCommittedTxnId <= afterTxnId)
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -68,6 +68,9 @@ public class NodeParametersEntity extends NodeParameters
 
         this.setStoreIdentifier(params.getStoreIdentifier());
         this.setStoreProtocol(params.getStoreProtocol());
+
+        this.setShardCount(params.getShardCount());
+        this.setShardInstance(params.getShardInstance());
                 
         // Translate the QNames, if provided
         if (params.getIncludeNodeTypes() != null)
@@ -22,7 +22,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.model.ForumModel;
@@ -41,6 +45,7 @@ import org.alfresco.service.cmr.download.DownloadStatus;
 import org.alfresco.service.cmr.download.DownloadStatus.Status;
 import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.view.ExporterCrawlerParameters;
@@ -71,6 +76,7 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
     
     // Dependencies
     private CheckOutCheckInService checkOutCheckInService;
+    private ContentService contentService;
     private ContentServiceHelper  contentServiceHelper;
     private DownloadStorage downloadStorage;
     private ExporterService exporterService;
@@ -79,6 +85,7 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
     private DownloadStatusUpdateService updateService;
 
     private long maximumContentSize = -1l;
+    private Set<String> uncompressedMimetypes = Collections.emptySet();
     
     private static class SizeEstimator extends BaseExporter 
     {
@@ -121,6 +128,11 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
     }
     
     
+    public void setContentService(ContentService contentService)
+    {
+        this.contentService = contentService;
+    }
+    
     public void setContentServiceHelper(ContentServiceHelper contentServiceHelper)
     {
         this.contentServiceHelper = contentServiceHelper;
@@ -145,6 +157,23 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
         this.maximumContentSize = maximumContentSize;
     }
     
+    /**
+     * Set the comma separated list of mimetypes which are already compressed, and so are
+     * stored in the archive without being compressed again.
+     */
+    public void setUncompressedMimetypes(String uncompressedMimetypes)
+    {
+        Set<String> mimetypes = new HashSet<String>();
+        for (String mimetype : uncompressedMimetypes.split(","))
+        {
+            if (mimetype.trim().length() > 0)
+            {
+                mimetypes.add(mimetype.trim());
+            }
+        }
+        this.uncompressedMimetypes = mimetypes;
+    }
+    
     public void setNodeService(NodeService nodeService)
     {
         this.nodeService = nodeService;
@@ -183,14 +212,7 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
             public Object doWork() throws Exception
             {
         
-                ExporterCrawlerParameters crawlerParameters = new ExporterCrawlerParameters();
-                
-                Location exportFrom = new Location(downloadRequest.getRequetedNodeRefs());
-                crawlerParameters.setExportFrom(exportFrom);
-                
-                crawlerParameters.setCrawlSelf(true);
-                crawlerParameters.setExcludeChildAssocs(new QName[] {RenditionModel.ASSOC_RENDITION, ForumModel.ASSOC_DISCUSSION});
-                crawlerParameters.setExcludeAspects(new QName[] {ContentModel.ASPECT_WORKING_COPY});
+                ExporterCrawlerParameters crawlerParameters = createCrawlerParameters(downloadRequest.getRequetedNodeRefs());
         
                 // Get an estimate of the size for statuses
                 SizeEstimator estimator = new SizeEstimator(checkOutCheckInService, nodeService);
@@ -211,11 +233,51 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
 
     }
 
+    /**
+     * Write an archive of the content from the given nodes directly to the output stream, as the
+     * current user.  No download node is created, so the archive is not stored in the repository
+     * and the client can start receiving it straight away.
+     * 
+     * @param nodeRefs NodeRefs of content to be added to the archive
+     * @param output stream to write the archive to; it is not closed
+     */
+    public void streamArchive(final NodeRef[] nodeRefs, OutputStream output)
+    {
+        final ZipDownloadExporter handler = new ZipDownloadExporter(output, checkOutCheckInService, nodeService, contentService);
+        handler.setUncompressedMimetypes(uncompressedMimetypes);
+        handler.setMaximumContentSize(maximumContentSize);
+        // Only the export is done in a transaction, so that a slow client doesn't hold a
+        // transaction open while the content is sent
+        transactionHelper.doInTransaction(new RetryingTransactionCallback<Object>()
+        {
+            @Override
+            public Object execute() throws Throwable
+            {
+                exporterService.exportView(handler, createCrawlerParameters(nodeRefs), null);
+                return null;
+            }
+        }, true);
+        handler.writeArchive();
+    }
+
     @Override
     protected void addParameterDefinitions(List<ParameterDefinition> paramList)
     {
     }
 
+    private ExporterCrawlerParameters createCrawlerParameters(NodeRef[] nodeRefs)
+    {
+        ExporterCrawlerParameters crawlerParameters = new ExporterCrawlerParameters();
+        
+        Location exportFrom = new Location(nodeRefs);
+        crawlerParameters.setExportFrom(exportFrom);
+        
+        crawlerParameters.setCrawlSelf(true);
+        crawlerParameters.setExcludeChildAssocs(new QName[] {RenditionModel.ASSOC_RENDITION, ForumModel.ASSOC_DISCUSSION});
+        crawlerParameters.setExcludeAspects(new QName[] {ContentModel.ASPECT_WORKING_COPY});
+        return crawlerParameters;
+    }
+
 
     private void maximumContentSizeExceeded(final NodeRef actionedUponNodeRef, final long size, final long fileCount)
     {
@@ -240,6 +302,7 @@ public class CreateDownloadArchiveAction extends ActionExecuterAbstractBase
         // perform the actual export
         final File tempFile = TempFileProvider.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
         final ZipDownloadExporter handler = new ZipDownloadExporter(tempFile, checkOutCheckInService, nodeService, transactionHelper, updateService, downloadStorage, actionedUponNodeRef, estimator.getSize(), estimator.getFileCount());
+        handler.setUncompressedMimetypes(uncompressedMimetypes);
         
         try {
             exporterService.exportView(handler, crawlerParameters, null);
@@ -18,6 +18,7 @@
  */
 package org.alfresco.repo.download;
 
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.List;
 
@@ -41,6 +42,7 @@ public class DownloadServiceImpl implements DownloadService {
 
     // Dependencies
     private ActionServiceHelper actionServiceHelper;
+    private CreateDownloadArchiveAction createDownloadArchiveAction;
     private DownloadStorage downloadStorage;
     private RetryingTransactionHelper transactionHelper;
     
@@ -50,6 +52,11 @@ public class DownloadServiceImpl implements DownloadService {
         this.actionServiceHelper = actionServiceHelper;
     }
     
+    public void setCreateDownloadArchiveAction(CreateDownloadArchiveAction createDownloadArchiveAction)
+    {
+        this.createDownloadArchiveAction = createDownloadArchiveAction;
+    }
+    
     public void setTransactionHelper(RetryingTransactionHelper transactionHelper)
     {
         this.transactionHelper = transactionHelper; 
@@ -96,6 +103,22 @@ public class DownloadServiceImpl implements DownloadService {
 	}
 
 
+    /*
+     * @see org.alfresco.service.cmr.download.DownloadService#streamDownload(org.alfresco.service.cmr.repository.NodeRef[], java.io.OutputStream)
+     */
+    @Override
+    public void streamDownload(NodeRef[] requestedNodes, OutputStream output)
+    {
+        ParameterCheck.mandatory("nodeRefs", requestedNodes);
+        ParameterCheck.mandatory("output", output);
+        if (requestedNodes.length < 1)
+        {
+            throw new IllegalArgumentException("Need at least 1 node ref");
+        }
+        
+        createDownloadArchiveAction.streamArchive(requestedNodes, output);
+    }
+
 	@Override
 	public DownloadStatus getDownloadStatus(NodeRef downloadNode) {
 		ParameterCheck.mandatory("downloadNode", downloadNode);
@@ -24,9 +24,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
@@ -35,12 +40,15 @@ import org.alfresco.service.cmr.coci.CheckOutCheckInService;
 import org.alfresco.service.cmr.download.DownloadStatus;
 import org.alfresco.service.cmr.download.DownloadStatus.Status;
 import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.view.ExporterContext;
 import org.alfresco.service.cmr.view.ExporterException;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream.UnicodeExtraFieldPolicy;
@@ -76,6 +84,13 @@ public class ZipDownloadExporter extends BaseExporter
     private String currentName;
 
     private OutputStream outputStream;
+    private boolean closeOutputStream = true;
+
+    private ContentService contentService;
+    private List<Pair<String, ContentData>> pendingEntries;
+
+    private Set<String> uncompressedMimetypes = Collections.emptySet();
+    private long maximumContentSize = -1L;
 
     /**
      * Construct
@@ -110,16 +125,71 @@ public class ZipDownloadExporter extends BaseExporter
         }
     }
 
+    /**
+     * Construct an exporter which writes the archive straight to the given stream, without a
+     * download node.  No status updates are recorded and the download cannot be cancelled.
+     * <p>
+     * The export only records the entries of the archive.  They are written by
+     * {@link #writeArchive()}, which reads the content by URL and so can be called once the
+     * transaction used for the export has ended.
+     *
+     * @param outputStream the stream to write the archive to, which is not closed by the exporter
+     * @param checkOutCheckInService CheckOutCheckInService
+     * @param nodeService NodeService
+     * @param contentService ContentService
+     */
+    public ZipDownloadExporter(OutputStream outputStream, CheckOutCheckInService checkOutCheckInService, NodeService nodeService, ContentService contentService)
+    {
+        super(checkOutCheckInService, nodeService);
+        this.outputStream = outputStream;
+        this.closeOutputStream = false;
+        this.contentService = contentService;
+        this.total = -1L;
+        this.totalFileCount = -1L;
+    }
+
+    /**
+     * Set the mimetypes of content which is already compressed, and is therefore added to the
+     * archive without compressing it again.
+     */
+    public void setUncompressedMimetypes(Set<String> uncompressedMimetypes)
+    {
+        this.uncompressedMimetypes = uncompressedMimetypes;
+    }
+
+    /**
+     * Set the maximum total size of content that can be added to the archive. -1 indicates no limit.
+     */
+    public void setMaximumContentSize(long maximumContentSize)
+    {
+        this.maximumContentSize = maximumContentSize;
+    }
+
     @Override
     public void start(final ExporterContext context)
     {
-        zipStream = new ZipArchiveOutputStream(outputStream);
+        if (contentService != null)
+        {
+            // A retried export starts again from scratch
+            pendingEntries = new ArrayList<Pair<String, ContentData>>();
+            done = 0;
+            path.clear();
+            return;
+        }
+        zipStream = createZipStream();
+    }
+
+    private ZipArchiveOutputStream createZipStream()
+    {
+        ZipArchiveOutputStream zipStream = new ZipArchiveOutputStream(outputStream);
         // NOTE: This encoding allows us to workaround bug...
         //       http://bugs.sun.com/bugdatabase/view_bug.do;:WuuT?bug_id=4820807
         zipStream.setEncoding("UTF-8");
         zipStream.setCreateUnicodeExtraFields(UnicodeExtraFieldPolicy.ALWAYS);
         zipStream.setUseLanguageEncodingFlag(true);
         zipStream.setFallbackToUTF8(true);
+        zipStream.setUseZip64(Zip64Mode.AsNeeded);
+        return zipStream;
     }
 
     @Override
@@ -130,11 +200,14 @@ public class ZipDownloadExporter extends BaseExporter
         if (ContentModel.TYPE_FOLDER.equals(nodeService.getType(nodeRef)))
         {
             String path = getPath() + PATH_SEPARATOR;
-            ZipArchiveEntry archiveEntry = new ZipArchiveEntry(path);
+            if (pendingEntries != null)
+            {
+                pendingEntries.add(new Pair<String, ContentData>(path, null));
+                return;
+            }
             try
             {
-                zipStream.putArchiveEntry(archiveEntry);
-                zipStream.closeArchiveEntry();
+                putFolderEntry(path);
             }
             catch (IOException e)
             {
@@ -142,6 +215,13 @@ public class ZipDownloadExporter extends BaseExporter
             }
         }
     }
+
+    private void putFolderEntry(String path) throws IOException
+    {
+        ZipArchiveEntry archiveEntry = new ZipArchiveEntry(path);
+        zipStream.putArchiveEntry(archiveEntry);
+        zipStream.closeArchiveEntry();
+    }
     
     @Override
     public void contentImpl(NodeRef nodeRef, QName property, InputStream content, ContentData contentData, int index)
@@ -152,23 +232,45 @@ public class ZipDownloadExporter extends BaseExporter
             return;
         }
         
+        if (maximumContentSize > 0 && done + contentData.getSize() > maximumContentSize)
+        {
+            throw new ExporterException("Maximum content size (" + maximumContentSize + ") exceeded");
+        }
+        
+        if (pendingEntries != null)
+        {
+            pendingEntries.add(new Pair<String, ContentData>(getPath(), contentData));
+            done = done + contentData.getSize();
+            return;
+        }
+        
         try
         {
-            // ALF-2016
-            ZipArchiveEntry zipEntry=new ZipArchiveEntry(getPath());
-            zipStream.putArchiveEntry(zipEntry);
-            
-            // copy export stream to zip
-            copyStream(zipStream, content);
-            
-            zipStream.closeArchiveEntry();
-            filesAddedCount = filesAddedCount + 1;
+            putContentEntry(getPath(), content, contentData);
         }
         catch (IOException e)
         {
             throw new ExporterException("Failed to zip export stream", e);
         }
     }
+
+    private void putContentEntry(String path, InputStream content, ContentData contentData) throws IOException
+    {
+        // ALF-2016
+        ZipArchiveEntry zipEntry=new ZipArchiveEntry(path);
+        // The size is needed up front for entries over 4GB when the archive is being streamed
+        zipEntry.setSize(contentData.getSize());
+        // Don't spend time compressing content that is already compressed
+        zipStream.setLevel(uncompressedMimetypes.contains(contentData.getMimetype()) ?
+                    Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zipStream.putArchiveEntry(zipEntry);
+        
+        // copy export stream to zip
+        copyStream(zipStream, content);
+        
+        zipStream.closeArchiveEntry();
+        filesAddedCount = filesAddedCount + 1;
+    }
     
     @Override
     public void endNode(NodeRef nodeRef)
@@ -179,9 +281,22 @@ public class ZipDownloadExporter extends BaseExporter
     @Override
     public void end()
     {
+        if (pendingEntries != null)
+        {
+            // Written by writeArchive
+            return;
+        }
         try
         {
-            zipStream.close();
+            if (closeOutputStream)
+            {
+                zipStream.close();
+            }
+            else
+            {
+                zipStream.finish();
+                zipStream.flush();
+            }
         }
         catch (IOException error)
         {
@@ -189,6 +304,49 @@ public class ZipDownloadExporter extends BaseExporter
         }
     }
 
+    /**
+     * Write the archive recorded by the export to the output stream.  The content is read by
+     * URL, so no transaction is needed.  Content is not removed from the store as soon as it is
+     * orphaned, so a node deleted since the export is still written as it was when exported.
+     */
+    public void writeArchive()
+    {
+        if (pendingEntries == null)
+        {
+            throw new IllegalStateException("The archive is written by the export");
+        }
+        zipStream = createZipStream();
+        done = 0;
+        try
+        {
+            for (Pair<String, ContentData> entry : pendingEntries)
+            {
+                ContentData contentData = entry.getSecond();
+                if (contentData == null)
+                {
+                    putFolderEntry(entry.getFirst());
+                    continue;
+                }
+                ContentReader reader = contentService.getRawReader(contentData.getContentUrl());
+                InputStream content = reader.getContentInputStream();
+                try
+                {
+                    putContentEntry(entry.getFirst(), content, contentData);
+                }
+                finally
+                {
+                    content.close();
+                }
+            }
+            zipStream.finish();
+            zipStream.flush();
+        }
+        catch (IOException e)
+        {
+            throw new ExporterException("Failed to zip export stream", e);
+        }
+    }
+
     private String getPath()
     {
         if (path.size() < 1) 
@@ -232,7 +390,7 @@ public class ZipDownloadExporter extends BaseExporter
             done = done + read;
             
             // ALF-16289 - only update the status every 10MB
-            if (i++%500 == 0)
+            if (downloadNodeRef != null && i++%500 == 0)
             {
                 updateStatus();
                 checkCancelled();
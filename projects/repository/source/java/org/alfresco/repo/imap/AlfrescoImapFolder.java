@@ -33,7 +33,12 @@ import java.util.NavigableMap;
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
 import javax.mail.MessagingException;
+import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
+import javax.mail.search.AndTerm;
+import javax.mail.search.FlagTerm;
+import javax.mail.search.NotTerm;
+import javax.mail.search.OrTerm;
 import javax.mail.search.SearchTerm;
 
 import org.alfresco.model.ContentModel;
@@ -849,6 +854,11 @@ public class AlfrescoImapFolder extends AbstractImapFolder implements Serializab
     @Override
     protected long[] searchInternal(SearchTerm searchTerm)
     {
+        if (isFlagSearch(searchTerm))
+        {
+            return searchFlags(searchTerm);
+        }
+        
         List<SimpleStoredMessage> messages = getMessages();
         long[] result = new long[messages.size()];
         int i = 0;
@@ -864,6 +874,67 @@ public class AlfrescoImapFolder extends AbstractImapFolder implements Serializab
         return Arrays.copyOfRange(result, 0, i);
     }
 
+    /**
+     * Does the search only test message flags, e.g. SEARCH UNSEEN?
+     */
+    private boolean isFlagSearch(SearchTerm searchTerm)
+    {
+        if (searchTerm instanceof FlagTerm)
+        {
+            return true;
+        }
+        else if (searchTerm instanceof NotTerm)
+        {
+            return isFlagSearch(((NotTerm) searchTerm).getTerm());
+        }
+        else if (searchTerm instanceof AndTerm || searchTerm instanceof OrTerm)
+        {
+            SearchTerm[] terms = (searchTerm instanceof AndTerm) ?
+                        ((AndTerm) searchTerm).getTerms() : ((OrTerm) searchTerm).getTerms();
+            for (SearchTerm term : terms)
+            {
+                if (!isFlagSearch(term))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Match a search that only tests flags against the flags stored on each message node,
+     * without building the messages themselves.
+     */
+    private long[] searchFlags(SearchTerm searchTerm)
+    {
+        NavigableMap<Long, FileInfo> messages = searchMails();
+        long[] result = new long[messages.size()];
+        int i = 0;
+        
+        MimeMessage flagsHolder = new MimeMessage((Session) null);
+        for (Map.Entry<Long, FileInfo> message : messages.entrySet())
+        {
+            try
+            {
+                flagsHolder.setFlags(MessageFlags.ALL_FLAGS, false);
+                flagsHolder.setFlags(imapService.getFlags(message.getValue()), true);
+            }
+            catch (MessagingException e)
+            {
+                // Not possible for an in-memory message
+                throw new IllegalStateException(e);
+            }
+            if (searchTerm.match(flagsHolder))
+            {
+                result[i] = message.getKey();
+                i++;
+            }
+        }
+        return Arrays.copyOfRange(result, 0, i);
+    }
+
     /**
      * Sets flags for the message with the given UID. If {@code addUid} is set to {@code true}
      * {@link FolderListener} objects defined for this folder will be notified.
@@ -29,6 +29,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.model.ContentModel;
@@ -112,6 +115,13 @@ public class ImporterComponent implements ImporterService
     private VersionService versionService;
     private HiddenAspect hiddenAspect;
     private ContentUsageImpl contentUsageImpl;
+    private ExecutorService contentImportExecutor;
+
+    /**
+     * The maximum number of content streams that may be copied in the background before
+     * the importer waits for them to complete.
+     */
+    private static final int MAX_PENDING_CONTENT = 100;
 
     /**
      * The db node service, used when updating the version store.
@@ -252,6 +262,19 @@ public class ImporterComponent implements ImporterService
         this.contentUsageImpl = contentUsageImpl;
     }
 
+    /**
+     * Set the executor used to copy content out of ACP packages into the content store
+     * in parallel with the import of the node tree.  The nodes are still created, and their
+     * content properties set, in the importing transaction.  If not set, content is copied
+     * as each node is imported.
+     * 
+     * @param contentImportExecutor the executor for content copies
+     */
+    public void setContentImportExecutor(ExecutorService contentImportExecutor)
+    {
+        this.contentImportExecutor = contentImportExecutor;
+    }
+
     /* (non-Javadoc)
      * @see org.alfresco.service.cmr.view.ImporterService#importView(java.io.InputStreamReader, org.alfresco.service.cmr.view.Location, java.util.Properties, org.alfresco.service.cmr.view.ImporterProgress)
      */
@@ -484,6 +507,7 @@ public class ImporterComponent implements ImporterService
 
         // Import tracking
         private List<ImportedNodeRef> nodeRefs = new ArrayList<ImportedNodeRef>();
+        private List<PendingContent> pendingContent = new ArrayList<PendingContent>();
 
         /**
          * Construct
@@ -666,6 +690,8 @@ public class ImporterComponent implements ImporterService
             //  create an initial version for it
             if(context.getNodeAspects().contains(ContentModel.ASPECT_VERSIONABLE))
             {
+                // the version must include the node's content
+                completePendingContent();
                 generateVersioningForVersionableNode(nodeRef);
             }
             
@@ -797,6 +823,28 @@ public class ImporterComponent implements ImporterService
                         ContentData cachedContentData = contentCache.getContent(streamHandler, contentData);
                         nodeService.setProperty(nodeRef, propertyName, cachedContentData);
                     }
+                    else if (contentImportExecutor != null && streamHandler instanceof ACPImportPackageHandler)
+                    {
+                        // copy the content from the package in the background (entries of the zip
+                        // can be read concurrently) and set the property once it has been written
+                        final String sourceUrl = contentUrl;
+                        final ContentWriter writer = contentService.getWriter(nodeRef, propertyName, false);
+                        writer.setEncoding(contentData.getEncoding());
+                        writer.setMimetype(contentData.getMimetype());
+                        Future<?> copy = contentImportExecutor.submit(new Runnable()
+                        {
+                            public void run()
+                            {
+                                writer.putContent(streamHandler.importStream(sourceUrl));
+                            }
+                        });
+                        pendingContent.add(new PendingContent(nodeRef, propertyName, contentUrl, writer, copy, propsBefore));
+                        if (pendingContent.size() >= MAX_PENDING_CONTENT)
+                        {
+                            completePendingContent();
+                        }
+                        return;
+                    }
                     else
                     {
                         // import the content from the import source file
@@ -806,18 +854,57 @@ public class ImporterComponent implements ImporterService
                         writer.setMimetype(contentData.getMimetype());
                         writer.putContent(contentStream);
                     }
-                                        
-                    if (contentUsageImpl != null && contentUsageImpl.getEnabled())
-                    {
-                        // Since behaviours for content nodes have all been disabled,
-                        // it is necessary to update the user's usage stats.
-                        Map<QName, Serializable> propsAfter = nodeService.getProperties(nodeRef);
-                        contentUsageImpl.onUpdateProperties(nodeRef, propsBefore, propsAfter);
-                    }
                     
-                    reportContentCreated(nodeRef, contentUrl);
+                    contentImported(nodeRef, contentUrl, propsBefore);
+                }
+            }
+        }
+        
+        /**
+         * Complete the import of a content property once the content has been written
+         * 
+         * @param nodeRef containing node
+         * @param contentUrl the identifier of the imported content
+         * @param propsBefore the node's properties before the content was imported, if usages are being updated
+         */
+        private void contentImported(NodeRef nodeRef, String contentUrl, Map<QName, Serializable> propsBefore)
+        {
+            if (contentUsageImpl != null && contentUsageImpl.getEnabled())
+            {
+                // Since behaviours for content nodes have all been disabled,
+                // it is necessary to update the user's usage stats.
+                Map<QName, Serializable> propsAfter = nodeService.getProperties(nodeRef);
+                contentUsageImpl.onUpdateProperties(nodeRef, propsBefore, propsAfter);
+            }
+            
+            reportContentCreated(nodeRef, contentUrl);
+        }
+        
+        /**
+         * Wait for the content being copied in the background and set the content properties,
+         * in the order the content was imported
+         */
+        private void completePendingContent()
+        {
+            for (PendingContent content : pendingContent)
+            {
+                try
+                {
+                    content.copy.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ImporterException("Interrupted while importing content " + content.contentUrl, e);
+                }
+                catch (ExecutionException e)
+                {
+                    throw new ImporterException("Failed to import content " + content.contentUrl, e.getCause());
                 }
+                nodeService.setProperty(content.nodeRef, content.propertyName, content.writer.getContentData());
+                contentImported(content.nodeRef, content.contentUrl, content.propsBefore);
             }
+            pendingContent.clear();
         }
         
         /* (non-Javadoc)
@@ -864,6 +951,8 @@ public class ImporterComponent implements ImporterService
         @SuppressWarnings("unchecked")
         public void end()
         {
+            completePendingContent();
+            
             // Bind all node references to destination space
             for (ImportedNodeRef importedRef : nodeRefs)
             {
@@ -927,6 +1016,11 @@ public class ImporterComponent implements ImporterService
          */
         public void error(Throwable e)
         {
+            for (PendingContent content : pendingContent)
+            {
+                content.copy.cancel(true);
+            }
+            pendingContent.clear();
             behaviourFilter.enableBehaviour();
             reportError(e);
         }
@@ -1703,6 +1797,29 @@ public class ImporterComponent implements ImporterService
         private Serializable value;
     }
 
+    /**
+     * Content that is being copied into the content store in the background
+     */
+    private static class PendingContent
+    {
+        private PendingContent(NodeRef nodeRef, QName propertyName, String contentUrl, ContentWriter writer, Future<?> copy, Map<QName, Serializable> propsBefore)
+        {
+            this.nodeRef = nodeRef;
+            this.propertyName = propertyName;
+            this.contentUrl = contentUrl;
+            this.writer = writer;
+            this.copy = copy;
+            this.propsBefore = propsBefore;
+        }
+        
+        private NodeRef nodeRef;
+        private QName propertyName;
+        private String contentUrl;
+        private ContentWriter writer;
+        private Future<?> copy;
+        private Map<QName, Serializable> propsBefore;
+    }
+
     /**
      * Default Import Stream Handler
      * 
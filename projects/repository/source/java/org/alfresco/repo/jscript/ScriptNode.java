@@ -2396,6 +2396,34 @@ public class ScriptNode implements Scopeable, NamespacePrefixResolverProvider
         return this.versions;
     }
     
+    /**
+     * Gets a page of the version history, most recent version first
+     * 
+     * @param skipCount  the number of versions to skip
+     * @param maxItems   the maximum number of versions to return
+     * 
+     * @return  the versions on the page, whether there are more, and the total number of
+     *          versions, or null if the node is not versioned
+     */
+    public ScriptPagingNodes getVersionHistoryPage(int skipCount, int maxItems)
+    {
+        if (!getIsVersioned())
+        {
+            return null;
+        }
+        PagingResults<Version> history = this.services.getVersionService().getVersionHistory(this.nodeRef, new PagingRequest(skipCount, maxItems));
+        List<Version> page = history.getPage();
+        Object[] versions = new Object[page.size()];
+        int i = 0;
+        for (Version version : page)
+        {
+            versions[i++] = new ScriptVersion(version, this.services, this.scope);
+        }
+        Pair<Integer, Integer> totalCount = history.getTotalResultCount();
+        return new ScriptPagingNodes(Context.getCurrentContext().newArray(this.scope, versions), history.hasMoreItems(),
+                    totalCount.getFirst(), totalCount.getSecond());
+    }
+    
     /**
      * Gets the version of this node specified by version label
      * 
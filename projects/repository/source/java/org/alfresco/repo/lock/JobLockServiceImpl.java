@@ -18,10 +18,20 @@
  */
 package org.alfresco.repo.lock;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.alfresco.repo.domain.locks.LockDAO;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -38,13 +48,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
+ * {@link JobLockService} backed by the {@link LockDAO}.
+ * <p/>
+ * Locks obtained through this instance are also tracked locally.  An attempt to get a lock
+ * that is already held, unexpired, by another token in this VM fails without going to the
+ * database.  A thread waiting to retry is woken as soon as a lock is released locally.
+ * Acquisition and hold times are recorded per lock, for the most recently used lock names, and
+ * in total.  They are available through {@link #getLockStatistics()} and over JMX through the
+ * {@link JobLockServiceMBean} interface.
  *
  * @author Derek Hulley
  * @since 3.2
  */
-public class JobLockServiceImpl implements JobLockService
+public class JobLockServiceImpl implements JobLockService, JobLockServiceMBean
 {
     private static final String KEY_RESOURCE_LOCKS = "JobLockServiceImpl.Locks";
+    /** The number of locally tracked locks at which expired locks are first pruned */
+    private static final int MIN_LOCAL_LOCK_PRUNE_SIZE = 1000;
     
     private static Log logger = LogFactory.getLog(JobLockServiceImpl.class);
     
@@ -56,6 +76,18 @@ public class JobLockServiceImpl implements JobLockService
     private ScheduledExecutorService scheduler;
     private VmShutdownListener shutdownListener;
     
+    /** The locks known to be held through this instance, including those left to expire */
+    private final ConcurrentMap<QName, LocalLock> localLocks = new ConcurrentHashMap<QName, LocalLock>();
+    /** The number of locally tracked locks at which the expired locks are next pruned */
+    private final AtomicInteger localLockPruneSize = new AtomicInteger(MIN_LOCAL_LOCK_PRUNE_SIZE);
+    /** Notified whenever a lock is released through this instance */
+    private final Object lockReleaseMonitor = new Object();
+    private int maxLockStatistics;
+    /** Statistics for the most recently used lock names, as some lock names are generated per node */
+    private final Map<QName, LockStatistics> lockStatistics;
+    /** Statistics for all locks, including those whose names are no longer tracked */
+    private final LockStatistics totalStatistics = new LockStatistics();
+    
     /**
      * Stateless listener that does post-transaction cleanup.
      */
@@ -65,7 +97,18 @@ public class JobLockServiceImpl implements JobLockService
     {
         defaultRetryWait = 20;
         defaultRetryCount = 10;
+        maxLockStatistics = 1000;
         txnListener = new LockTransactionListener();
+        lockStatistics = new LinkedHashMap<QName, LockStatistics>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QName, LockStatistics> eldest)
+            {
+                return size() > maxLockStatistics;
+            }
+        };
         
         TraceableThreadFactory threadFactory = new TraceableThreadFactory();
         threadFactory.setThreadDaemon(false);
@@ -132,6 +175,96 @@ public class JobLockServiceImpl implements JobLockService
         this.defaultRetryWait = defaultRetryWait;
     }
 
+    /**
+     * Set the maximum number of lock names to keep statistics for.  The statistics of the least
+     * recently used lock names are dropped, although they remain part of the totals.
+     * @param maxLockStatistics         the number of lock names
+     */
+    public void setMaxLockStatistics(int maxLockStatistics)
+    {
+        this.maxLockStatistics = maxLockStatistics;
+    }
+
+    /**
+     * Get the acquisition and usage statistics for the most recently used locks requested through this instance
+     * 
+     * @return          a copy of the statistics, keyed by lock name
+     */
+    public Map<QName, LockStatistics> getLockStatistics()
+    {
+        synchronized (lockStatistics)
+        {
+            return Collections.unmodifiableMap(new HashMap<QName, LockStatistics>(lockStatistics));
+        }
+    }
+
+    @Override
+    public int getHeldLockCount()
+    {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (LocalLock localLock : localLocks.values())
+        {
+            if (localLock.expiryTime > now)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getAcquiredCount()
+    {
+        return totalStatistics.getAcquiredCount();
+    }
+
+    @Override
+    public long getFailedCount()
+    {
+        return totalStatistics.getFailedCount();
+    }
+
+    @Override
+    public long getContendedCount()
+    {
+        return totalStatistics.getContendedCount();
+    }
+
+    @Override
+    public long getTotalWaitTime()
+    {
+        return totalStatistics.getTotalWaitTime();
+    }
+
+    @Override
+    public long getTotalHoldTime()
+    {
+        return totalStatistics.getTotalHoldTime();
+    }
+
+    @Override
+    public String[] getLockStatisticsByName()
+    {
+        List<String> report = new ArrayList<String>();
+        for (Map.Entry<QName, LockStatistics> entry : getLockStatistics().entrySet())
+        {
+            report.add(entry.getKey() + " " + entry.getValue());
+        }
+        Collections.sort(report);
+        return report.toArray(new String[report.size()]);
+    }
+
+    @Override
+    public void resetLockStatistics()
+    {
+        synchronized (lockStatistics)
+        {
+            lockStatistics.clear();
+        }
+        totalStatistics.reset();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -241,8 +374,14 @@ public class JobLockServiceImpl implements JobLockService
         };
         try
         {
+            long startTime = System.currentTimeMillis();
             // It must succeed
             retryingTransactionHelper.doInTransaction(refreshLockCallback, false, true);
+            LocalLock localLock = localLocks.get(lockQName);
+            if (localLock != null && localLock.lockToken.equals(lockToken))
+            {
+                localLock.expiryTime = startTime + timeToLive;
+            }
             // Success
             if (logger.isDebugEnabled())
             {
@@ -265,6 +404,8 @@ public class JobLockServiceImpl implements JobLockService
                         "   Txn:      " + lockToken + "\n" +
                         "   Error:    " + e.getMessage());
             }
+            // We no longer hold it
+            lockReleased(lockQName, lockToken);
             throw e;
         }
     }
@@ -431,6 +572,7 @@ public class JobLockServiceImpl implements JobLockService
             }
         };
         retryingTransactionHelper.doInTransaction(releaseCallback, false, true);
+        lockReleased(lockQName, lockToken);
     }
 
     /**
@@ -445,7 +587,84 @@ public class JobLockServiceImpl implements JobLockService
                 return lockDAO.releaseLock(lockQName, lockToken, true);
             }
         };
-        return retryingTransactionHelper.doInTransaction(releaseCallback, false, true);
+        boolean released = retryingTransactionHelper.doInTransaction(releaseCallback, false, true);
+        lockReleased(lockQName, lockToken);
+        return released;
+    }
+
+    /**
+     * Stop tracking a lock locally, once it has been released or lost, and wake up any
+     * threads waiting to retry for a lock
+     */
+    private void lockReleased(QName lockQName, String lockToken)
+    {
+        LocalLock localLock = localLocks.get(lockQName);
+        if (localLock != null && localLock.lockToken.equals(lockToken) && localLocks.remove(lockQName, localLock))
+        {
+            lockHeld(localLock, System.currentTimeMillis());
+        }
+        synchronized (lockReleaseMonitor)
+        {
+            lockReleaseMonitor.notifyAll();
+        }
+    }
+    
+    /**
+     * Record the time that a lock, which is no longer tracked locally, was held for
+     */
+    private void lockHeld(LocalLock localLock, long releaseTime)
+    {
+        long holdTime = Math.max(0L, releaseTime - localLock.acquiredTime);
+        localLock.statistics.holdTime.addAndGet(holdTime);
+        totalStatistics.holdTime.addAndGet(holdTime);
+    }
+    
+    /**
+     * Stop tracking locks whose leases have expired without being released, once enough locks are
+     * tracked.  Each pruning doubles the number of locks tracked before the next, so the cost is
+     * spread across the acquisitions.
+     */
+    private void pruneLocalLocks()
+    {
+        int pruneSize = localLockPruneSize.get();
+        if (localLocks.size() < pruneSize || !localLockPruneSize.compareAndSet(pruneSize, Integer.MAX_VALUE))
+        {
+            // Not needed, or another thread is pruning
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<QName, LocalLock> entry : localLocks.entrySet())
+        {
+            LocalLock localLock = entry.getValue();
+            if (localLock.expiryTime <= now && localLocks.remove(entry.getKey(), localLock))
+            {
+                lockHeld(localLock, localLock.expiryTime);
+            }
+        }
+        localLockPruneSize.set(Math.max(MIN_LOCAL_LOCK_PRUNE_SIZE, localLocks.size() * 2));
+    }
+    
+    private LockStatistics getStatistics(QName lockQName)
+    {
+        synchronized (lockStatistics)
+        {
+            LockStatistics statistics = lockStatistics.get(lockQName);
+            if (statistics == null)
+            {
+                statistics = new LockStatistics();
+                lockStatistics.put(lockQName, statistics);
+            }
+            return statistics;
+        }
+    }
+    
+    /**
+     * Record an attempt to get a lock against the lock's statistics and the totals
+     */
+    private void lockAttempted(LockStatistics statistics, boolean acquired, long contended, long waitTime)
+    {
+        statistics.attempted(acquired, contended, waitTime);
+        totalStatistics.attempted(acquired, contended, waitTime);
     }
 
     /**
@@ -466,9 +685,16 @@ public class JobLockServiceImpl implements JobLockService
                 return null;
             }
         };
+        LockStatistics statistics = getStatistics(lockQName);
+        long startTime = System.currentTimeMillis();
         try
         {
-            int iterations = doWithRetry(getLockCallback, retryWait, retryCount);
+            int iterations = doWithRetry(getLockCallback, lockQName, lockToken, retryWait, retryCount);
+            long acquiredTime = System.currentTimeMillis();
+            // The database lock expires relative to the start of the last attempt, which is no earlier
+            localLocks.put(lockQName, new LocalLock(lockToken, acquiredTime, startTime + timeToLive, statistics));
+            pruneLocalLocks();
+            lockAttempted(statistics, true, iterations - 1, acquiredTime - startTime);
             // Bind in a listener, if we are in a transaction
             if (AlfrescoTransactionSupport.getTransactionReadState() != TxnReadState.TXN_NONE)
             {
@@ -487,6 +713,7 @@ public class JobLockServiceImpl implements JobLockService
         }
         catch (LockAcquisitionException e)
         {
+            lockAttempted(statistics, false, retryCount > 0 ? retryCount : 1, System.currentTimeMillis() - startTime);
             // Failure
             if (logger.isDebugEnabled())
             {
@@ -502,10 +729,13 @@ public class JobLockServiceImpl implements JobLockService
     }
     
     /**
-     * Does the high-level retrying around the callback.  At least one attempt is made to call the
-     * provided callback.
+     * Does the high-level retrying around the callback.  At least one attempt is made to get the lock,
+     * but the callback is not called while the lock is held by another token in this VM.
      */
-    private int doWithRetry(RetryingTransactionCallback<? extends Object> callback, long retryWait, int retryCount)
+    private int doWithRetry(
+            RetryingTransactionCallback<? extends Object> callback,
+            QName lockQName, String lockToken,
+            long retryWait, int retryCount)
     {
         int maxAttempts = retryCount > 0 ? retryCount : 1;
         int lockAttempt = 0;
@@ -514,6 +744,14 @@ public class JobLockServiceImpl implements JobLockService
         {
             try
             {
+                LocalLock localLock = localLocks.get(lockQName);
+                if (localLock != null && !localLock.lockToken.equals(lockToken) && localLock.expiryTime > System.currentTimeMillis())
+                {
+                    // We know that it is held, so don't go to the database
+                    throw new LockAcquisitionException(
+                            LockAcquisitionException.ERR_EXCLUSIVE_LOCK_EXISTS,
+                            lockQName, lockToken, localLock.lockToken);
+                }
                 retryingTransactionHelper.doInTransaction(callback, false, true);
                 // Success.  Clear the exception indicator! 
                 lastException = null;
@@ -532,10 +770,10 @@ public class JobLockServiceImpl implements JobLockService
                     break;
                 }
             }
-            // Before running again, do a wait
-            synchronized(callback)
+            // Before running again, do a wait; a local release will cut it short
+            synchronized(lockReleaseMonitor)
             {
-                try { callback.wait(retryWait); } catch (InterruptedException e) {}
+                try { lockReleaseMonitor.wait(retryWait); } catch (InterruptedException e) {}
             }
         }
         if (lastException == null)
@@ -590,6 +828,10 @@ public class JobLockServiceImpl implements JobLockService
             };
             retryingTransactionHelper.doInTransaction(releaseCallback, false, true);
             // So they were all successful
+            for (QName lockQName : heldLocks)
+            {
+                lockReleased(lockQName, txnId);
+            }
             heldLocks.clear();
         }
 
@@ -622,6 +864,7 @@ public class JobLockServiceImpl implements JobLockService
                 try
                 {
                     retryingTransactionHelper.doInTransaction(releaseCallback, false, true);
+                    lockReleased(lockQName, txnId);
                 }
                 catch (Throwable e)
                 {
@@ -636,4 +879,108 @@ public class JobLockServiceImpl implements JobLockService
             }
         }
     }
+    
+    /**
+     * A lock held through this instance
+     */
+    private static class LocalLock
+    {
+        private final String lockToken;
+        private final long acquiredTime;
+        private volatile long expiryTime;
+        /** The statistics of the lock, which remain valid if the lock name is dropped from the statistics */
+        private final LockStatistics statistics;
+        
+        private LocalLock(String lockToken, long acquiredTime, long expiryTime, LockStatistics statistics)
+        {
+            this.lockToken = lockToken;
+            this.acquiredTime = acquiredTime;
+            this.expiryTime = expiryTime;
+            this.statistics = statistics;
+        }
+    }
+    
+    /**
+     * Acquisition and usage statistics for a lock, as seen by this VM.  Times are in milliseconds.
+     * 
+     * @since 5.1
+     */
+    public static class LockStatistics
+    {
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong contended = new AtomicLong();
+        private final AtomicLong waitTime = new AtomicLong();
+        private final AtomicLong holdTime = new AtomicLong();
+        
+        private void attempted(boolean wasAcquired, long contendedCount, long attemptTime)
+        {
+            if (wasAcquired)
+            {
+                acquired.incrementAndGet();
+            }
+            else
+            {
+                failed.incrementAndGet();
+            }
+            contended.addAndGet(contendedCount);
+            waitTime.addAndGet(attemptTime);
+        }
+        
+        private void reset()
+        {
+            acquired.set(0L);
+            failed.set(0L);
+            contended.set(0L);
+            waitTime.set(0L);
+            holdTime.set(0L);
+        }
+        
+        /**
+         * @return          the number of times the lock was acquired
+         */
+        public long getAcquiredCount()
+        {
+            return acquired.get();
+        }
+        
+        /**
+         * @return          the number of times the lock could not be acquired, after all retries
+         */
+        public long getFailedCount()
+        {
+            return failed.get();
+        }
+        
+        /**
+         * @return          the number of attempts that found the lock held by someone else
+         */
+        public long getContendedCount()
+        {
+            return contended.get();
+        }
+        
+        /**
+         * @return          the total time spent trying to get the lock
+         */
+        public long getTotalWaitTime()
+        {
+            return waitTime.get();
+        }
+        
+        /**
+         * @return          the total time that the lock was held, for locks that have been released
+         */
+        public long getTotalHoldTime()
+        {
+            return holdTime.get();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "LockStatistics [acquired=" + acquired + ", failed=" + failed + ", contended=" + contended +
+                   ", waitTime=" + waitTime + ", holdTime=" + holdTime + "]";
+        }
+    }
 }
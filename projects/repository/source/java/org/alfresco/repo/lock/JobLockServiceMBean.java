@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.lock;
+
+/**
+ * Management interface for the job locks taken through this server.  Times are in milliseconds.
+ * 
+ * @see JobLockServiceImpl
+ * 
+ * @since 5.1
+ */
+public interface JobLockServiceMBean
+{
+    /**
+     * @return          the number of locks held, and not yet expired, through this server
+     */
+    public int getHeldLockCount();
+    
+    /**
+     * @return          the number of times any lock was acquired
+     */
+    public long getAcquiredCount();
+    
+    /**
+     * @return          the number of times any lock could not be acquired, after all retries
+     */
+    public long getFailedCount();
+    
+    /**
+     * @return          the number of attempts that found a lock held by someone else
+     */
+    public long getContendedCount();
+    
+    /**
+     * @return          the total time spent trying to get locks
+     */
+    public long getTotalWaitTime();
+    
+    /**
+     * @return          the total time that locks were held, for locks that have been released or have expired
+     */
+    public long getTotalHoldTime();
+    
+    /**
+     * @return          the statistics of the most recently used lock names, one lock per entry
+     */
+    public String[] getLockStatisticsByName();
+    
+    /**
+     * Clear all lock statistics
+     */
+    public void resetLockStatistics();
+}
@@ -18,36 +18,79 @@
  */
 package org.alfresco.repo.security.authority;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.cache.AbstractMTAsynchronouslyRefreshedCache;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.tenant.TenantAdminService;
+import org.alfresco.repo.tenant.TenantService;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
 import org.alfresco.util.BridgeTable;
+import org.alfresco.util.GUID;
+import org.alfresco.util.Pair;
 import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.cache.AsynchronouslyRefreshedCacheRegistry;
+import org.alfresco.util.cache.RefreshableCacheEvent;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 /**
+ * Caches the group containment {@link BridgeTable} per tenant.
+ * <p/>
+ * Links added or removed through {@link #addLink(String, String)} and {@link #removeLink(String, String)}
+ * are queued when the transaction commits, so group membership changes do not need the table to be rebuilt.
+ * The queued changes are applied by the cache's thread pool rather than the committing thread: all the changes
+ * queued for a tenant are applied together to a copy of its cached table, which then replaces it.  Readers are
+ * only locked out while the copy is swapped in, and the cache is not up to date until it has been.  Changes are
+ * also sent to the other cluster members through the cache registry.  Changes committed while a table is being
+ * built are replayed on it once it is live.  A full rebuild is still done by {@link #refresh()} and, as a
+ * consistency check, for the first link change after <b>fullRefreshIntervalMillis</b> has passed since the
+ * last build.
+ * 
  * @author Andy
  * @since 4.1.3
  */
 public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractMTAsynchronouslyRefreshedCache<BridgeTable<String>> implements InitializingBean
 {
+    private static final String KEY_PENDING_LINK_CHANGES = AuthorityBridgeTableAsynchronouslyRefreshedCache.class.getName() + ".pendingLinkChanges";
+
     private AuthorityBridgeDAO authorityBridgeDAO;
     private RetryingTransactionHelper retryingTransactionHelper;
     private TenantAdminService tenantAdminService;
+    private TenantService tenantService;
     private AuthorityDAO authorityDAO;
+    private AsynchronouslyRefreshedCacheRegistry registry;
+    private ThreadPoolExecutor threadPoolExecutor;
+    private long fullRefreshIntervalMillis = 3600000L;
+
+    /** Identifies the link change events sent by this server */
+    private final String serverId = GUID.generate();
+    /** Time of the last completed build per tenant */
+    private final Map<String, Long> lastBuildTimes = new ConcurrentHashMap<String, Long>();
+    /** Builds per tenant whose tables have not yet been seen live, with the link changes committed since each started */
+    private final Map<String, List<PendingBuild>> pendingBuilds = new ConcurrentHashMap<String, List<PendingBuild>>();
+    /** Committed link changes per tenant waiting to be applied.  A tenant is present while its changes are being applied. */
+    private final Map<String, List<LinkChange>> queuedLinkChanges = new HashMap<String, List<LinkChange>>();
+    private final LinkChangesTransactionListener linkChangesTransactionListener = new LinkChangesTransactionListener();
 
     private Log logger = LogFactory.getLog(getClass());
 
@@ -83,17 +126,464 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractM
         this.tenantAdminService = tenantAdminService;
     }
 
+    @Override
+    public void setTenantService(TenantService tenantService)
+    {
+        super.setTenantService(tenantService);
+        this.tenantService = tenantService;
+    }
+
+    @Override
+    public void setRegistry(AsynchronouslyRefreshedCacheRegistry registry)
+    {
+        super.setRegistry(registry);
+        this.registry = registry;
+    }
+
+    @Override
+    public void setThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor)
+    {
+        super.setThreadPoolExecutor(threadPoolExecutor);
+        this.threadPoolExecutor = threadPoolExecutor;
+    }
+
+    /**
+     * @param fullRefreshIntervalMillis
+     *            the time after which a link change triggers a full rebuild rather than an incremental update
+     */
+    public void setFullRefreshIntervalMillis(long fullRefreshIntervalMillis)
+    {
+        this.fullRefreshIntervalMillis = fullRefreshIntervalMillis;
+    }
+
+    /**
+     * Record that a link between two authority containers has been added in the current transaction.
+     * The cached table for the current tenant is updated when the transaction commits.
+     */
+    public void addLink(String parentName, String childName)
+    {
+        recordLinkChange(new LinkChange(tenantService.getCurrentUserDomain(), parentName, childName, true));
+    }
+
+    /**
+     * Record that a link between two authority containers has been removed in the current transaction.
+     * The cached table for the current tenant is updated when the transaction commits.
+     */
+    public void removeLink(String parentName, String childName)
+    {
+        recordLinkChange(new LinkChange(tenantService.getCurrentUserDomain(), parentName, childName, false));
+    }
+
+    private void recordLinkChange(LinkChange linkChange)
+    {
+        Long lastBuildTime = lastBuildTimes.get(linkChange.tenantId);
+        if (lastBuildTime != null && System.currentTimeMillis() - lastBuildTime > fullRefreshIntervalMillis)
+        {
+            // Periodically rebuild from the database in case anything has been missed
+            refresh();
+            return;
+        }
+        List<LinkChange> pendingLinkChanges = TransactionalResourceHelper.getList(KEY_PENDING_LINK_CHANGES);
+        pendingLinkChanges.add(linkChange);
+        AlfrescoTransactionSupport.bindListener(linkChangesTransactionListener);
+    }
+
+    /**
+     * The cache is not up to date for the current transaction if it has made link changes that are not yet
+     * visible in the cached table, or while committed link changes are waiting to be applied.
+     */
+    @Override
+    public boolean isUpToDate()
+    {
+        if (TransactionalResourceHelper.isResourcePresent(KEY_PENDING_LINK_CHANGES)
+                && !TransactionalResourceHelper.getList(KEY_PENDING_LINK_CHANGES).isEmpty())
+        {
+            return false;
+        }
+        String tenantId = tenantService.getCurrentUserDomain();
+        synchronized (queuedLinkChanges)
+        {
+            if (queuedLinkChanges.containsKey(tenantId))
+            {
+                return false;
+            }
+        }
+        if (hasBuiltPendingBuild(tenantId))
+        {
+            // A new table may be live without the changes it missed
+            queueLinkChanges(tenantId, Collections.<LinkChange>emptyList());
+            return false;
+        }
+        return super.isUpToDate();
+    }
+
+    /**
+     * Queues the replay of the link changes missed by a newly built table once it has been put live.
+     */
+    @Override
+    public BridgeTable<String> get(String tenantId)
+    {
+        BridgeTable<String> bridgeTable = super.get(tenantId);
+        if (pendingBuilds.containsKey(tenantId) && isPendingBuildTable(tenantId, bridgeTable))
+        {
+            queueLinkChanges(tenantId, Collections.<LinkChange>emptyList());
+        }
+        return bridgeTable;
+    }
+
+    private boolean isPendingBuildTable(String tenantId, BridgeTable<String> bridgeTable)
+    {
+        synchronized (pendingBuilds)
+        {
+            List<PendingBuild> builds = pendingBuilds.get(tenantId);
+            if (builds != null)
+            {
+                for (PendingBuild build : builds)
+                {
+                    if (build.bridgeTable != null && build.bridgeTable == bridgeTable)
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private boolean hasBuiltPendingBuild(String tenantId)
+    {
+        synchronized (pendingBuilds)
+        {
+            List<PendingBuild> builds = pendingBuilds.get(tenantId);
+            if (builds != null)
+            {
+                for (PendingBuild build : builds)
+                {
+                    if (build.bridgeTable != null)
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Link changes made on other cluster members are applied as they are on the server that made them.
+     */
+    @Override
+    public void onRefreshableCacheEvent(RefreshableCacheEvent refreshableCacheEvent)
+    {
+        if (refreshableCacheEvent instanceof LinkChangesEvent)
+        {
+            LinkChangesEvent linkChangesEvent = (LinkChangesEvent) refreshableCacheEvent;
+            if (!serverId.equals(linkChangesEvent.serverId))
+            {
+                queueLinkChanges(linkChangesEvent.getKey(), linkChangesEvent.linkChanges);
+            }
+        }
+        else
+        {
+            super.onRefreshableCacheEvent(refreshableCacheEvent);
+        }
+    }
+
+    /**
+     * Queue committed link changes for a tenant, starting a task to apply them unless one is already queued
+     * or running.  The changes are also recorded against the builds in progress, to be replayed on their tables.
+     */
+    private void queueLinkChanges(final String tenantId, List<LinkChange> linkChanges)
+    {
+        boolean startTask;
+        synchronized (pendingBuilds)
+        {
+            List<PendingBuild> builds = pendingBuilds.get(tenantId);
+            if (builds != null)
+            {
+                for (PendingBuild build : builds)
+                {
+                    build.linkChanges.addAll(linkChanges);
+                }
+            }
+            synchronized (queuedLinkChanges)
+            {
+                List<LinkChange> queued = queuedLinkChanges.get(tenantId);
+                startTask = (queued == null);
+                if (startTask)
+                {
+                    queued = new ArrayList<LinkChange>();
+                    queuedLinkChanges.put(tenantId, queued);
+                }
+                queued.addAll(linkChanges);
+            }
+        }
+        if (!startTask)
+        {
+            return;
+        }
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                applyQueuedLinkChanges(tenantId);
+            }
+        };
+        if (threadPoolExecutor == null)
+        {
+            task.run();
+            return;
+        }
+        try
+        {
+            threadPoolExecutor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            logger.warn("Failed to queue link changes for the authority bridge table, it will be rebuilt: " + e.getMessage());
+            synchronized (queuedLinkChanges)
+            {
+                queuedLinkChanges.remove(tenantId);
+            }
+            refreshInNewTransaction(tenantId);
+        }
+    }
+
+    /**
+     * Apply the queued link changes for a tenant until there are none left.  Each pass applies everything queued
+     * so far to a copy of the live table and puts the copy live, so readers never see a partly updated table and
+     * are only locked out while the copy is swapped in.  If the changes cannot be applied the table is rebuilt.
+     */
+    private void applyQueuedLinkChanges(String tenantId)
+    {
+        boolean applied = false;
+        try
+        {
+            while (true)
+            {
+                BridgeTable<String> liveTable;
+                liveLock.readLock().lock();
+                try
+                {
+                    liveTable = live.get(tenantId);
+                }
+                finally
+                {
+                    liveLock.readLock().unlock();
+                }
+
+                List<LinkChange> linkChanges = new ArrayList<LinkChange>();
+                synchronized (pendingBuilds)
+                {
+                    linkChanges.addAll(removeLiveBuildLinkChanges(tenantId, liveTable));
+                    synchronized (queuedLinkChanges)
+                    {
+                        List<LinkChange> queued = queuedLinkChanges.get(tenantId);
+                        if (queued.isEmpty() && linkChanges.isEmpty())
+                        {
+                            queuedLinkChanges.remove(tenantId);
+                            applied = true;
+                            return;
+                        }
+                        linkChanges.addAll(queued);
+                        queued.clear();
+                    }
+                }
+                // If nothing is cached yet the first build will read the changes from the database
+                if (!(liveTable instanceof AuthorityBridgeTable))
+                {
+                    continue;
+                }
+
+                AuthorityBridgeTable copy = ((AuthorityBridgeTable) liveTable).copy();
+                for (LinkChange linkChange : linkChanges)
+                {
+                    applyLinkChange(copy, linkChange);
+                }
+
+                boolean swapped;
+                liveLock.writeLock().lock();
+                try
+                {
+                    swapped = (live.get(tenantId) == liveTable);
+                    if (swapped)
+                    {
+                        live.put(tenantId, copy);
+                    }
+                }
+                finally
+                {
+                    liveLock.writeLock().unlock();
+                }
+                if (!swapped)
+                {
+                    // A rebuilt table has been put live in the meantime, so apply the changes to that
+                    synchronized (queuedLinkChanges)
+                    {
+                        queuedLinkChanges.get(tenantId).addAll(0, linkChanges);
+                    }
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // e.g. a cycle - a full build will detect and fix it
+            logger.warn("Failed to apply link changes to the authority bridge table, it will be rebuilt: " + e.getMessage());
+        }
+        finally
+        {
+            if (!applied)
+            {
+                synchronized (queuedLinkChanges)
+                {
+                    queuedLinkChanges.remove(tenantId);
+                }
+                refreshInNewTransaction(tenantId);
+            }
+        }
+    }
+
+    /**
+     * If the table of a pending build is the live table, stop tracking that build and any earlier ones.
+     * The caller must hold the lock on the pending builds.
+     * 
+     * @return          the link changes committed since the live build started, which it may have missed
+     */
+    private List<LinkChange> removeLiveBuildLinkChanges(String tenantId, BridgeTable<String> liveTable)
+    {
+        List<LinkChange> linkChanges = Collections.emptyList();
+        List<PendingBuild> builds = pendingBuilds.get(tenantId);
+        if (builds == null)
+        {
+            return linkChanges;
+        }
+        for (int i = builds.size() - 1; i >= 0; i--)
+        {
+            PendingBuild build = builds.get(i);
+            if (build.bridgeTable != null && build.bridgeTable == liveTable)
+            {
+                linkChanges = build.linkChanges;
+                builds.subList(0, i + 1).clear();
+                break;
+            }
+        }
+        if (builds.isEmpty())
+        {
+            pendingBuilds.remove(tenantId);
+        }
+        return linkChanges;
+    }
+
+    private void refreshInNewTransaction(final String tenantId)
+    {
+        retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                refresh(tenantId);
+                return null;
+            }
+        }, true, true);
+    }
+
+    /**
+     * Apply a link change; this is idempotent so that a change can be safely replayed on a table that already has it.
+     */
+    private void applyLinkChange(BridgeTable<String> bridgeTable, LinkChange linkChange)
+    {
+        boolean linked = bridgeTable.getAncestors(linkChange.childName, 1).contains(linkChange.parentName);
+        if (linkChange.add && !linked)
+        {
+            bridgeTable.addLink(linkChange.parentName, linkChange.childName);
+        }
+        else if (!linkChange.add && linked)
+        {
+            bridgeTable.removeLink(linkChange.parentName, linkChange.childName);
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Applied " + linkChange + " to the authority bridge table");
+        }
+    }
+
     @Override
     protected BridgeTable<String> buildCache(final String tenantId)
     {
-        return AuthenticationUtil.runAs(new RunAsWork<BridgeTable<String>>()
+        long buildStartTime = System.currentTimeMillis();
+        PendingBuild build = new PendingBuild();
+        synchronized (pendingBuilds)
+        {
+            List<PendingBuild> builds = pendingBuilds.get(tenantId);
+            if (builds == null)
+            {
+                builds = new ArrayList<PendingBuild>(2);
+                pendingBuilds.put(tenantId, builds);
+            }
+            builds.add(build);
+        }
+        AuthorityBridgeTable bridgeTable = null;
+        boolean replayed = true;
+        try
         {
-            public BridgeTable<String> doWork() throws Exception
+            bridgeTable = doBuildCacheAsSystem(tenantId);
+        }
+        finally
+        {
+            synchronized (pendingBuilds)
             {
-                return retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<BridgeTable<String>>()
+                if (bridgeTable == null)
+                {
+                    List<PendingBuild> builds = pendingBuilds.get(tenantId);
+                    if (builds != null)
+                    {
+                        builds.remove(build);
+                        if (builds.isEmpty())
+                        {
+                            pendingBuilds.remove(tenantId);
+                        }
+                    }
+                }
+                else
+                {
+                    // The build may or may not have seen changes committed while it was running.  Changes committed
+                    // from now until the table is live are replayed on it then.
+                    try
+                    {
+                        for (LinkChange linkChange : build.linkChanges)
+                        {
+                            applyLinkChange(bridgeTable, linkChange);
+                        }
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.warn("Failed to apply link changes to the authority bridge table, it will be rebuilt: " + e.getMessage());
+                        replayed = false;
+                    }
+                    build.linkChanges.clear();
+                    build.bridgeTable = bridgeTable;
+                }
+            }
+        }
+        if (!replayed)
+        {
+            refreshInNewTransaction(tenantId);
+        }
+        lastBuildTimes.put(tenantId, buildStartTime);
+        return bridgeTable;
+    }
+
+    private AuthorityBridgeTable doBuildCacheAsSystem(final String tenantId)
+    {
+        return AuthenticationUtil.runAs(new RunAsWork<AuthorityBridgeTable>()
+        {
+            public AuthorityBridgeTable doWork() throws Exception
+            {
+                return retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<AuthorityBridgeTable>()
                 {
                     @Override
-                    public BridgeTable<String> execute() throws Throwable
+                    public AuthorityBridgeTable execute() throws Throwable
                     {
                         return doBuildCache(tenantId);
                     }
@@ -103,10 +593,10 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractM
         }, tenantAdminService.getDomainUser(AuthenticationUtil.getSystemUserName(), tenantId));
     }
 
-    private BridgeTable<String> doBuildCache(String tenantId)
+    private AuthorityBridgeTable doBuildCache(String tenantId)
     {
         List<AuthorityBridgeLink> links = authorityBridgeDAO.getAuthorityBridgeLinks();
-        BridgeTable<String> bridgeTable = new BridgeTable<String>();
+        AuthorityBridgeTable bridgeTable = new AuthorityBridgeTable();
         try
         {
             for (AuthorityBridgeLink link : links)
@@ -237,4 +727,141 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractM
         PropertyCheck.mandatory(this, "authorityDAO", authorityDAO);
         super.afterPropertiesSet();
     }
+
+    /**
+     * Queues the link changes of a transaction to be applied to the cached tables once it has committed and
+     * sends them to the other cluster members
+     */
+    private class LinkChangesTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            List<LinkChange> linkChanges = TransactionalResourceHelper.getList(KEY_PENDING_LINK_CHANGES);
+            Map<String, ArrayList<LinkChange>> linkChangesByTenant = new LinkedHashMap<String, ArrayList<LinkChange>>();
+            for (LinkChange linkChange : linkChanges)
+            {
+                ArrayList<LinkChange> tenantLinkChanges = linkChangesByTenant.get(linkChange.tenantId);
+                if (tenantLinkChanges == null)
+                {
+                    tenantLinkChanges = new ArrayList<LinkChange>();
+                    linkChangesByTenant.put(linkChange.tenantId, tenantLinkChanges);
+                }
+                tenantLinkChanges.add(linkChange);
+            }
+            linkChanges.clear();
+            for (Map.Entry<String, ArrayList<LinkChange>> entry : linkChangesByTenant.entrySet())
+            {
+                queueLinkChanges(entry.getKey(), entry.getValue());
+                if (registry != null)
+                {
+                    registry.broadcastEvent(new LinkChangesEvent(getCacheId(), entry.getKey(), serverId, entry.getValue()), false);
+                }
+            }
+        }
+    }
+
+    /**
+     * A bridge table that keeps its direct links, so that it can be copied without reading them from the database
+     */
+    private static class AuthorityBridgeTable extends BridgeTable<String>
+    {
+        private final Set<Pair<String, String>> links = new HashSet<Pair<String, String>>();
+
+        @Override
+        public void addLink(String parent, String child)
+        {
+            super.addLink(parent, child);
+            links.add(new Pair<String, String>(parent, child));
+        }
+
+        @Override
+        public void removeLink(String parent, String child)
+        {
+            super.removeLink(parent, child);
+            links.remove(new Pair<String, String>(parent, child));
+        }
+
+        private AuthorityBridgeTable copy()
+        {
+            AuthorityBridgeTable copy = new AuthorityBridgeTable();
+            for (Pair<String, String> link : links)
+            {
+                copy.addLink(link.getFirst(), link.getSecond());
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * A build whose table has not yet been seen live, and the link changes committed since it started
+     */
+    private static class PendingBuild
+    {
+        private AuthorityBridgeTable bridgeTable;
+        private final List<LinkChange> linkChanges = new ArrayList<LinkChange>();
+    }
+
+    /**
+     * Link changes committed by a cluster member
+     */
+    static class LinkChangesEvent implements RefreshableCacheEvent
+    {
+        private static final long serialVersionUID = 2613564893625487309L;
+
+        private final String cacheId;
+        private final String tenantId;
+        private final String serverId;
+        private final ArrayList<LinkChange> linkChanges;
+
+        LinkChangesEvent(String cacheId, String tenantId, String serverId, ArrayList<LinkChange> linkChanges)
+        {
+            this.cacheId = cacheId;
+            this.tenantId = tenantId;
+            this.serverId = serverId;
+            this.linkChanges = linkChanges;
+        }
+
+        @Override
+        public String getCacheId()
+        {
+            return cacheId;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return tenantId;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "LinkChangesEvent [cacheId=" + cacheId + ", tenantId=" + tenantId + ", linkChanges=" + linkChanges + "]";
+        }
+    }
+
+    static class LinkChange implements Serializable
+    {
+        private static final long serialVersionUID = -4216853725931683514L;
+
+        private final String tenantId;
+        private final String parentName;
+        private final String childName;
+        private final boolean add;
+
+        LinkChange(String tenantId, String parentName, String childName, boolean add)
+        {
+            this.tenantId = tenantId;
+            this.parentName = parentName;
+            this.childName = childName;
+            this.add = add;
+        }
+
+        @Override
+        public String toString()
+        {
+            return (add ? "add" : "remove") + " link from '" + parentName + "' to '" + childName + "' (tenant '" + tenantId + "')";
+        }
+    }
 }
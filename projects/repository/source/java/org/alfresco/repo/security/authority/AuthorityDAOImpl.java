@@ -319,6 +319,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
     public void addAuthority(Collection<String> parentNames, String childName)
     {
         Set<NodeRef> parentRefs = new HashSet<NodeRef>(parentNames.size() * 2);
+        List<String> parentAuthorityNames = new ArrayList<String>(parentNames.size());
         AuthorityType authorityType = AuthorityType.getAuthorityType(childName);
         boolean isUser = authorityType.equals(AuthorityType.USER);
         boolean notUserOrGroup = !isUser && !authorityType.equals(AuthorityType.GROUP);
@@ -337,7 +338,10 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
                         + " may not be added to other authorities");
             }
             childAuthorityCache.remove(parentRef);
-            parentRefs.add(parentRef);
+            if (parentRefs.add(parentRef) && !isUser)
+            {
+                parentAuthorityNames.add((String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME));
+            }
         }
         NodeRef childRef = getAuthorityOrNull(childName);
 
@@ -361,7 +365,12 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         else
         {
             userAuthorityCache.clear();
-            authorityBridgeTableCache.refresh();
+            // Update the bridge table incrementally using the names as held by the bridge table query
+            String childAuthorityName = (String) nodeService.getProperty(childRef, ContentModel.PROP_AUTHORITY_NAME);
+            for (String parentAuthorityName : parentAuthorityNames)
+            {
+                authorityBridgeTableCache.addLink(parentAuthorityName, childAuthorityName);
+            }
         }
     }
 
@@ -799,7 +808,9 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
             userAuthorityCache.clear();
             if (cacheRefresh)
             {
-                authorityBridgeTableCache.refresh();
+                authorityBridgeTableCache.removeLink(
+                        (String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME),
+                        (String) nodeService.getProperty(childRef, ContentModel.PROP_AUTHORITY_NAME));
             }
         }
     }
@@ -845,8 +845,14 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
                 properties.put(ContentModel.PROP_USERNAME, realUserName);
             }
         }
-        Map<QName, Serializable> update = nodeService.getProperties(personNode);
+        Map<QName, Serializable> existing = nodeService.getProperties(personNode);
+        Map<QName, Serializable> update = new HashMap<QName, Serializable>(existing);
         update.putAll(properties);
+        if (update.equals(existing))
+        {
+            // Nothing has changed e.g. a full sync of an unmodified user
+            return;
+        }
 
         nodeService.setProperties(personNode, update);
     }
@@ -1159,9 +1159,13 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                 // Account for differences if already existing
                 if (existed)
                 {
-                    // Update the display name now
-                    ChainingUserRegistrySynchronizer.this.authorityService.setAuthorityDisplayName(groupName,
-                            groupDisplayName);
+                    // Update the display name now, if it has changed
+                    if (!groupDisplayName.equals(ChainingUserRegistrySynchronizer.this.authorityService
+                            .getAuthorityDisplayName(groupName)))
+                    {
+                        ChainingUserRegistrySynchronizer.this.authorityService.setAuthorityDisplayName(groupName,
+                                groupDisplayName);
+                    }
 
                     // Work out the association differences
                     for (String child : new TreeSet<String>(getContainedAuthorities(groupName)))
@@ -49,6 +49,10 @@ public class NodeParameters
     private Set<QName> includeAspects;
     private Set<QName> excludeAspects;
     
+    // only return nodes whose id modulo shardCount is shardInstance
+    private Integer shardCount;
+    private Integer shardInstance;
+    
     public int getMaxResults()
     {
         return maxResults;
@@ -173,4 +177,24 @@ public class NodeParameters
     {
         this.excludeAspects = excludeAspects;
     }
+
+    public Integer getShardCount()
+    {
+        return shardCount;
+    }
+
+    public void setShardCount(Integer shardCount)
+    {
+        this.shardCount = shardCount;
+    }
+
+    public Integer getShardInstance()
+    {
+        return shardInstance;
+    }
+
+    public void setShardInstance(Integer shardInstance)
+    {
+        this.shardInstance = shardInstance;
+    }
 }
@@ -181,4 +181,16 @@ public interface SOLRTrackingComponent
      * This is an optional feature.
      */
     public ShardRegistry getShardRegistry();
+
+    /**
+     * Block until a transaction newer than the one given has been committed by this server
+     * or until the wait times out.  This must not be called within a transaction.
+     *
+     * @param afterTxnId                the last transaction ID known to the caller
+     * @param maxWaitMillis             the maximum time to wait
+     * @return                          the ID of the last transaction committed by this server,
+     *                                  <tt>-1</tt> if none has been seen since startup or <tt>null</tt>
+     *                                  if commit notification is not supported
+     */
+    public Long waitForTransactionCommit(Long afterTxnId, long maxWaitMillis);
 }
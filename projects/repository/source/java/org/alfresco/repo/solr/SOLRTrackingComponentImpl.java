@@ -39,6 +39,7 @@ import org.alfresco.repo.dictionary.DictionaryDAO;
 import org.alfresco.repo.domain.node.Node;
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.node.NodeDAO.ChildAssocRefQueryCallback;
+import org.alfresco.repo.domain.node.TransactionCommitNotifier;
 import org.alfresco.repo.domain.permissions.AclDAO;
 import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.domain.solr.SOLRDAO;
@@ -89,6 +90,7 @@ public class SOLRTrackingComponentImpl implements SOLRTrackingComponent
     private TypeIndexFilter typeIndexFilter;
     private AspectIndexFilter aspectIndexFilter;
     private ShardRegistry shardRegistry;
+    private TransactionCommitNotifier transactionCommitNotifier;
     
     
     @Override
@@ -171,6 +173,11 @@ public class SOLRTrackingComponentImpl implements SOLRTrackingComponent
         this.shardRegistry = shardRegistry;
     }
 
+    public void setTransactionCommitNotifier(TransactionCommitNotifier transactionCommitNotifier)
+    {
+        this.transactionCommitNotifier = transactionCommitNotifier;
+    }
+
     /**
      * Initialize
      */    
@@ -1255,4 +1262,28 @@ public class SOLRTrackingComponentImpl implements SOLRTrackingComponent
     {
         return this.shardRegistry;
     }
+
+    /* (non-Javadoc)
+     * @see org.alfresco.repo.solr.SOLRTrackingComponent#waitForTransactionCommit(java.lang.Long, long)
+     */
+    @Override
+    public Long waitForTransactionCommit(Long afterTxnId, long maxWaitMillis)
+    {
+        if (transactionCommitNotifier == null)
+        {
+            return null;
+        }
+        if (afterTxnId != null && maxWaitMillis > 0)
+        {
+            try
+            {
+                transactionCommitNotifier.waitForCommit(afterTxnId, maxWaitMillis);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return transactionCommitNotifier.getLastCommittedTxnId();
+    }
 }
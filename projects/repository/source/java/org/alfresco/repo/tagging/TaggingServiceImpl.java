@@ -32,6 +32,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,6 +43,7 @@ import org.alfresco.query.EmptyPagingResults;
 import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
 import org.alfresco.repo.audit.AuditComponent;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.coci.CheckOutCheckInServicePolicies;
 import org.alfresco.repo.copy.CopyServicePolicies;
 import org.alfresco.repo.copy.CopyServicePolicies.BeforeCopyPolicy;
@@ -60,6 +62,7 @@ import org.alfresco.repo.transaction.TransactionListener;
 import org.alfresco.service.cmr.action.Action;
 import org.alfresco.service.cmr.action.ActionService;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -111,6 +114,7 @@ public class TaggingServiceImpl implements TaggingService,
     private NamespaceService namespaceService;
     private PolicyComponent policyComponent;
     private AuditComponent auditComponent;
+    private SimpleCache<String, List<String>> tagscopeSummaryCache;
     
     /** Tag Details Delimiter */
     private static final String TAG_DETAILS_DELIMITER = "|";
@@ -195,6 +199,15 @@ public class TaggingServiceImpl implements TaggingService,
         this.auditComponent = auditComponent;
     }
     
+    /**
+     * Set the cache of tag scope summaries, keyed by the content URL of the tag scope cache.
+     * This is shared with {@link TagScopePropertyMethodInterceptor}.
+     */
+    public void setTagscopeSummaryCache(SimpleCache<String, List<String>> tagscopeSummaryCache)
+    {
+        this.tagscopeSummaryCache = tagscopeSummaryCache;
+    }
+    
     /**
      * Init method
      */
@@ -1108,10 +1121,39 @@ public class TaggingServiceImpl implements TaggingService,
     private List<TagDetails> getTagDetails(NodeRef nodeRef)
     {
         List<TagDetails> tagDetails = new ArrayList<TagDetails>(13);
+        
+        // The tag scope cache is rewritten on every update, so its content URL identifies the tag counts
+        ContentData tagScopeCache = (ContentData)this.nodeService.getProperty(nodeRef, ContentModel.PROP_TAGSCOPE_CACHE);
+        if (tagScopeCache == null || tagScopeCache.getContentUrl() == null)
+        {
+            return tagDetails;
+        }
+        String contentUrl = tagScopeCache.getContentUrl();
+        List<String> tagSummary = (tagscopeSummaryCache == null) ? null : tagscopeSummaryCache.get(contentUrl);
+        if (tagSummary != null)
+        {
+            for (String tagSummaryEntry : tagSummary)
+            {
+                int index = tagSummaryEntry.lastIndexOf('=');
+                tagDetails.add(new TagDetailsImpl(tagSummaryEntry.substring(0, index), Integer.parseInt(tagSummaryEntry.substring(index + 1))));
+            }
+            return tagDetails;
+        }
+        
         ContentReader reader = this.contentService.getReader(nodeRef, ContentModel.PROP_TAGSCOPE_CACHE);
         if (reader != null)
         {
             tagDetails = TaggingServiceImpl.readTagDetails(reader.getContentInputStream());
+            if (tagscopeSummaryCache != null)
+            {
+                // Same format as the tag scope summary property
+                tagSummary = new ArrayList<String>(tagDetails.size());
+                for (TagDetails tagDetail : tagDetails)
+                {
+                    tagSummary.add(tagDetail.getName() + "=" + tagDetail.getCount());
+                }
+                tagscopeSummaryCache.put(reader.getContentUrl(), Collections.unmodifiableList(tagSummary));
+            }
         }
         return tagDetails;
     }
@@ -1366,11 +1408,26 @@ public class TaggingServiceImpl implements TaggingService,
      * @param updates Map<String, Boolean>
      */
     private void updateTagScope(NodeRef nodeRef, Map<String, Boolean> updates)
+    {
+       Map<NodeRef, Map<String, Integer>> tagScopeChanges = new LinkedHashMap<NodeRef, Map<String, Integer>>();
+       addTagScopeChanges(nodeRef, updates, tagScopeChanges, new HashMap<NodeRef, List<NodeRef>>());
+       queueTagScopeChanges(tagScopeChanges);
+    }
+    
+    /**
+     * Rolls the tag changes for a node up into the net changes for each of its tag scopes.
+     * 
+     * @param nodeRef           the tagged node
+     * @param updates           the tag additions (<tt>true</tt>) and removals (<tt>false</tt>) for the node
+     * @param tagScopeChanges   the net tag count changes, by tag scope, to add to
+     * @param tagScopesCache    tag scopes already found for ancestor nodes
+     */
+    private void addTagScopeChanges(NodeRef nodeRef, Map<String, Boolean> updates,
+             Map<NodeRef, Map<String, Integer>> tagScopeChanges, Map<NodeRef, List<NodeRef>> tagScopesCache)
     {
        // First up, locate all the tag scopes for this node
        // (Need to do a recursive search up to the root)
-       ArrayList<NodeRef> tagScopeNodeRefs = new ArrayList<NodeRef>(3);
-       getTagScopes(nodeRef, tagScopeNodeRefs);
+       List<NodeRef> tagScopeNodeRefs = getTagScopes(nodeRef, tagScopesCache);
        
        if(tagScopeNodeRefs.size() == 0)
        {
@@ -1381,28 +1438,50 @@ public class TaggingServiceImpl implements TaggingService,
           return;
        }
        
-       // Turn from tag+yes/no into tag+1/-1
-       // (Later we may roll things up better to be tag+#/-#)
-       HashMap<String,Integer> changes = new HashMap<String, Integer>(updates.size());
-       for(String tag : updates.keySet())
+       // Turn from tag+yes/no into tag+1/-1 and sum with the other changes for each tag scope
+       for(NodeRef tagScopeNode : tagScopeNodeRefs)
+       {
+          Map<String, Integer> changes = tagScopeChanges.get(tagScopeNode);
+          if (changes == null)
+          {
+             changes = new HashMap<String, Integer>(updates.size());
+             tagScopeChanges.put(tagScopeNode, changes);
+          }
+          for(String tag : updates.keySet())
+          {
+             int val = -1;
+             if(updates.get(tag))
+                val = 1;
+             Integer count = changes.get(tag);
+             changes.put(tag, (count == null) ? val : count + val);
+          }
+       }
+    }
+    
+    /**
+     * Queues the net tag count changes for each tag scope (one audit entry per tag scope)
+     *  and triggers a single async action to apply them.
+     */
+    private void queueTagScopeChanges(Map<NodeRef, Map<String, Integer>> tagScopeChanges)
+    {
+       if (tagScopeChanges.isEmpty())
        {
-          int val = -1;
-          if(updates.get(tag))
-             val = 1;
-          changes.put(tag, val);
+          return;
        }
        
-       // Next, queue the updates for each tag scope
-       for(NodeRef tagScopeNode : tagScopeNodeRefs)
+       // Queue the updates for each tag scope
+       for(Map.Entry<NodeRef, Map<String, Integer>> entry : tagScopeChanges.entrySet())
        {
+          HashMap<String,Integer> changes = new HashMap<String, Integer>(entry.getValue());
           Map<String,Serializable> auditValues = new HashMap<String, Serializable>();
           auditValues.put(TAGGING_AUDIT_KEY_TAGS, changes);
-          auditValues.put(TAGGING_AUDIT_KEY_NODEREF, tagScopeNode.toString());
+          auditValues.put(TAGGING_AUDIT_KEY_NODEREF, entry.getKey().toString());
           auditComponent.recordAuditValues(TAGGING_AUDIT_ROOT_PATH, auditValues);
        }
+       ArrayList<NodeRef> tagScopeNodeRefs = new ArrayList<NodeRef>(tagScopeChanges.keySet());
        if(logger.isDebugEnabled())
        {
-          logger.debug("Queueing async tag scope updates to tag scopes " + tagScopeNodeRefs + " of " + changes);
+          logger.debug("Queueing async tag scope updates to tag scopes " + tagScopeNodeRefs + " of " + tagScopeChanges);
        }
        
        // Finally, trigger the action to process the updates
@@ -1412,6 +1491,47 @@ public class TaggingServiceImpl implements TaggingService,
        this.actionService.executeAction(action, null, false, true);
     }
     
+    /**
+     * Traverses up the node's primary parent to find ALL tag scopes, reusing those already
+     *  found for ancestors of other nodes.
+     * 
+     * @param nodeRef           node reference
+     * @param tagScopesCache    tag scopes by node, added to as ancestors are visited
+     * @return                  the tag scopes, nearest first
+     */
+    private List<NodeRef> getTagScopes(final NodeRef nodeRef, Map<NodeRef, List<NodeRef>> tagScopesCache)
+    {
+        List<NodeRef> tagScopes = tagScopesCache.get(nodeRef);
+        if (tagScopes != null)
+        {
+            return tagScopes;
+        }
+        
+        Pair<Boolean, NodeRef> tagScopeAndParent = AuthenticationUtil.runAs(new RunAsWork<Pair<Boolean, NodeRef>>()
+        {
+            @Override
+            public Pair<Boolean, NodeRef> doWork() throws Exception 
+            {
+                boolean isTagScope = nodeService.hasAspect(nodeRef, ContentModel.ASPECT_TAGSCOPE);
+                ChildAssociationRef assoc = nodeService.getPrimaryParent(nodeRef);
+                return new Pair<Boolean, NodeRef>(isTagScope, (assoc == null) ? null : assoc.getParentRef());
+            }
+        }, AuthenticationUtil.getSystemUserName());
+        
+        tagScopes = new ArrayList<NodeRef>(3);
+        if (tagScopeAndParent.getFirst())
+        {
+            tagScopes.add(nodeRef);
+        }
+        NodeRef parent = tagScopeAndParent.getSecond();
+        if (parent != null)
+        {
+            tagScopes.addAll(getTagScopes(parent, tagScopesCache));
+        }
+        tagScopesCache.put(nodeRef, tagScopes);
+        return tagScopes;
+    }
+    
     /**
      * Records the fact that the given tag for the given node will need to
      *  be added or removed from its parent tags scopes.
@@ -1484,6 +1604,10 @@ public class TaggingServiceImpl implements TaggingService,
         Map<NodeRef, Map<String, Boolean>> updates = (Map<NodeRef, Map<String, Boolean>>)AlfrescoTransactionSupport.getResource(TAG_UPDATES);
         if (updates != null)
         {
+            // Roll all the changes in this transaction up into their tag scopes, so that each tag scope
+            // gets a single queued update, however many of the nodes beneath it were tagged
+            Map<NodeRef, Map<String, Integer>> tagScopeChanges = new LinkedHashMap<NodeRef, Map<String, Integer>>();
+            Map<NodeRef, List<NodeRef>> tagScopesCache = new HashMap<NodeRef, List<NodeRef>>();
             for (NodeRef nodeRef : updates.keySet())
             {
                 Map<String, Boolean> tagUpdates = updates.get(nodeRef);
@@ -1494,9 +1618,10 @@ public class TaggingServiceImpl implements TaggingService,
                     {
                         continue;
                     }
-                    updateTagScope(nodeRef, tagUpdates);
+                    addTagScopeChanges(nodeRef, tagUpdates, tagScopeChanges, tagScopesCache);
                 }
             }
+            queueTagScopeChanges(tagScopeChanges);
         }
     }
 
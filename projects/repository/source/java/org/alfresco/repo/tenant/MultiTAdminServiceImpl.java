@@ -25,6 +25,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import javax.transaction.UserTransaction;
@@ -48,6 +52,8 @@ import org.alfresco.repo.security.authentication.AuthenticationException;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.tenant.TenantUtil.TenantRunAsWork;
 import org.alfresco.repo.thumbnail.ThumbnailRegistry;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.repo.usage.UserUsageTrackingComponent;
 import org.alfresco.repo.workflow.WorkflowDeployer;
@@ -60,6 +66,7 @@ import org.alfresco.service.cmr.workflow.WorkflowDefinition;
 import org.alfresco.service.cmr.workflow.WorkflowService;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.TraceableThreadFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.BeansException;
@@ -101,6 +108,7 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
     private RepositoryExporterService repositoryExporterService;
     private ModuleService moduleService;
     private List<WorkflowDeployer> workflowDeployers = new ArrayList<WorkflowDeployer>();
+    private int tenantStartupThreads = 1;
     
     private String baseAdminUsername = null; 
 
@@ -233,6 +241,15 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
         this.contentRootContainerPath = contentRootContainerPath;
     }
     
+    /**
+     * Sets the number of threads used to start the enabled tenants on server startup. The threads
+     * only exist while the tenants are being started. If 1 or less, tenants are started one at a time.
+     */
+    public void setTenantStartupThreads(int tenantStartupThreads)
+    {
+        this.tenantStartupThreads = tenantStartupThreads;
+    }
+    
     public static final String PROTOCOL_STORE_USER = "user";
     public static final String PROTOCOL_STORE_WORKSPACE = "workspace";
     public static final String PROTOCOL_STORE_SYSTEM = "system";
@@ -283,6 +300,8 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
     @Override
     public void startTenants()
     {
+        long start = System.currentTimeMillis();
+        
         AuthenticationUtil.setMtEnabled(true);
         
         // initialise the tenant admin service and status of tenants (using attribute service)
@@ -298,6 +317,11 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
             register(tenantDeployer(tenantFileContentStore), 0);
         }
         
+        // tenants can only be started in their own transactions if the caller isn't holding one
+        // (eg. a patch) whose uncommitted changes they may depend on
+        boolean startInParallel = (tenantStartupThreads > 1) &&
+                (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE);
+        
         UserTransaction userTransaction = transactionService.getUserTransaction();
         
         try
@@ -310,6 +334,7 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
             
             int enabledCount = 0;
             int disabledCount = 0;
+            List<String> tenantsToStart = new ArrayList<String>(tenants.size());
             
             for (Tenant tenant : tenants)
             {
@@ -323,8 +348,16 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
                 
                 if (tenant.isEnabled())
                 {
-                    // notify tenant deployers registered so far ...
-                    notifyAfterEnableTenant(tenantDomain);
+                    if (startInParallel)
+                    {
+                        // started below, once all tenants have been checked
+                        tenantsToStart.add(tenantDomain);
+                    }
+                    else
+                    {
+                        // notify tenant deployers registered so far ...
+                        notifyAfterEnableTenant(tenantDomain);
+                    }
                     enabledCount++;
                 }
                 else
@@ -340,20 +373,26 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
             
             userTransaction.commit();
             
+            if (tenantsToStart.size() > 0)
+            {
+                notifyAfterEnableTenants(tenantsToStart);
+            }
+            
             if ((enabledCount+disabledCount) == 0)
             {
                 AuthenticationUtil.setMtEnabled(false); // explicitly disable if there are no tenants
             }
             
+            long duration = System.currentTimeMillis() - start;
             if (logger.isInfoEnabled() && ((enabledCount+disabledCount) > 0))
             {
-                logger.info(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants",
-                                          enabledCount, disabledCount));
+                logger.info(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants in %d ms",
+                                          enabledCount, disabledCount, duration));
             }
             else if (logger.isDebugEnabled())
             {
-                logger.debug(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants",
-                             enabledCount, disabledCount));
+                logger.debug(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants in %d ms",
+                             enabledCount, disabledCount, duration));
             }
         }
         catch(Throwable e)
@@ -368,6 +407,87 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
         }
     }
     
+    /**
+     * Call all {@link TenantDeployer#onEnableTenant() TenantDeployers} for each of the given tenants,
+     * using a tenant startup executor which is shut down afterwards. Each tenant is started in its own
+     * transaction and this method returns once all of them have been started. A tenant which fails to
+     * start doesn't stop the others; the failures are reported once they have all been tried.
+     */
+    private void notifyAfterEnableTenants(List<String> tenantDomains)
+    {
+        ExecutorService executor = createTenantStartupExecutor(Math.min(tenantStartupThreads, tenantDomains.size()));
+        try
+        {
+            List<Future<?>> results = new ArrayList<Future<?>>(tenantDomains.size());
+            for (final String tenantDomain : tenantDomains)
+            {
+                results.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        RetryingTransactionCallback<Object> enableCallback = new RetryingTransactionCallback<Object>()
+                        {
+                            public Object execute() throws Throwable
+                            {
+                                notifyAfterEnableTenant(tenantDomain);
+                                return null;
+                            }
+                        };
+                        transactionService.getRetryingTransactionHelper().doInTransaction(enableCallback, transactionService.isReadOnly(), true);
+                    }
+                }));
+            }
+            
+            List<String> failedTenants = new ArrayList<String>();
+            Throwable failure = null;
+            for (int i = 0; i < results.size(); i++)
+            {
+                try
+                {
+                    results.get(i).get();
+                }
+                catch (ExecutionException e)
+                {
+                    String tenantDomain = tenantDomains.get(i);
+                    logger.error("Failed to start tenant: " + tenantDomain, e.getCause());
+                    failedTenants.add(tenantDomain);
+                    if (failure == null)
+                    {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            
+            if (failure != null)
+            {
+                throw new AlfrescoRuntimeException("Failed to start tenants: " + failedTenants, failure);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AlfrescoRuntimeException("Interrupted while starting tenants", e);
+        }
+        finally
+        {
+            // the threads are only needed during startup
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Creates the executor used to start the enabled tenants in parallel.
+     * 
+     * @param threads the number of threads to use
+     */
+    protected ExecutorService createTenantStartupExecutor(int threads)
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setNamePrefix("tenantStartup");
+        threadFactory.setThreadDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+    
     @Override
     public void stopTenants()
     {
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.alfresco.repo.transfer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.alfresco.repo.node.NodeBulkLoader;
+import org.alfresco.repo.transfer.manifest.TransferManifestDeletedNode;
+import org.alfresco.repo.transfer.manifest.TransferManifestHeader;
+import org.alfresco.repo.transfer.manifest.TransferManifestNode;
+import org.alfresco.repo.transfer.manifest.TransferManifestNormalNode;
+import org.alfresco.repo.transfer.manifest.TransferManifestProcessor;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+
+/**
+ * Manifest processor that reads ahead a batch of manifest nodes and bulk loads the corresponding
+ * nodes, and their parents, into the node cache before handing the batch to the delegate processor.
+ * The delegate then resolves and updates each node without a separate database round trip per node.
+ * <p/>
+ * Nodes are passed to the delegate in manifest order.
+ *
+ * @author Alfresco
+ * @since 5.1
+ */
+public class BulkLoadingManifestProcessor implements TransferManifestProcessor
+{
+    private final TransferManifestProcessor delegate;
+    private final NodeBulkLoader bulkLoader;
+    private final int batchSize;
+    private final List<TransferManifestNode> batch;
+
+    /**
+     * @param delegate          the processor that applies the manifest
+     * @param bulkLoader        used to pre-load each batch of nodes
+     * @param batchSize         the number of manifest nodes to read ahead
+     */
+    public BulkLoadingManifestProcessor(TransferManifestProcessor delegate, NodeBulkLoader bulkLoader, int batchSize)
+    {
+        this.delegate = delegate;
+        this.bulkLoader = bulkLoader;
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<TransferManifestNode>(batchSize);
+    }
+
+    public void startTransferManifest()
+    {
+        delegate.startTransferManifest();
+    }
+
+    public void processTransferManifiestHeader(TransferManifestHeader header)
+    {
+        flush();
+        delegate.processTransferManifiestHeader(header);
+    }
+
+    public void processTransferManifestNode(TransferManifestNormalNode node)
+    {
+        add(node);
+    }
+
+    public void processTransferManifestNode(TransferManifestDeletedNode node)
+    {
+        add(node);
+    }
+
+    public void endTransferManifest()
+    {
+        flush();
+        delegate.endTransferManifest();
+    }
+
+    private void add(TransferManifestNode node)
+    {
+        batch.add(node);
+        if (batch.size() >= batchSize)
+        {
+            flush();
+        }
+    }
+
+    private void flush()
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        Set<NodeRef> nodeRefs = new LinkedHashSet<NodeRef>(batch.size() * 2);
+        for (TransferManifestNode node : batch)
+        {
+            nodeRefs.add(node.getNodeRef());
+            ChildAssociationRef primaryParentAssoc = node.getPrimaryParentAssoc();
+            if (primaryParentAssoc != null && primaryParentAssoc.getParentRef() != null)
+            {
+                nodeRefs.add(primaryParentAssoc.getParentRef());
+            }
+        }
+        bulkLoader.cacheNodes(new ArrayList<NodeRef>(nodeRefs));
+
+        for (TransferManifestNode node : batch)
+        {
+            if (node instanceof TransferManifestNormalNode)
+            {
+                delegate.processTransferManifestNode((TransferManifestNormalNode) node);
+            }
+            else
+            {
+                delegate.processTransferManifestNode((TransferManifestDeletedNode) node);
+            }
+        }
+        batch.clear();
+    }
+}
@@ -98,6 +98,7 @@ public class HttpClientTransmitterImpl implements TransferTransmitter
 
     private NodeService nodeService;
     private boolean isAuthenticationPreemptive = false;
+    private int maxConnectionsPerHost = 0;
 
     public HttpClientTransmitterImpl()
     {
@@ -115,6 +116,10 @@ public class HttpClientTransmitterImpl implements TransferTransmitter
     {
         PropertyCheck.mandatory(this, "contentService", contentService);
         httpClient.getParams().setAuthenticationPreemptive(isAuthenticationPreemptive);
+        if (maxConnectionsPerHost > 0)
+        {
+            httpClient.getHttpConnectionManager().getParams().setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        }
     }
 
     /**
@@ -146,6 +151,16 @@ public class HttpClientTransmitterImpl implements TransferTransmitter
     {
         this.isAuthenticationPreemptive = isAuthenticationPreemptive;
     }
+
+    /**
+     * The maximum number of connections to each target, which limits how many content chunks
+     * can be sent at once.  Zero leaves the connection manager's default.
+     * @param maxConnectionsPerHost int
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost)
+    {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
     
     /* (non-Javadoc)
      * @see org.alfresco.repo.transfer.Transmitter#verifyTarget(org.alfresco.service.cmr.transfer.TransferTarget)
@@ -22,6 +22,7 @@ package org.alfresco.repo.transfer;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -48,6 +49,7 @@ import org.alfresco.repo.copy.CopyServicePolicies;
 import org.alfresco.repo.copy.DefaultCopyBehaviourCallback;
 import org.alfresco.repo.lock.JobLockService;
 import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.node.NodeBulkLoader;
 import org.alfresco.repo.node.NodeServicePolicies;
 import org.alfresco.repo.policy.Behaviour.NotificationFrequency;
 import org.alfresco.repo.policy.BehaviourFilter;
@@ -173,8 +175,12 @@ public class RepoTransferReceiverImpl implements TransferReceiver,
     private static final String MSG_INCOMPATIBLE_VERSIONS = "transfer_service.incompatible_versions";
 
     private static final String SNAPSHOT_FILE_NAME = "snapshot.xml";
+    private static final String PART_FILE_SUFFIX = ".part";
+    // The number of manifest nodes whose target nodes are pre-loaded together during commit
+    private static final int COMMIT_PRELOAD_BATCH_SIZE = 256;
 
     private NodeService nodeService;
+    private NodeBulkLoader nodeBulkLoader;
     private SearchService searchService;
     private TransactionService transactionService;
     private String transferLockFolderPath;
@@ -811,10 +817,29 @@ public class RepoTransferReceiverImpl implements TransferReceiver,
         Lock lock = checkLock(transferId);
         try
         {
-            File stagedFile = new File(getStagingFolder(transferId), contentFileId);
-            if (stagedFile.createNewFile())
+            File stagingFolder = getStagingFolder(transferId);
+            File stagedFile = new File(stagingFolder, contentFileId);
+            if (!stagedFile.exists())
             {
-                FileCopyUtils.copy(contentStream, new BufferedOutputStream(new FileOutputStream(stagedFile)));
+                // Stage under a temporary name so that an interrupted upload, which the sender will
+                // retry, never leaves a partial file behind.  Parts may also arrive concurrently.
+                File partFile = File.createTempFile(contentFileId, PART_FILE_SUFFIX, stagingFolder);
+                try
+                {
+                    FileCopyUtils.copy(contentStream, new BufferedOutputStream(new FileOutputStream(partFile)));
+                    if (!partFile.renameTo(stagedFile) && !stagedFile.exists())
+                    {
+                        throw new IOException("Failed to rename " + partFile + " to " + stagedFile);
+                    }
+                }
+                finally
+                {
+                    // Left behind if the copy failed or another request has already staged the same content
+                    if (partFile.exists())
+                    {
+                        partFile.delete();
+                    }
+                }
             }
         }
         catch (Exception ex)
@@ -912,7 +937,12 @@ public class RepoTransferReceiverImpl implements TransferReceiver,
                         // We parse the file as many times as we have processors
                         for (TransferManifestProcessor processor : commitProcessors)
                         {
-                            XMLTransferManifestReader reader = new XMLTransferManifestReader(processor);
+                            TransferManifestProcessor readerProcessor = processor;
+                            if (nodeBulkLoader != null)
+                            {
+                                readerProcessor = new BulkLoadingManifestProcessor(processor, nodeBulkLoader, COMMIT_PRELOAD_BATCH_SIZE);
+                            }
+                            XMLTransferManifestReader reader = new XMLTransferManifestReader(readerProcessor);
 
                             //behaviourFilter.disableBehaviour(ContentModel.ASPECT_AUDITABLE);
                             behaviourFilter.disableBehaviour();
@@ -1210,6 +1240,14 @@ public class RepoTransferReceiverImpl implements TransferReceiver,
         this.policyComponent = policyComponent;
     }
 
+    /**
+     * @param nodeBulkLoader used to pre-load the nodes referenced by the manifest during commit
+     */
+    public void setNodeBulkLoader(NodeBulkLoader nodeBulkLoader)
+    {
+        this.nodeBulkLoader = nodeBulkLoader;
+    }
+
     public PolicyComponent getPolicyComponent()
     {
         return policyComponent;
@@ -40,6 +40,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.transaction.UserTransaction;
 import javax.xml.parsers.ParserConfigurationException;
@@ -49,6 +54,8 @@ import javax.xml.parsers.SAXParserFactory;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.repo.transfer.manifest.TransferManifestDeletedNode;
 import org.alfresco.repo.transfer.manifest.TransferManifestHeader;
@@ -130,6 +137,9 @@ public class TransferServiceImpl2 implements TransferService2
     private static final String FILE_DIRECTORY = "transfer";
     private static final String FILE_SUFFIX = ".xml";
     
+    // The maximum number of content chunks queued for sending at any time
+    private static final int MAX_PENDING_CHUNKS = 16;
+    
     private enum ClientTransferState { Begin, Prepare, Commit, Poll, Cancel, Finished, Exit; }; 
     
     /**
@@ -169,6 +179,16 @@ public class TransferServiceImpl2 implements TransferService2
      */
     private long commitPollDelay = 2000;
     
+    /**
+     * Sends content chunks in parallel, if set
+     */
+    private ExecutorService contentSendExecutor;
+    
+    /**
+     * How many times a failed content chunk is re-sent before the transfer fails
+     */
+    private int contentSendRetryCount = 2;
+    
     /**
      * Create a new in memory transfer target
      */
@@ -1035,6 +1055,7 @@ public class TransferServiceImpl2 implements TransferService2
          * Step 1: Create a chunker and wire it up to the transmitter
          */
         final ContentChunker chunker = new ContentChunkerImpl();
+        final ContentChunkSender chunkSender = new ContentChunkSender(transfer);
         final Long removeNodesRange = Long.valueOf(definition.getNodesToRemove() != null ? definition.getNodesToRemove().size() : 0);
         final Long nodesRange = Long.valueOf( definition.getNodes() != null ? definition.getNodes().size() : 0);
 
@@ -1051,7 +1072,8 @@ public class TransferServiceImpl2 implements TransferService2
                         counter++;
                         eventProcessor.sendContent(file, fRange, counter);
                     }
-                    transmitter.sendContent(transfer, data);
+                    // The chunker clears the set once the chunk has been processed
+                    chunkSender.send(new HashSet<ContentData>(data));
                 }
             }
         );
@@ -1106,8 +1128,150 @@ public class TransferServiceImpl2 implements TransferService2
         /**
          * Step 4: start the magic - Give the manifest file to the manifest reader
          */
-        parser.parse(manifest, reader);
-        chunker.flush();
+        long start = System.currentTimeMillis();
+        try
+        {
+            parser.parse(manifest, reader);
+            chunker.flush();
+            chunkSender.waitForAll();
+        }
+        finally
+        {
+            chunkSender.cancel();
+        }
+        
+        if (logger.isDebugEnabled())
+        {
+            long bytes = chunkSender.getBytesSent();
+            long millis = Math.max(System.currentTimeMillis() - start, 1L);
+            logger.debug("sent " + bytes + " bytes of content in " + millis + " ms (" + (bytes * 1000L / millis / 1024L) + " KB/s)");
+        }
+    }
+    
+    /**
+     * Send a chunk of content to the target, re-sending it if it fails.  The receiver
+     * stages each part atomically, so a chunk may safely be sent more than once.
+     */
+    private void sendChunk(Transfer transfer, Set<ContentData> data)
+    {
+        for (int retry = 0; ; retry++)
+        {
+            try
+            {
+                transmitter.sendContent(transfer, data);
+                return;
+            }
+            catch (TransferException e)
+            {
+                if (retry >= contentSendRetryCount)
+                {
+                    throw e;
+                }
+                logger.debug("failed to send content chunk, retrying", e);
+            }
+        }
+    }
+    
+    /**
+     * Sends the content chunks of a single transfer, using the content executor, if there is one,
+     * to send several chunks at once.
+     */
+    private class ContentChunkSender
+    {
+        private final Transfer transfer;
+        private final String runAsUser;
+        private final LinkedList<Future<Void>> pending = new LinkedList<Future<Void>>();
+        private final AtomicLong bytesSent = new AtomicLong();
+        
+        private ContentChunkSender(Transfer transfer)
+        {
+            this.transfer = transfer;
+            this.runAsUser = AuthenticationUtil.getRunAsUser();
+        }
+        
+        private void send(final Set<ContentData> data)
+        {
+            if (contentSendExecutor == null)
+            {
+                sendAndCount(data);
+                return;
+            }
+            
+            while (pending.size() >= MAX_PENDING_CHUNKS)
+            {
+                waitFor(pending.removeFirst());
+            }
+            pending.add(contentSendExecutor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    RunAsWork<Void> work = new RunAsWork<Void>()
+                    {
+                        public Void doWork() throws Exception
+                        {
+                            sendAndCount(data);
+                            return null;
+                        }
+                    };
+                    return (runAsUser == null) ? work.doWork() : AuthenticationUtil.runAs(work, runAsUser);
+                }
+            }));
+        }
+        
+        private void sendAndCount(Set<ContentData> data)
+        {
+            sendChunk(transfer, data);
+            for (ContentData content : data)
+            {
+                bytesSent.addAndGet(content.getSize());
+            }
+        }
+        
+        private void waitForAll()
+        {
+            while (!pending.isEmpty())
+            {
+                waitFor(pending.removeFirst());
+            }
+        }
+        
+        private void waitFor(Future<Void> chunk)
+        {
+            try
+            {
+                chunk.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new TransferException("Interrupted while sending content", e);
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new TransferException("Failed to send content", e.getCause());
+            }
+        }
+        
+        /**
+         * Abandon any chunks still to be sent, e.g. because the transfer has failed
+         */
+        private void cancel()
+        {
+            for (Future<Void> chunk : pending)
+            {
+                chunk.cancel(true);
+            }
+            pending.clear();
+        }
+        
+        private long getBytesSent()
+        {
+            return bytesSent.get();
+        }
     }
 
     /**
@@ -1422,6 +1586,16 @@ public class TransferServiceImpl2 implements TransferService2
         this.commitPollDelay = commitPollDelay;
     }
 
+    public void setContentSendExecutor(ExecutorService contentSendExecutor)
+    {
+        this.contentSendExecutor = contentSendExecutor;
+    }
+
+    public void setContentSendRetryCount(int contentSendRetryCount)
+    {
+        this.contentSendRetryCount = contentSendRetryCount;
+    }
+
     public void setDescriptorService(DescriptorService descriptorService)
     {
         this.descriptorService = descriptorService;
@@ -19,7 +19,9 @@
 package org.alfresco.repo.usage;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +33,7 @@ import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.security.authentication.AuthenticationContext;
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -66,6 +69,15 @@ public class ContentUsageImpl implements ContentUsageService,
     /** Key to the created nodes */
     private static final String KEY_CREATED_NODES = "contentUsage.createdNodes";
     
+    /** Key to the usage deltas accumulated by the current transaction */
+    private static final String KEY_PENDING_DELTAS = "contentUsage.pendingDeltas";
+    
+    /** Upper bound on the number of users whose usage is cached for quota checks */
+    private static final int MAX_CACHED_USAGES = 10000;
+    
+    /** Number of counters used to detect usage changes committed while a usage is being read */
+    private static final int USAGE_CHANGE_STRIPES = 64;
+    
     private NodeService nodeService;
     private PersonService personService;
     private PolicyComponent policyComponent;
@@ -79,6 +91,22 @@ public class ContentUsageImpl implements ContentUsageService,
     
     private Set<QName> excludedTypes = new HashSet<QName>();
     
+    private long quotaCheckMaxStalenessMillis = 0;
+    
+    /** Committed usage, by person, for quota checks; least recently used entries are evicted first */
+    @SuppressWarnings("serial")
+    private final Map<NodeRef, CachedUsage> cachedUsages = new LinkedHashMap<NodeRef, CachedUsage>(256, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<NodeRef, CachedUsage> eldest)
+        {
+            return size() > MAX_CACHED_USAGES;
+        }
+    };
+    
+    /** Counts of the usage changes committed by this server, guarded by <tt>cachedUsages</tt> */
+    private final long[] usageChangeCounts = new long[USAGE_CHANGE_STRIPES];
+    
     public void setNodeService(NodeService nodeService)
     {
         this.nodeService = nodeService;
@@ -124,6 +152,19 @@ public class ContentUsageImpl implements ContentUsageService,
         return this.stores;
     }
     
+    /**
+     * Set how old the usage read for a quota check is allowed to be.  Usage changes committed by
+     * this server drop the cached value, so only changes committed by other cluster members can be
+     * missed for up to this long.
+     * 
+     * @param quotaCheckMaxStalenessMillis      the maximum age of the cached usage or <tt>0</tt> to
+     *                                          always read the current usage
+     */
+    public void setQuotaCheckMaxStalenessMillis(long quotaCheckMaxStalenessMillis)
+    {
+        this.quotaCheckMaxStalenessMillis = quotaCheckMaxStalenessMillis;
+    }
+    
     public void setExcludedTypes(List<String> excludedTypes)
     {
         for (String exType : excludedTypes)
@@ -446,27 +487,30 @@ public class ContentUsageImpl implements ContentUsageService,
             // increment usage - add positive delta
             if (logger.isDebugEnabled()) logger.debug("incrementUserUsage: username="+userName+", contentSize="+contentSize+", contentNodeRef="+contentNodeRef);
             
-            long currentSize = getUserUsage(userName);
-            long quotaSize = getUserQuota(userName);
-            
-            long newSize = currentSize + contentSize;
+            NodeRef personNodeRef = getPerson(userName);
+            long quotaSize = getUserQuota(personNodeRef);
             
-            // check whether user's quota exceeded
-            if ((quotaSize != -1) && (newSize > quotaSize))
+            // check whether user's quota exceeded (only users with a quota need their usage)
+            if (quotaSize != -1)
             {
-                if (logger.isWarnEnabled())
+                long currentSize = getUserUsageForQuotaCheck(personNodeRef);
+                long newSize = currentSize + contentSize;
+                
+                if (newSize > quotaSize)
                 {
-                    logger.warn("User (" + userName + ") quota exceeded: content=" + contentSize +
-                                  ", usage=" + currentSize +
-                                  ", quota=" + quotaSize);
+                    if (logger.isWarnEnabled())
+                    {
+                        logger.warn("User (" + userName + ") quota exceeded: content=" + contentSize +
+                                      ", usage=" + currentSize +
+                                      ", quota=" + quotaSize);
+                    }
+                    throw new ContentQuotaException("User quota exceeded");
                 }
-                throw new ContentQuotaException("User quota exceeded");
             }
             
-            NodeRef personNodeRef = getPerson(userName);
             if (personNodeRef != null)
             {
-                usageService.insertDelta(personNodeRef, contentSize);
+                addDelta(personNodeRef, contentSize);
             }
         }
     }
@@ -478,22 +522,22 @@ public class ContentUsageImpl implements ContentUsageService,
             // decrement usage - add negative delta
             if (logger.isDebugEnabled()) logger.debug("decrementUserUsage: username="+userName+", contentSize="+contentSize+", contentNodeRef="+contentNodeRef);
             
-            long currentSize = getUserUsage(userName);
-            
-            long newSize = currentSize + contentSize;
-            
-            if (newSize < 0)
+            if (logger.isDebugEnabled())
             {
-               if (logger.isDebugEnabled())
-               {
+                long currentSize = getUserUsage(userName);
+                
+                long newSize = currentSize + contentSize;
+                
+                if (newSize < 0)
+                {
                    logger.debug("User (" + userName + ") has negative usage (" + newSize + ") - reset to 0");
-               }
+                }
             }
             
             NodeRef personNodeRef = getPerson(userName);
             if (personNodeRef != null)
             {
-                usageService.insertDelta(personNodeRef, (-contentSize));
+                addDelta(personNodeRef, (-contentSize));
             }
         }
     }
@@ -509,6 +553,7 @@ public class ContentUsageImpl implements ContentUsageService,
         if (personNodeRef != null)
         {     
             nodeService.setProperty(personNodeRef, ContentModel.PROP_SIZE_CURRENT, new Long(currentUsage));
+            usageChanged(personNodeRef);
         }
     }
     
@@ -550,7 +595,7 @@ public class ContentUsageImpl implements ContentUsageService,
             long deltaSize = removeDeltas ? usageService.getAndRemoveTotalDeltaSize(personNodeRef) :
                 usageService.getTotalDeltaSize(personNodeRef);
             // add any deltas to the currentUsage, removing them if required
-            currentUsage = currentUsage + deltaSize;
+            currentUsage = currentUsage + deltaSize + getPendingDelta(personNodeRef);
             
             if (currentUsage < 0)
             {
@@ -565,6 +610,152 @@ public class ContentUsageImpl implements ContentUsageService,
         return currentUsage;
     }
     
+    /**
+     * Get the user's usage for a quota check, including the changes pending in this transaction.
+     * The committed usage is reused for up to {@link #setQuotaCheckMaxStalenessMillis(long)} so that
+     * users with a quota do not have to sum their usage deltas for every upload.
+     */
+    private long getUserUsageForQuotaCheck(NodeRef personNodeRef)
+    {
+        if (personNodeRef == null)
+        {
+            return 0;
+        }
+        if (quotaCheckMaxStalenessMillis <= 0)
+        {
+            return getUserUsage(personNodeRef, false);
+        }
+        
+        long now = System.currentTimeMillis();
+        int stripe = getUsageChangeStripe(personNodeRef);
+        CachedUsage cachedUsage;
+        long usageChangeCount;
+        synchronized (cachedUsages)
+        {
+            cachedUsage = cachedUsages.get(personNodeRef);
+            usageChangeCount = usageChangeCounts[stripe];
+        }
+        if (cachedUsage == null || (now - cachedUsage.readTime) > quotaCheckMaxStalenessMillis)
+        {
+            long storedUsage = getUserStoredUsage(personNodeRef);
+            if (storedUsage == -1)
+            {
+                // Usage has not been calculated yet
+                return getUserUsage(personNodeRef, false);
+            }
+            cachedUsage = new CachedUsage(now, storedUsage + usageService.getTotalDeltaSize(personNodeRef));
+            synchronized (cachedUsages)
+            {
+                // A change committed while reading may or may not have been read, so the value is only
+                // good for this check
+                if (usageChangeCounts[stripe] == usageChangeCount)
+                {
+                    cachedUsages.put(personNodeRef, cachedUsage);
+                }
+            }
+        }
+        long currentUsage = cachedUsage.usage + getPendingDelta(personNodeRef);
+        return (currentUsage < 0 ? 0 : currentUsage);
+    }
+    
+    /**
+     * Drop the cached usage of a person whose usage has been changed by this server
+     */
+    private void usageChanged(NodeRef personNodeRef)
+    {
+        synchronized (cachedUsages)
+        {
+            usageChangeCounts[getUsageChangeStripe(personNodeRef)]++;
+            cachedUsages.remove(personNodeRef);
+        }
+    }
+    
+    private int getUsageChangeStripe(NodeRef personNodeRef)
+    {
+        return (personNodeRef.hashCode() & 0x7FFFFFFF) % USAGE_CHANGE_STRIPES;
+    }
+    
+    /**
+     * Accumulate a usage delta for the person in the current transaction.  The net delta for each
+     * person is written as a single <b>alf_usage_delta</b> row when the transaction commits.
+     */
+    private void addDelta(NodeRef personNodeRef, long deltaSize)
+    {
+        PendingDeltas pendingDeltas = (PendingDeltas) AlfrescoTransactionSupport.getResource(KEY_PENDING_DELTAS);
+        if (pendingDeltas == null)
+        {
+            pendingDeltas = new PendingDeltas();
+            AlfrescoTransactionSupport.bindResource(KEY_PENDING_DELTAS, pendingDeltas);
+            AlfrescoTransactionSupport.bindListener(pendingDeltas);
+        }
+        pendingDeltas.add(personNodeRef, deltaSize);
+    }
+    
+    private long getPendingDelta(NodeRef personNodeRef)
+    {
+        PendingDeltas pendingDeltas = (PendingDeltas) AlfrescoTransactionSupport.getResource(KEY_PENDING_DELTAS);
+        return (pendingDeltas == null ? 0L : pendingDeltas.get(personNodeRef));
+    }
+    
+    /**
+     * The usage deltas accumulated by a transaction
+     */
+    private class PendingDeltas extends TransactionListenerAdapter
+    {
+        private final Map<NodeRef, Long> deltas = new HashMap<NodeRef, Long>(3);
+        
+        private void add(NodeRef personNodeRef, long deltaSize)
+        {
+            deltas.put(personNodeRef, get(personNodeRef) + deltaSize);
+        }
+        
+        private long get(NodeRef personNodeRef)
+        {
+            Long deltaSize = deltas.get(personNodeRef);
+            return (deltaSize == null ? 0L : deltaSize);
+        }
+        
+        @Override
+        public void beforeCommit(boolean readOnly)
+        {
+            // Any usage changes made by later listeners are collected and written separately
+            AlfrescoTransactionSupport.unbindResource(KEY_PENDING_DELTAS);
+            
+            for (Map.Entry<NodeRef, Long> entry : deltas.entrySet())
+            {
+                if (entry.getValue() != 0L && nodeService.exists(entry.getKey()))
+                {
+                    usageService.insertDelta(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        
+        @Override
+        public void afterCommit()
+        {
+            // The next quota check reads the usage including the committed deltas
+            for (NodeRef personNodeRef : deltas.keySet())
+            {
+                usageChanged(personNodeRef);
+            }
+        }
+    }
+    
+    /**
+     * Committed usage of a person, as read at a given time
+     */
+    private static class CachedUsage
+    {
+        private final long readTime;
+        private final long usage;
+        
+        private CachedUsage(long readTime, long usage)
+        {
+            this.readTime = readTime;
+            this.usage = usage;
+        }
+    }
+    
     /**
      * Set user's current quota.
      * Usually called by Web Client (Admin Console) if admin is changing/setting a user's quota.
@@ -582,10 +773,14 @@ public class ContentUsageImpl implements ContentUsageService,
     }
     
     public long getUserQuota(String userName)
+    {
+        return getUserQuota(getPerson(userName));
+    }
+    
+    private long getUserQuota(NodeRef personNodeRef)
     {
         Long currentQuota = null;
         
-        NodeRef personNodeRef = getPerson(userName);
         if (personNodeRef != null)
         {
             currentQuota = (Long)nodeService.getProperty(personNodeRef, ContentModel.PROP_SIZE_QUOTA);
@@ -32,6 +32,8 @@ import java.util.Set;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.model.ContentModel;
 import org.alfresco.model.ForumModel;
+import org.alfresco.query.PagingRequest;
+import org.alfresco.query.PagingResults;
 import org.alfresco.repo.policy.PolicyScope;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.version.VersionRevertCallback.RevertAspectAction;
@@ -379,6 +381,71 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
         }
         return versionHistory;
     }
+    
+    @Override
+    public PagingResults<Version> getVersionHistory(NodeRef nodeRef, final PagingRequest pagingRequest)
+    {
+        ParameterCheck.mandatory("pagingRequest", pagingRequest);
+        
+        int skipCount = Math.max(pagingRequest.getSkipCount(), 0);
+        int maxItems = pagingRequest.getMaxItems();
+        final List<Version> page = new ArrayList<Version>();
+        int count = 0;
+        
+        // Get the version history regardless of whether the node is still 'live' or not
+        NodeRef versionHistoryRef = getVersionHistoryNodeRef(nodeRef);
+        if (versionHistoryRef != null)
+        {
+            if (versionComparatorDesc != null)
+            {
+                // A custom version order needs every version to be loaded
+                List<Version> versions = getAllVersions(versionHistoryRef);
+                Collections.sort(versions, versionComparatorDesc);
+                count = versions.size();
+                for (int i = skipCount; i < count && page.size() < maxItems; i++)
+                {
+                    page.add(versions.get(i));
+                }
+            }
+            else
+            {
+                // The associations are in version creation order, so walk them backwards
+                // and only load the versions on the requested page
+                List<ChildAssociationRef> versionAssocs = getVersionAssocs(versionHistoryRef, false);
+                count = versionAssocs.size();
+                for (int i = count - 1 - skipCount; i >= 0 && page.size() < maxItems; i--)
+                {
+                    page.add(getVersion(versionAssocs.get(i).getChildRef()));
+                }
+            }
+        }
+        
+        final boolean hasMoreItems = (skipCount + page.size() < count);
+        final Pair<Integer, Integer> totalCount = new Pair<Integer, Integer>(count, count);
+        return new PagingResults<Version>()
+        {
+            @Override
+            public String getQueryExecutionId()
+            {
+                return pagingRequest.getQueryExecutionId();
+            }
+            @Override
+            public List<Version> getPage()
+            {
+                return page;
+            }
+            @Override
+            public boolean hasMoreItems()
+            {
+                return hasMoreItems;
+            }
+            @Override
+            public Pair<Integer, Integer> getTotalResultCount()
+            {
+                return totalCount;
+            }
+        };
+    }
 
     @Override
     public Version getCurrentVersion(NodeRef nodeRef)
@@ -535,10 +602,18 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
     {
     	// TODO - these are stored as "residual" properties (ie. without property type) - see also NodeBrowser
     	//      - need to review, eg. how can we store arbitrary map of metadata properties, that could be indexed/searched (if configured against versionStore)	
+        if (versionProperties.isEmpty())
+        {
+            return;
+        }
+        
+        // Store all of the meta data with a single node update
+        Map<QName, Serializable> metaData = new HashMap<QName, Serializable>(versionProperties.size() * 2);
     	for (Map.Entry<String, Serializable> entry : versionProperties.entrySet())
         {
-            dbNodeService.setProperty(versionNodeRef, QName.createQName(Version2Model.NAMESPACE_URI, Version2Model.PROP_METADATA_PREFIX+entry.getKey()), entry.getValue());
+            metaData.put(QName.createQName(Version2Model.NAMESPACE_URI, Version2Model.PROP_METADATA_PREFIX+entry.getKey()), entry.getValue());
         }
+        dbNodeService.addProperties(versionNodeRef, metaData);
     }
 
     /**
@@ -560,33 +635,38 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
         	if (aspect.equals(ContentModel.ASPECT_AUDITABLE))
         	{
         	    // freeze auditable aspect properties (eg. created, creator, modifed, modifier, accessed)
+        	    Map<QName, Serializable> frozenProperties = new HashMap<QName, Serializable>(10);
         		for (Map.Entry<QName, Serializable> entry : nodeDetails.getProperties(aspect).entrySet())
         		{
         		    if (entry.getKey().equals(ContentModel.PROP_CREATOR))
         		    {
-        		        dbNodeService.setProperty(versionNodeRef, Version2Model.PROP_QNAME_FROZEN_CREATOR, entry.getValue());
+        		        frozenProperties.put(Version2Model.PROP_QNAME_FROZEN_CREATOR, entry.getValue());
         		    }
         		    else if (entry.getKey().equals(ContentModel.PROP_CREATED))
                     {
-                        dbNodeService.setProperty(versionNodeRef, Version2Model.PROP_QNAME_FROZEN_CREATED, entry.getValue());
+                        frozenProperties.put(Version2Model.PROP_QNAME_FROZEN_CREATED, entry.getValue());
                     }
         		    else if (entry.getKey().equals(ContentModel.PROP_MODIFIER))
                     {
-                        dbNodeService.setProperty(versionNodeRef, Version2Model.PROP_QNAME_FROZEN_MODIFIER, entry.getValue());
+                        frozenProperties.put(Version2Model.PROP_QNAME_FROZEN_MODIFIER, entry.getValue());
                     }
         		    else if (entry.getKey().equals(ContentModel.PROP_MODIFIED))
                     {
-                        dbNodeService.setProperty(versionNodeRef, Version2Model.PROP_QNAME_FROZEN_MODIFIED, entry.getValue());
+                        frozenProperties.put(Version2Model.PROP_QNAME_FROZEN_MODIFIED, entry.getValue());
                     }
         		    else if (entry.getKey().equals(ContentModel.PROP_ACCESSED))
                     {
-                        dbNodeService.setProperty(versionNodeRef, Version2Model.PROP_QNAME_FROZEN_ACCESSED, entry.getValue());
+                        frozenProperties.put(Version2Model.PROP_QNAME_FROZEN_ACCESSED, entry.getValue());
                     }
         		    else
         		    {
         		        throw new AlfrescoRuntimeException("Unexpected auditable property: " + entry.getKey());
         		    }
         		}
+        		if (!frozenProperties.isEmpty())
+        		{
+        		    dbNodeService.addProperties(versionNodeRef, frozenProperties);
+        		}
         	}
         	else
         	{
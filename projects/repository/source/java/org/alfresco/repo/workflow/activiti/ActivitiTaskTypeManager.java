@@ -55,6 +55,11 @@ public class ActivitiTaskTypeManager
         return getFullTaskDefinition(task.getId(), taskFormData);
     }
     
+    public TypeDefinition getFullTaskDefinition(Task task, TaskFormData taskFormData)
+    {
+        return getFullTaskDefinition(task.getId(), taskFormData);
+    }
+    
     public TypeDefinition getFullTaskDefinition(DelegateTask delegateTask)
     {
         FormData formData = null;
@@ -309,7 +309,7 @@ public class ActivitiTypeConverter
     public WorkflowNode convert(PvmActivity activity, boolean forceIsTaskNode)
     {
     	 String procDefId = activity.getProcessDefinition().getId();
-         String key = activitiUtil.getProcessDefinition(procDefId).getKey();
+         String key = getWorkflowDefinitionName(procDefId);
          return getNode(activity, key, forceIsTaskNode);
     }
 
@@ -468,8 +468,9 @@ public class ActivitiTypeConverter
             }
             WorkflowTaskDefinition taskDef = factory.createTaskDefinition(taskDefId, node, taskDefId, false);
             
-            // All task-properties should be fetched, not only local
-            Map<QName, Serializable> properties = propertyConverter.getTaskProperties(task);
+            // All task-properties should be fetched, not only local. Reuse the form data
+            // fetched above so the task isn't loaded a second time.
+            Map<QName, Serializable> properties = propertyConverter.getTaskProperties(task, taskFormData);
             
             return factory.createTask(id,
                         taskDef, taskDef.getId(), defaultTitle, defaultDescription, state, path, properties);
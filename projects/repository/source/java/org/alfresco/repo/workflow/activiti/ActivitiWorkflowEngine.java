@@ -19,6 +19,7 @@
 
 package org.alfresco.repo.workflow.activiti;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,6 +34,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.activiti.bpmn.model.BpmnModel;
 import org.activiti.engine.ActivitiException;
@@ -116,6 +118,7 @@ import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.GUID;
 import org.alfresco.util.collections.Function;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -175,6 +178,8 @@ public class ActivitiWorkflowEngine extends BPMEngine implements WorkflowEngine
     
     public static final QName QNAME_INITIATOR = QName.createQName(NamespaceService.DEFAULT_URI, WorkflowConstants.PROP_INITIATOR);
     
+    private static final int MAX_CACHED_PROCESS_IDS = 1000;
+    
     private RepositoryService repoService;
     private RuntimeService runtimeService;
     private TaskService taskService;
@@ -197,6 +202,12 @@ public class ActivitiWorkflowEngine extends BPMEngine implements WorkflowEngine
     private NamespaceService namespaceService;
     private Repository repositoryHelper;
     
+    /** Process ids of parsed definitions, keyed by the MD5 digest of the definition content */
+    private final Map<String, String> processIdsByDigest = new ConcurrentHashMap<String, String>();
+    
+    /** MD5 digests of deployed process definition resources, keyed by deployment id and resource name */
+    private final Map<String, String> deployedDigests = new ConcurrentHashMap<String, String>();
+    
     public ActivitiWorkflowEngine()
     {
         super();
@@ -981,8 +992,24 @@ public class ActivitiWorkflowEngine extends BPMEngine implements WorkflowEngine
     {
         try
         {
-            String key = getProcessKey(workflowDefinition);
-            return null != activitiUtil.getProcessDefinitionByKey(key);
+            byte[] content;
+            try
+            {
+                content = IOUtils.toByteArray(workflowDefinition);
+            }
+            finally
+            {
+                workflowDefinition.close();
+            }
+            String digest = DigestUtils.md5Hex(content);
+            String key = getProcessKey(content, digest);
+            
+            // A definition which has changed since its latest version was deployed is deployed again
+            ProcessDefinition definition = repoService.createProcessDefinitionQuery()
+                        .processDefinitionKey(key)
+                        .latestVersion()
+                        .singleResult();
+            return definition != null && digest.equals(getDeployedDigest(definition));
         }
         catch (Exception ae)
         {
@@ -995,40 +1022,78 @@ public class ActivitiWorkflowEngine extends BPMEngine implements WorkflowEngine
         }
     }
 
-    private String getProcessKey(InputStream workflowDefinition) throws Exception
+    private String getProcessKey(byte[] content, String digest) throws Exception
     {
-        try 
+        // The deployers check every definition on each startup and tenant creation,
+        // so only parse content that hasn't been seen before
+        String processId = processIdsByDigest.get(digest);
+        if (processId == null)
         {
-            InputSource inputSource = new InputSource(workflowDefinition);
-            DOMParser parser = new DOMParser();
-            parser.parse(inputSource);
-            Document document = parser.getDocument();
-            NodeList elemnts = document.getElementsByTagName("process");
-            if (elemnts.getLength() < 1)
+            processId = parseProcessId(new ByteArrayInputStream(content));
+            if (processIdsByDigest.size() >= MAX_CACHED_PROCESS_IDS)
             {
-                throw new IllegalArgumentException("The input stream does not contain a process definition!");
+                processIdsByDigest.clear();
             }
-            NamedNodeMap attributes = elemnts.item(0).getAttributes();
-            Node idAttrib = attributes.getNamedItem("id");
-            if (idAttrib == null)
+            processIdsByDigest.put(digest, processId);
+        }
+        
+        if(activitiUtil.isMultiTenantWorkflowDeploymentEnabled())
+        {
+            // Workflow-definition is deployed tenant-aware, key should be altered
+            return factory.getDomainProcessKey(processId);
+        }
+        else
+        {
+            return processId;
+        }
+    }
+
+    /**
+     * Gets the MD5 digest of the resource a process definition was deployed from.  Deployed
+     * resources never change, so each one is only read once.
+     */
+    private String getDeployedDigest(ProcessDefinition definition) throws IOException
+    {
+        String resourceId = definition.getDeploymentId() + "/" + definition.getResourceName();
+        String digest = deployedDigests.get(resourceId);
+        if (digest == null)
+        {
+            InputStream resource = repoService.getResourceAsStream(definition.getDeploymentId(), definition.getResourceName());
+            try
             {
-                throw new IllegalAccessError("The process definition does not have an id!");
+                digest = DigestUtils.md5Hex(resource);
             }
-            
-            if(activitiUtil.isMultiTenantWorkflowDeploymentEnabled())
+            finally
             {
-                // Workflow-definition is deployed tenant-aware, key should be altered
-                return factory.getDomainProcessKey(idAttrib.getNodeValue());
+                resource.close();
             }
-            else
+            if (deployedDigests.size() >= MAX_CACHED_PROCESS_IDS)
             {
-                return idAttrib.getNodeValue();
+                deployedDigests.clear();
             }
+            deployedDigests.put(resourceId, digest);
         }
-        finally
+        return digest;
+    }
+
+    /* package */ String parseProcessId(InputStream workflowDefinition) throws Exception
+    {
+        InputSource inputSource = new InputSource(workflowDefinition);
+        DOMParser parser = new DOMParser();
+        parser.parse(inputSource);
+        Document document = parser.getDocument();
+        NodeList elemnts = document.getElementsByTagName("process");
+        if (elemnts.getLength() < 1)
         {
-            workflowDefinition.close();
+            throw new IllegalArgumentException("The input stream does not contain a process definition!");
         }
+        NamedNodeMap attributes = elemnts.item(0).getAttributes();
+        Node idAttrib = attributes.getNamedItem("id");
+        if (idAttrib == null)
+        {
+            throw new IllegalAccessError("The process definition does not have an id!");
+        }
+        return idAttrib.getNodeValue();
     }
 
     /**
@@ -1248,11 +1313,8 @@ public class ActivitiWorkflowEngine extends BPMEngine implements WorkflowEngine
         {
             public String apply(Task task)
             {
-                //TODO This probably isn't very performant!
-                String defId = task.getProcessDefinitionId();
-                ProcessDefinition definition = repoService.createProcessDefinitionQuery().processDefinitionId(defId)
-                        .singleResult();
-                return definition.getKey();
+                // Use the cached deployed definition rather than querying for every task
+                return typeConverter.getWorkflowDefinitionName(task.getProcessDefinitionId());
             }
         });
     }
@@ -31,6 +31,7 @@ import java.util.Set;
 
 import org.activiti.engine.TaskService;
 import org.activiti.engine.delegate.DelegateTask;
+import org.activiti.engine.form.TaskFormData;
 import org.activiti.engine.history.HistoricActivityInstance;
 import org.activiti.engine.history.HistoricDetail;
 import org.activiti.engine.history.HistoricDetailQuery;
@@ -113,7 +114,23 @@ public class ActivitiPropertyConverter
     public Map<QName, Serializable> getTaskProperties(Task task)
     {
         // retrieve type definition for task
-        TypeDefinition taskDef = typeManager.getFullTaskDefinition(task);
+        return getTaskProperties(task, typeManager.getFullTaskDefinition(task));
+    }
+    
+    /**
+     * Gets the properties of a task using form data the caller has already retrieved.
+     * 
+     * @param task Task
+     * @param taskFormData the form data of the task, can be null
+     * @return the task properties
+     */
+    public Map<QName, Serializable> getTaskProperties(Task task, TaskFormData taskFormData)
+    {
+        return getTaskProperties(task, typeManager.getFullTaskDefinition(task, taskFormData));
+    }
+    
+    private Map<QName, Serializable> getTaskProperties(Task task, TypeDefinition taskDef)
+    {
         Map<QName, PropertyDefinition> taskProperties = taskDef.getProperties();
         Map<QName, AssociationDefinition> taskAssociations = taskDef.getAssociations();
         
@@ -135,6 +135,26 @@ public interface ActivityService extends ActivityPostService
     @NotAuditable
     public List<ActivityFeedEntity> getUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, Set<String> userFilter, Set<String> actvityFilter, long minFeedId);
     
+    /**
+     * Retrieve the ID of the most recent entry in a user feed. Since feed entry IDs only increase, this can
+     * be used as a cursor (eg. by polling clients) to check cheaply whether the feed has changed.
+     * 
+     * @param feedUserId - required
+     * @return the highest feed entry ID for the user or -1 if the feed is empty
+     */
+    @NotAuditable
+    public long getMaxUserFeedId(String feedUserId);
+    
+    /**
+     * Count the entries in a user feed. Together with {@link #getMaxUserFeedId(String)} this shows whether
+     * entries have been removed from the feed since it was last read.
+     * 
+     * @param feedUserId - required
+     * @return the number of entries in the user feed
+     */
+    @NotAuditable
+    public long getUserFeedEntryCount(String feedUserId);
+    
     @NotAuditable
     public PagingResults<ActivityFeedEntity> getPagedUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, PagingRequest pagingRequest);
     
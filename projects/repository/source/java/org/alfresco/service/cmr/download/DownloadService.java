@@ -18,6 +18,7 @@
  */
 package org.alfresco.service.cmr.download;
 
+import java.io.OutputStream;
 import java.util.Date;
 
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -48,6 +49,18 @@ public interface DownloadService
      */
     public NodeRef createDownload(NodeRef[] nodeRefs, boolean recusirsive);
     
+    /**
+     * Write a zip archive containing the content from the given nodeRefs, and
+     * the content of any containers beneath them, directly to the output stream.
+     * 
+     * Unlike {@link #createDownload(NodeRef[], boolean)} this is synchronous and
+     * no download node is created, so the archive is never stored in the repository.
+     * 
+     * @param nodeRefs NodeRefs of content to be added to the archive file
+     * @param output Stream to write the archive to. It is not closed.
+     */
+    public void streamDownload(NodeRef[] nodeRefs, OutputStream output);
+    
     /**
      * Get the status of the of the download identified by downloadNode.
      */
@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.Map;
 
 import org.alfresco.api.AlfrescoPublicApi;
+import org.alfresco.query.PagingRequest;
+import org.alfresco.query.PagingResults;
 import org.alfresco.repo.version.VersionServicePolicies.CalculateVersionLabelPolicy;
 import org.alfresco.service.Auditable;
 import org.alfresco.service.cmr.repository.AspectMissingException;
@@ -160,6 +162,22 @@ public interface VersionService
     @Auditable(parameters = {"nodeRef"})
     public VersionHistory getVersionHistory(NodeRef nodeRef)
         throws AspectMissingException;     
+    
+    /**
+     * Gets a page of the versions of a node, most recent version first.
+     * <p>
+     * Only the versions on the requested page are loaded, so this is cheaper than
+     * {@link #getVersionHistory(NodeRef)} for nodes with long version histories.
+     * If the node has not been versioned then the page is empty.
+     * 
+     * @param nodeRef           a node reference
+     * @param pagingRequest     skip count and maximum number of versions to return
+     * @return                  the requested page of versions and the total number of versions
+     * 
+     * @since 5.1
+     */
+    @Auditable(parameters = {"nodeRef", "pagingRequest"})
+    public PagingResults<Version> getVersionHistory(NodeRef nodeRef, PagingRequest pagingRequest);
 	
 	/**
 	 * Gets the version object for the current version of the node reference
@@ -30,11 +30,13 @@ public class AllUnitTestsSuite extends TestSuite
         suite.addTestSuite(org.alfresco.filesys.repo.rules.ShuffleTest.class);
         suite.addTestSuite(org.alfresco.repo.admin.Log4JHierarchyInitTest.class);
         suite.addTest(new JUnit4TestAdapter(org.alfresco.repo.attributes.PropTablesCleanupJobTest.class));
+        suite.addTestSuite(org.alfresco.repo.audit.AsynchronousAuditEntryWriterTest.class);
         suite.addTest(new JUnit4TestAdapter(org.alfresco.repo.cache.DefaultCacheFactoryTest.class));
         suite.addTest(new JUnit4TestAdapter(org.alfresco.repo.cache.DefaultSimpleCacheTest.class));
         suite.addTestSuite(org.alfresco.repo.cache.lookup.EntityLookupCacheTest.class);
         suite.addTest(new JUnit4TestAdapter(org.alfresco.repo.calendar.CalendarHelpersTest.class));
         suite.addTestSuite(org.alfresco.repo.dictionary.RepoDictionaryDAOTest.class);
+        suite.addTestSuite(org.alfresco.repo.domain.node.TransactionCommitNotifierTest.class);
         suite.addTestSuite(org.alfresco.repo.forms.processor.node.FieldProcessorTest.class);
         suite.addTestSuite(org.alfresco.repo.forms.processor.workflow.TaskFormProcessorTest.class);
         suite.addTestSuite(org.alfresco.repo.forms.processor.workflow.WorkflowFormProcessorTest.class);
@@ -55,6 +57,7 @@ public class AllUnitTestsSuite extends TestSuite
         suite.addTestSuite(org.alfresco.repo.site.RoleComparatorImplTest.class);
         suite.addTest(new JUnit4TestAdapter(org.alfresco.repo.thumbnail.ThumbnailServiceImplParameterTest.class));
         suite.addTestSuite(org.alfresco.repo.transfer.ContentChunkerImplTest.class);
+        suite.addTestSuite(org.alfresco.repo.transfer.BulkLoadingManifestProcessorTest.class);
         suite.addTestSuite(org.alfresco.repo.transfer.HttpClientTransmitterImplTest.class);
         suite.addTestSuite(org.alfresco.repo.transfer.manifest.TransferManifestTest.class);
         suite.addTestSuite(org.alfresco.repo.urlshortening.BitlyUrlShortenerTest.class);
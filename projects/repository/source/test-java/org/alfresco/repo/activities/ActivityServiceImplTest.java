@@ -19,7 +19,9 @@
 package org.alfresco.repo.activities;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -195,6 +197,19 @@ public class ActivityServiceImplTest extends TestCase
         
         assertNotNull(userFeedEntries);
         assertTrue(userFeedEntries.isEmpty());
+        
+        userFeedEntries = activityService.getUserFeedEntries("unknown user", null, false, false, new HashSet<String>(), null);
+        
+        assertNotNull(userFeedEntries);
+        assertTrue(userFeedEntries.isEmpty());
+        
+        userFeedEntries = activityService.getUserFeedEntries("unknown user", null, false, false, null, Collections.singleton("org.alfresco.documentlibrary.file-added"));
+        
+        assertNotNull(userFeedEntries);
+        assertTrue(userFeedEntries.isEmpty());
+        
+        assertEquals(-1L, activityService.getMaxUserFeedId("unknown user"));
+        assertEquals(0L, activityService.getUserFeedEntryCount("unknown user"));
     }
     
     public void testJSAPI() throws Exception
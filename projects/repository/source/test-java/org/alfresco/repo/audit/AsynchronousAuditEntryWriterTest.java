@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.audit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.audit.AsynchronousAuditEntryWriter.PendingAuditEntry;
+import org.alfresco.repo.domain.audit.AuditDAO;
+import org.alfresco.repo.domain.audit.AuditDAO.AuditEntryInfo;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the queueing, overflow, retry and journal replay of the {@link AsynchronousAuditEntryWriter}.
+ *
+ * @since 5.1
+ */
+public class AsynchronousAuditEntryWriterTest extends TestCase
+{
+    private static final String KEY_ENTRY = "/test/entry";
+
+    private File journalDir;
+    private TransactionService transactionService;
+    private AuditDAO auditDAO;
+    /** The values of the entries written to the DAO in transactions that committed */
+    private List<String> writtenEntries;
+    /** The number of entries passed to each batch insert */
+    private List<Integer> batchSizes;
+    /** The number of transactions that may commit before the rest fail */
+    private int commitsAllowed;
+    private List<AsynchronousAuditEntryWriter> writers;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void setUp() throws Exception
+    {
+        journalDir = new File(TempFileProvider.getTempDir(), "AsynchronousAuditEntryWriterTest-" + GUID.generate());
+        writtenEntries = new ArrayList<String>();
+        batchSizes = new ArrayList<Integer>();
+        commitsAllowed = Integer.MAX_VALUE;
+        writers = new ArrayList<AsynchronousAuditEntryWriter>();
+
+        final List<String> txnEntries = new ArrayList<String>();
+        auditDAO = mock(AuditDAO.class);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                batchSizes.add(((List<AuditEntryInfo>) invocation.getArguments()[0]).size());
+                for (AuditEntryInfo entry : (List<AuditEntryInfo>) invocation.getArguments()[0])
+                {
+                    txnEntries.add((String) entry.getValues().get(KEY_ENTRY));
+                }
+                return null;
+            }
+        }).when(auditDAO).createAuditEntries(anyListOf(AuditEntryInfo.class));
+        RetryingTransactionHelper txnHelper = mock(RetryingTransactionHelper.class);
+        when(txnHelper.doInTransaction(any(RetryingTransactionCallback.class), anyBoolean(), eq(true))).thenAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                txnEntries.clear();
+                Object result = ((RetryingTransactionCallback<Object>) invocation.getArguments()[0]).execute();
+                if (commitsAllowed == 0)
+                {
+                    throw new AlfrescoRuntimeException("Failed to commit");
+                }
+                commitsAllowed--;
+                writtenEntries.addAll(txnEntries);
+                return result;
+            }
+        });
+        transactionService = mock(TransactionService.class);
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(txnHelper);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        commitsAllowed = Integer.MAX_VALUE;
+        for (AsynchronousAuditEntryWriter writer : writers)
+        {
+            writer.onShutdown(null);
+        }
+        File[] journalFiles = journalDir.listFiles();
+        if (journalFiles != null)
+        {
+            for (File journalFile : journalFiles)
+            {
+                journalFile.delete();
+            }
+        }
+        journalDir.delete();
+    }
+
+    private AsynchronousAuditEntryWriter startWriter(int batchSize, int maxQueueSize)
+    {
+        AsynchronousAuditEntryWriter writer = new AsynchronousAuditEntryWriter();
+        writer.setAuditDAO(auditDAO);
+        writer.setTransactionService(transactionService);
+        writer.setEnabled(true);
+        writer.setJournalDirectory(journalDir.getAbsolutePath());
+        writer.setBatchSize(batchSize);
+        writer.setMaxQueueSize(maxQueueSize);
+        // Only write when the test asks for it
+        writer.setFlushIntervalMs(3600000L);
+        writer.onBootstrap(null);
+        writers.add(writer);
+        return writer;
+    }
+
+    /**
+     * Stops the writer without writing what is left, as if the server had died
+     */
+    private void killWriter(AsynchronousAuditEntryWriter writer)
+    {
+        commitsAllowed = 0;
+        writer.onShutdown(null);
+        writers.remove(writer);
+        commitsAllowed = Integer.MAX_VALUE;
+    }
+
+    private void commit(AsynchronousAuditEntryWriter writer, Long applicationId, String ... entries)
+    {
+        List<PendingAuditEntry> pendingEntries = new ArrayList<PendingAuditEntry>();
+        for (String entry : entries)
+        {
+            Map<String, Serializable> values = Collections.<String, Serializable>singletonMap(KEY_ENTRY, entry);
+            pendingEntries.add(new PendingAuditEntry(applicationId, System.currentTimeMillis(), "user", values));
+        }
+        writer.entriesCommitted(pendingEntries);
+    }
+
+    private int countJournalFiles()
+    {
+        String[] names = journalDir.list();
+        return names == null ? 0 : names.length;
+    }
+
+    public void testQueuedEntriesWrittenInBatches() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(2, 100);
+        commit(writer, 1L, "a", "b", "c");
+        commit(writer, 1L, "d", "e");
+        assertTrue("Nothing is written until the queue is flushed", writtenEntries.isEmpty());
+        assertEquals(1, countJournalFiles());
+
+        assertTrue(writer.flush());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), writtenEntries);
+        assertEquals("Each batch is inserted in one call", Arrays.asList(2, 2, 1), batchSizes);
+        assertEquals("The journal is deleted once everything is written", 0, countJournalFiles());
+    }
+
+    public void testOverflowWrittenByCommittingThread() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(10, 2);
+        commit(writer, 1L, "a", "b", "c", "d");
+        assertEquals("Entries that do not fit in the queue are written straight away", Arrays.asList("c", "d"), writtenEntries);
+
+        assertTrue(writer.flush());
+        assertEquals(Arrays.asList("c", "d", "a", "b"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+
+    public void testFailedOverflowRetried() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(10, 2);
+        commitsAllowed = 0;
+        commit(writer, 1L, "a", "b", "c");
+        assertTrue(writtenEntries.isEmpty());
+
+        commitsAllowed = Integer.MAX_VALUE;
+        assertTrue(writer.flush());
+        assertEquals(Arrays.asList("c", "a", "b"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+
+    public void testFailedBatchRetried() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(2, 100);
+        commit(writer, 1L, "a", "b", "c");
+        commitsAllowed = 0;
+        assertFalse(writer.flush());
+        assertTrue(writtenEntries.isEmpty());
+        assertEquals("The journal is kept while entries are unwritten", 1, countJournalFiles());
+
+        commit(writer, 1L, "d");
+        commitsAllowed = Integer.MAX_VALUE;
+        assertTrue(writer.flush());
+        assertEquals("The failed batch is written first", Arrays.asList("a", "b", "c", "d"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+
+    public void testFlushApplication() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(2, 100);
+        commit(writer, 1L, "a", "b");
+        commit(writer, 2L, "c", "d", "e");
+        writer.flush(2L);
+        assertEquals("Only entries of the application are written", Arrays.asList("c", "d", "e"), writtenEntries);
+        assertEquals(1, countJournalFiles());
+
+        assertTrue(writer.flush());
+        assertEquals(Arrays.asList("c", "d", "e", "a", "b"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+
+    public void testJournalReplayedOnStartup() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(2, 100);
+        commit(writer, 1L, "a", "b", "c");
+        killWriter(writer);
+        assertTrue(writtenEntries.isEmpty());
+        assertEquals(1, countJournalFiles());
+
+        startWriter(2, 100);
+        assertEquals(Arrays.asList("a", "b", "c"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+
+    public void testWrittenEntriesNotReplayed() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = startWriter(2, 100);
+        commit(writer, 1L, "a", "b", "c");
+        // The first batch is written and the second fails
+        commitsAllowed = 1;
+        assertFalse(writer.flush());
+        assertEquals(Arrays.asList("a", "b"), writtenEntries);
+        killWriter(writer);
+        assertEquals(1, countJournalFiles());
+
+        startWriter(2, 100);
+        assertEquals("Only the unwritten entry is replayed", Arrays.asList("a", "b", "c"), writtenEntries);
+        assertEquals(0, countJournalFiles());
+    }
+}
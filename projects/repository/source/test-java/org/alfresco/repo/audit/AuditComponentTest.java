@@ -29,6 +29,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.repo.audit.model.AuditApplication;
 import org.alfresco.repo.audit.model.AuditModelException;
 import org.alfresco.repo.audit.model.AuditModelRegistryImpl;
+import org.alfresco.repo.domain.audit.AuditDAO;
 import org.alfresco.repo.node.NodeServicePolicies.OnCreateNodePolicy;
 import org.alfresco.repo.policy.JavaBehaviour;
 import org.alfresco.repo.policy.PolicyComponent;
@@ -55,6 +56,8 @@ import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.test_category.OwnJVMTestsCategory;
 import org.alfresco.util.ApplicationContextHelper;
 import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -464,6 +467,67 @@ public class AuditComponentTest extends TestCase
         
     }
     
+    /**
+     * Entries still queued for the background writer must be found by queries
+     */
+    public void testQuery_QueuedEntries() throws Exception
+    {
+        AsynchronousAuditEntryWriter writer = new AsynchronousAuditEntryWriter();
+        writer.setTransactionService(transactionService);
+        writer.setAuditDAO((AuditDAO) ctx.getBean("auditDAO"));
+        writer.setEnabled(true);
+        writer.setJournalDirectory(TempFileProvider.getTempDir().getAbsolutePath() + "/" + getName() + "-" + GUID.generate());
+        writer.setBatchSize(10);
+        writer.setMaxQueueSize(1000);
+        // Only write when flushed
+        writer.setFlushIntervalMs(3600000L);
+        writer.onBootstrap(null);
+        
+        AsynchronousAuditEntryWriter beanWriter = (AsynchronousAuditEntryWriter) ctx.getBean("auditEntryWriter");
+        auditComponent.setAuditEntryWriter(writer);
+        try
+        {
+            final MutableInt rowCount = new MutableInt();
+            AuditQueryCallback callback = new AuditQueryCallback()
+            {
+                public boolean valuesRequired()
+                {
+                    return false;
+                }
+
+                public boolean handleAuditEntry(
+                        Long entryId, String applicationName, String user, long time, Map<String, Serializable> values)
+                {
+                    rowCount.setValue(rowCount.intValue() + 1);
+                    return true;
+                }
+
+                public boolean handleAuditEntryError(Long entryId, String errorMsg, Throwable error)
+                {
+                    throw new AlfrescoRuntimeException(errorMsg, error);
+                }
+            };
+            AuditQueryParameters params = new AuditQueryParameters();
+            params.setApplicationName(APPLICATION_ACTIONS_TEST);
+            params.setUser(user);
+            
+            auditComponent.auditQuery(callback, params, -1);
+            int before = rowCount.intValue();
+            
+            // The entries are queued when the transaction commits, but not yet written
+            auditAction01("action-01");
+            
+            rowCount.setValue(0);
+            auditComponent.auditQuery(callback, params, -1);
+            assertTrue("Queued entries were not found", rowCount.intValue() > before);
+        }
+        finally
+        {
+            auditComponent.setAuditEntryWriter(beanWriter);
+            writer.onShutdown(null);
+        }
+    }
+    
     /**
      * Test disabling of audit using audit paths
      */
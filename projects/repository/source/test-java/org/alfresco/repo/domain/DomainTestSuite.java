@@ -18,6 +18,7 @@
  */
 package org.alfresco.repo.domain;
 
+import org.alfresco.repo.domain.activities.ActivityFeedDAOTest;
 import org.alfresco.repo.domain.audit.AuditDAOTest;
 import org.alfresco.repo.domain.contentdata.ContentDataDAOTest;
 import org.alfresco.repo.domain.encoding.EncodingDAOTest;
@@ -58,7 +59,8 @@ import org.junit.runners.Suite;
     UsageDAOTest.class,
     SOLRDAOTest.class,
     TenantAdminDAOTest.class,
-    CannedQueryDAOTest.class
+    CannedQueryDAOTest.class,
+    ActivityFeedDAOTest.class
 })
 public class DomainTestSuite
 {
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.domain.activities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.ServiceRegistry;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.test_category.OwnJVMTestsCategory;
+import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.GUID;
+import org.junit.experimental.categories.Category;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * @see ActivityFeedDAO
+ *
+ * @since 5.1
+ */
+@Category(OwnJVMTestsCategory.class)
+public class ActivityFeedDAOTest extends TestCase
+{
+    private ApplicationContext ctx = ApplicationContextHelper.getApplicationContext();
+
+    private RetryingTransactionHelper txnHelper;
+    private ActivityFeedDAO feedDAO;
+    private int insertBatchSize;
+    private String feedUserId;
+    private String siteId;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        ServiceRegistry serviceRegistry = (ServiceRegistry) ctx.getBean(ServiceRegistry.SERVICE_REGISTRY);
+        TransactionService transactionService = serviceRegistry.getTransactionService();
+        txnHelper = transactionService.getRetryingTransactionHelper();
+
+        feedDAO = (ActivityFeedDAO) ctx.getBean("feedDAO");
+        Properties properties = (Properties) ctx.getBean("global-properties");
+        insertBatchSize = Integer.parseInt(properties.getProperty("activities.feed.insertBatchSize"));
+
+        feedUserId = "ActivityFeedDAOTest-" + GUID.generate();
+        siteId = "ActivityFeedDAOTest-" + GUID.generate();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        txnHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                feedDAO.deleteUserFeedEntries(feedUserId);
+                feedDAO.deleteSiteFeedEntries(siteId);
+                return null;
+            }
+        });
+    }
+
+    private ActivityFeedEntity createFeedEntry(String feedUserId, int index, boolean withOptionalValues)
+    {
+        ActivityFeedEntity feed = new ActivityFeedEntity();
+        feed.setFeedUserId(feedUserId);
+        feed.setPostUserId("poster-" + index);
+        feed.setActivityType("type-" + index);
+        feed.setPostId(index);
+        feed.setPostDate(new Date());
+        feed.setFeedDate(new Date());
+        if (withOptionalValues)
+        {
+            feed.setActivitySummary("{\"index\":" + index + "}");
+            feed.setSiteNetwork(siteId);
+            feed.setAppTool("tool-" + index);
+        }
+        return feed;
+    }
+
+    private void insert(final List<ActivityFeedEntity> feeds)
+    {
+        int inserted = txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+        {
+            public Integer execute() throws Throwable
+            {
+                return feedDAO.insertFeedEntries(feeds);
+            }
+        });
+        assertEquals(feeds.size(), inserted);
+    }
+
+    private void checkFeedEntries(List<ActivityFeedEntity> expected, List<ActivityFeedEntity> actual)
+    {
+        assertEquals("Incorrect number of feed entries", expected.size(), actual.size());
+        Map<String, ActivityFeedEntity> actualByType = new HashMap<String, ActivityFeedEntity>();
+        for (ActivityFeedEntity feed : actual)
+        {
+            assertNotNull("Feed entry was not given an ID", feed.getId());
+            actualByType.put(feed.getActivityType(), feed);
+        }
+        for (ActivityFeedEntity feed : expected)
+        {
+            ActivityFeedEntity read = actualByType.get(feed.getActivityType());
+            assertNotNull("Feed entry not found: " + feed.getActivityType(), read);
+            assertEquals(feed.getPostUserId(), read.getPostUserId());
+            assertEquals(feed.getActivitySummary(), read.getActivitySummary());
+            assertEquals(feed.getSiteNetwork(), read.getSiteNetwork());
+        }
+    }
+
+    /**
+     * Inserts more user feed entries than fit in one multi-row insert, every other one without
+     * the optional summary, site and tool
+     */
+    public void testInsertUserFeedEntries() throws Exception
+    {
+        final List<ActivityFeedEntity> feeds = new ArrayList<ActivityFeedEntity>();
+        for (int i = 0; i < insertBatchSize * 2 + 3; i++)
+        {
+            feeds.add(createFeedEntry(feedUserId, i, (i % 2 == 0)));
+        }
+        insert(feeds);
+
+        List<ActivityFeedEntity> read = txnHelper.doInTransaction(new RetryingTransactionCallback<List<ActivityFeedEntity>>()
+        {
+            public List<ActivityFeedEntity> execute() throws Throwable
+            {
+                return feedDAO.selectUserFeedEntries(feedUserId, null, false, false, -1L, feeds.size() + 10);
+            }
+        }, true);
+        checkFeedEntries(feeds, read);
+
+        long count = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            public Long execute() throws Throwable
+            {
+                return feedDAO.selectUserFeedEntryCount(feedUserId);
+            }
+        }, true);
+        assertEquals(feeds.size(), count);
+    }
+
+    /**
+     * Inserts more site feed entries, which have no feed user, than fit in one multi-row insert
+     */
+    public void testInsertSiteFeedEntries() throws Exception
+    {
+        final List<ActivityFeedEntity> feeds = new ArrayList<ActivityFeedEntity>();
+        for (int i = 0; i < insertBatchSize + 1; i++)
+        {
+            feeds.add(createFeedEntry(null, i, true));
+        }
+        insert(feeds);
+
+        List<ActivityFeedEntity> read = txnHelper.doInTransaction(new RetryingTransactionCallback<List<ActivityFeedEntity>>()
+        {
+            public List<ActivityFeedEntity> execute() throws Throwable
+            {
+                return feedDAO.selectSiteFeedEntries(siteId, feeds.size() + 10);
+            }
+        }, true);
+        checkFeedEntries(feeds, read);
+    }
+
+    /**
+     * The site, user, posting user and activity type filters are applied by the query, before the row limit
+     */
+    public void testSelectFilteredUserFeedEntries() throws Exception
+    {
+        final String otherSiteId = "ActivityFeedDAOTest-" + GUID.generate();
+        final List<ActivityFeedEntity> feeds = new ArrayList<ActivityFeedEntity>();
+        for (int i = 0; i < 12; i++)
+        {
+            ActivityFeedEntity feed = createFeedEntry(feedUserId, i, true);
+            feed.setPostUserId((i % 3 == 0) ? feedUserId : ((i % 3 == 1) ? "poster-a" : "poster-b"));
+            feed.setActivityType((i % 2 == 0) ? "type-x" : "type-y");
+            feed.setSiteNetwork((i % 4 == 0) ? otherSiteId : siteId);
+            feeds.add(feed);
+        }
+        insert(feeds);
+        
+        Set<String> posters = new HashSet<String>(Arrays.asList("poster-a", feedUserId));
+        Set<String> types = Collections.singleton("type-x");
+        for (String site : new String[] {null, siteId})
+        {
+            for (boolean excludeThisUser : new boolean[] {false, true})
+            {
+                for (boolean excludeOtherUsers : new boolean[] {false, true})
+                {
+                    checkFilteredFeedEntries(feeds, site, excludeThisUser, excludeOtherUsers, null, null);
+                    checkFilteredFeedEntries(feeds, site, excludeThisUser, excludeOtherUsers, posters, null);
+                    checkFilteredFeedEntries(feeds, site, excludeThisUser, excludeOtherUsers, null, types);
+                    checkFilteredFeedEntries(feeds, site, excludeThisUser, excludeOtherUsers, posters, types);
+                }
+            }
+        }
+        
+        // The limit applies to the filtered feed
+        List<ActivityFeedEntity> limited = selectUserFeedEntries(null, false, false, null, types, -1L, 3);
+        assertEquals(3, limited.size());
+        for (ActivityFeedEntity feed : limited)
+        {
+            assertEquals("type-x", feed.getActivityType());
+        }
+        
+        // Only entries from the given ID onwards
+        List<ActivityFeedEntity> all = selectUserFeedEntries(null, false, false, null, null, -1L, -1);
+        long minFeedId = Long.MAX_VALUE;
+        long maxFeedId = Long.MIN_VALUE;
+        for (ActivityFeedEntity feed : all)
+        {
+            minFeedId = Math.min(minFeedId, feed.getId());
+            maxFeedId = Math.max(maxFeedId, feed.getId());
+        }
+        assertEquals(feeds.size(), selectUserFeedEntries(null, false, false, null, null, minFeedId, -1).size());
+        assertEquals(1, selectUserFeedEntries(null, false, false, null, null, maxFeedId, -1).size());
+    }
+    
+    private List<ActivityFeedEntity> selectUserFeedEntries(
+            final String site, final boolean excludeThisUser, final boolean excludeOtherUsers,
+            final Set<String> postUserIds, final Set<String> activityTypes, final long minFeedId, final int maxFeedItems)
+    {
+        return txnHelper.doInTransaction(new RetryingTransactionCallback<List<ActivityFeedEntity>>()
+        {
+            public List<ActivityFeedEntity> execute() throws Throwable
+            {
+                return feedDAO.selectUserFeedEntries(feedUserId, site, excludeThisUser, excludeOtherUsers, postUserIds, activityTypes, minFeedId, maxFeedItems);
+            }
+        }, true);
+    }
+    
+    private void checkFilteredFeedEntries(
+            List<ActivityFeedEntity> feeds, String site, boolean excludeThisUser, boolean excludeOtherUsers,
+            Set<String> postUserIds, Set<String> activityTypes)
+    {
+        // The summaries identify the entries
+        Set<String> expected = new HashSet<String>();
+        for (ActivityFeedEntity feed : feeds)
+        {
+            boolean postedByFeedUser = feed.getPostUserId().equals(feedUserId);
+            if ((site != null && !site.equals(feed.getSiteNetwork())) ||
+                (excludeThisUser && postedByFeedUser) ||
+                (excludeOtherUsers && !postedByFeedUser) ||
+                (postUserIds != null && !postUserIds.contains(feed.getPostUserId())) ||
+                (activityTypes != null && !activityTypes.contains(feed.getActivityType())))
+            {
+                continue;
+            }
+            expected.add(feed.getActivitySummary());
+        }
+        Set<String> read = new HashSet<String>();
+        for (ActivityFeedEntity feed : selectUserFeedEntries(site, excludeThisUser, excludeOtherUsers, postUserIds, activityTypes, -1L, -1))
+        {
+            read.add(feed.getActivitySummary());
+        }
+        assertEquals("Incorrect feed entries for site " + site + ", excluding this user " + excludeThisUser +
+                ", excluding other users " + excludeOtherUsers + ", posting users " + postUserIds + " and activity types " + activityTypes,
+                expected, read);
+    }
+
+    public void testInsertSingleFeedEntry() throws Exception
+    {
+        final List<ActivityFeedEntity> feeds = new ArrayList<ActivityFeedEntity>();
+        feeds.add(createFeedEntry(feedUserId, 0, false));
+        insert(feeds);
+
+        List<ActivityFeedEntity> read = txnHelper.doInTransaction(new RetryingTransactionCallback<List<ActivityFeedEntity>>()
+        {
+            public List<ActivityFeedEntity> execute() throws Throwable
+            {
+                return feedDAO.selectUserFeedEntries(feedUserId, null, false, false, -1L, 10);
+            }
+        }, true);
+        checkFeedEntries(feeds, read);
+    }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -36,6 +37,7 @@ import junit.framework.TestCase;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.content.transform.AbstractContentTransformerTest;
 import org.alfresco.repo.domain.audit.AuditDAO.AuditApplicationInfo;
+import org.alfresco.repo.domain.audit.AuditDAO.AuditEntryInfo;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
 import org.alfresco.repo.domain.propval.PropValGenerator;
 import org.alfresco.repo.domain.propval.PropertyValueDAO;
@@ -194,6 +196,80 @@ public class AuditDAOTest extends TestCase
         return appName;
     }
     
+    /**
+     * Entries inserted in a batch are found, along with their users and values, in insertion order.
+     */
+    public void testAuditEntriesBatch() throws Exception
+    {
+        final AuditApplicationInfo appInfo = txnHelper.doInTransaction(new RetryingTransactionCallback<AuditApplicationInfo>()
+        {
+            public AuditApplicationInfo execute() throws Throwable
+            {
+                return createAuditApp();
+            }
+        });
+        
+        final List<AuditEntryInfo> entries = new ArrayList<AuditEntryInfo>(10);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++)
+        {
+            // Include entries without a user or values
+            String username = (i % 3 == 0) ? null : "alexi";
+            Map<String, Serializable> values = (i % 4 == 0)
+                    ? Collections.<String, Serializable>emptyMap()
+                    : Collections.singletonMap("/a/b/c", (Serializable) new Integer(i));
+            entries.add(new AuditEntryInfo(appInfo.getId(), now + i, username, values));
+        }
+        
+        final List<String> users = new ArrayList<String>();
+        final List<Map<String, Serializable>> foundValues = new ArrayList<Map<String, Serializable>>();
+        final AuditQueryCallback callback = new AuditQueryCallback()
+        {
+            public boolean valuesRequired()
+            {
+                return true;
+            }
+
+            public boolean handleAuditEntry(
+                    Long entryId,
+                    String applicationName,
+                    String user,
+                    long time,
+                    Map<String, Serializable> values)
+            {
+                users.add(user);
+                foundValues.add(values == null ? Collections.<String, Serializable>emptyMap() : values);
+                return true;
+            }
+
+            public boolean handleAuditEntryError(Long entryId, String errorMsg, Throwable error)
+            {
+                throw new AlfrescoRuntimeException(errorMsg, error);
+            }
+        };
+        RetryingTransactionCallback<Void> createAndFindCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                auditDAO.createAuditEntries(entries);
+                // The entries are visible within the same transaction
+                AuditQueryParameters params = new AuditQueryParameters();
+                params.setApplicationName(appInfo.getName());
+                params.setForward(true);
+                auditDAO.findAuditEntries(callback, params, -1);
+                return null;
+            }
+        };
+        txnHelper.doInTransaction(createAndFindCallback);
+        
+        assertEquals("All entries should have been created", entries.size(), users.size());
+        for (int i = 0; i < entries.size(); i++)
+        {
+            assertEquals(entries.get(i).getUsername(), users.get(i));
+            assertEquals(entries.get(i).getValues(), foundValues.get(i));
+        }
+    }
+    
     public synchronized void testAuditQuery() throws Exception
     {
         // Some entries
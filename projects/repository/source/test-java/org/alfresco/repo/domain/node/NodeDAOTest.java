@@ -19,9 +19,11 @@
 package org.alfresco.repo.domain.node;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
 
 import junit.framework.TestCase;
 
@@ -59,6 +61,7 @@ public class NodeDAOTest extends TestCase
     private TransactionService transactionService;
     private RetryingTransactionHelper txnHelper;
     private NodeDAO nodeDAO;
+    private TransactionCommitNotifier transactionCommitNotifier;
     private SimpleCache<Serializable, ValueHolder<Node>> rootNodesCache;    
     @SuppressWarnings("unchecked")
     @Override
@@ -72,6 +75,7 @@ public class NodeDAOTest extends TestCase
         txnHelper.setMaxRetryWaitMs(50);
         
         nodeDAO = (NodeDAO) ctx.getBean("nodeDAO");
+        transactionCommitNotifier = (TransactionCommitNotifier) ctx.getBean("transactionCommitNotifier");
         rootNodesCache = (SimpleCache<Serializable, ValueHolder<Node>>) ctx.getBean("node.rootNodesSharedCache");
     }
     
@@ -106,6 +110,43 @@ public class NodeDAOTest extends TestCase
         assertNotNull("Txn ID should be present by forcing it", txnId2);
     }
     
+    /**
+     * Write transactions are passed to the commit notifier once committed, but not if rolled back
+     */
+    public void testTransactionCommitNotified() throws Throwable
+    {
+        RetryingTransactionCallback<Long> newTxnIdCallback = new RetryingTransactionCallback<Long>()
+        {
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getCurrentTransactionId(true);
+            }
+        };
+        Long txnId = txnHelper.doInTransaction(newTxnIdCallback);
+        assertTrue("Committed txn not notified", transactionCommitNotifier.getLastCommittedTxnId() >= txnId);
+        // A waiting client sees it straight away
+        assertTrue(transactionCommitNotifier.waitForCommit(txnId - 1, 0L));
+        
+        final Long[] rolledBackTxnId = new Long[1];
+        try
+        {
+            txnHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+            {
+                public Void execute() throws Throwable
+                {
+                    rolledBackTxnId[0] = nodeDAO.getCurrentTransactionId(true);
+                    throw new IllegalStateException("Rollback");
+                }
+            });
+            fail("Transaction should have rolled back");
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected
+        }
+        assertTrue("Rolled back txn notified", transactionCommitNotifier.getLastCommittedTxnId() < rolledBackTxnId[0]);
+    }
+    
     public void testGetNodesWithAspects() throws Throwable
     {
         final NodeRefQueryCallback callback = new NodeRefQueryCallback()
@@ -136,6 +177,31 @@ public class NodeDAOTest extends TestCase
         assertNotNull("Null list", acls);
     }
     
+    public void testGetChildNodeIds() throws Throwable
+    {
+        Long rootNodeId = transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getRootNode(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE).getFirst();
+            }
+        }, true);
+        List<Long> allChildNodeIds = nodeDAO.getChildNodeIds(rootNodeId, Long.MIN_VALUE, Integer.MAX_VALUE);
+        assertTrue("The store root has no children", allChildNodeIds.size() > 1);
+        // Page through one child at a time, from just above the last ID of each page
+        List<Long> pagedChildNodeIds = new ArrayList<Long>();
+        Long minChildNodeId = Long.MIN_VALUE;
+        List<Long> page;
+        while (!(page = nodeDAO.getChildNodeIds(rootNodeId, minChildNodeId, 1)).isEmpty())
+        {
+            assertEquals(1, page.size());
+            pagedChildNodeIds.add(page.get(0));
+            minChildNodeId = page.get(0) + 1L;
+        }
+        assertEquals("Paging should list each child once, in ID order", new ArrayList<Long>(new TreeSet<Long>(allChildNodeIds)), pagedChildNodeIds);
+    }
+    
     public void testGetStoreId() throws Throwable
     {
         // Get all stores
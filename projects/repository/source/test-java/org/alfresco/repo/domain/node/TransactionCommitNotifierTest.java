@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.domain.node;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TransactionCommitNotifier}
+ * 
+ * @since 5.1
+ */
+public class TransactionCommitNotifierTest extends TestCase
+{
+    private TransactionCommitNotifier notifier;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        notifier = new TransactionCommitNotifier();
+    }
+
+    public void testNoCommits() throws Exception
+    {
+        assertEquals(-1L, notifier.getLastCommittedTxnId());
+        notifier.transactionCommitted(null);
+        assertEquals(-1L, notifier.getLastCommittedTxnId());
+    }
+
+    public void testLastCommittedTxnIdOnlyMovesForward() throws Exception
+    {
+        notifier.transactionCommitted(10L);
+        assertEquals(10L, notifier.getLastCommittedTxnId());
+        // Transactions do not necessarily commit in ID order
+        notifier.transactionCommitted(8L);
+        assertEquals(10L, notifier.getLastCommittedTxnId());
+        notifier.transactionCommitted(12L);
+        assertEquals(12L, notifier.getLastCommittedTxnId());
+    }
+
+    public void testWaitReturnsAtOnceForEarlierCommit() throws Exception
+    {
+        notifier.transactionCommitted(10L);
+        long start = System.currentTimeMillis();
+        assertTrue(notifier.waitForCommit(9L, 10000L));
+        assertTrue("Should not have waited", System.currentTimeMillis() - start < 5000L);
+    }
+
+    public void testWaitTimesOutWithoutCommit() throws Exception
+    {
+        notifier.transactionCommitted(10L);
+        long start = System.currentTimeMillis();
+        assertFalse(notifier.waitForCommit(10L, 200L));
+        assertTrue("Should have waited", System.currentTimeMillis() - start >= 200L);
+    }
+
+    public void testWaitIsWokenByCommit() throws Exception
+    {
+        notifier.transactionCommitted(10L);
+        Thread committer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(200L);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                // An older commit does not end the wait
+                notifier.transactionCommitted(9L);
+                notifier.transactionCommitted(11L);
+            }
+        };
+        committer.start();
+        long start = System.currentTimeMillis();
+        assertTrue(notifier.waitForCommit(10L, 30000L));
+        assertTrue("Should have been woken by the commit", System.currentTimeMillis() - start < 20000L);
+        assertEquals(11L, notifier.getLastCommittedTxnId());
+        committer.join();
+    }
+}
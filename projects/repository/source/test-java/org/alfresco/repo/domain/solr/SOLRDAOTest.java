@@ -368,6 +368,39 @@ public class SOLRDAOTest extends TestCase
         assertTrue("Expect 'some' nodes associated with txns", nodes.size() > 0);
     }
     
+    public void testGetNodesForDbIdShards()
+    {
+        List<Transaction> txns = getTransactions(null, null, null, null, 500);
+
+        List<Long> txnIds = toTxnIds(txns);
+
+        NodeParameters nodeParameters = new NodeParameters();
+        nodeParameters.setTransactionIds(txnIds);
+        Set<Long> allNodeIds = new HashSet<Long>();
+        for (Node node : getNodes(nodeParameters))
+        {
+            allNodeIds.add(node.getId());
+        }
+        assertTrue("Expect 'some' nodes associated with txns", allNodeIds.size() > 0);
+
+        // Every node is returned to exactly one shard: the one its id selects
+        int shardCount = 3;
+        Set<Long> shardedNodeIds = new HashSet<Long>();
+        for (int shardInstance = 0; shardInstance < shardCount; shardInstance++)
+        {
+            NodeParameters shardParameters = new NodeParameters();
+            shardParameters.setTransactionIds(txnIds);
+            shardParameters.setShardCount(shardCount);
+            shardParameters.setShardInstance(shardInstance);
+            for (Node node : getNodes(shardParameters))
+            {
+                assertEquals("Node returned to the wrong shard", shardInstance, node.getId() % shardCount);
+                assertTrue("Node returned to more than one shard", shardedNodeIds.add(node.getId()));
+            }
+        }
+        assertEquals("Shards do not cover all the nodes", allNodeIds, shardedNodeIds);
+    }
+    
     private List<Long> toTxnIds(List<Transaction> txns)
     {
         List<Long> txnIds = new ArrayList<Long>(txns.size());
@@ -20,9 +20,13 @@ package org.alfresco.repo.download;
 
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +38,8 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.repo.model.Repository;
 import org.alfresco.repo.node.integrity.IntegrityChecker;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.coci.CheckOutCheckInService;
@@ -230,6 +236,69 @@ public class DownloadServiceIntegrationTest
         validateEntries(entryNames, allEntries, true);
     }
 
+    @Test public void streamDownload() throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TRANSACTION_HELPER.doInTransaction(new RetryingTransactionCallback<Object>()
+        {
+            @Override
+            public Object execute() throws Throwable
+            {
+                output.reset();
+                DOWNLOAD_SERVICE.streamDownload(new NodeRef[] {rootFile, rootFolder}, output);
+                return null;
+            }
+        }, true);
+        
+        validateEntries(getEntries(output.toByteArray()), allEntries, true);
+    }
+
+    @Test public void streamDownloadSendsContentOutsideTransaction() throws IOException
+    {
+        final Set<TxnReadState> writeStates = new HashSet<TxnReadState>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        {
+            @Override
+            public synchronized void write(byte[] b, int off, int len)
+            {
+                writeStates.add(AlfrescoTransactionSupport.getTransactionReadState());
+                super.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void write(int b)
+            {
+                writeStates.add(AlfrescoTransactionSupport.getTransactionReadState());
+                super.write(b);
+            }
+        };
+        
+        DOWNLOAD_SERVICE.streamDownload(new NodeRef[] {rootFile, rootFolder}, output);
+        
+        Assert.assertEquals(Collections.singleton(TxnReadState.TXN_NONE), writeStates);
+        validateEntries(getEntries(output.toByteArray()), allEntries, true);
+    }
+
+    private Set<String> getEntries(byte[] archive) throws IOException
+    {
+        Set<String> entryNames = new TreeSet<String>();
+        ZipArchiveInputStream zipInputStream = new ZipArchiveInputStream(new ByteArrayInputStream(archive));
+        try 
+        {
+            ZipArchiveEntry zipEntry = zipInputStream.getNextZipEntry();
+            while (zipEntry != null)
+            {
+                entryNames.add(zipEntry.getName());
+                zipEntry = zipInputStream.getNextZipEntry();
+            }
+        }
+        finally
+        {
+            zipInputStream.close();
+        }
+        return entryNames;
+    }
+
     private void validateEntries(final Set<String> entryNames, final Set<String> expectedEntries, boolean onlyExpected)
     {
         Set<String> copy = new TreeSet<String>(entryNames);
@@ -42,7 +42,10 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.search.AndTerm;
 import javax.mail.search.BodyTerm;
 import javax.mail.search.ComparisonTerm;
+import javax.mail.search.FlagTerm;
 import javax.mail.search.FromTerm;
+import javax.mail.search.NotTerm;
+import javax.mail.search.OrTerm;
 import javax.mail.search.ReceivedDateTerm;
 import javax.mail.search.SearchTerm;
 import javax.mail.search.SentDateTerm;
@@ -1133,6 +1136,74 @@ public class ImapServiceImplTest extends TestCase
         assertEquals("Size of mails isn't correct. Search by \"From\" and \"Subject\" terms", 1, res.size());
     }
 
+    /**
+     * Searches that only test flags are matched against the flags on the message nodes, so they must find the same
+     * messages as a search of the messages themselves.
+     */
+    public void testFlagSearchTerms() throws Exception
+    {
+        reauthenticate(USER_NAME, USER_PASSWORD);
+        permissionService.setPermission(testImapFolderNodeRef, anotherUserName, PermissionService.WRITE, true);
+        reauthenticate(anotherUserName, anotherUserName);
+        
+        // Give the messages different combinations of flags
+        Flags[] flagCombinations = new Flags[] {
+                new Flags(), new Flags(Flags.Flag.SEEN), new Flags(Flags.Flag.DELETED), new Flags(Flags.Flag.FLAGGED)};
+        flagCombinations[2].add(Flags.Flag.SEEN);
+        List<AlfrescoImapFolder> mf = imapService.listMailboxes(user, IMAP_ROOT+"/"+TEST_IMAP_FOLDER_NAME+"/_*", false);
+        int messageCount = 0;
+        for (AlfrescoImapFolder folder : mf)
+        {
+            for (long uid : folder.getMessageUids())
+            {
+                folder.replaceFlags(flagCombinations[messageCount % flagCombinations.length], uid, null, false);
+                messageCount++;
+            }
+        }
+        assertTrue("Not enough messages to search", messageCount >= 3);
+        
+        SearchTerm unseen = new FlagTerm(new Flags(Flags.Flag.SEEN), false);
+        SearchTerm deleted = new FlagTerm(new Flags(Flags.Flag.DELETED), true);
+        SearchTerm flagged = new FlagTerm(new Flags(Flags.Flag.FLAGGED), true);
+        SearchTerm[] searchTerms = new SearchTerm[] {
+                unseen,
+                deleted,
+                new NotTerm(deleted),
+                new OrTerm(unseen, deleted),
+                new AndTerm(new NotTerm(deleted), new NotTerm(unseen)),
+                new NotTerm(new OrTerm(flagged, new AndTerm(unseen, new NotTerm(deleted))))};
+        
+        ArrayList<Long> unseenRes = new ArrayList<Long>();
+        extractSearchTermResultsToList(mf, unseen, unseenRes);
+        assertTrue("Some messages should be unseen", unseenRes.size() > 0);
+        assertTrue("Some messages should be seen", unseenRes.size() < messageCount);
+        
+        for (SearchTerm searchTerm : searchTerms)
+        {
+            for (AlfrescoImapFolder folder : mf)
+            {
+                List<Long> expected = new ArrayList<Long>();
+                for (SimpleStoredMessage message : folder.getMessages())
+                {
+                    if (searchTerm.match(message.getMimeMessage()))
+                    {
+                        expected.add(message.getUid());
+                    }
+                }
+                Collections.sort(expected);
+                
+                List<Long> actual = new ArrayList<Long>();
+                for (long uid : folder.search(searchTerm))
+                {
+                    actual.add(uid);
+                }
+                Collections.sort(actual);
+                
+                assertEquals("Flag search found different messages in " + folder.getName(), expected, actual);
+            }
+        }
+    }
+
     private void extractSearchTermResultsToList(List<AlfrescoImapFolder> folders, SearchTerm searchTerm, ArrayList<Long> resList)
     {
         for (AlfrescoImapFolder folder : folders)
@@ -18,18 +18,30 @@
  */
 package org.alfresco.repo.importer;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.security.authentication.AuthenticationComponent;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.StoreRef;
@@ -39,6 +51,7 @@ import org.alfresco.service.cmr.version.VersionService;
 import org.alfresco.service.cmr.view.ImporterBinding.UUID_BINDING;
 import org.alfresco.service.cmr.view.ImporterBinding;
 import org.alfresco.service.cmr.view.ImporterContentCache;
+import org.alfresco.service.cmr.view.ImporterException;
 import org.alfresco.service.cmr.view.ImporterService;
 import org.alfresco.service.cmr.view.Location;
 import org.alfresco.service.namespace.NamespaceService;
@@ -46,6 +59,7 @@ import org.alfresco.service.namespace.QName;
 import org.alfresco.service.namespace.RegexQNamePattern;
 import org.alfresco.test_category.BaseSpringTestsCategory;
 import org.alfresco.util.BaseSpringTest;
+import org.alfresco.util.TempFileProvider;
 import org.alfresco.util.debug.NodeStoreInspector;
 import org.joda.time.DateTimeZone;
 import org.junit.experimental.categories.Category;
@@ -58,8 +72,12 @@ public class ImporterComponentTest extends BaseSpringTest
     private ImporterBootstrap importerBootstrap;
     private VersionService versionService;
     private NodeService nodeService;
+    private ContentService contentService;
     private StoreRef storeRef;
     private AuthenticationComponent authenticationComponent;
+    private ImporterComponent importerComponent;
+    private ContentCopyExecutor contentCopyExecutor;
+    private File acpFile;
 
     
     @Override
@@ -67,6 +85,12 @@ public class ImporterComponentTest extends BaseSpringTest
     {
         nodeService = (NodeService)applicationContext.getBean(ServiceRegistry.NODE_SERVICE.getLocalName());
         importerService = (ImporterService)applicationContext.getBean(ServiceRegistry.IMPORTER_SERVICE.getLocalName());
+        contentService = (ContentService)applicationContext.getBean(ServiceRegistry.CONTENT_SERVICE.getLocalName());
+        
+        // Copy ACP content with an executor the tests can control
+        importerComponent = (ImporterComponent)applicationContext.getBean("importerComponent");
+        contentCopyExecutor = new ContentCopyExecutor();
+        importerComponent.setContentImportExecutor(contentCopyExecutor);
         
         importerBootstrap = (ImporterBootstrap)applicationContext.getBean("spacesBootstrap");
         
@@ -88,6 +112,13 @@ public class ImporterComponentTest extends BaseSpringTest
     @Override
     protected void onTearDownInTransaction() throws Exception
     {
+        importerComponent.setContentImportExecutor((ExecutorService)applicationContext.getBean("importerContentThreadPool"));
+        contentCopyExecutor.open();
+        contentCopyExecutor.shutdownNow();
+        if (acpFile != null)
+        {
+            acpFile.delete();
+        }
         authenticationComponent.clearCurrentSecurityContext();
         super.onTearDownInTransaction();
     }
@@ -329,5 +360,259 @@ public class ImporterComponentTest extends BaseSpringTest
                 new RegexQNamePattern(NamespaceService.CONTENT_MODEL_1_0_URI, "ArchiveFolder"));
         assertEquals("'ArchiveFolder' path not found", 1, childAssocs.size());
     }
+    
+    public void testImportAcpContentInParallel() throws Exception
+    {
+        // The first copies take longest, so they complete in reverse order
+        contentCopyExecutor.reversedCopies = 4;
+        acpFile = createAcp(6, false, null);
+        RecordingProgress progress = new RecordingProgress();
+        importerService.importView(new ACPImportPackageHandler(acpFile, ACPImportPackageHandler.DEFAULT_ENCODING), new Location(storeRef), null, progress);
+        
+        assertEquals("Content was not copied by the executor", 6, contentCopyExecutor.copies.size());
+        List<String> expectedUrls = new ArrayList<String>();
+        for (int i = 0; i < 6; i++)
+        {
+            expectedUrls.add(ACP_FOLDER + "/" + getAcpFileName(i));
+            checkAcpContent(i);
+        }
+        assertEquals("Content must be set in import order", expectedUrls, progress.contentUrls);
+    }
+    
+    public void testImportAcpContentBeyondPendingLimit() throws Exception
+    {
+        acpFile = createAcp(250, false, null);
+        RecordingProgress progress = new RecordingProgress();
+        importerService.importView(new ACPImportPackageHandler(acpFile, ACPImportPackageHandler.DEFAULT_ENCODING), new Location(storeRef), null, progress);
+        
+        assertEquals(250, progress.contentUrls.size());
+        for (int i = 0; i < 250; i++)
+        {
+            checkAcpContent(i);
+        }
+    }
+    
+    public void testImportAcpVersionableContent() throws Exception
+    {
+        // Delay the copies, so the importer has to wait for them before versioning
+        contentCopyExecutor.reversedCopies = 3;
+        acpFile = createAcp(3, true, null);
+        importerService.importView(new ACPImportPackageHandler(acpFile, ACPImportPackageHandler.DEFAULT_ENCODING), new Location(storeRef), null, new ImportTimerProgress());
+        
+        for (int i = 0; i < 3; i++)
+        {
+            NodeRef nodeRef = checkAcpContent(i);
+            VersionHistory vh = versionService.getVersionHistory(nodeRef);
+            assertNotNull(vh);
+            assertEquals(1, vh.getAllVersions().size());
+            NodeRef frozenNodeRef = vh.getHeadVersion().getFrozenStateNodeRef();
+            assertEquals("The version must include the imported content",
+                    getAcpContent(i), contentService.getReader(frozenNodeRef, ContentModel.PROP_CONTENT).getContentString());
+        }
+    }
+    
+    public void testImportAcpMissingContentFails() throws Exception
+    {
+        String missingContent =
+            "<cm:content view:childName=\"cm:missing.txt\">" +
+            "<view:properties>" +
+            "<cm:name>missing.txt</cm:name>" +
+            "<cm:content>contentUrl=" + ACP_FOLDER + "/missing.txt|mimetype=text/plain|size=|encoding=UTF-8</cm:content>" +
+            "</view:properties>" +
+            "</cm:content>";
+        acpFile = createAcp(3, false, missingContent);
+        try
+        {
+            importerService.importView(new ACPImportPackageHandler(acpFile, ACPImportPackageHandler.DEFAULT_ENCODING), new Location(storeRef), null, new ImportTimerProgress());
+            fail("Failed to report content missing from the ACP");
+        }
+        catch (ImporterException e)
+        {
+            // Expected
+        }
+    }
+    
+    public void testImportAcpErrorCancelsContentCopies() throws Exception
+    {
+        String unknownType = "<cm:doesNotExist view:childName=\"cm:unknown\"/>";
+        acpFile = createAcp(3, false, unknownType);
+        // Keep the copies pending until the import has failed
+        contentCopyExecutor.close();
+        try
+        {
+            importerService.importView(new ACPImportPackageHandler(acpFile, ACPImportPackageHandler.DEFAULT_ENCODING), new Location(storeRef), null, new ImportTimerProgress());
+            fail("Failed to detect a node of an unknown type");
+        }
+        catch (ImporterException e)
+        {
+            // Expected
+        }
+        finally
+        {
+            contentCopyExecutor.open();
+        }
+        
+        assertEquals(3, contentCopyExecutor.copies.size());
+        for (Future<?> copy : contentCopyExecutor.copies)
+        {
+            assertTrue("Content copy was not cancelled", copy.isCancelled());
+        }
+    }
+    
+    private static final String ACP_FOLDER = "AcpFolder";
+    
+    private String getAcpFileName(int index)
+    {
+        return "file-" + index + ".txt";
+    }
+    
+    private String getAcpContent(int index)
+    {
+        return "Content of " + getAcpFileName(index);
+    }
+    
+    /**
+     * Create an ACP containing a folder of content nodes, each with its own content entry
+     * 
+     * @param contentCount the number of content nodes
+     * @param versionable whether the content nodes are versionable
+     * @param extraNode the view of an extra node to import after the content nodes, or <tt>null</tt>
+     * @return the ACP file
+     */
+    private File createAcp(int contentCount, boolean versionable, String extraNode) throws Exception
+    {
+        StringBuilder view = new StringBuilder(1024);
+        view.append("<view:view xmlns:view=\"http://www.alfresco.org/view/repository/1.0\" xmlns:cm=\"http://www.alfresco.org/model/content/1.0\">");
+        view.append("<cm:folder view:childName=\"cm:").append(ACP_FOLDER).append("\">");
+        view.append("<view:properties><cm:name>").append(ACP_FOLDER).append("</cm:name></view:properties>");
+        view.append("<view:associations><cm:contains>");
+        for (int i = 0; i < contentCount; i++)
+        {
+            String name = getAcpFileName(i);
+            view.append("<cm:content view:childName=\"cm:").append(name).append("\">");
+            if (versionable)
+            {
+                view.append("<view:aspects><cm:versionable/></view:aspects>");
+            }
+            view.append("<view:properties>");
+            view.append("<cm:name>").append(name).append("</cm:name>");
+            view.append("<cm:content>contentUrl=").append(ACP_FOLDER).append("/").append(name).append("|mimetype=text/plain|size=|encoding=UTF-8</cm:content>");
+            view.append("</view:properties>");
+            view.append("</cm:content>");
+        }
+        if (extraNode != null)
+        {
+            view.append(extraNode);
+        }
+        view.append("</cm:contains></view:associations>");
+        view.append("</cm:folder>");
+        view.append("</view:view>");
+        
+        File file = TempFileProvider.createTempFile(getName(), ".acp");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try
+        {
+            zip.putNextEntry(new ZipEntry("view.xml"));
+            zip.write(view.toString().getBytes("UTF-8"));
+            zip.closeEntry();
+            for (int i = 0; i < contentCount; i++)
+            {
+                zip.putNextEntry(new ZipEntry(ACP_FOLDER + "/" + getAcpFileName(i)));
+                zip.write(getAcpContent(i).getBytes("UTF-8"));
+                zip.closeEntry();
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return file;
+    }
+    
+    /**
+     * Check that a content node imported from the ACP has its own content
+     * 
+     * @return the content node
+     */
+    private NodeRef checkAcpContent(int index)
+    {
+        NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+        List<ChildAssociationRef> childAssocs = nodeService.getChildAssocs(
+                rootNodeRef,
+                RegexQNamePattern.MATCH_ALL,
+                QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, ACP_FOLDER));
+        assertEquals("'" + ACP_FOLDER + "' path not found", 1, childAssocs.size());
+        NodeRef nodeRef = nodeService.getChildByName(childAssocs.get(0).getChildRef(), ContentModel.ASSOC_CONTAINS, getAcpFileName(index));
+        assertNotNull("'" + getAcpFileName(index) + "' not found", nodeRef);
+        assertEquals(getAcpContent(index), contentService.getReader(nodeRef, ContentModel.PROP_CONTENT).getContentString());
+        return nodeRef;
+    }
+    
+    /**
+     * Records the content imported, in the order it is set on the nodes
+     */
+    private static class RecordingProgress extends ImportTimerProgress
+    {
+        private List<String> contentUrls = new ArrayList<String>();
+        
+        @Override
+        public void contentCreated(NodeRef nodeRef, String sourceUrl)
+        {
+            super.contentCreated(nodeRef, sourceUrl);
+            contentUrls.add(sourceUrl);
+        }
+    }
+    
+    /**
+     * Copies content on a small thread pool, keeping the futures of the copies.  Copies can be
+     * held back until the executor is opened, and the first copies can be delayed so that each
+     * completes after the copies submitted after it.
+     */
+    private static class ContentCopyExecutor extends ThreadPoolExecutor
+    {
+        private List<Future<?>> copies = new ArrayList<Future<?>>();
+        private CountDownLatch gate = new CountDownLatch(0);
+        private int reversedCopies;
+        
+        private ContentCopyExecutor()
+        {
+            super(4, 4, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        }
+        
+        private void close()
+        {
+            gate = new CountDownLatch(1);
+        }
+        
+        private void open()
+        {
+            gate.countDown();
+        }
+        
+        @Override
+        public Future<?> submit(final Runnable copy)
+        {
+            final CountDownLatch copyGate = gate;
+            final long delayMs = Math.max(0, reversedCopies - copies.size()) * 50L;
+            Future<?> future = super.submit(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        copyGate.await();
+                        Thread.sleep(delayMs);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new ImporterException("Content copy interrupted", e);
+                    }
+                    copy.run();
+                }
+            });
+            copies.add(future);
+            return future;
+        }
+    }
 }
 
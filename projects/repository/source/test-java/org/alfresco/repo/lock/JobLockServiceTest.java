@@ -18,6 +18,8 @@
  */
 package org.alfresco.repo.lock;
 
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import org.alfresco.repo.domain.locks.LockDAO;
@@ -111,6 +113,69 @@ public class JobLockServiceTest extends TestCase
         jobLockService.releaseLock(lockToken, lockAAA);
     }
     
+    public void testLocalLockContention()
+    {
+        String lockToken = jobLockService.getLock(lockAAA, 10000L);
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            jobLockService.getLock(lockAAA, 10000L, 5L, 2);
+            fail("Lock should still be held");
+        }
+        catch (LockAcquisitionException e)
+        {
+            // Expected
+        }
+        assertTrue("Retries should not wait for the lock to expire", System.currentTimeMillis() - startTime < 5000L);
+        jobLockService.releaseLock(lockToken, lockAAA);
+        lockToken = jobLockService.getLock(lockAAA, 10000L, 5L, 0);            // No retries
+        jobLockService.releaseLock(lockToken, lockAAA);
+        
+        JobLockServiceImpl.LockStatistics statistics = ((JobLockServiceImpl) ctx.getBean("jobLockService")).getLockStatistics().get(lockAAA);
+        assertNotNull(statistics);
+        assertEquals(2L, statistics.getAcquiredCount());
+        assertEquals(1L, statistics.getFailedCount());
+        assertEquals(2L, statistics.getContendedCount());
+    }
+    
+    public void testLockStatisticsBounded()
+    {
+        JobLockServiceImpl boundedLockService = new JobLockServiceImpl();
+        boundedLockService.setLockDAO((LockDAO) ctx.getBean("lockDAO"));
+        boundedLockService.setRetryingTransactionHelper(txnHelper);
+        boundedLockService.setMaxLockStatistics(3);
+        try
+        {
+            QName[] lockQNames = new QName[] {lockAAA, lockAAB, lockAAC, lockABA, lockABB};
+            for (QName lockQName : lockQNames)
+            {
+                String lockToken = boundedLockService.getLock(lockQName, 10000L);
+                assertEquals(1, boundedLockService.getHeldLockCount());
+                boundedLockService.releaseLock(lockToken, lockQName);
+                assertEquals(0, boundedLockService.getHeldLockCount());
+            }
+            
+            // Only the most recently used lock names are kept
+            Map<QName, JobLockServiceImpl.LockStatistics> statistics = boundedLockService.getLockStatistics();
+            assertEquals(3, statistics.size());
+            assertTrue(statistics.containsKey(lockAAC));
+            assertTrue(statistics.containsKey(lockABA));
+            assertTrue(statistics.containsKey(lockABB));
+            assertEquals(3, boundedLockService.getLockStatisticsByName().length);
+            // The totals include all of them
+            assertEquals(5L, boundedLockService.getAcquiredCount());
+            assertEquals(0L, boundedLockService.getFailedCount());
+            
+            boundedLockService.resetLockStatistics();
+            assertEquals(0, boundedLockService.getLockStatistics().size());
+            assertEquals(0L, boundedLockService.getAcquiredCount());
+        }
+        finally
+        {
+            boundedLockService.shutdown();
+        }
+    }
+    
     public void testEnforceTxn()
     {
         try
@@ -24,15 +24,21 @@ import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authority.AuthorityBridgeTableAsynchronouslyRefreshedCache.LinkChange;
+import org.alfresco.repo.security.authority.AuthorityBridgeTableAsynchronouslyRefreshedCache.LinkChangesEvent;
 import org.alfresco.repo.tenant.TenantAdminService;
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -45,6 +51,7 @@ import org.alfresco.service.cmr.security.PersonService;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.test_category.OwnJVMTestsCategory;
 import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.BridgeTable;
 import org.alfresco.util.GUID;
 
 import org.junit.experimental.categories.Category;
@@ -147,6 +154,235 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCacheTest extends TestCa
         AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
     }
 
+    /**
+     * Group membership changes are applied to the cached table on commit without a rebuild
+     */
+    public void testLinkChangesAppliedIncrementally() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        final RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        final String parentGroup = txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<String>()
+        {
+            @Override
+            public String execute() throws Throwable
+            {
+                return authorityService.createAuthority(AuthorityType.GROUP, "incrementalParentGroup" + GUID.generate());
+            }
+        }, false, true);
+        final String childGroup = txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<String>()
+        {
+            @Override
+            public String execute() throws Throwable
+            {
+                return authorityService.createAuthority(AuthorityType.GROUP, "incrementalChildGroup" + GUID.generate());
+            }
+        }, false, true);
+        // Make sure there is a table to update
+        BridgeTable<String> tableBeforeChange = authorityBridgeTableCache.get();
+        assertFalse(tableBeforeChange.getAncestors(childGroup).contains(parentGroup));
+
+        txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authorityService.addAuthority(parentGroup, childGroup);
+                assertFalse("Uncommitted link changes are not in the table", authorityBridgeTableCache.isUpToDate());
+                return null;
+            }
+        }, false, true);
+        waitForRefresh();
+        assertTrue(authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+        assertFalse("Changes are applied to a copy of the table", tableBeforeChange.getAncestors(childGroup).contains(parentGroup));
+
+        txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authorityService.removeAuthority(parentGroup, childGroup);
+                return null;
+            }
+        }, false, true);
+        waitForRefresh();
+        assertFalse(authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+    }
+
+    /**
+     * Link changes sent by another cluster member are applied to the cached table
+     */
+    public void testLinkChangesFromOtherServerApplied() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        final String parentGroup = createGroup("remoteParentGroup");
+        final String childGroup = createGroup("remoteChildGroup");
+        assertFalse(authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+
+        String tenantId = tenantService.getCurrentUserDomain();
+        ArrayList<LinkChange> linkChanges = new ArrayList<LinkChange>();
+        linkChanges.add(new LinkChange(tenantId, parentGroup, childGroup, true));
+        authorityBridgeTableCache.onRefreshableCacheEvent(
+                new LinkChangesEvent(authorityBridgeTableCache.getCacheId(), tenantId, GUID.generate(), linkChanges));
+        waitForRefresh();
+        assertTrue(authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+
+        linkChanges.clear();
+        linkChanges.add(new LinkChange(tenantId, parentGroup, childGroup, false));
+        authorityBridgeTableCache.onRefreshableCacheEvent(
+                new LinkChangesEvent(authorityBridgeTableCache.getCacheId(), tenantId, GUID.generate(), linkChanges));
+        waitForRefresh();
+        assertFalse(authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+    }
+
+    /**
+     * Link changes committed while the table is being rebuilt are not lost when the new table is put live
+     */
+    public void testLinkChangesDuringRebuildNotLost() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        final RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        final String parentGroup = createGroup("rebuildParentGroup");
+        final String childGroup = createGroup("rebuildChildGroup");
+        authorityBridgeTableCache.get();
+
+        for (int i = 0; i < 10; i++)
+        {
+            final boolean add = (i % 2 == 0);
+            // Start a rebuild and change the membership while it may still be running
+            txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
+            {
+                @Override
+                public Void execute() throws Throwable
+                {
+                    authorityBridgeTableCache.refresh();
+                    return null;
+                }
+            }, false, true);
+            txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
+            {
+                @Override
+                public Void execute() throws Throwable
+                {
+                    if (add)
+                    {
+                        authorityService.addAuthority(parentGroup, childGroup);
+                    }
+                    else
+                    {
+                        authorityService.removeAuthority(parentGroup, childGroup);
+                    }
+                    return null;
+                }
+            }, false, true);
+            waitForRefresh();
+            assertEquals("Link change " + i + " lost", add, authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+        }
+    }
+
+    /**
+     * Link changes are applied by the cache's thread pool, so committing does not wait for them.  Changes that
+     * commit while the pool is busy are queued and all applied once it is free.
+     */
+    public void testLinkChangesAppliedOffCommittingThread() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        final RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        final String parentGroup = createGroup("queuedParentGroup");
+        final List<String> childGroups = new ArrayList<String>();
+        for (int i = 0; i < 5; i++)
+        {
+            childGroups.add(createGroup("queuedChildGroup"));
+        }
+        waitForRefresh();
+        BridgeTable<String> tableBeforeChanges = authorityBridgeTableCache.get();
+
+        // Keep the cache's thread pool busy while the changes commit
+        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) ctx.getBean("asynchronouslyRefreshedCacheThreadPoolExecutor");
+        final CountDownLatch release = new CountDownLatch(1);
+        threadPoolExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await(30, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try
+        {
+            for (final String childGroup : childGroups)
+            {
+                txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
+                {
+                    @Override
+                    public Void execute() throws Throwable
+                    {
+                        authorityService.addAuthority(parentGroup, childGroup);
+                        return null;
+                    }
+                }, false, true);
+            }
+            assertSame("Changes applied by the committing thread", tableBeforeChanges, authorityBridgeTableCache.get());
+            assertFalse("Queued changes are not up to date", txnHelper.doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Boolean>()
+            {
+                @Override
+                public Boolean execute() throws Throwable
+                {
+                    return authorityBridgeTableCache.isUpToDate();
+                }
+            }, true, true));
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        waitForRefresh();
+        for (String childGroup : childGroups)
+        {
+            assertTrue("Queued change not applied", authorityBridgeTableCache.get().getAncestors(childGroup).contains(parentGroup));
+        }
+    }
+
+    private String createGroup(final String shortNamePrefix)
+    {
+        return transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<String>()
+        {
+            @Override
+            public String execute() throws Throwable
+            {
+                return authorityService.createAuthority(AuthorityType.GROUP, shortNamePrefix + GUID.generate());
+            }
+        }, false, true);
+    }
+
+    private void waitForRefresh() throws InterruptedException
+    {
+        RetryingTransactionHelper.RetryingTransactionCallback<Boolean> isUpToDate = new RetryingTransactionHelper.RetryingTransactionCallback<Boolean>()
+        {
+            @Override
+            public Boolean execute() throws Throwable
+            {
+                return authorityBridgeTableCache.isUpToDate();
+            }
+        };
+        for (int i = 0; i < 100; i++)
+        {
+            if (transactionService.getRetryingTransactionHelper().doInTransaction(isUpToDate, true, true))
+            {
+                return;
+            }
+            Thread.sleep(100L);
+        }
+        fail("The authority bridge table was not refreshed");
+    }
+
     private void createTenant(final String tenantDomain)
     {
         transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionHelper.RetryingTransactionCallback<Void>()
@@ -400,6 +400,23 @@ public class ChainingUserRegistrySynchronizerTest extends TestCase
         tearDownTestUsersAndGroups();
     }
 
+    /**
+     * Tests a forced update of the test users and groups when nothing has changed in the registries. The persons and
+     * groups should not be updated.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    public void testForcedUpdateWithoutChanges() throws Exception
+    {
+        setUpTestUsersAndGroups();
+        Map<String, Long> txnIds = getNodeTxnIds("U2", "U7", "G3", "G4", "G7");
+        this.synchronizer.synchronize(true, true);
+        assertEquals("Unchanged persons and groups should not have been updated", txnIds, getNodeTxnIds("U2", "U7",
+                "G3", "G4", "G7"));
+        tearDownTestUsersAndGroups();
+    }
+
     /**
      * Tests a forced update of the test users and groups with deletions disabled. No users or groups should be deleted,
      * whether or not they move registry. Groups that would have been deleted should have no members and should only be
@@ -891,6 +908,33 @@ public class ChainingUserRegistrySynchronizerTest extends TestCase
         assertEquals(displayName, this.authorityService.getAuthorityDisplayName(longName(name)));
     }
 
+    /**
+     * Gets the transaction that last changed the node of each of the given persons and groups.
+     * 
+     * @param names
+     *            the short names of the persons and groups
+     * @return the transaction IDs keyed by short name
+     */
+    private Map<String, Long> getNodeTxnIds(final String... names)
+    {
+        return this.retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Map<String, Long>>()
+        {
+
+            public Map<String, Long> execute() throws Throwable
+            {
+                Map<String, Long> txnIds = new TreeMap<String, Long>();
+                for (String name : names)
+                {
+                    String longName = longName(name);
+                    NodeRef nodeRef = AuthorityType.getAuthorityType(longName).equals(AuthorityType.GROUP) ?
+                            authorityService.getAuthorityNodeRef(longName) : personService.getPerson(name, false);
+                    txnIds.put(name, nodeService.getNodeStatus(nodeRef).getDbTxnId());
+                }
+                return txnIds;
+            }
+        }, true, false);
+    }
+
     /**
      * Converts the given short name to a full authority name, assuming that those short names beginning with 'G'
      * correspond to groups and all others correspond to users.
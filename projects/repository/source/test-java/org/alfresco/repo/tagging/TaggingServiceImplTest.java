@@ -960,6 +960,56 @@ public class TaggingServiceImplTest extends TestCase
         });
     }
     
+    /**
+     * Tags added to several nodes in one transaction are rolled up into a single update per tag scope
+     */
+    public void test7TagScopeUpdateManyNodesInOneTransaction()
+        throws Exception
+    {
+        this.transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                taggingService.addTagScope(folder);
+                taggingService.addTagScope(subFolder);
+                return null;
+            }
+        });
+        asyncOccurs.awaitExecution(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                taggingService.addTag(document, TAG_1);
+                taggingService.addTag(subDocument, TAG_1);
+                taggingService.addTag(subDocument, TAG_2);
+                return null;
+            }
+        });
+        
+        this.transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                TagScope ts1 = taggingService.findTagScope(folder);
+                assertEquals("Wrong tags on folder tagscope: " + ts1.getTags(), 2, ts1.getTags().size());
+                assertEquals(2, ts1.getTag(TAG_1).getCount());
+                assertEquals(1, ts1.getTag(TAG_2).getCount());
+                
+                TagScope ts2 = taggingService.findTagScope(subDocument);
+                assertEquals("Wrong tags on sub folder tagscope: " + ts2.getTags(), 2, ts2.getTags().size());
+                assertEquals(1, ts2.getTag(TAG_1).getCount());
+                assertEquals(1, ts2.getTag(TAG_2).getCount());
+                
+                // A second read is served from the tag scope summary cache
+                assertEquals(ts1.getTags().toString(), taggingService.findTagScope(folder).getTags().toString());
+                return null;
+            }
+        });
+    }
+    
     /* 
      * https://issues.alfresco.com/jira/browse/ETHREEOH-220 
      */
@@ -1,13 +1,40 @@
 package org.alfresco.repo.tenant;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.UserTransaction;
+
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.content.AbstractContentStore;
 import org.alfresco.repo.content.ContentStore;
 import org.alfresco.repo.content.ContentStoreCaps;
+import org.alfresco.repo.dictionary.DictionaryComponent;
+import org.alfresco.repo.domain.tenant.TenantAdminDAO;
+import org.alfresco.repo.domain.tenant.TenantEntity;
+import org.alfresco.repo.security.authentication.AuthenticationContext;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.transaction.TransactionService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class MultiTAdminServiceImplTest
 {
@@ -18,6 +45,12 @@ public class MultiTAdminServiceImplTest
     {
         tenantAdmin = new MultiTAdminServiceImpl();
     }
+    
+    @After
+    public void tearDown() throws Exception
+    {
+        AuthenticationUtil.setMtEnabled(false);
+    }
 
     @Test
     public void testTenantDeployer()
@@ -85,6 +118,159 @@ public class MultiTAdminServiceImplTest
         assertNull(router);
     }
     
+    @Test
+    public void testStartTenantsInParallel() throws Exception
+    {
+        // Each tenant waits for all the others, so they can only all start if they start together
+        final CyclicBarrier allStarted = new CyclicBarrier(4);
+        StartupTenantAdmin startupTenantAdmin = new StartupTenantAdmin(4, "a.com", "b.com", "c.com", "d.com")
+        {
+            @Override
+            protected void startTenant(String tenantDomain) throws Exception
+            {
+                allStarted.await(10, TimeUnit.SECONDS);
+            }
+        };
+        
+        startupTenantAdmin.startTenants();
+        
+        assertEquals(new HashSet<String>(startupTenantAdmin.tenantDomains), startupTenantAdmin.startedTenants);
+        for (String threadName : startupTenantAdmin.threadNames)
+        {
+            assertTrue(threadName, threadName.startsWith("tenantStartup"));
+        }
+        assertExecutorShutDown(startupTenantAdmin);
+    }
+    
+    @Test
+    public void testStartTenantsSeriallyWithOneThread() throws Exception
+    {
+        StartupTenantAdmin startupTenantAdmin = new StartupTenantAdmin(1, "a.com", "b.com");
+        
+        startupTenantAdmin.startTenants();
+        
+        assertEquals(new HashSet<String>(startupTenantAdmin.tenantDomains), startupTenantAdmin.startedTenants);
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), new HashSet<String>(startupTenantAdmin.threadNames));
+        assertNull("No executor should be created", startupTenantAdmin.executor);
+    }
+    
+    @Test
+    public void testFailedTenantDoesNotStopOtherTenantsStarting() throws Exception
+    {
+        final RuntimeException failure = new RuntimeException("Tenant failed");
+        StartupTenantAdmin startupTenantAdmin = new StartupTenantAdmin(2, "a.com", "b.com", "c.com", "d.com")
+        {
+            @Override
+            protected void startTenant(String tenantDomain) throws Exception
+            {
+                if (tenantDomain.equals("b.com"))
+                {
+                    throw failure;
+                }
+            }
+        };
+        
+        try
+        {
+            startupTenantAdmin.startTenants();
+            fail("The failure to start a tenant should be reported");
+        }
+        catch (AlfrescoRuntimeException e)
+        {
+            Throwable cause = e.getCause();
+            assertNotNull(cause);
+            assertTrue(cause.getMessage(), cause.getMessage().contains("b.com"));
+            assertSame(failure, cause.getCause());
+        }
+        
+        assertEquals(new HashSet<String>(startupTenantAdmin.tenantDomains), startupTenantAdmin.startedTenants);
+        assertExecutorShutDown(startupTenantAdmin);
+    }
+    
+    private void assertExecutorShutDown(StartupTenantAdmin startupTenantAdmin) throws InterruptedException
+    {
+        assertNotNull("An executor should be created", startupTenantAdmin.executor);
+        assertTrue("The executor should be shut down", startupTenantAdmin.executor.isShutdown());
+        assertTrue("The startup threads should finish", startupTenantAdmin.executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Tenant admin service which starts the given enabled tenants, recording which tenants were
+     * started on which threads instead of notifying the tenant deployers.
+     */
+    private static class StartupTenantAdmin extends MultiTAdminServiceImpl
+    {
+        final List<String> tenantDomains;
+        final Set<String> startedTenants = Collections.synchronizedSet(new HashSet<String>());
+        final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+        volatile ExecutorService executor;
+        
+        StartupTenantAdmin(int threads, String... tenantDomains) throws Exception
+        {
+            this.tenantDomains = new ArrayList<String>();
+            List<TenantEntity> tenants = new ArrayList<TenantEntity>();
+            for (String tenantDomain : tenantDomains)
+            {
+                this.tenantDomains.add(tenantDomain);
+                TenantEntity tenant = new TenantEntity(tenantDomain);
+                tenant.setEnabled(true);
+                tenants.add(tenant);
+            }
+            TenantAdminDAO tenantAdminDAO = mock(TenantAdminDAO.class);
+            when(tenantAdminDAO.listTenants(false)).thenReturn(tenants);
+            
+            RetryingTransactionHelper transactionHelper = mock(RetryingTransactionHelper.class);
+            when(transactionHelper.doInTransaction(any(RetryingTransactionCallback.class), anyBoolean(), anyBoolean())).thenAnswer(new Answer<Object>()
+            {
+                @Override
+                public Object answer(InvocationOnMock invocation) throws Throwable
+                {
+                    return ((RetryingTransactionCallback<?>) invocation.getArguments()[0]).execute();
+                }
+            });
+            TransactionService transactionService = mock(TransactionService.class);
+            when(transactionService.getUserTransaction()).thenReturn(mock(UserTransaction.class));
+            when(transactionService.getRetryingTransactionHelper()).thenReturn(transactionHelper);
+            
+            setTenantAdminDAO(tenantAdminDAO);
+            setTransactionService(transactionService);
+            setAuthenticationContext(mock(AuthenticationContext.class));
+            setDictionaryComponent(mock(DictionaryComponent.class));
+            setTenantFileContentStore(new ConcreteTenantRoutingContentStore());
+            setTenantStartupThreads(threads);
+        }
+        
+        @Override
+        protected void notifyAfterEnableTenant(String tenantDomain)
+        {
+            threadNames.add(Thread.currentThread().getName());
+            startedTenants.add(tenantDomain);
+            try
+            {
+                startTenant(tenantDomain);
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new AlfrescoRuntimeException("Failed to start " + tenantDomain, e);
+            }
+        }
+        
+        protected void startTenant(String tenantDomain) throws Exception
+        {
+        }
+        
+        @Override
+        protected ExecutorService createTenantStartupExecutor(int threads)
+        {
+            executor = super.createTenantStartupExecutor(threads);
+            return executor;
+        }
+    }
+    
 
     
     
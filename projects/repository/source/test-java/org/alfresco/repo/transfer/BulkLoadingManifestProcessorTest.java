@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.repo.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.alfresco.repo.node.NodeBulkLoader;
+import org.alfresco.repo.transfer.manifest.TransferManifestDeletedNode;
+import org.alfresco.repo.transfer.manifest.TransferManifestHeader;
+import org.alfresco.repo.transfer.manifest.TransferManifestNormalNode;
+import org.alfresco.repo.transfer.manifest.TransferManifestProcessor;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test of the bulk loading manifest processor
+ *
+ * @author Alfresco
+ */
+public class BulkLoadingManifestProcessorTest extends TestCase
+{
+    public void testBatchesPreservingOrder() throws Exception
+    {
+        final List<String> events = new ArrayList<String>();
+        
+        NodeBulkLoader bulkLoader = new NodeBulkLoader()
+        {
+            public void cacheNodes(List<NodeRef> nodeRefs)
+            {
+                events.add("load " + nodeRefs.size());
+            }
+            public void cacheNodesById(List<Long> nodeIds)
+            {
+            }
+            public Set<Long> getCachedAncestors(List<Long> nodeIds)
+            {
+                return null;
+            }
+            public void setCheckNodeConsistency()
+            {
+            }
+            public void clear()
+            {
+            }
+        };
+        TransferManifestProcessor delegate = new TransferManifestProcessor()
+        {
+            public void startTransferManifest()
+            {
+                events.add("start");
+            }
+            public void processTransferManifiestHeader(TransferManifestHeader header)
+            {
+                events.add("header");
+            }
+            public void processTransferManifestNode(TransferManifestNormalNode node)
+            {
+                events.add("node " + node.getNodeRef().getId());
+            }
+            public void processTransferManifestNode(TransferManifestDeletedNode node)
+            {
+                events.add("deleted " + node.getNodeRef().getId());
+            }
+            public void endTransferManifest()
+            {
+                events.add("end");
+            }
+        };
+        
+        BulkLoadingManifestProcessor processor = new BulkLoadingManifestProcessor(delegate, bulkLoader, 2);
+        processor.startTransferManifest();
+        processor.processTransferManifiestHeader(new TransferManifestHeader());
+        processor.processTransferManifestNode(normalNode("a"));
+        processor.processTransferManifestNode(deletedNode("b"));
+        assertEquals("Full batch should be loaded then processed", 
+                    "[start, header, load 2, node a, deleted b]", events.toString());
+        
+        processor.processTransferManifestNode(normalNode("c"));
+        assertEquals("Partial batch should be held back", 5, events.size());
+        
+        processor.endTransferManifest();
+        assertEquals("[start, header, load 2, node a, deleted b, load 1, node c, end]", events.toString());
+    }
+    
+    private TransferManifestNormalNode normalNode(String id)
+    {
+        TransferManifestNormalNode node = new TransferManifestNormalNode();
+        node.setNodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, id));
+        return node;
+    }
+    
+    private TransferManifestDeletedNode deletedNode(String id)
+    {
+        TransferManifestDeletedNode node = new TransferManifestDeletedNode();
+        node.setNodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, id));
+        return node;
+    }
+}
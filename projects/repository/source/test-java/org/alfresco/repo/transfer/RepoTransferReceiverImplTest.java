@@ -405,6 +405,40 @@ public class RepoTransferReceiverImplTest extends BaseAlfrescoSpringTest
         }
     }
 
+    /**
+     * A content part that is sent again, e.g. because the sender retried it, keeps the staged file
+     * and leaves no partial file behind.
+     */
+    public void testSaveContentAgain() throws Exception
+    {
+        log.info("start testSaveContentAgain");
+        
+        startNewTransaction();
+        try
+        {
+            String transferId = receiver.start("1234", true, receiver.getVersion());
+            try
+            {
+                String contentId = "mytestcontent";
+                receiver.saveContent(transferId, contentId, new ByteArrayInputStream(dummyContentBytes));
+                receiver.saveContent(transferId, contentId, new ByteArrayInputStream(dummyContentBytes));
+                File stagingFolder = receiver.getStagingFolder(transferId);
+                File contentFile = new File(stagingFolder, contentId);
+                assertTrue(contentFile.exists());
+                assertEquals(dummyContentBytes.length, contentFile.length());
+                assertEquals("Partial content file left behind", 1, stagingFolder.list().length);
+            }
+            finally
+            {
+                receiver.end(transferId);
+            }
+        }
+        finally
+        {
+            endTransaction();
+        }
+    }
+
     public void testSaveSnapshot() throws Exception
     {
         log.info("start testSaveSnapshot");
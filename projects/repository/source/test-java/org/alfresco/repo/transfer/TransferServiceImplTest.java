@@ -31,13 +31,19 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
@@ -3747,6 +3753,241 @@ public class TransferServiceImplTest extends BaseAlfrescoSpringTest
 
      } // testCategoriesAndTags
     
+    /**
+     * Test that content chunks are sent to the target in parallel.  The content is large enough
+     * to be sent in two chunks, and each send waits for the other to start.
+     * 
+     * This is a unit test so it does some shenanigans to send to the same instance of alfresco.
+     */
+    public void testParallelContentSend() throws Exception
+    {
+        final String targetName = "testParallelContentSend";
+        final UnitTestTransferManifestNodeFactory testNodeFactory = unitTestKludgeToTransferGuestHomeToCompanyHome();
+        ContentSendTestTransmitter transmitter = new ContentSendTestTransmitter(0, 2);
+        transferServiceImpl.setTransmitter(transmitter);
+
+        final Map<NodeRef, String> contentNodes = createLargeContentNodes(targetName, 4);
+        transferLargeContentNodes(targetName, contentNodes.keySet());
+
+        assertEquals("Content not sent in two chunks", 2, transmitter.getAttemptsByChunk().size());
+        assertEquals("Content chunks not sent in parallel", 2, transmitter.getMaxSending());
+        assertFalse("Content sent by the transferring thread", transmitter.getSendThreads().contains(Thread.currentThread()));
+        checkLargeContentNodes(testNodeFactory, contentNodes);
+    }
+
+    /**
+     * Test that a content chunk that fails to send is sent again, and that the transfer fails
+     * once the retries have run out.
+     * 
+     * This is a unit test so it does some shenanigans to send to the same instance of alfresco.
+     */
+    public void testContentSendRetry() throws Exception
+    {
+        final String targetName = "testContentSendRetry";
+        final UnitTestTransferManifestNodeFactory testNodeFactory = unitTestKludgeToTransferGuestHomeToCompanyHome();
+        Properties properties = (Properties) applicationContext.getBean("global-properties");
+        int retryCount = Integer.parseInt(properties.getProperty("transferservice.sender.contentRetryCount"));
+        assertTrue("Content retries are switched off", retryCount > 0);
+
+        /**
+         * Step 1: each chunk fails after it has been staged, so the retry sends content that
+         * the target already holds
+         */
+        ContentSendTestTransmitter transmitter = new ContentSendTestTransmitter(retryCount, 0);
+        transferServiceImpl.setTransmitter(transmitter);
+        Map<NodeRef, String> contentNodes = createLargeContentNodes(targetName, 4);
+        transferLargeContentNodes(targetName, contentNodes.keySet());
+
+        for (int attempts : transmitter.getAttemptsByChunk().values())
+        {
+            assertEquals("Chunk not retried", retryCount + 1, attempts);
+        }
+        checkLargeContentNodes(testNodeFactory, contentNodes);
+
+        /**
+         * Step 2: the chunks fail more often than they are retried
+         */
+        transmitter = new ContentSendTestTransmitter(retryCount + 1, 0);
+        transferServiceImpl.setTransmitter(transmitter);
+        contentNodes = createLargeContentNodes(targetName, 4);
+        try
+        {
+            transferLargeContentNodes(targetName, contentNodes.keySet());
+            fail("transfer did not fail when a chunk could not be sent");
+        }
+        catch (TransferException e)
+        {
+            // expect to go here
+        }
+        for (int attempts : transmitter.getAttemptsByChunk().values())
+        {
+            assertTrue("Chunk sent too many times", attempts <= retryCount + 1);
+        }
+        assertTrue("Chunk not retried", transmitter.getAttemptsByChunk().containsValue(retryCount + 1));
+    }
+
+    /**
+     * Creates nodes in guest home, each with different content of 600,000 bytes, so that every
+     * two nodes fill a content chunk.
+     * 
+     * @return the content of each node
+     */
+    private Map<NodeRef, String> createLargeContentNodes(final String targetName, final int count)
+    {
+        return transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Map<NodeRef, String>>()
+        {
+            @Override
+            public Map<NodeRef, String> execute() throws Throwable
+            {
+                ResultSet guestHomeResult = searchService.query(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, SearchService.LANGUAGE_XPATH, "/app:company_home/app:guest_home");
+                assertEquals("", 1, guestHomeResult.length());
+                NodeRef guestHome = guestHomeResult.getNodeRef(0);
+
+                Map<NodeRef, String> contentNodes = new HashMap<NodeRef, String>();
+                for (int i = 0; i < count; i++)
+                {
+                    String name = GUID.generate();
+                    NodeRef contentNodeRef = nodeService.createNode(guestHome, ContentModel.ASSOC_CONTAINS, QName.createQName(name), ContentModel.TYPE_CONTENT).getChildRef();
+                    nodeService.setProperty(contentNodeRef, ContentModel.PROP_NAME, name);
+
+                    StringBuilder content = new StringBuilder(600000);
+                    while (content.length() < 600000)
+                    {
+                        content.append(name);
+                    }
+                    content.setLength(600000);
+                    ContentWriter writer = contentService.getWriter(contentNodeRef, ContentModel.PROP_CONTENT, true);
+                    writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+                    writer.setEncoding("UTF-8");
+                    writer.putContent(content.toString());
+                    contentNodes.put(contentNodeRef, content.toString());
+                }
+
+                if (!transferService.targetExists(targetName))
+                {
+                    createTransferTarget(targetName);
+                }
+                transferService.enableTransferTarget(targetName, true);
+                return contentNodes;
+            }
+        });
+    }
+
+    private void transferLargeContentNodes(final String targetName, final Set<NodeRef> nodes)
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                TransferDefinition definition = new TransferDefinition();
+                definition.setNodes(new HashSet<NodeRef>(nodes));
+                transferService.transfer(targetName, definition);
+                return null;
+            }
+        });
+    }
+
+    private void checkLargeContentNodes(final UnitTestTransferManifestNodeFactory testNodeFactory, final Map<NodeRef, String> contentNodes)
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                for (Map.Entry<NodeRef, String> entry : contentNodes.entrySet())
+                {
+                    NodeRef destNodeRef = testNodeFactory.getMappedNodeRef(entry.getKey());
+                    assertTrue("dest node ref does not exist", nodeService.exists(destNodeRef));
+                    ContentReader reader = contentService.getReader(destNodeRef, ContentModel.PROP_CONTENT);
+                    assertNotNull("content reader is null", reader);
+                    assertEquals("Content is wrong", entry.getValue(), reader.getContentString());
+                }
+                return null;
+            }
+        }, true);
+    }
+
+    /**
+     * Sends content in-process, recording how each chunk is sent.  Each attempt to send a chunk
+     * fails after staging the content until the chunk has failed a given number of times.  Each
+     * send can also wait for a number of sends to be in progress at once.
+     */
+    private class ContentSendTestTransmitter extends UnitTestInProcessTransmitterImpl
+    {
+        private final int failuresPerChunk;
+        private final CountDownLatch concurrentSends;
+        private final Map<Set<ContentData>, Integer> attemptsByChunk = new HashMap<Set<ContentData>, Integer>();
+        private final Set<Thread> sendThreads = Collections.synchronizedSet(new HashSet<Thread>());
+        private final AtomicInteger sending = new AtomicInteger();
+        private final AtomicInteger maxSending = new AtomicInteger();
+
+        private ContentSendTestTransmitter(int failuresPerChunk, int concurrentSends)
+        {
+            super(receiver, contentService, transactionService);
+            this.failuresPerChunk = failuresPerChunk;
+            this.concurrentSends = new CountDownLatch(concurrentSends);
+        }
+
+        @Override
+        public void sendContent(Transfer transfer, Set<ContentData> data)
+        {
+            int attempt;
+            synchronized (attemptsByChunk)
+            {
+                Integer attempts = attemptsByChunk.get(data);
+                attempt = (attempts == null) ? 1 : attempts + 1;
+                attemptsByChunk.put(new HashSet<ContentData>(data), attempt);
+            }
+            sendThreads.add(Thread.currentThread());
+            int nowSending = sending.incrementAndGet();
+            try
+            {
+                synchronized (maxSending)
+                {
+                    maxSending.set(Math.max(maxSending.get(), nowSending));
+                }
+                concurrentSends.countDown();
+                try
+                {
+                    concurrentSends.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new TransferException("Interrupted while waiting for concurrent sends", e);
+                }
+
+                super.sendContent(transfer, data);
+                if (attempt <= failuresPerChunk)
+                {
+                    throw new TransferException("Failure " + attempt + " sending content chunk");
+                }
+            }
+            finally
+            {
+                sending.decrementAndGet();
+            }
+        }
+
+        private Map<Set<ContentData>, Integer> getAttemptsByChunk()
+        {
+            synchronized (attemptsByChunk)
+            {
+                return new HashMap<Set<ContentData>, Integer>(attemptsByChunk);
+            }
+        }
+
+        private Set<Thread> getSendThreads()
+        {
+            return sendThreads;
+        }
+
+        private int getMaxSending()
+        {
+            return maxSending.get();
+        }
+    }
+
     // Utility methods below.
     private TransferTarget createTransferTarget(String name)
     {   
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import javax.transaction.UserTransaction;
 
@@ -49,6 +50,7 @@ import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.cmr.security.MutableAuthenticationService;
 import org.alfresco.service.cmr.security.OwnableService;
 import org.alfresco.service.cmr.security.PersonService;
+import org.alfresco.service.cmr.usage.ContentQuotaException;
 import org.alfresco.service.cmr.usage.UsageService;
 import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
@@ -985,6 +987,160 @@ public class UserUsageTest extends TestCase
         delete(folder);
     }
     
+    public void testDeltasAccumulatedPerTx() throws Exception
+    {
+        if(!contentUsageImpl.getEnabled())
+        {
+            return;
+        }
+        
+        runAs(TEST_USER);
+        
+        NodeRef folder = createFolder("testFolder");
+        
+        addTextContent(folder, "text1.txt", "The quick brown fox jumps over the lazy dog"); // + 43
+        addTextContent(folder, "text2.txt", "Amazingly few discotheques provide jukeboxes"); // + 44
+        NodeRef content3 = addTextContent(folder, "text3.txt", "All questions asked by five watch experts amazed the judge"); // + 58
+        updateTextContent(content3, "Heavy boxes perform quick waltzes and jigs"); // -58 + 42 = -16
+        
+        // the usage includes the pending changes but nothing is written until commit
+        assertEquals(129, contentUsageImpl.getUserUsage(TEST_USER));
+        assertEquals(0, usageService.getTotalDeltaSize(personNodeRef));
+        
+        testTX.commit();
+        
+        testTX = transactionService.getUserTransaction();
+        testTX.begin();
+        runAs(TEST_USER);
+        
+        assertEquals(129, usageService.getTotalDeltaSize(personNodeRef));
+        assertEquals(129, contentUsageImpl.getUserUsage(TEST_USER));
+        
+        // changes that cancel out write nothing
+        NodeRef content4 = addTextContent(folder, "text4.txt", "The five boxing wizards jump quickly"); // + 36
+        delete(content4); // - 36
+        
+        testTX.commit();
+        
+        testTX = transactionService.getUserTransaction();
+        testTX.begin();
+        runAs(TEST_USER);
+        
+        assertEquals(129, usageService.getTotalDeltaSize(personNodeRef));
+        
+        // delete folder to cleanup
+        delete(folder);
+    }
+    
+    public void testQuotaCheckUsesCachedUsage() throws Exception
+    {
+        if(!contentUsageImpl.getEnabled())
+        {
+            return;
+        }
+        
+        Properties properties = (Properties) applicationContext.getBean("global-properties");
+        long defaultMaxStaleness = Long.parseLong(properties.getProperty("system.usages.quotaCheckMaxStalenessMillis"));
+        contentUsageImpl.setQuotaCheckMaxStalenessMillis(60000L);
+        try
+        {
+            runAsAdmin();
+            contentUsageImpl.setUserStoredUsage(personNodeRef, 0L);
+            contentUsageImpl.setUserQuota(TEST_USER, 100L);
+            runAs(TEST_USER);
+            NodeRef folder = createFolder("testFolder");
+            addTextContent(folder, "text1.txt", "The quick brown fox jumps over the lazy dog"); // + 43
+            
+            testTX.commit();
+            
+            // the quota check after a local commit reads the committed usage
+            testTX = transactionService.getUserTransaction();
+            testTX.begin();
+            runAs(TEST_USER);
+            assertQuotaExceeded(folder, "text2.txt", "All questions asked by five watch experts amazed the judge"); // + 58
+            
+            // a change made by another server is not seen while the cached usage is fresh enough
+            testTX = transactionService.getUserTransaction();
+            testTX.begin();
+            usageService.insertDelta(personNodeRef, 50L);
+            testTX.commit();
+            
+            testTX = transactionService.getUserTransaction();
+            testTX.begin();
+            runAs(TEST_USER);
+            int nodeCount = nodesToDelete.size();
+            addTextContent(folder, "text3.txt", "Amazingly few discotheques provide jukeboxes"); // + 44, 137 in total
+            rollback(nodeCount);
+            
+            // exact checks see it
+            contentUsageImpl.setQuotaCheckMaxStalenessMillis(0L);
+            testTX = transactionService.getUserTransaction();
+            testTX.begin();
+            runAs(TEST_USER);
+            assertQuotaExceeded(folder, "text3.txt", "Amazingly few discotheques provide jukeboxes");
+            
+            testTX = transactionService.getUserTransaction();
+            testTX.begin();
+            runAsAdmin();
+            contentUsageImpl.setUserQuota(TEST_USER, -1L);
+            delete(folder);
+        }
+        finally
+        {
+            contentUsageImpl.setQuotaCheckMaxStalenessMillis(defaultMaxStaleness);
+        }
+    }
+    
+    /**
+     * Adds content that must exceed the user's quota, leaving the transaction rolled back
+     */
+    private void assertQuotaExceeded(NodeRef folderRef, String name, String textData) throws Exception
+    {
+        int nodeCount = nodesToDelete.size();
+        try
+        {
+            addTextContent(folderRef, name, textData);
+            fail("Quota should have been exceeded adding " + name);
+        }
+        catch (RuntimeException e)
+        {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof ContentQuotaException))
+            {
+                cause = cause.getCause();
+            }
+            if (cause == null)
+            {
+                throw e;
+            }
+        }
+        finally
+        {
+            rollback(nodeCount);
+        }
+    }
+    
+    /**
+     * Roll back the test transaction, forgetting the nodes it created
+     */
+    private void rollback(int nodeCount) throws Exception
+    {
+        testTX.rollback();
+        while (nodesToDelete.size() > nodeCount)
+        {
+            nodesToDelete.remove(nodeCount);
+        }
+    }
+    
+    private NodeRef createFolder(String name)
+    {
+        return this.nodeService.createNode(
+                this.rootNodeRef, 
+                ContentModel.ASSOC_CHILDREN, 
+                QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name),
+                ContentModel.TYPE_FOLDER).getChildRef();
+    }
+    
     private NodeRef addTextContent(NodeRef folderRef, String name, String textData)
     {
         return addTextContent(folderRef, name, textData, false);
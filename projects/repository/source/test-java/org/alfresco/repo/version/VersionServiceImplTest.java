@@ -35,6 +35,8 @@ import junit.framework.AssertionFailedError;
 import org.alfresco.model.ApplicationModel;
 import org.alfresco.model.ContentModel;
 import org.alfresco.model.ForumModel;
+import org.alfresco.query.PagingRequest;
+import org.alfresco.query.PagingResults;
 import org.alfresco.repo.content.MimetypeMap;
 import org.alfresco.repo.jscript.ScriptNode;
 import org.alfresco.repo.security.authentication.AuthenticationComponent;
@@ -458,6 +460,35 @@ public class VersionServiceImplTest extends BaseVersionStoreTest
         addToVersionHistory(versionableNode, version4);    
     }
     
+    /**
+     * Tests paging through the version history, most recent version first
+     */
+    public void testGetVersionHistoryPaged()
+    {
+        NodeRef versionableNode = createNewVersionableNode();
+        
+        Version version1 = createVersion(versionableNode);
+        Version version2 = createVersion(versionableNode);
+        Version version3 = createVersion(versionableNode);
+        
+        PagingResults<Version> page = this.versionService.getVersionHistory(versionableNode, new PagingRequest(0, 2));
+        assertEquals(2, page.getPage().size());
+        assertEquals(version3.getVersionLabel(), page.getPage().get(0).getVersionLabel());
+        assertEquals(version2.getVersionLabel(), page.getPage().get(1).getVersionLabel());
+        assertTrue(page.hasMoreItems());
+        assertEquals(Integer.valueOf(3), page.getTotalResultCount().getFirst());
+        
+        page = this.versionService.getVersionHistory(versionableNode, new PagingRequest(2, 2));
+        assertEquals(1, page.getPage().size());
+        assertEquals(version1.getVersionLabel(), page.getPage().get(0).getVersionLabel());
+        assertFalse(page.hasMoreItems());
+        
+        // A node without a version history has an empty history
+        page = this.versionService.getVersionHistory(createNewVersionableNode(), new PagingRequest(0, 2));
+        assertEquals(0, page.getPage().size());
+        assertFalse(page.hasMoreItems());
+    }
+    
     /**
      * Same as testGetVersionHistorySameWorkspace except that the order of
      * of db ids is mixed up and a comparator is need to fix it (MNT-226).
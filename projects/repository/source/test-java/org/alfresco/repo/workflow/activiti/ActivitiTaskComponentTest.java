@@ -30,8 +30,10 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.activiti.engine.history.HistoricDetail;
 import org.activiti.engine.history.HistoricTaskInstance;
@@ -801,6 +803,51 @@ public class ActivitiTaskComponentTest extends AbstractActivitiComponentTest
         assertEquals(1, tasks.size());
     }
     
+    @Test
+    public void testQueryTasksConvertsEachTaskAsGetTaskById() throws Exception
+    {
+        // Tasks from two definitions, one with a task form and one without, interleaved
+        WorkflowDefinition adhocDef = deployTestAdhocDefinition();
+        Set<String> instanceIds = new HashSet<String>();
+        for (int i = 0; i < 2; i++)
+        {
+            instanceIds.add(workflowEngine.startWorkflow(workflowDef.getId(), new HashMap<QName, Serializable>()).getInstance().getId());
+            instanceIds.add(workflowEngine.startWorkflow(adhocDef.getId(), new HashMap<QName, Serializable>()).getInstance().getId());
+        }
+        
+        List<WorkflowTask> tasks = workflowEngine.queryTasks(createWorkflowTaskQuery(WorkflowTaskState.IN_PROGRESS));
+        Set<String> taskDefinitionIds = new HashSet<String>();
+        int count = 0;
+        for (WorkflowTask task : tasks)
+        {
+            if (!instanceIds.contains(task.getPath().getInstance().getId()))
+            {
+                continue;
+            }
+            assertSameTask(workflowEngine.getTaskById(task.getId()), task);
+            taskDefinitionIds.add(task.getDefinition().getId());
+            count++;
+        }
+        assertEquals(4, count);
+        assertEquals(2, taskDefinitionIds.size());
+    }
+    
+    private void assertSameTask(WorkflowTask expected, WorkflowTask actual)
+    {
+        assertNotNull(expected);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getState(), actual.getState());
+        assertEquals(expected.getDefinition().getId(), actual.getDefinition().getId());
+        assertEquals(expected.getDefinition().getNode().getName(), actual.getDefinition().getNode().getName());
+        assertEquals(expected.getDefinition().getMetadata().getName(), actual.getDefinition().getMetadata().getName());
+        assertEquals(expected.getPath().getId(), actual.getPath().getId());
+        assertEquals(expected.getPath().getNode().getName(), actual.getPath().getNode().getName());
+        assertEquals(expected.getProperties(), actual.getProperties());
+    }
+    
     @SuppressWarnings("unchecked")
 	@Test
     public void testUpdateTask() {
@@ -25,7 +25,12 @@ import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
@@ -56,6 +61,7 @@ import org.alfresco.service.cmr.workflow.WorkflowTask;
 import org.alfresco.service.cmr.workflow.WorkflowTaskDefinition;
 import org.alfresco.service.cmr.workflow.WorkflowTimer;
 import org.alfresco.service.namespace.QName;
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 /**
@@ -116,6 +122,48 @@ public class ActivitiWorkflowComponentTest extends AbstractActivitiComponentTest
         assertFalse("Should not find Adhoc definition.", result);
     }
 
+    @Test
+    public void testOnlyChangedDefinitionIsRedeployed() throws Exception
+    {
+        byte[] definition = IOUtils.toByteArray(getInputStream(TEST_TASK_DEF));
+        assertTrue("Should deploy a new definition.", deployIfNotDeployed(definition));
+        assertEquals(1, countTestTaskVersions());
+        
+        // The same definition again, which has been parsed already
+        ActivitiWorkflowEngine engine = spy(workflowEngine);
+        assertTrue(engine.isDefinitionDeployed(new ByteArrayInputStream(definition), XML));
+        verify(engine, never()).parseProcessId(any(InputStream.class));
+        assertFalse("Should not deploy an unchanged definition.", deployIfNotDeployed(definition));
+        assertEquals(1, countTestTaskVersions());
+        
+        // A changed definition with the same process id
+        byte[] changed = new String(definition, "UTF-8").replace("name=\"Task\"", "name=\"Changed Task\"").getBytes("UTF-8");
+        assertTrue("Should deploy a changed definition.", deployIfNotDeployed(changed));
+        assertEquals(2, countTestTaskVersions());
+        assertFalse("Should not deploy the changed definition twice.", deployIfNotDeployed(changed));
+        assertEquals(2, countTestTaskVersions());
+    }
+    
+    /**
+     * Deploys the definition unless it is already deployed, as the workflow deployer does
+     */
+    private boolean deployIfNotDeployed(byte[] definition)
+    {
+        if (workflowEngine.isDefinitionDeployed(new ByteArrayInputStream(definition), XML))
+        {
+            return false;
+        }
+        workflowEngine.deployDefinition(new ByteArrayInputStream(definition), XML);
+        return true;
+    }
+    
+    private long countTestTaskVersions()
+    {
+        return repo.createProcessDefinitionQuery()
+            .processDefinitionKey(TEST_TASK_KEY)
+            .count();
+    }
+
     @Test
     public void testUndeployDefinition() throws Exception
     {
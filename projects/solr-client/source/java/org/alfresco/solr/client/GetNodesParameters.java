@@ -43,6 +43,10 @@ public class GetNodesParameters
     private Set<QName> includeAspects;
     private Set<QName> excludeAspects;
     
+    private String shardMethod;
+    private Integer shardCount;
+    private Integer shardInstance;
+    
     public boolean getStoreFilter()
     {
         return (storeProtocol != null || storeIdentifier != null);
@@ -137,4 +141,34 @@ public class GetNodesParameters
     {
         this.excludeAspects = excludeAspects;
     }
+
+    public String getShardMethod()
+    {
+        return shardMethod;
+    }
+
+    public void setShardMethod(String shardMethod)
+    {
+        this.shardMethod = shardMethod;
+    }
+
+    public Integer getShardCount()
+    {
+        return shardCount;
+    }
+
+    public void setShardCount(Integer shardCount)
+    {
+        this.shardCount = shardCount;
+    }
+
+    public Integer getShardInstance()
+    {
+        return shardInstance;
+    }
+
+    public void setShardInstance(Integer shardInstance)
+    {
+        this.shardInstance = shardInstance;
+    }
 }
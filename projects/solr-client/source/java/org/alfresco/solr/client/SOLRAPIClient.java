@@ -90,6 +90,7 @@ public class SOLRAPIClient
     private static final String GET_ACLS = "api/solr/acls";
     private static final String GET_ACLS_READERS = "api/solr/aclsReaders";
     private static final String GET_TRANSACTIONS_URL = "api/solr/transactions";
+    private static final String GET_TRANSACTION_COMMIT_URL = "api/solr/transactionCommit";
     private static final String GET_METADATA_URL = "api/solr/metadata";
     private static final String GET_NODES_URL = "api/solr/nodes";
     private static final String GET_CONTENT = "api/solr/textContent";
@@ -541,6 +542,58 @@ public class SOLRAPIClient
         return new Transactions(transactions, maxTxnCommitTime, maxTxnIdOnServer);
     }
     
+    /**
+     * Wait on the repository for a transaction newer than <tt>afterTxnId</tt> to be committed.
+     * 
+     * @param afterTxnId        the last transaction ID known to the caller
+     * @param waitMillis        the maximum time to wait (the repository may impose a lower limit)
+     * @return                  the ID of the last transaction committed by the repository server,
+     *                          <tt>-1</tt> if it has not seen any or <tt>null</tt> if the repository
+     *                          does not support commit notification
+     */
+    public Long waitForTransactionCommit(Long afterTxnId, long waitMillis) throws AuthenticationException, IOException, JSONException
+    {
+        StringBuilder url = new StringBuilder(GET_TRANSACTION_COMMIT_URL);
+        url.append("?").append("afterTxnId").append("=").append(afterTxnId);
+        url.append("&").append("waitMillis").append("=").append(waitMillis);
+        
+        GetRequest req = new GetRequest(url.toString());
+        Response response = null;
+        Long lastCommittedTxnId = null;
+        try
+        {
+            response = repositoryHttpClient.sendRequest(req);
+            if(response.getStatus() != HttpStatus.SC_OK)
+            {
+                throw new AlfrescoRuntimeException("WaitForTransactionCommit return status is " + response.getStatus());
+            }
+
+            Reader reader = new BufferedReader(new InputStreamReader(response.getContentAsStream(), "UTF-8"));
+            JsonParser parser = jsonFactory.createJsonParser(reader);
+            
+            JsonToken token = parser.nextValue();
+            while (token != null) 
+            {
+                if ("lastCommittedTxnId".equals(parser.getCurrentName()))
+                {
+                    lastCommittedTxnId = parser.getLongValue();
+                }
+                token = parser.nextValue();
+            }
+            parser.close();
+            reader.close();
+        }
+        finally
+        {
+            if(response != null)
+            {
+                response.release();
+            }
+        }
+
+        return lastCommittedTxnId;
+    }
+    
     public List<Node> getNodes(GetNodesParameters parameters, int maxResults) throws AuthenticationException, IOException, JSONException
     {
         StringBuilder url = new StringBuilder(GET_NODES_URL);
@@ -593,6 +646,13 @@ public class SOLRAPIClient
         {
             body.put("storeIdentifier", parameters.getStoreIdentifier());
         }
+
+        if(parameters.getShardMethod() != null)
+        {
+            body.put("shardMethod", parameters.getShardMethod());
+            body.put("shardCount", parameters.getShardCount());
+            body.put("shardInstance", parameters.getShardInstance());
+        }
         
         body.put("maxResults", maxResults);
 
@@ -1045,6 +1105,18 @@ public class SOLRAPIClient
     }
     
     public GetTextContentResponse getTextContent(Long nodeId, QName propertyQName, Long modifiedSince) throws AuthenticationException, IOException
+    {
+        return getTextContent(nodeId, propertyQName, modifiedSince, null);
+    }
+    
+    /**
+     * Get the text content of a node's content property.
+     * 
+     * @param modifiedSince         only return the text if the node was modified after this time, or <tt>null</tt>
+     * @param eTag                  the {@link GetTextContentResponse#getETag() ETag} of text already held, or <tt>null</tt>.
+     *                              If the text is unchanged, the response is {@link SolrApiContentStatus#NOT_MODIFIED} without any content.
+     */
+    public GetTextContentResponse getTextContent(Long nodeId, QName propertyQName, Long modifiedSince, String eTag) throws AuthenticationException, IOException
     {
         StringBuilder url = new StringBuilder(128);
         url.append(GET_CONTENT);
@@ -1080,10 +1152,17 @@ public class SOLRAPIClient
         
         GetRequest req = new GetRequest(url.toString());
         
+        Map<String, String> headers = new HashMap<String, String>(2, 1.0f);
         if(modifiedSince != null)
         {
-            Map<String, String> headers = new HashMap<String, String>(1, 1.0f);
             headers.put("If-Modified-Since", String.valueOf(DateUtil.formatDate(new Date(modifiedSince))));
+        }
+        if(eTag != null)
+        {
+            headers.put("If-None-Match", "\"" + eTag + "\"");
+        }
+        if(!headers.isEmpty())
+        {
             req.setHeaders(headers);
         }
 
@@ -1449,12 +1528,14 @@ public class SOLRAPIClient
         private String transformException;
         private String transformStatusStr;
         private Long transformDuration;
+        private String eTag;
 
         public GetTextContentResponse(Response response) throws IOException
         {
             super(response);
 
             this.content = response.getContentAsStream();
+            this.eTag = unquoteETag(response.getHeader("ETag"));
             this.transformStatusStr = response.getHeader("X-Alfresco-transformStatus");
             this.transformException = response.getHeader("X-Alfresco-transformException");
             String tmp = response.getHeader("X-Alfresco-transformDuration");
@@ -1525,6 +1606,32 @@ public class SOLRAPIClient
         {
             return transformDuration;
         }
+
+        /**
+         * @return the unquoted ETag of the text, or <tt>null</tt> if the repository did not send one
+         */
+        public String getETag()
+        {
+            return eTag;
+        }
+
+        private static String unquoteETag(String header)
+        {
+            if(header == null)
+            {
+                return null;
+            }
+            String eTag = header.trim();
+            if(eTag.startsWith("W/"))
+            {
+                eTag = eTag.substring(2);
+            }
+            if(eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\""))
+            {
+                eTag = eTag.substring(1, eTag.length() - 1);
+            }
+            return eTag;
+        }
     }
 
     public void close()
@@ -46,6 +46,8 @@ public class TrackerStats
 
     ConcurrentHashMap<String, IncrementalStats> docTransformationTimes = new ConcurrentHashMap<String, IncrementalStats>();
 
+    ConcurrentHashMap<String, IncrementalStats> docTransformationSizes = new ConcurrentHashMap<String, IncrementalStats>();
+
     ConcurrentHashMap<String, IncrementalStats> nodeTimes = new ConcurrentHashMap<String, IncrementalStats>();
     
     ConcurrentHashMap<String, IncrementalStats> elapsedNodeTimes = new ConcurrentHashMap<String, IncrementalStats>();
@@ -54,6 +56,10 @@ public class TrackerStats
     
     ConcurrentHashMap<String, IncrementalStats> elapsedContentTimes = new ConcurrentHashMap<String, IncrementalStats>();
 
+    private volatile long contentBacklog = 0L;
+
+    private volatile double contentDocsPerSecond = 0.0;
+
     private InformationServerCollectionProvider infoSrv;
     
     public TrackerStats(InformationServerCollectionProvider server)
@@ -162,6 +168,14 @@ public class TrackerStats
         return aggregateResults(docTransformationTimes);
     }
 
+    /**
+     * @return the docTransformationSizes
+     */
+    public SimpleStats getDocTransformationSizes()
+    {
+        return aggregateResults(docTransformationSizes);
+    }
+
     public double getMeanModelSyncTime()
     {
         return aggregateResults(modelTimes).getMean();
@@ -187,6 +201,38 @@ public class TrackerStats
         return aggregateResults(elapsedContentTimes).getMean();
     }
 
+    /**
+     * @return the number of docs found with unclean content by the last content tracking pass
+     */
+    public long getContentBacklog()
+    {
+        return contentBacklog;
+    }
+
+    /**
+     * @param contentBacklog the number of docs found with unclean content by a content tracking pass
+     */
+    public void setContentBacklog(long contentBacklog)
+    {
+        this.contentBacklog = contentBacklog;
+    }
+
+    /**
+     * @return the content update rate of the last content tracking pass that updated content
+     */
+    public double getContentDocsPerSecond()
+    {
+        return contentDocsPerSecond;
+    }
+
+    /**
+     * @param contentDocsPerSecond the content update rate of a content tracking pass
+     */
+    public void setContentDocsPerSecond(double contentDocsPerSecond)
+    {
+        this.contentDocsPerSecond = contentDocsPerSecond;
+    }
+
     public double getNodeIndexingThreadCount()
     {
         return nodeTimes.size();
@@ -950,6 +996,20 @@ public class TrackerStats
         stats.add(time);
     }
 
+    /**
+     * @param size long
+     */
+    public void addDocTransformationSize(long size)
+    {
+        IncrementalStats stats = docTransformationSizes.get(Thread.currentThread().getName());
+        if (stats == null)
+        {
+            stats = new IncrementalStats(1, 50, this.infoSrv);
+            docTransformationSizes.put(Thread.currentThread().getName(), stats);
+        }
+        stats.add(size);
+    }
+
     /*
      * (non-Javadoc)
      * @see java.lang.Object#toString()
@@ -959,6 +1019,7 @@ public class TrackerStats
     {
         return "TrackerStats [modelTimes="
                 + modelTimes + ", aclTimes=" + aclTimes + ", changeSetAcls=" + changeSetAcls + ", txDocs=" + txDocs + ", docTransformationTimes=" + docTransformationTimes
+                + ", docTransformationSizes=" + docTransformationSizes
                 + ", nodeTimes=" + nodeTimes + "]";
     }
 
@@ -972,7 +1033,10 @@ public class TrackerStats
         changeSetAcls.clear();
         txDocs.clear();
         docTransformationTimes.clear();
+        docTransformationSizes.clear();
         nodeTimes.clear();
+        contentBacklog = 0L;
+        contentDocsPerSecond = 0.0;
     }
 
  
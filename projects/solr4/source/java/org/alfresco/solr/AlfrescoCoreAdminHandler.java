@@ -1213,6 +1213,8 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         
         coreSummary.add("Approx content indexing time remaining",
                 remainingContent.largestComponentformattedString());
+        coreSummary.add("Content backlog", srv.getTrackerStats().getContentBacklog());
+        coreSummary.add("Content docs/s", srv.getTrackerStats().getContentDocsPerSecond());
 
         // Stats
 
@@ -1225,6 +1227,8 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         coreSummary.add("Docs/Tx", srv.getTrackerStats().getTxDocs().getNamedList(detail, hist, values));
         coreSummary.add("Doc Transformation time (ms)", srv.getTrackerStats().getDocTransformationTimes()
                     .getNamedList(detail, hist, values));
+        coreSummary.add("Doc Transformation size (bytes)", srv.getTrackerStats().getDocTransformationSizes()
+                    .getNamedList(detail, hist, values));
 
         // Model
 
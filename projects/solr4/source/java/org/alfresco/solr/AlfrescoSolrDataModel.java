@@ -146,7 +146,8 @@ public class AlfrescoSolrDataModel implements QueryConstants
         ENCODING,
         TRANSFORMATION_STATUS,
         TRANSFORMATION_TIME,
-        TRANSFORMATION_EXCEPTION
+        TRANSFORMATION_EXCEPTION,
+        ETAG
     }
     
     public static final String CONTENT_S_LOCALE_PREFIX = "content@s__locale@";
@@ -688,6 +689,9 @@ public class AlfrescoSolrDataModel implements QueryConstants
             case TRANSFORMATION_TIME:
                 builder.append("tr_time");
                 break;
+            case ETAG:
+                builder.append("etag");
+                break;
             default:
                 break;
             }
@@ -108,7 +108,14 @@ public interface InformationServer extends InformationServerCollectionProvider
 
     IndexHealthReport reportIndexTransactions(Long minTxId, IOpenBitSet txIdsInDb, long maxTxId) throws IOException;
 
-    List<TenantAclIdDbId> getDocsWithUncleanContent(int start, int rows) throws IOException;
+    /**
+     * Gets docs with unclean content, most recently created nodes first.
+     * 
+     * @param beforeDbId only docs for nodes with a lower DB id, so that pages are not shifted by docs being
+     *        cleaned in the meantime; null for the first page
+     * @param rows the page size
+     */
+    List<TenantAclIdDbId> getDocsWithUncleanContent(Long beforeDbId, int rows) throws IOException;
 
     void updateContentToIndexAndCache(long dbId, String tenant) throws Exception;
 
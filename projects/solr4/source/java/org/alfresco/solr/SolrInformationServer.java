@@ -132,6 +132,7 @@ import org.alfresco.solr.client.NodeMetaDataParameters;
 import org.alfresco.solr.client.PropertyValue;
 import org.alfresco.solr.client.SOLRAPIClient;
 import org.alfresco.solr.client.SOLRAPIClient.GetTextContentResponse;
+import org.alfresco.solr.client.SOLRAPIClient.SolrApiContentStatus;
 import org.alfresco.solr.client.StringPropertyValue;
 import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.content.SolrContentStore;
@@ -690,7 +691,7 @@ public class SolrInformationServer implements InformationServer
     }
     
     @Override
-    public List<TenantAclIdDbId> getDocsWithUncleanContent(int start, int rows) throws IOException
+    public List<TenantAclIdDbId> getDocsWithUncleanContent(Long beforeDbId, int rows) throws IOException
     {
         SolrQueryRequest request = null;
         try
@@ -701,9 +702,13 @@ public class SolrInformationServer implements InformationServer
             params.set("q", query)
                 .set("fl", FIELD_SOLR4_ID)
                 .set("rows", rows)
-                .set("start", start)
-                .set("sort", "_docid_ asc");
+                // recently created nodes first, paged by DB id rather than offset so no docs are skipped
+                .set("sort", FIELD_DBID + " desc");
                 // no scoring !!
+            if (beforeDbId != null)
+            {
+                params.set("fq", FIELD_DBID + ":[* TO " + (beforeDbId - 1) + "]");
+            }
             List<TenantAclIdDbId> docIds = new ArrayList<>();
             SolrDocumentList docList = cloud.getSolrDocumentList(nativeRequestHandler, request, params);
             if (docList != null)
@@ -2295,6 +2300,12 @@ public class SolrInformationServer implements InformationServer
             case TRANSFORMATION_TIME:
                 doc.addField(fieldInstance.getField(), textContentResponse.getTransformDuration());
                 break;
+            case ETAG:
+                if (textContentResponse.getETag() != null)
+                {
+                    doc.addField(fieldInstance.getField(), textContentResponse.getETag());
+                }
+                break;
                 // Skips the ones that require the ContentPropertyValue
                 default:
                 break;
@@ -2372,6 +2383,12 @@ public class SolrInformationServer implements InformationServer
             String transformationTimeFieldName = getSolrFieldNameForContentPropertyMetadata(propertyQName, 
                         AlfrescoSolrDataModel.ContentFieldType.TRANSFORMATION_TIME);
             newDoc.addField(transformationTimeFieldName, cachedDoc.getFieldValue(transformationTimeFieldName));
+            String eTagFieldName = getSolrFieldNameForContentPropertyMetadata(propertyQName, 
+                        AlfrescoSolrDataModel.ContentFieldType.ETAG);
+            if (cachedDoc.getFieldValue(eTagFieldName) != null)
+            {
+                newDoc.addField(eTagFieldName, cachedDoc.getFieldValue(eTagFieldName));
+            }
 
             // Gets the new content docid and compares to that of the cachedDoc to mark the content as clean/dirty
             String fldName = getSolrFieldNameForContentPropertyMetadata(propertyQName, 
@@ -2515,9 +2532,24 @@ public class SolrInformationServer implements InformationServer
     {
         long start = System.nanoTime();
         
+        // The text already in the doc was fetched with this ETag, so the repository can tell us it is unchanged
+        String eTagFieldName = getSolrFieldNameForContentPropertyMetadata(propertyQName,
+                    AlfrescoSolrDataModel.ContentFieldType.ETAG);
+        Object eTag = (eTagFieldName == null) ? null : doc.getFieldValue(eTagFieldName);
+        
         // Expensive call to be done with ContentTracker
-        GetTextContentResponse response = repositoryClient.getTextContent(dbId, propertyQName, null);
+        GetTextContentResponse response = repositoryClient.getTextContent(dbId, propertyQName, null,
+                    (eTag == null) ? null : eTag.toString());
+        
+        if (response.getStatus() == SolrApiContentStatus.NOT_MODIFIED)
+        {
+            // Keep the text and transformation metadata already in the doc
+            response.release();
+            this.getTrackerStats().addDocTransformationTime(System.nanoTime() - start);
+            return;
+        }
         
+        addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.ContentFieldType.ETAG, response);
         addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.ContentFieldType.TRANSFORMATION_STATUS,
                 response);
         addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.ContentFieldType.TRANSFORMATION_EXCEPTION,
@@ -2534,6 +2566,7 @@ public class SolrInformationServer implements InformationServer
                 // Get and copy content
                 byte[] bytes = FileCopyUtils.copyToByteArray(new BoundedInputStream(ris, contentStreamLimit));
                 textContent = new String(bytes, "UTF8");
+                this.getTrackerStats().addDocTransformationSize(bytes.length);
             }
         }
         finally
@@ -20,30 +20,50 @@ package org.alfresco.solr.cache;
 
 import java.io.IOException;
 
-import org.alfresco.solr.query.SolrCachingPathQuery;
+import org.alfresco.solr.query.SolrCachingPathScorer;
+import org.alfresco.solr.query.SolrPathCacheEntry;
 import org.alfresco.solr.query.SolrPathQuery;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.CacheRegenerator;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
  * {@link CacheRegenerator} for alfrescoPathCache
+ * <p>
+ * Entries hold the matches of a path query per segment. The matches for segments that are still part of the new searcher
+ * are carried over as-is and those for segments that have gone, e.g. merged away, are dropped; the path query is only
+ * re-evaluated for segments that are new since the old searcher was opened.
  * 
  * @author Matt Ward
  */
 public class PathCacheRegenerator implements CacheRegenerator
 {
-    @SuppressWarnings({ "rawtypes" })
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
     public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache,
                 SolrCache oldCache, Object oldKey, Object oldVal) throws IOException
     {
-        if (oldKey instanceof SolrPathQuery)
+        if ((oldKey instanceof SolrPathQuery) && (oldVal instanceof SolrPathCacheEntry))
         {
             SolrPathQuery pathQuery = (SolrPathQuery) oldKey;
-            // Re-execute the path query in a cache-aware context - causing new results to be cached.
-            SolrCachingPathQuery cachingPathQuery = new SolrCachingPathQuery(pathQuery);
-            newSearcher.getDocSet(cachingPathQuery);
+            SolrPathCacheEntry oldEntry = (SolrPathCacheEntry) oldVal;
+            // The old entry is still used by the old searcher, so a new one is built for the new searcher
+            SolrPathCacheEntry newEntry = new SolrPathCacheEntry();
+            for (AtomicReaderContext context : newSearcher.getTopReaderContext().leaves())
+            {
+                Object coreCacheKey = context.reader().getCoreCacheKey();
+                // Segment results ignore deletions, so they remain valid for as long as the segment core is open.
+                DocSet matches = oldEntry.getSegmentMatches(coreCacheKey);
+                if (matches == null)
+                {
+                    // New segment: evaluate the path query for this segment only.
+                    matches = SolrCachingPathScorer.getSegmentMatches(newSearcher, context, pathQuery);
+                }
+                newEntry.putSegmentMatches(coreCacheKey, matches);
+            }
+            newCache.put(pathQuery, newEntry);
         }
         return true;
     }
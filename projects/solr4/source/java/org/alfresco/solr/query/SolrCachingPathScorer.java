@@ -22,25 +22,64 @@ import java.io.IOException;
 
 import org.alfresco.solr.cache.CacheConstants;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.search.BitDocSet;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
-import org.apache.solr.search.WrappedQuery;
+import org.apache.solr.search.SortedIntDocSet;
 
 /**
- * Caching wrapper for {@link SolrPathQuery}.
- *  
- * @author Matt Ward
+ * Scorer over the cached, segment-local results of a {@link SolrPathQuery}.
+ * <p>
+ * Results are cached by query, and within the cache entry per segment (see {@link SolrPathCacheEntry}), without applying
+ * deletions, so a segment's matches stay valid for as long as its segment core is open; deletions are applied at scoring
+ * time via the accept docs and the segment's live docs.
+ * <p>
+ * As path queries usually match few documents, small results are held as sorted doc ids and only results larger than
+ * 1/64th of the segment (as for Solr's own DocSetCollector) are held as a bit set.
  */
-public class SolrCachingPathScorer extends AbstractSolrCachingScorer
+public class SolrCachingPathScorer extends Scorer
 {
-    SolrCachingPathScorer(Weight weight, DocSet in, AtomicReaderContext context, Bits acceptDocs, SolrIndexSearcher searcher)
+    /** Sorted segment-local matches, if the result is small */
+    private final int[] docs;
+
+    /** Segment-local matches, if the result is large */
+    private final FixedBitSet bits;
+
+    private final long cost;
+
+    private final Bits acceptDocs;
+
+    private final Bits liveDocs;
+
+    private int doc = -1;
+
+    /** Position in docs of the next candidate */
+    private int index = 0;
+
+    SolrCachingPathScorer(Weight weight, DocSet matches, AtomicReaderContext context, Bits acceptDocs)
     {
-        super(weight, in, context, acceptDocs, searcher);
+        super(weight);
+        if (matches instanceof BitDocSet)
+        {
+            this.docs = null;
+            this.bits = ((BitDocSet) matches).getBits();
+        }
+        else
+        {
+            this.docs = ((SortedIntDocSet) matches).getDocs();
+            this.bits = null;
+        }
+        this.cost = matches.size();
+        this.acceptDocs = acceptDocs;
+        this.liveDocs = context.reader().getLiveDocs();
     }
 
-
     /**
      * Factory method used to create {@link SolrCachingPathScorer} instances.
      * @param acceptDocs 
@@ -50,16 +89,152 @@ public class SolrCachingPathScorer extends AbstractSolrCachingScorer
                                                Bits acceptDocs, SolrIndexSearcher searcher,
                                                SolrPathQuery wrappedPathQuery) throws IOException
     {
-        DocSet results = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery);
-        if (results == null)
+        SolrPathCacheEntry entry = (SolrPathCacheEntry) searcher.cacheLookup(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery);
+        if (entry == null)
+        {
+            entry = new SolrPathCacheEntry();
+            searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery, entry);
+        }
+        Object coreCacheKey = context.reader().getCoreCacheKey();
+        DocSet matches = entry.getSegmentMatches(coreCacheKey);
+        if (matches == null)
         {
-            // Cache miss: get path query results and cache them
-            WrappedQuery wrapped = new WrappedQuery(wrappedPathQuery);
-            wrapped.setCache(false);
-            results = searcher.getDocSet(wrapped);
-            searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery, results);
+            // Cache miss: evaluate the path query against this segment only and cache the result
+            matches = getSegmentMatches(searcher, context, wrappedPathQuery);
+            entry.putSegmentMatches(coreCacheKey, matches);
         }
         
-        return new SolrCachingPathScorer(weight, results, context, acceptDocs, searcher);
+        return new SolrCachingPathScorer(weight, matches, context, acceptDocs);
+    }
+
+    /**
+     * Evaluate a path query against a single segment.
+     * 
+     * @return the matching segment-local doc ids, ignoring deletions
+     */
+    public static DocSet getSegmentMatches(IndexSearcher searcher, AtomicReaderContext context, SolrPathQuery pathQuery) throws IOException
+    {
+        int maxDoc = context.reader().maxDoc();
+        int smallSetSize = (maxDoc >> 6) + 5;
+        int[] docs = new int[Math.min(smallSetSize, 64)];
+        int size = 0;
+        FixedBitSet bits = null;
+        Scorer scorer = pathQuery.createWeight(searcher).scorer(context, null);
+        if (scorer != null)
+        {
+            for (int current = scorer.nextDoc(); current != DocIdSetIterator.NO_MORE_DOCS; current = scorer.nextDoc())
+            {
+                if (bits != null)
+                {
+                    bits.set(current);
+                }
+                else if (size < smallSetSize)
+                {
+                    if (size == docs.length)
+                    {
+                        int[] grown = new int[Math.min(smallSetSize, docs.length * 2)];
+                        System.arraycopy(docs, 0, grown, 0, size);
+                        docs = grown;
+                    }
+                    docs[size++] = current;
+                }
+                else
+                {
+                    // Too many matches to hold as doc ids: switch to a bit set
+                    bits = new FixedBitSet(maxDoc);
+                    for (int i = 0; i < size; i++)
+                    {
+                        bits.set(docs[i]);
+                    }
+                    bits.set(current);
+                    docs = null;
+                }
+            }
+        }
+        if (bits != null)
+        {
+            return new BitDocSet(bits);
+        }
+        return new SortedIntDocSet(docs, size);
+    }
+
+    private boolean accept(int current)
+    {
+        return ((acceptDocs == null) || acceptDocs.get(current)) && ((liveDocs == null) || liveDocs.get(current));
+    }
+
+    @Override
+    public int nextDoc() throws IOException
+    {
+        if (doc == NO_MORE_DOCS)
+        {
+            return doc;
+        }
+        return advance(doc + 1);
+    }
+
+    @Override
+    public int docID()
+    {
+        return doc;
+    }
+
+    @Override
+    public float score() throws IOException
+    {
+        return 1.0f;
+    }
+
+    @Override
+    public int advance(int target) throws IOException
+    {
+        if (docs != null)
+        {
+            while ((index < docs.length) && (docs[index] < target))
+            {
+                index++;
+            }
+            while (index < docs.length)
+            {
+                int current = docs[index++];
+                if (accept(current))
+                {
+                    doc = current;
+                    return doc;
+                }
+            }
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+        
+        int current = target;
+        while (current < bits.length())
+        {
+            current = bits.nextSetBit(current);
+            if (current == -1)
+            {
+                break;
+            }
+            if (accept(current))
+            {
+                doc = current;
+                return doc;
+            }
+            current++;
+        }
+        doc = NO_MORE_DOCS;
+        return doc;
+    }
+
+    @Override
+    public int freq() throws IOException
+    {
+        return 1;
+    }
+
+    @Override
+    public long cost()
+    {
+        return cost;
     }
 }
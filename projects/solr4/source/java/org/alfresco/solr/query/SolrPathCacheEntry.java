@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.solr.query;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.solr.search.DocSet;
+
+/**
+ * Value of alfrescoPathCache entries, which are keyed by {@link SolrPathQuery}. The query's matches are held per index
+ * segment, keyed by the segment's core cache key, so that the matches for segments that survive a commit can be carried
+ * over to the new searcher unchanged and only new segments need to be evaluated.
+ */
+public class SolrPathCacheEntry
+{
+    private final ConcurrentMap<Object, DocSet> segmentMatches = new ConcurrentHashMap<Object, DocSet>();
+
+    /**
+     * @return the matches in the segment, ignoring deletions, or <tt>null</tt> if the segment has not been evaluated
+     */
+    public DocSet getSegmentMatches(Object coreCacheKey)
+    {
+        return segmentMatches.get(coreCacheKey);
+    }
+
+    public void putSegmentMatches(Object coreCacheKey, DocSet matches)
+    {
+        segmentMatches.put(coreCacheKey, matches);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SolrPathCacheEntry[segments=" + segmentMatches.size() + "]";
+    }
+}
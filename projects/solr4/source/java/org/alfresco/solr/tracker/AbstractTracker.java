@@ -23,6 +23,7 @@ import java.net.SocketTimeoutException;
 import java.util.Properties;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.alfresco.repo.index.shard.ShardMethodEnum;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.solr.IndexTrackingShutdownException;
 import org.alfresco.solr.InformationServer;
@@ -61,6 +62,7 @@ public abstract class AbstractTracker implements Tracker
     private volatile TrackerState state;
     protected int shardCount;
     protected int shardInstance;
+    protected ShardMethodEnum shardMethod;
     protected boolean transformContent;
     protected String shardTemplate;
     
@@ -95,6 +97,12 @@ public abstract class AbstractTracker implements Tracker
         shardCount =  Integer.parseInt(p.getProperty("acl.shard.count", "0"));
         shardInstance =  Integer.parseInt(p.getProperty("acl.shard.instance", "0"));
         shardTemplate =  p.getProperty("acl.shard.template", "");
+        shardMethod = ShardMethodEnum.getShardMethod(p.getProperty("shard.method", ShardMethodEnum.MOD_ACL_ID.toString()));
+        if (shardMethod == ShardMethodEnum.UNKOWN)
+        {
+            log.warn("Unknown shard.method " + p.getProperty("shard.method") + ", using " + ShardMethodEnum.MOD_ACL_ID);
+            shardMethod = ShardMethodEnum.MOD_ACL_ID;
+        }
         
         transformContent = Boolean.parseBoolean(p.getProperty("alfresco.index.transformContent", "true"));
 
@@ -110,7 +118,8 @@ public abstract class AbstractTracker implements Tracker
      */
     protected boolean isInAclShard(long aclId)
     {
-        if(shardCount > 1)
+        // ACLs are needed by every shard unless the nodes are sharded by ACL
+        if((shardCount > 1) && (shardMethod == ShardMethodEnum.MOD_ACL_ID))
         {
             return (aclId % shardCount) == shardInstance;
         }
@@ -120,6 +129,22 @@ public abstract class AbstractTracker implements Tracker
         }
     }
 
+    /**
+     * @param node
+     * @return true if the node is indexed by this shard
+     */
+    protected boolean isInShard(Node node)
+    {
+        if((shardCount > 1) && (shardMethod == ShardMethodEnum.DB_ID))
+        {
+            return (node.getId() % shardCount) == shardInstance;
+        }
+        else
+        {
+            return isInAclShard(node.getAclId());
+        }
+    }
+
 
     
     /**
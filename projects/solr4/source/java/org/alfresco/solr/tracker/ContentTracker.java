@@ -18,8 +18,12 @@
  */
     package org.alfresco.solr.tracker;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.alfresco.solr.AlfrescoSolrDataModel.TenantAclIdDbId;
 import org.alfresco.solr.InformationServer;
@@ -38,6 +42,12 @@ public class ContentTracker extends AbstractTracker implements Tracker
     protected final static Logger log = LoggerFactory.getLogger(ContentTracker.class);
     private int contentReadBatchSize;
     private int contentUpdateBatchSize;
+    private int contentFetchRateLimit;
+    private long contentRetryInitialDelay;
+    private long contentRetryMaxDelay;
+    private long nextFetchPermit = 0L;
+    // Docs whose content update failed, keyed by tenant and DB id, so that they can be backed off
+    private ConcurrentHashMap<String, ContentRetry> contentRetries = new ConcurrentHashMap<>();
     
 
     public ContentTracker(Properties p, SOLRAPIClient client, String coreName,
@@ -46,6 +56,9 @@ public class ContentTracker extends AbstractTracker implements Tracker
         super(p, client, coreName, informationServer);
         contentReadBatchSize = Integer.parseInt(p.getProperty("alfresco.contentReadBatchSize", "4000"));
         contentUpdateBatchSize = Integer.parseInt(p.getProperty("alfresco.contentUpdateBatchSize", "1000"));
+        contentFetchRateLimit = Integer.parseInt(p.getProperty("alfresco.contentFetchRateLimit", "0"));
+        contentRetryInitialDelay = Long.parseLong(p.getProperty("alfresco.contentRetryInitialDelay", "60000"));
+        contentRetryMaxDelay = Long.parseLong(p.getProperty("alfresco.contentRetryMaxDelay", "3600000"));
         threadHandler = new ThreadHandler(p, coreName, "ContentTracker");
     }
     
@@ -68,18 +81,27 @@ public class ContentTracker extends AbstractTracker implements Tracker
         }
         
         final int ROWS = contentReadBatchSize;
-        int start = 0;
         long totalDocs = 0l;
+        long fetchedDocs = 0l;
+        long passStartElapsed = startElapsed;
+        Set<String> uncleanDocs = new HashSet<String>();
         checkShutdown();
-        List<TenantAclIdDbId> docs = this.infoSrv.getDocsWithUncleanContent(start, ROWS);
+        // Most recent nodes first, so that new content becomes searchable soonest after a bulk load
+        List<TenantAclIdDbId> docs = this.infoSrv.getDocsWithUncleanContent(null, ROWS);
         while (!docs.isEmpty())
         {
             int docsUpdatedSinceLastCommit = 0;
             for (TenantAclIdDbId doc : docs)
             {
+                uncleanDocs.add(getRetryKey(doc));
+                if (isBackedOff(doc))
+                {
+                    continue;
+                }
                 ContentIndexWorkerRunnable ciwr = new ContentIndexWorkerRunnable(super.threadHandler, doc, infoSrv);
                 super.threadHandler.scheduleTask(ciwr);
                 docsUpdatedSinceLastCommit ++;
+                fetchedDocs ++;
                 
                 if (docsUpdatedSinceLastCommit >= contentUpdateBatchSize)
                 {
@@ -106,12 +128,94 @@ public class ContentTracker extends AbstractTracker implements Tracker
                 trackerStats.addElapsedContentTime(docsUpdatedSinceLastCommit, endElapsed-startElapsed);
             }
             totalDocs += docs.size();
-            start += ROWS;
+            Long lastDbId = docs.get(docs.size() - 1).dbId;
             checkShutdown();
-            docs = this.infoSrv.getDocsWithUncleanContent(start, ROWS);
+            docs = this.infoSrv.getDocsWithUncleanContent(lastDbId, ROWS);
         }
         
         log.info("total number of docs with content updated: " + totalDocs);
+        trackerStats.setContentBacklog(uncleanDocs.size());
+        if (fetchedDocs > 0)
+        {
+            trackerStats.setContentDocsPerSecond(fetchedDocs * TimeUnit.SECONDS.toNanos(1) / (double) (System.nanoTime() - passStartElapsed));
+        }
+        // Forget failures for docs that are no longer unclean, eg. because the node has been deleted
+        contentRetries.keySet().retainAll(uncleanDocs);
+        if (!contentRetries.isEmpty())
+        {
+            log.info("number of docs with content update failures awaiting retry: " + contentRetries.size());
+        }
+    }
+
+    /**
+     * Blocks until the next content fetch is allowed by <code>alfresco.contentFetchRateLimit</code> (fetches per
+     * second, 0 for no limit), so that a content backlog cannot flood the repository with transformation requests.
+     */
+    private void acquireFetchPermit() throws InterruptedException
+    {
+        if (contentFetchRateLimit <= 0)
+        {
+            return;
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / contentFetchRateLimit;
+        long wait;
+        synchronized (this)
+        {
+            // Reserve the next free slot, then wait for it outside the lock
+            long now = System.nanoTime();
+            long permit = Math.max(now, nextFetchPermit);
+            nextFetchPermit = permit + interval;
+            wait = permit - now;
+        }
+        if (wait > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * A doc that has failed is left unclean in the index, so it is offered again on every pass. Skip it until its
+     * back off period has elapsed so that a slow or failing transformation does not hold up the rest of the backlog.
+     */
+    private boolean isBackedOff(TenantAclIdDbId doc)
+    {
+        ContentRetry retry = contentRetries.get(getRetryKey(doc));
+        return (retry != null) && (retry.nextAttempt > System.currentTimeMillis());
+    }
+
+    private void recordFailure(TenantAclIdDbId doc)
+    {
+        String key = getRetryKey(doc);
+        ContentRetry retry = contentRetries.get(key);
+        int attempts = (retry == null) ? 1 : retry.attempts + 1;
+        long delay = contentRetryInitialDelay << Math.min(attempts - 1, 20);
+        if ((delay <= 0) || (delay > contentRetryMaxDelay))
+        {
+            delay = contentRetryMaxDelay;
+        }
+        contentRetries.put(key, new ContentRetry(attempts, System.currentTimeMillis() + delay));
+    }
+
+    private void recordSuccess(TenantAclIdDbId doc)
+    {
+        contentRetries.remove(getRetryKey(doc));
+    }
+
+    private static String getRetryKey(TenantAclIdDbId doc)
+    {
+        return doc.tenant + "!" + doc.dbId;
+    }
+
+    private static class ContentRetry
+    {
+        final int attempts;
+        final long nextAttempt;
+
+        ContentRetry(int attempts, long nextAttempt)
+        {
+            this.attempts = attempts;
+            this.nextAttempt = nextAttempt;
+        }
     }
     
     class ContentIndexWorkerRunnable extends AbstractWorkerRunnable
@@ -130,7 +234,18 @@ public class ContentTracker extends AbstractTracker implements Tracker
         protected void doWork() throws Exception
         {
             checkShutdown();
-            this.infoServer.updateContentToIndexAndCache(doc.dbId, doc.tenant);
+            // The worker threads fetch the content, so this is where the rate limit applies
+            acquireFetchPermit();
+            try
+            {
+                this.infoServer.updateContentToIndexAndCache(doc.dbId, doc.tenant);
+                recordSuccess(doc);
+            }
+            catch (Exception e)
+            {
+                recordFailure(doc);
+                throw e;
+            }
         }
     }
 }
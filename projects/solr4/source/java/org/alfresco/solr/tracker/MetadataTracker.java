@@ -19,7 +19,9 @@
 package org.alfresco.solr.tracker;
 
 import java.io.IOException;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -45,6 +47,7 @@ import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.client.Transactions;
 import org.apache.commons.codec.EncoderException;
 import org.json.JSONException;
+import org.quartz.CronExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +60,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
     protected final static Logger log = LoggerFactory.getLogger(MetadataTracker.class);
     private static final int DEFAULT_TRANSACTION_DOCS_BATCH_SIZE = 100;
     private static final int DEFAULT_NODE_BATCH_SIZE = 10;
+    private static final long MAX_COMMIT_WAIT_RETRY_MILLIS = 3600000L;
     private int transactionDocsBatchSize = DEFAULT_TRANSACTION_DOCS_BATCH_SIZE;
     private int nodeBatchSize = DEFAULT_NODE_BATCH_SIZE;
     private ConcurrentLinkedQueue<Long> transactionsToReindex = new ConcurrentLinkedQueue<Long>();
@@ -66,6 +70,12 @@ public class MetadataTracker extends AbstractTracker implements Tracker
     private ConcurrentLinkedQueue<Long> nodesToIndex = new ConcurrentLinkedQueue<Long>();
     private ConcurrentLinkedQueue<Long> nodesToPurge = new ConcurrentLinkedQueue<Long>();
     private ConcurrentLinkedQueue<String> queriesToReindex = new ConcurrentLinkedQueue<String>();
+    private long commitWaitMillis = 0L;
+    private long commitWaitMaxMillis = 15000L;
+    private long commitWaitRetryMillis = 60000L;
+    private long commitWaitBackoffMillis = 0L;
+    private long commitWaitResumeTime = 0L;
+    private long lag = 1000L;
 
 
     public MetadataTracker(Properties p, SOLRAPIClient client, String coreName,
@@ -75,6 +85,19 @@ public class MetadataTracker extends AbstractTracker implements Tracker
 
         transactionDocsBatchSize = Integer.parseInt(p.getProperty("alfresco.transactionDocsBatchSize", "100"));
         nodeBatchSize = Integer.parseInt(p.getProperty("alfresco.nodeBatchSize", "10"));
+        commitWaitMillis = Long.parseLong(p.getProperty("alfresco.commitWaitMillis", "0"));
+        commitWaitMaxMillis = Long.parseLong(p.getProperty("alfresco.commitWaitMaxMillis", "15000"));
+        commitWaitRetryMillis = Long.parseLong(p.getProperty("alfresco.commitWaitRetryMillis", "60000"));
+        lag = Long.parseLong(p.getProperty("alfresco.lag", "1000"));
+        if (commitWaitMillis > 0)
+        {
+            // Never hold the tracker past its next scheduled run: that run does the reindex, purge and fix work
+            long cronIntervalMillis = getCronIntervalMillis(p.getProperty("alfresco.cron", "0/15 * * * * ? *"));
+            if ((cronIntervalMillis > 0) && (cronIntervalMillis < commitWaitMaxMillis))
+            {
+                commitWaitMaxMillis = cronIntervalMillis;
+            }
+        }
         threadHandler = new ThreadHandler(p, coreName, "MetadataTracker");
     }
     
@@ -101,9 +124,108 @@ public class MetadataTracker extends AbstractTracker implements Tracker
             indexNodes();
 
             trackRepository();
+            trackCommittedTransactions();
         }
     }
 
+    /**
+     * @return the time between two consecutive runs of the given tracker schedule, or -1 if it cannot be parsed
+     */
+    static long getCronIntervalMillis(String cron)
+    {
+        try
+        {
+            CronExpression expression = new CronExpression(cron);
+            Date next = expression.getNextValidTimeAfter(new Date());
+            Date following = (next == null) ? null : expression.getNextValidTimeAfter(next);
+            return (following == null) ? -1L : following.getTime() - next.getTime();
+        }
+        catch (ParseException e)
+        {
+            log.warn("Unable to parse alfresco.cron, commit waits are bounded by alfresco.commitWaitMaxMillis only: " + cron);
+            return -1L;
+        }
+    }
+
+    /**
+     * Rather than waiting for the next scheduled run, wait on the repository for new transactions to be
+     * committed and track them as soon as they are visible.  This stops when a wait times out without a new
+     * commit, when reindex, purge or fix work is queued, or after <b>alfresco.commitWaitMaxMillis</b> (never more
+     * than the interval of <b>alfresco.cron</b>), after which the tracker state is rebuilt from the index by the
+     * next scheduled run.  Commits made on other repository cluster members are only found by the scheduled runs.
+     * <p/>
+     * If the repository cannot wait, the scheduled runs stop waiting for <b>alfresco.commitWaitRetryMillis</b>,
+     * doubling on each further failure, before trying again.
+     */
+    private void trackCommittedTransactions() throws IOException, AuthenticationException, JSONException, EncoderException
+    {
+        if ((commitWaitMillis <= 0) || (!isMaster && isSlave))
+        {
+            return;
+        }
+        if (System.currentTimeMillis() < commitWaitResumeTime)
+        {
+            return;
+        }
+        
+        TrackerState state = super.getTrackerState();
+        long stopTime = System.currentTimeMillis() + commitWaitMaxMillis;
+        long afterTxnId = state.getLastIndexedTxId();
+        long remaining;
+        while (((remaining = stopTime - System.currentTimeMillis()) > 0) && !hasQueuedWork())
+        {
+            checkShutdown();
+            Long lastCommittedTxnId;
+            try
+            {
+                lastCommittedTxnId = client.waitForTransactionCommit(afterTxnId, Math.min(commitWaitMillis, remaining));
+                commitWaitBackoffMillis = 0L;
+            }
+            catch (AlfrescoRuntimeException e)
+            {
+                // The repository cannot wait just now - rely on the scheduled runs for a while
+                commitWaitBackoffMillis = (commitWaitBackoffMillis == 0L) ? commitWaitRetryMillis
+                            : Math.min(commitWaitBackoffMillis * 2, MAX_COMMIT_WAIT_RETRY_MILLIS);
+                commitWaitResumeTime = System.currentTimeMillis() + commitWaitBackoffMillis;
+                log.warn("Waiting for transaction commits failed, falling back to scheduled tracking for "
+                            + commitWaitBackoffMillis + "ms: " + e.getMessage());
+                return;
+            }
+            if ((lastCommittedTxnId == null) || (lastCommittedTxnId <= afterTxnId))
+            {
+                return;
+            }
+            // Wait on from the last commit seen, not the last indexed, or we would spin on transactions held back by lag
+            afterTxnId = lastCommittedTxnId;
+            
+            try
+            {
+                // The commit time is assigned before the commit so it will be inside the lag window
+                Thread.sleep(lag);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            
+            long now = System.currentTimeMillis();
+            state.setTimeToStopIndexing(now - lag);
+            state.setTimeBeforeWhichThereCanBeNoHoles(now - infoSrv.getHoleRetention());
+            trackRepository();
+        }
+    }
+
+    /**
+     * @return true if reindex, purge or fix work has been queued for the next scheduled run
+     */
+    private boolean hasQueuedWork()
+    {
+        return !(transactionsToReindex.isEmpty() && transactionsToIndex.isEmpty() && transactionsToPurge.isEmpty()
+                    && nodesToReindex.isEmpty() && nodesToIndex.isEmpty() && nodesToPurge.isEmpty()
+                    && queriesToReindex.isEmpty());
+    }
+
 
     private void trackRepository() throws IOException, AuthenticationException, JSONException, EncoderException
     {
@@ -161,7 +283,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
                             .withAddedStoreRef(storeRef)
                             .withTemplate(shardTemplate)
                             .withHasContent(transformContent)
-                            .withShardMethod(ShardMethodEnum.MOD_ACL_ID)
+                            .withShardMethod(shardMethod)
                             .endFloc()
                         .endShard()
                      .endShardInstance()
@@ -169,6 +291,22 @@ public class MetadataTracker extends AbstractTracker implements Tracker
         return shardstate;
     }
 
+    /**
+     * When sharding by DB id a node never changes shard, so the repository is asked to only return the nodes
+     * belonging to this shard rather than sending them all to be filtered here.
+     * 
+     * @param gnp the parameters to restrict to this shard
+     */
+    private void addShardFilter(GetNodesParameters gnp)
+    {
+        if ((shardCount > 1) && (shardMethod == ShardMethodEnum.DB_ID))
+        {
+            gnp.setShardMethod(shardMethod.toString());
+            gnp.setShardCount(shardCount);
+            gnp.setShardInstance(shardInstance);
+        }
+    }
+
     /**
      * Checks the first and last TX time
      * @param state the state of this tracker
@@ -281,6 +419,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
                     gnp.setTransactionIds(txs);
                     gnp.setStoreProtocol(storeRef.getProtocol());
                     gnp.setStoreIdentifier(storeRef.getIdentifier());
+                    addShardFilter(gnp);
                     List<Node> nodes = client.getNodes(gnp, (int) info.getUpdates());
                     for (Node node : nodes)
                     {
@@ -374,6 +513,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
                     gnp.setTransactionIds(txs);
                     gnp.setStoreProtocol(storeRef.getProtocol());
                     gnp.setStoreIdentifier(storeRef.getIdentifier());
+                    addShardFilter(gnp);
                     List<Node> nodes = client.getNodes(gnp, (int) info.getUpdates());
                     for (Node node : nodes)
                     {
@@ -745,6 +885,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
         gnp.setTransactionIds(txIds);
         gnp.setStoreProtocol(storeRef.getProtocol());
         gnp.setStoreIdentifier(storeRef.getIdentifier());
+        addShardFilter(gnp);
         List<Node> nodes = client.getNodes(gnp, Integer.MAX_VALUE);
         
         ArrayList<Node> nodeBatch = new ArrayList<>();
@@ -801,7 +942,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
             ArrayList<Node> filteredList = new ArrayList<Node>(nodes.size());
             for(Node node : nodes)
             {
-                if(isInAclShard(node.getAclId()))
+                if(isInShard(node))
                 {
                     filteredList.add(node);
                 }
@@ -893,6 +1034,7 @@ public class MetadataTracker extends AbstractTracker implements Tracker
             gnp.setTransactionIds(txs);
             gnp.setStoreProtocol(storeRef.getProtocol());
             gnp.setStoreIdentifier(storeRef.getIdentifier());
+            addShardFilter(gnp);
             return client.getNodes(gnp, Integer.MAX_VALUE);
         }
         catch (IOException e)
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.solr.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import org.alfresco.solr.query.SolrCachingPathScorer;
+import org.alfresco.solr.query.SolrCachingPathScorerTest;
+import org.alfresco.solr.query.SolrCachingPathScorerTest.CountingPathQuery;
+import org.alfresco.solr.query.SolrPathCacheEntry;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * Tests the warming of the path cache by {@link PathCacheRegenerator}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PathCacheRegeneratorTest
+{
+    private Directory directory;
+    private IndexWriter writer;
+    private DirectoryReader reader;
+    private CountingPathQuery pathQuery;
+    private PathCacheRegenerator regenerator;
+    private @Mock SolrIndexSearcher oldSearcher;
+    private @Mock SolrIndexSearcher newSearcher;
+    private @Mock SolrCache oldCache;
+    private @Mock SolrCache newCache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        pathQuery = new CountingPathQuery();
+        regenerator = new PathCacheRegenerator();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (reader != null)
+        {
+            reader.close();
+        }
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * @return the path cache entry the old searcher would hold for the current reader
+     */
+    private SolrPathCacheEntry buildEntry() throws Exception
+    {
+        SolrPathCacheEntry entry = new SolrPathCacheEntry();
+        for (AtomicReaderContext context : reader.leaves())
+        {
+            entry.putSegmentMatches(context.reader().getCoreCacheKey(), SolrCachingPathScorer.getSegmentMatches(oldSearcher, context, pathQuery));
+        }
+        return entry;
+    }
+
+    /**
+     * Reopens the reader after a commit and warms the new searcher's cache from the given entry
+     */
+    private SolrPathCacheEntry regenerate(SolrPathCacheEntry oldEntry) throws Exception
+    {
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        assertNotNull(newReader);
+        reader.close();
+        reader = newReader;
+        when(newSearcher.getTopReaderContext()).thenReturn(reader.getContext());
+
+        assertTrue(regenerator.regenerateItem(newSearcher, newCache, oldCache, pathQuery, oldEntry));
+
+        ArgumentCaptor<Object> newEntry = ArgumentCaptor.forClass(Object.class);
+        verify(newCache).put(eq(pathQuery), newEntry.capture());
+        verifyZeroInteractions(oldCache);
+        return (SolrPathCacheEntry) newEntry.getValue();
+    }
+
+    @Test
+    public void retainedSegmentsAreCarriedOver() throws Exception
+    {
+        SolrCachingPathScorerTest.addSegment(writer, 0, 10);
+        reader = DirectoryReader.open(directory);
+        Object retainedKey = reader.leaves().get(0).reader().getCoreCacheKey();
+        SolrPathCacheEntry oldEntry = buildEntry();
+        assertEquals(1, pathQuery.getEvaluations());
+
+        SolrCachingPathScorerTest.addSegment(writer, 10, 10);
+        SolrPathCacheEntry newEntry = regenerate(oldEntry);
+
+        assertEquals(2, reader.leaves().size());
+        assertSame(oldEntry.getSegmentMatches(retainedKey), newEntry.getSegmentMatches(retainedKey));
+        assertNotNull(newEntry.getSegmentMatches(reader.leaves().get(1).reader().getCoreCacheKey()));
+        assertEquals("Only the new segment should have been evaluated", 2, pathQuery.getEvaluations());
+        assertNull("The old entry is still used by the old searcher", oldEntry.getSegmentMatches(reader.leaves().get(1).reader().getCoreCacheKey()));
+    }
+
+    @Test
+    public void mergedSegmentsAreDropped() throws Exception
+    {
+        SolrCachingPathScorerTest.addSegment(writer, 0, 10);
+        SolrCachingPathScorerTest.addSegment(writer, 10, 10);
+        reader = DirectoryReader.open(directory);
+        assertEquals(2, reader.leaves().size());
+        Object firstKey = reader.leaves().get(0).reader().getCoreCacheKey();
+        Object secondKey = reader.leaves().get(1).reader().getCoreCacheKey();
+        SolrPathCacheEntry oldEntry = buildEntry();
+
+        writer.forceMerge(1);
+        writer.commit();
+        SolrPathCacheEntry newEntry = regenerate(oldEntry);
+
+        assertEquals(1, reader.leaves().size());
+        assertNull(newEntry.getSegmentMatches(firstKey));
+        assertNull(newEntry.getSegmentMatches(secondKey));
+        assertEquals(7, newEntry.getSegmentMatches(reader.leaves().get(0).reader().getCoreCacheKey()).size());
+        assertEquals(3, pathQuery.getEvaluations());
+    }
+
+    @Test
+    public void otherEntriesAreNotRegenerated() throws Exception
+    {
+        assertTrue(regenerator.regenerateItem(newSearcher, newCache, oldCache, "key", "value"));
+        verifyZeroInteractions(newSearcher, newCache, oldCache);
+    }
+}
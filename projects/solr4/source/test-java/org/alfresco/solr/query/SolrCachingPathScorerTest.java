@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2005-2015 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.solr.cache.CacheConstants;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.Version;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SortedIntDocSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the per-segment caching of path query results by {@link SolrCachingPathScorer}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SolrCachingPathScorerTest
+{
+    /** Doc values field set to 1 for documents matching the {@link CountingPathQuery} */
+    public static final String FIELD_MATCHES = "matches";
+    public static final String FIELD_ID = "id";
+
+    private Directory directory;
+    private IndexWriter writer;
+    private DirectoryReader reader;
+    private Map<Object, Object> pathCache;
+    private CountingPathQuery pathQuery;
+    private @Mock SolrIndexSearcher searcher;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        pathQuery = new CountingPathQuery();
+
+        pathCache = new HashMap<Object, Object>();
+        when(searcher.cacheLookup(eq(CacheConstants.ALFRESCO_PATH_CACHE), any())).thenAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                return pathCache.get(invocation.getArguments()[1]);
+            }
+        });
+        doAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                return pathCache.put(invocation.getArguments()[1], invocation.getArguments()[2]);
+            }
+        }).when(searcher).cacheInsert(eq(CacheConstants.ALFRESCO_PATH_CACHE), any(), any());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (reader != null)
+        {
+            reader.close();
+        }
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * Adds documents with consecutive ids, every third one matching the {@link CountingPathQuery}, as a new segment
+     */
+    public static void addSegment(IndexWriter writer, int firstId, int count) throws IOException
+    {
+        for (int id = firstId; id < firstId + count; id++)
+        {
+            Document doc = new Document();
+            doc.add(new StringField(FIELD_ID, String.valueOf(id), Store.YES));
+            doc.add(new NumericDocValuesField(FIELD_MATCHES, (id % 3 == 0) ? 1L : 0L));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+    }
+
+    /**
+     * @return the ids of the documents matching the cached query
+     */
+    private Set<String> search(DirectoryReader reader) throws IOException
+    {
+        Set<String> ids = new HashSet<String>();
+        for (AtomicReaderContext context : reader.leaves())
+        {
+            Scorer scorer = SolrCachingPathScorer.create(null, context, null, searcher, pathQuery);
+            for (int doc = scorer.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.nextDoc())
+            {
+                ids.add(context.reader().document(doc).get(FIELD_ID));
+            }
+        }
+        return ids;
+    }
+
+    private DirectoryReader reopen() throws IOException
+    {
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        reader.close();
+        reader = newReader;
+        return reader;
+    }
+
+    @Test
+    public void segmentResultsAreCachedUnderTheQuery() throws Exception
+    {
+        addSegment(writer, 0, 10);
+        reader = DirectoryReader.open(directory);
+
+        assertEquals(new HashSet<String>(Arrays.asList("0", "3", "6", "9")), search(reader));
+        assertEquals(1, pathQuery.getEvaluations());
+        assertEquals("One cache entry per query", 1, pathCache.size());
+        assertTrue(pathCache.get(pathQuery) instanceof SolrPathCacheEntry);
+
+        search(reader);
+        assertEquals("The cached results were not used", 1, pathQuery.getEvaluations());
+    }
+
+    @Test
+    public void onlyNewSegmentsAreEvaluated() throws Exception
+    {
+        addSegment(writer, 0, 10);
+        reader = DirectoryReader.open(directory);
+        search(reader);
+
+        addSegment(writer, 10, 10);
+        reopen();
+        assertEquals(2, reader.leaves().size());
+
+        assertEquals(new HashSet<String>(Arrays.asList("0", "3", "6", "9", "12", "15", "18")), search(reader));
+        assertEquals("Only the new segment should have been evaluated", 2, pathQuery.getEvaluations());
+        assertEquals(1, pathCache.size());
+    }
+
+    @Test
+    public void deletionsAreAppliedToCachedResults() throws Exception
+    {
+        addSegment(writer, 0, 10);
+        reader = DirectoryReader.open(directory);
+        search(reader);
+
+        writer.deleteDocuments(new Term(FIELD_ID, "3"));
+        writer.commit();
+        reopen();
+
+        assertEquals(new HashSet<String>(Arrays.asList("0", "6", "9")), search(reader));
+        assertEquals("The segment is unchanged apart from deletions", 1, pathQuery.getEvaluations());
+    }
+
+    @Test
+    public void largeResultsAreHeldAsBitSets() throws Exception
+    {
+        addSegment(writer, 0, 10);
+        addSegment(writer, 10, 300);
+        reader = DirectoryReader.open(directory);
+        assertEquals(2, reader.leaves().size());
+
+        assertTrue(SolrCachingPathScorer.getSegmentMatches(searcher, reader.leaves().get(0), pathQuery) instanceof SortedIntDocSet);
+        assertTrue(SolrCachingPathScorer.getSegmentMatches(searcher, reader.leaves().get(1), pathQuery) instanceof BitDocSet);
+        assertEquals(104, search(reader).size());
+    }
+
+    /**
+     * Path query stand-in matching the documents with {@link #FIELD_MATCHES} set, counting its segment evaluations
+     */
+    public static class CountingPathQuery extends SolrPathQuery
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int evaluations = 0;
+
+        public CountingPathQuery()
+        {
+            super(null);
+        }
+
+        public int getEvaluations()
+        {
+            return evaluations;
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher)
+        {
+            evaluations++;
+            return new Weight()
+            {
+                @Override
+                public Explanation explain(AtomicReaderContext context, int doc) throws IOException
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Query getQuery()
+                {
+                    return CountingPathQuery.this;
+                }
+
+                @Override
+                public float getValueForNormalization() throws IOException
+                {
+                    return 1.0f;
+                }
+
+                @Override
+                public void normalize(float norm, float topLevelBoost)
+                {
+                }
+
+                @Override
+                public Scorer scorer(AtomicReaderContext context, Bits acceptDocs) throws IOException
+                {
+                    NumericDocValues values = context.reader().getNumericDocValues(FIELD_MATCHES);
+                    FixedBitSet bits = new FixedBitSet(context.reader().maxDoc());
+                    for (int doc = 0; doc < bits.length(); doc++)
+                    {
+                        if ((values.get(doc) == 1L) && ((acceptDocs == null) || acceptDocs.get(doc)))
+                        {
+                            bits.set(doc);
+                        }
+                    }
+                    final DocIdSetIterator iterator = bits.iterator();
+                    return new Scorer(this)
+                    {
+                        @Override
+                        public int docID()
+                        {
+                            return iterator.docID();
+                        }
+
+                        @Override
+                        public int nextDoc() throws IOException
+                        {
+                            return iterator.nextDoc();
+                        }
+
+                        @Override
+                        public int advance(int target) throws IOException
+                        {
+                            return iterator.advance(target);
+                        }
+
+                        @Override
+                        public long cost()
+                        {
+                            return iterator.cost();
+                        }
+
+                        @Override
+                        public float score() throws IOException
+                        {
+                            return 1.0f;
+                        }
+
+                        @Override
+                        public int freq() throws IOException
+                        {
+                            return 1;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -70,6 +70,8 @@ public class ContentTrackerTest
         this.contentTracker.doTrack();
         verify(srv, never()).updateContentToIndexAndCache(anyLong(), anyString());
         verify(srv, never()).commit();
+        verify(trackerStats).setContentBacklog(0);
+        verify(trackerStats, never()).setContentDocsPerSecond(anyDouble());
     }
 
     @Test
@@ -98,14 +100,14 @@ public class ContentTrackerTest
             doc.tenant = "2";
             docs2.add(doc);
         }
-        when(this.srv.getDocsWithUncleanContent(anyInt(), anyInt()))
+        when(this.srv.getDocsWithUncleanContent(any(Long.class), anyInt()))
                 .thenReturn(docs1)
                 .thenReturn(docs2)
             .thenReturn(emptyList);
         this.contentTracker.doTrack();
         
         InOrder order = inOrder(srv);
-        order.verify(srv).getDocsWithUncleanContent(0, READ_BATCH);
+        order.verify(srv).getDocsWithUncleanContent(null, READ_BATCH);
         
         /*
          * I had to make each bunch of calls have different parameters to prevent Mockito from incorrectly failing
@@ -121,12 +123,65 @@ public class ContentTrackerTest
         order.verify(srv).updateContentToIndexAndCache(thirdDoc.dbId, thirdDoc.tenant);
         order.verify(srv).commit();
         
-        order.verify(srv).getDocsWithUncleanContent(0 + READ_BATCH, READ_BATCH);
+        order.verify(srv).getDocsWithUncleanContent(thirdDoc.dbId, READ_BATCH);
         
         // From docs2
         order.verify(srv, times(UPDATE_BATCH)).updateContentToIndexAndCache(2l, "2");
         order.verify(srv).commit();
         
-        order.verify(srv).getDocsWithUncleanContent(0 + READ_BATCH + READ_BATCH, READ_BATCH);
+        order.verify(srv).getDocsWithUncleanContent(2l, READ_BATCH);
+
+        // Three distinct docs were found with unclean content
+        verify(trackerStats).setContentBacklog(3);
+        verify(trackerStats).setContentDocsPerSecond(anyDouble());
+    }
+
+    @Test
+    public void doTrackBacksOffFailedContent() throws Exception
+    {
+        List<TenantAclIdDbId> docs = new ArrayList<>();
+        List<TenantAclIdDbId> emptyList = new ArrayList<>();
+        TenantAclIdDbId doc = new TenantAclIdDbId();
+        doc.dbId = 5l;
+        doc.tenant = "5";
+        docs.add(doc);
+        doThrow(new RuntimeException("Transformation failed")).when(srv).updateContentToIndexAndCache(5l, "5");
+        when(this.srv.getDocsWithUncleanContent(any(Long.class), anyInt()))
+                .thenReturn(docs)
+                .thenReturn(emptyList)
+                .thenReturn(docs)
+            .thenReturn(emptyList);
+
+        this.contentTracker.doTrack();
+        // The failed doc is still unclean, but is not fetched again until its back off has elapsed
+        this.contentTracker.doTrack();
+
+        verify(srv, times(1)).updateContentToIndexAndCache(5l, "5");
+    }
+
+    @Test
+    public void doTrackForgetsFailuresForDocsNoLongerUnclean() throws Exception
+    {
+        List<TenantAclIdDbId> docs = new ArrayList<>();
+        List<TenantAclIdDbId> emptyList = new ArrayList<>();
+        TenantAclIdDbId doc = new TenantAclIdDbId();
+        doc.dbId = 5l;
+        doc.tenant = "5";
+        docs.add(doc);
+        doThrow(new RuntimeException("Transformation failed")).when(srv).updateContentToIndexAndCache(5l, "5");
+        when(this.srv.getDocsWithUncleanContent(any(Long.class), anyInt()))
+                .thenReturn(docs)
+                .thenReturn(emptyList)
+                .thenReturn(emptyList)
+                .thenReturn(docs)
+                .thenReturn(emptyList);
+
+        this.contentTracker.doTrack();
+        // The doc is no longer unclean (eg. its node was deleted), so its failure is forgotten
+        this.contentTracker.doTrack();
+        // When it is dirtied again it is fetched straight away rather than being backed off
+        this.contentTracker.doTrack();
+
+        verify(srv, times(2)).updateContentToIndexAndCache(5l, "5");
     }
 }
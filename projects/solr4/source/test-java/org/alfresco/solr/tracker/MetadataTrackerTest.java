@@ -27,7 +27,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.httpclient.AuthenticationException;
+import org.alfresco.repo.index.shard.ShardMethodEnum;
 import org.alfresco.repo.index.shard.ShardState;
 import org.alfresco.solr.AlfrescoCoreAdminHandler;
 import org.alfresco.solr.InformationServer;
@@ -43,10 +45,13 @@ import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MetadataTrackerTest
@@ -140,6 +145,153 @@ public class MetadataTrackerTest
         verify(srv, never()).commit();
     }
 
+    @Test
+    public void doTrackWaitsForCommitsUntilNoneArrive() throws AuthenticationException, IOException, JSONException, EncoderException
+    {
+        props.setProperty("alfresco.commitWaitMillis", "1000");
+        props.setProperty("alfresco.lag", "0");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        mockNoTransactions();
+
+        // One commit arrives, then the next wait, from that commit, times out
+        when(repositoryClient.waitForTransactionCommit(anyLong(), anyLong())).thenReturn(5L).thenReturn(5L);
+
+        tracker.doTrack();
+
+        InOrder inOrder = inOrder(repositoryClient);
+        inOrder.verify(repositoryClient).waitForTransactionCommit(0L, 1000L);
+        inOrder.verify(repositoryClient).waitForTransactionCommit(5L, 1000L);
+        verify(repositoryClient, times(2)).waitForTransactionCommit(anyLong(), anyLong());
+    }
+
+    @Test
+    public void doTrackFallsBackToPollingWithoutCommitWaits() throws AuthenticationException, IOException, JSONException, EncoderException
+    {
+        props.setProperty("alfresco.commitWaitMillis", "1000");
+        props.setProperty("alfresco.lag", "0");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        mockNoTransactions();
+
+        // The repository does not provide the endpoint
+        when(repositoryClient.waitForTransactionCommit(anyLong(), anyLong())).thenThrow(new AlfrescoRuntimeException("404"));
+
+        tracker.doTrack();
+        tracker.doTrack();
+
+        verify(repositoryClient, times(1)).waitForTransactionCommit(anyLong(), anyLong());
+    }
+
+    @Test
+    public void doTrackRetriesCommitWaitsAfterBackingOff() throws Exception
+    {
+        props.setProperty("alfresco.commitWaitMillis", "1000");
+        props.setProperty("alfresco.commitWaitRetryMillis", "100");
+        props.setProperty("alfresco.lag", "0");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        mockNoTransactions();
+
+        // The repository is briefly unavailable
+        when(repositoryClient.waitForTransactionCommit(anyLong(), anyLong())).thenThrow(new AlfrescoRuntimeException("503"))
+                    .thenReturn(null);
+
+        tracker.doTrack();
+        tracker.doTrack();
+        verify(repositoryClient, times(1)).waitForTransactionCommit(anyLong(), anyLong());
+
+        Thread.sleep(200L);
+        tracker.doTrack();
+        tracker.doTrack();
+        verify(repositoryClient, times(3)).waitForTransactionCommit(anyLong(), anyLong());
+    }
+
+    @Test
+    public void doTrackStopsWaitingForCommitsAtTheNextScheduledRun() throws Exception
+    {
+        props.setProperty("alfresco.commitWaitMillis", "1000");
+        props.setProperty("alfresco.commitWaitMaxMillis", "300000");
+        props.setProperty("alfresco.cron", "0/1 * * * * ? *");
+        props.setProperty("alfresco.lag", "0");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        mockNoTransactions();
+
+        // Commits keep arriving
+        when(repositoryClient.waitForTransactionCommit(anyLong(), anyLong())).thenAnswer(new Answer<Long>()
+        {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable
+            {
+                Thread.sleep(50L);
+                return (Long) invocation.getArguments()[0] + 1;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        tracker.doTrack();
+
+        assertTrue(System.currentTimeMillis() - start < 5000L);
+        ArgumentCaptor<Long> waits = ArgumentCaptor.forClass(Long.class);
+        verify(repositoryClient, atLeast(2)).waitForTransactionCommit(anyLong(), waits.capture());
+        for (Long wait : waits.getAllValues())
+        {
+            assertTrue("Waited past the next scheduled run: " + wait, (wait > 0) && (wait <= 1000L));
+        }
+    }
+
+    @Test
+    public void doTrackStopsWaitingForCommitsWhenWorkIsQueued() throws Exception
+    {
+        props.setProperty("alfresco.commitWaitMillis", "1000");
+        props.setProperty("alfresco.lag", "0");
+        final MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        mockNoTransactions();
+
+        // A purge is requested while the tracker waits
+        when(repositoryClient.waitForTransactionCommit(anyLong(), anyLong())).thenAnswer(new Answer<Long>()
+        {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable
+            {
+                tracker.addNodeToPurge(DB_ID);
+                return 5L;
+            }
+        });
+
+        tracker.doTrack();
+
+        verify(repositoryClient, times(1)).waitForTransactionCommit(anyLong(), anyLong());
+    }
+
+    @Test
+    public void cronIntervalBoundsCommitWaits()
+    {
+        assertEquals(15000L, MetadataTracker.getCronIntervalMillis("0/15 * * * * ? *"));
+        assertEquals(60000L, MetadataTracker.getCronIntervalMillis("0 * * * * ? *"));
+        assertEquals(-1L, MetadataTracker.getCronIntervalMillis("not a cron expression"));
+    }
+
+    @Test
+    public void doTrackDoesNotWaitForCommitsByDefault() throws AuthenticationException, IOException, JSONException, EncoderException
+    {
+        when(this.metadataTracker.getTrackerState()).thenReturn(new TrackerState());
+        mockNoTransactions();
+
+        this.metadataTracker.doTrack();
+
+        verify(repositoryClient, never()).waitForTransactionCommit(anyLong(), anyLong());
+    }
+
+    private void mockNoTransactions() throws AuthenticationException, IOException, JSONException, EncoderException
+    {
+        TrackerState state = new TrackerState();
+        when(srv.getTrackerInitialState()).thenReturn(state);
+
+        Transactions txs = mock(Transactions.class);
+        when(txs.getTransactions()).thenReturn(new ArrayList<Transaction>());
+        when(repositoryClient.getTransactions(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), isNull(ShardState.class))).thenReturn(txs);
+        when(repositoryClient.getTransactions(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), any(ShardState.class))).thenReturn(txs);
+        when(repositoryClient.getTransactions(anyLong(), anyLong(), anyLong(), anyLong(), anyInt())).thenReturn(txs);
+    }
+
     @Test
     public void testCheckNodeLong() throws AuthenticationException, IOException, JSONException
     {
@@ -191,6 +343,80 @@ public class MetadataTrackerTest
         
         assertSame(nodes4Tx, nodes);
     }
+
+    @Test
+    public void aclShardingDoesNotFilterNodesInTheRepository() throws AuthenticationException, IOException, JSONException
+    {
+        props.setProperty("acl.shard.count", "3");
+        props.setProperty("acl.shard.instance", "1");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+        when(repositoryClient.getNodes(any(GetNodesParameters.class), anyInt())).thenReturn(getNodes());
+
+        tracker.getFullNodesForDbTransaction(TX_ID);
+
+        ArgumentCaptor<GetNodesParameters> gnp = ArgumentCaptor.forClass(GetNodesParameters.class);
+        verify(repositoryClient).getNodes(gnp.capture(), anyInt());
+        assertNull(gnp.getValue().getShardMethod());
+        assertNull(gnp.getValue().getShardCount());
+        assertNull(gnp.getValue().getShardInstance());
+    }
+
+    @Test
+    public void dbIdShardingFiltersNodesInTheRepository() throws AuthenticationException, IOException, JSONException
+    {
+        MetadataTracker tracker = getDbIdShardTracker(3, 1);
+        when(repositoryClient.getNodes(any(GetNodesParameters.class), anyInt())).thenReturn(getNodes());
+
+        tracker.getFullNodesForDbTransaction(TX_ID);
+
+        ArgumentCaptor<GetNodesParameters> gnp = ArgumentCaptor.forClass(GetNodesParameters.class);
+        verify(repositoryClient).getNodes(gnp.capture(), anyInt());
+        assertEquals(ShardMethodEnum.DB_ID.toString(), gnp.getValue().getShardMethod());
+        assertEquals(Integer.valueOf(3), gnp.getValue().getShardCount());
+        assertEquals(Integer.valueOf(1), gnp.getValue().getShardInstance());
+    }
+
+    @Test
+    public void dbIdShardingSelectsNodesByIdAndTracksAllAcls()
+    {
+        MetadataTracker tracker = getDbIdShardTracker(3, 1);
+
+        Node node = new Node();
+        node.setAclId(2L);
+        for (long id = 0; id < 9; id++)
+        {
+            node.setId(id);
+            assertEquals("Node " + id, (id % 3) == 1, tracker.isInShard(node));
+        }
+        for (long aclId = 0; aclId < 9; aclId++)
+        {
+            assertTrue("ACL " + aclId, tracker.isInAclShard(aclId));
+        }
+    }
+
+    @Test
+    public void aclShardingSelectsNodesByAcl()
+    {
+        props.setProperty("acl.shard.count", "3");
+        props.setProperty("acl.shard.instance", "1");
+        MetadataTracker tracker = new MetadataTracker(props, repositoryClient, coreName, srv);
+
+        Node node = new Node();
+        node.setId(1L);
+        for (long aclId = 0; aclId < 9; aclId++)
+        {
+            node.setAclId(aclId);
+            assertEquals("ACL " + aclId, (aclId % 3) == 1, tracker.isInShard(node));
+        }
+    }
+
+    private MetadataTracker getDbIdShardTracker(int shardCount, int shardInstance)
+    {
+        props.setProperty("shard.method", ShardMethodEnum.DB_ID.toString());
+        props.setProperty("acl.shard.count", String.valueOf(shardCount));
+        props.setProperty("acl.shard.instance", String.valueOf(shardInstance));
+        return new MetadataTracker(props, repositoryClient, coreName, srv);
+    }
     
     
 }